@@ -0,0 +1,59 @@
+package de.rwth.idsg.steve.benchmark;
+
+import de.rwth.idsg.steve.repository.TransactionRepository;
+import de.rwth.idsg.steve.repository.dto.Transaction;
+import de.rwth.idsg.steve.repository.dto.TransactionDetails;
+import de.rwth.idsg.steve.web.dto.TransactionQueryForm;
+
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Knows the connectors of the transactions, which is all that the integration asks for
+ */
+final class InMemoryTransactionRepository implements TransactionRepository {
+
+    private final Map<Integer, Integer> connectorIds = new ConcurrentHashMap<>();
+
+    void addTransaction(int transactionPk, int connectorId) {
+        connectorIds.put(transactionPk, connectorId);
+    }
+
+    @Override
+    public Integer getTransactionConnectorId(int transactionPk) {
+        return connectorIds.getOrDefault(transactionPk, -1);
+    }
+
+    @Override
+    public List<Transaction> getTransactions(TransactionQueryForm form) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void writeTransactionsCSV(TransactionQueryForm form, Writer writer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Integer> getActiveTransactionIds(String chargeBoxId) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<Integer> getActiveTransactionIdsWithoutView(String chargeBoxId) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public TransactionDetails getDetails(int transactionPk, boolean firstArrivingMeterValueIfMultiple) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TransactionDetails getDetailsWithoutMeterValues(int transactionPk, boolean firstArrivingMeterValueIfMultiple) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,73 @@
+package de.rwth.idsg.steve.benchmark;
+
+import de.rwth.idsg.steve.integration.EnergyAggregationService;
+import de.rwth.idsg.steve.integration.IntegrationServiceImpl;
+import de.rwth.idsg.steve.integration.SiteLoadBalancer;
+import ocpp.cs._2015._10.MeterValuesRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IntegrationServiceImpl#meterValues} with a recorded three phase MeterValues request: decoding, the energy
+ * aggregation, the load balancer and the serialization of the MQTT payload. The charge boxes take turns, so that the
+ * lookups of the aggregates are not always hits on the same entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeterValuesBenchmark {
+
+    @Param({"1", "1000"})
+    public int chargeBoxes;
+
+    private IntegrationServiceImpl integrationService;
+    private MeterValuesRequest request;
+    private String[] chargeBoxIds;
+    private int next;
+
+    @Setup
+    public void setup() {
+        integrationService = createIntegrationService();
+
+        request = RecordedPayloads.loadRequest("MeterValues");
+
+        chargeBoxIds = new String[chargeBoxes];
+        for (int i = 0; i < chargeBoxes; i++) {
+            chargeBoxIds[i] = RecordedPayloads.CHARGE_BOX_ID + "-" + i;
+        }
+    }
+
+    @Benchmark
+    public void meterValues() {
+        integrationService.meterValues(chargeBoxIds[next], request);
+        next = (next + 1) % chargeBoxIds.length;
+    }
+
+    /**
+     * Wired like in production, but without a database or broker behind it
+     */
+    static IntegrationServiceImpl createIntegrationService() {
+        InMemoryTransactionRepository transactionRepository = new InMemoryTransactionRepository();
+        transactionRepository.addTransaction(StubCallHandler.TRANSACTION_ID, 1);
+
+        EnergyAggregationService energyAggregationService = new EnergyAggregationService(null, null);
+        SiteLoadBalancer siteLoadBalancer = new SiteLoadBalancer(null, null, null, energyAggregationService, null);
+
+        return new IntegrationServiceImpl(new SerializingMqttService(), transactionRepository,
+                energyAggregationService, siteLoadBalancer);
+    }
+}
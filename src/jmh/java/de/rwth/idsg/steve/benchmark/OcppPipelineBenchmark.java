@@ -0,0 +1,95 @@
+package de.rwth.idsg.steve.benchmark;
+
+import de.rwth.idsg.steve.metrics.OcppMetrics;
+import de.rwth.idsg.steve.ocpp.OcppTransport;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.ws.data.CommunicationContext;
+import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonMessage;
+import de.rwth.idsg.steve.ocpp.ws.pipeline.Deserializer;
+import de.rwth.idsg.steve.ocpp.ws.pipeline.IncomingPipeline;
+import de.rwth.idsg.steve.ocpp.ws.pipeline.Serializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The way of an incoming OCPP 1.6 call through the JSON pipeline, per recorded action: deserializing the frame,
+ * serializing the response, and both with the call handling in between, as done for every text message of a station.
+ * The handler is a stub, so that the pipeline is measured and not the database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OcppPipelineBenchmark {
+
+    @Param({"Heartbeat", "StatusNotification", "MeterValues", "StartTransaction", "StopTransaction", "BootNotification"})
+    public String action;
+
+    private final WebSocketSession session = new DiscardingWebSocketSession();
+
+    private String incomingString;
+    private OcppJsonMessage outgoingMessage;
+
+    private Deserializer deserializer;
+    private IncomingPipeline pipeline;
+
+    @Setup
+    public void setup() {
+        incomingString = RecordedPayloads.load(action);
+        deserializer = RecordedPayloads.createDeserializer();
+
+        StubCallHandler handler = new StubCallHandler(MeterValuesBenchmark.createIntegrationService());
+        OcppMetrics.CallMetrics callMetrics = new OcppMetrics(new SimpleMeterRegistry())
+                .forTransport(OcppVersion.V_16, OcppTransport.JSON);
+        pipeline = new IncomingPipeline(deserializer, handler, callMetrics);
+
+        // the response to the recorded call, as input for the serializer
+        CommunicationContext context = newContext();
+        deserializer.accept(context);
+        handler.accept(context);
+        outgoingMessage = context.getOutgoingMessage();
+    }
+
+    @Benchmark
+    public CommunicationContext deserialize() {
+        CommunicationContext context = newContext();
+        deserializer.accept(context);
+        return context;
+    }
+
+    @Benchmark
+    public String serialize() {
+        CommunicationContext context = new CommunicationContext(session, RecordedPayloads.CHARGE_BOX_ID);
+        context.setOutgoingMessage(outgoingMessage);
+        Serializer.INSTANCE.accept(context);
+        return context.getOutgoingString();
+    }
+
+    @Benchmark
+    public CommunicationContext pipeline() {
+        CommunicationContext context = newContext();
+        pipeline.accept(context);
+        return context;
+    }
+
+    private CommunicationContext newContext() {
+        CommunicationContext context = new CommunicationContext(session, RecordedPayloads.CHARGE_BOX_ID);
+        context.setIncomingString(incomingString);
+        return context;
+    }
+}
@@ -0,0 +1,48 @@
+package de.rwth.idsg.steve.benchmark;
+
+import de.rwth.idsg.ocpp.jaxb.RequestType;
+import de.rwth.idsg.steve.ocpp.ws.FutureResponseContextStore;
+import de.rwth.idsg.steve.ocpp.ws.data.CommunicationContext;
+import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonCall;
+import de.rwth.idsg.steve.ocpp.ws.ocpp16.Ocpp16TypeStore;
+import de.rwth.idsg.steve.ocpp.ws.pipeline.Deserializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * OCPP 1.6 JSON frames as sent by stations in the field, one file per action in src/jmh/resources/ocpp16
+ */
+final class RecordedPayloads {
+
+    static final String CHARGE_BOX_ID = "EH4R7K2M";
+
+    private RecordedPayloads() { }
+
+    static String load(String action) {
+        String name = "/ocpp16/" + action + ".json";
+        try (InputStream in = RecordedPayloads.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No recorded payload " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Deserializer createDeserializer() {
+        // the store is only used for responses to our own calls
+        return new Deserializer(new FutureResponseContextStore(), Ocpp16TypeStore.INSTANCE);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends RequestType> T loadRequest(String action) {
+        CommunicationContext context = new CommunicationContext(new DiscardingWebSocketSession(), CHARGE_BOX_ID);
+        context.setIncomingString(load(action));
+        createDeserializer().accept(context);
+        return (T) ((OcppJsonCall) context.getIncomingMessage()).getPayload();
+    }
+}
@@ -0,0 +1,55 @@
+package de.rwth.idsg.steve.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+import de.rwth.idsg.steve.integration.MqttPublisherStats;
+import de.rwth.idsg.steve.integration.MqttService;
+import de.rwth.idsg.steve.integration.dto.ConnectorStatus;
+import de.rwth.idsg.steve.integration.dto.EnergyMeterData;
+import de.rwth.idsg.steve.ocpp.ws.JsonObjectMapper;
+import org.joda.time.DateTime;
+
+/**
+ * Serializes the payloads like MqttServiceImpl does on the calling thread, but does not publish them
+ */
+final class SerializingMqttService implements MqttService {
+
+    // configured like the writer of MqttServiceImpl
+    private final ObjectWriter writer = JsonObjectMapper.INSTANCE.getMapper()
+                                                                 .writer()
+                                                                 .without(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                                                                 .with(new StdDateFormat().withColonInTimeZone(true));
+
+    private long serializedBytes;
+
+    @Override
+    public void publishEnergyMeterData(String chargeBoxId, String connector, EnergyMeterData data) {
+        sendToMqttBroker("ocpp/" + chargeBoxId + "/" + connector + "/em", data);
+    }
+
+    @Override
+    public void publishChargeBoxStatus(String chargeBoxId, String connector, ConnectorStatus status) {
+        sendToMqttBroker("ocpp/" + chargeBoxId + "/" + connector + "/status", status);
+    }
+
+    @Override
+    public void sendToMqttBroker(String topic, Object payload) {
+        try {
+            serializedBytes += writer.writeValueAsBytes(payload).length;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int replay(DateTime from, DateTime to) {
+        return 0;
+    }
+
+    @Override
+    public MqttPublisherStats getPublisherStats() {
+        return MqttPublisherStats.builder().connected(true).published(serializedBytes).build();
+    }
+}
@@ -0,0 +1,71 @@
+package de.rwth.idsg.steve.benchmark;
+
+import de.rwth.idsg.ocpp.jaxb.RequestType;
+import de.rwth.idsg.ocpp.jaxb.ResponseType;
+import de.rwth.idsg.steve.integration.IntegrationService;
+import de.rwth.idsg.steve.ocpp.ws.pipeline.AbstractCallHandler;
+import ocpp.cs._2015._10.AuthorizationStatus;
+import ocpp.cs._2015._10.BootNotificationRequest;
+import ocpp.cs._2015._10.BootNotificationResponse;
+import ocpp.cs._2015._10.HeartbeatRequest;
+import ocpp.cs._2015._10.HeartbeatResponse;
+import ocpp.cs._2015._10.IdTagInfo;
+import ocpp.cs._2015._10.MeterValuesRequest;
+import ocpp.cs._2015._10.MeterValuesResponse;
+import ocpp.cs._2015._10.RegistrationStatus;
+import ocpp.cs._2015._10.StartTransactionRequest;
+import ocpp.cs._2015._10.StartTransactionResponse;
+import ocpp.cs._2015._10.StatusNotificationRequest;
+import ocpp.cs._2015._10.StatusNotificationResponse;
+import ocpp.cs._2015._10.StopTransactionRequest;
+import ocpp.cs._2015._10.StopTransactionResponse;
+import org.joda.time.DateTime;
+
+/**
+ * Stands in for CentralSystemService16_Service: the requests that reach the integration go to the given service,
+ * everything else is answered like the real service does, but without the database.
+ */
+final class StubCallHandler extends AbstractCallHandler {
+
+    static final int TRANSACTION_ID = 6773;
+
+    private final IntegrationService integrationService;
+
+    StubCallHandler(IntegrationService integrationService) {
+        this.integrationService = integrationService;
+    }
+
+    @Override
+    protected ResponseType dispatch(RequestType params, String chargeBoxId) {
+        if (params instanceof MeterValuesRequest) {
+            integrationService.meterValues(chargeBoxId, (MeterValuesRequest) params);
+            return new MeterValuesResponse();
+
+        } else if (params instanceof StatusNotificationRequest) {
+            return new StatusNotificationResponse();
+
+        } else if (params instanceof HeartbeatRequest) {
+            return new HeartbeatResponse().withCurrentTime(DateTime.now());
+
+        } else if (params instanceof StartTransactionRequest) {
+            integrationService.onStartTransaction(chargeBoxId, (StartTransactionRequest) params);
+            return new StartTransactionResponse()
+                    .withIdTagInfo(new IdTagInfo().withStatus(AuthorizationStatus.ACCEPTED))
+                    .withTransactionId(TRANSACTION_ID);
+
+        } else if (params instanceof StopTransactionRequest) {
+            integrationService.onStopTransaction(chargeBoxId, (StopTransactionRequest) params);
+            return new StopTransactionResponse()
+                    .withIdTagInfo(new IdTagInfo().withStatus(AuthorizationStatus.ACCEPTED));
+
+        } else if (params instanceof BootNotificationRequest) {
+            return new BootNotificationResponse()
+                    .withStatus(RegistrationStatus.ACCEPTED)
+                    .withCurrentTime(DateTime.now())
+                    .withInterval(14400);
+
+        } else {
+            throw new IllegalArgumentException("Unexpected RequestType " + params.getClass().getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.rwth.idsg.steve.benchmark;
+
+import de.rwth.idsg.ocpp.jaxb.RequestType;
+import de.rwth.idsg.steve.ocpp.ws.TypeStore;
+import de.rwth.idsg.steve.ocpp.ws.data.ActionResponsePair;
+import de.rwth.idsg.steve.ocpp.ws.ocpp16.Ocpp16TypeStore;
+import ocpp.cp._2015._10.GetConfigurationRequest;
+import ocpp.cp._2015._10.RemoteStartTransactionRequest;
+import ocpp.cp._2015._10.SetChargingProfileRequest;
+import ocpp.cp._2015._10.TriggerMessageRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The lookups of the OCPP 1.6 type store: request classes by action for every incoming call, action and response
+ * class by request for every outgoing call. Each invocation looks up all actions of the mix once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypeStoreBenchmark {
+
+    // the actions of the recorded payloads, roughly by frequency
+    private static final String[] INCOMING_ACTIONS = {
+            "Heartbeat", "MeterValues", "StatusNotification", "StartTransaction", "StopTransaction", "BootNotification"
+    };
+
+    private final TypeStore typeStore = Ocpp16TypeStore.INSTANCE;
+
+    private RequestType[] outgoingRequests;
+
+    @Setup
+    public void setup() {
+        outgoingRequests = new RequestType[] {
+                new SetChargingProfileRequest(),
+                new TriggerMessageRequest(),
+                new RemoteStartTransactionRequest(),
+                new GetConfigurationRequest()
+        };
+    }
+
+    @Benchmark
+    public void findRequestClass(Blackhole bh) {
+        for (String action : INCOMING_ACTIONS) {
+            bh.consume(typeStore.findRequestClass(action));
+        }
+    }
+
+    @Benchmark
+    public void findActionResponse(Blackhole bh) {
+        for (RequestType request : outgoingRequests) {
+            ActionResponsePair pair = typeStore.findActionResponse(request);
+            bh.consume(pair);
+        }
+    }
+}
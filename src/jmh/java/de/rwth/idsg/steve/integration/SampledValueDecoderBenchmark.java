@@ -0,0 +1,160 @@
+package de.rwth.idsg.steve.integration;
+
+import de.rwth.idsg.steve.ocpp.ws.JsonObjectMapper;
+import ocpp.cs._2015._10.Measurand;
+import ocpp.cs._2015._10.MeterValue;
+import ocpp.cs._2015._10.MeterValuesRequest;
+import ocpp.cs._2015._10.SampledValue;
+import ocpp.cs._2015._10.UnitOfMeasure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the stream based extraction of meter values (as it was before {@link SampledValueDecoder}) with the single
+ * pass decoder. Run the main method, the "gc.alloc.rate.norm" column of the GC profiler shows the bytes allocated per
+ * decoded meter value.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SampledValueDecoderBenchmark {
+
+    // a typical three phase AC station, recorded from an OCPP 1.6 MeterValues request
+    private static final String METER_VALUES_JSON = "{" +
+            "\"connectorId\":1,\"transactionId\":6773,\"meterValue\":[{" +
+            "\"timestamp\":\"2022-10-18T11:14:09.703Z\",\"sampledValue\":[" +
+            "{\"value\":\"15.823\",\"context\":\"Sample.Periodic\",\"measurand\":\"Current.Import\",\"phase\":\"L1\",\"unit\":\"A\"}," +
+            "{\"value\":\"15.911\",\"context\":\"Sample.Periodic\",\"measurand\":\"Current.Import\",\"phase\":\"L2\",\"unit\":\"A\"}," +
+            "{\"value\":\"15.760\",\"context\":\"Sample.Periodic\",\"measurand\":\"Current.Import\",\"phase\":\"L3\",\"unit\":\"A\"}," +
+            "{\"value\":\"231.2\",\"context\":\"Sample.Periodic\",\"measurand\":\"Voltage\",\"phase\":\"L1-N\",\"unit\":\"V\"}," +
+            "{\"value\":\"230.7\",\"context\":\"Sample.Periodic\",\"measurand\":\"Voltage\",\"phase\":\"L2-N\",\"unit\":\"V\"}," +
+            "{\"value\":\"232.0\",\"context\":\"Sample.Periodic\",\"measurand\":\"Voltage\",\"phase\":\"L3-N\",\"unit\":\"V\"}," +
+            "{\"value\":\"10962\",\"context\":\"Sample.Periodic\",\"measurand\":\"Power.Active.Import\",\"unit\":\"W\"}," +
+            "{\"value\":\"4.3\",\"context\":\"Sample.Periodic\",\"measurand\":\"Energy.Active.Import.Register\",\"unit\":\"kWh\"}," +
+            "{\"value\":\"45\",\"context\":\"Sample.Periodic\",\"measurand\":\"SoC\",\"unit\":\"Percent\"}" +
+            "]}]}";
+
+    private MeterValue meterValue;
+
+    @Setup
+    public void setup() throws Exception {
+        meterValue = JsonObjectMapper.INSTANCE.getMapper()
+                                              .readValue(METER_VALUES_JSON, MeterValuesRequest.class)
+                                              .getMeterValue()
+                                              .get(0);
+    }
+
+    @Benchmark
+    public void streams(Blackhole bh) {
+        List<SampledValue> sampledValues = meterValue.getSampledValue();
+
+        List<Double> current = Streams.perPhase(sampledValues, Measurand.CURRENT_IMPORT, UnitOfMeasure.A);
+        List<Double> voltage = Streams.perPhase(sampledValues, Measurand.VOLTAGE, UnitOfMeasure.V);
+        List<Double> power = Streams.power(sampledValues);
+
+        bh.consume(current);
+        bh.consume(voltage);
+        bh.consume(power.isEmpty() ? Streams.calculatedPower(current, voltage) : power.get(0));
+        bh.consume(Streams.energy(sampledValues));
+        bh.consume(meterValue.getTimestamp().toDate());
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole bh) {
+        bh.consume(SampledValueDecoder.forCurrentThread().decode(meterValue));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SampledValueDecoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    /**
+     * The previous implementation of IntegrationServiceImpl, as the baseline
+     */
+    private static final class Streams {
+
+        private static List<Double> perPhase(List<SampledValue> sampledValues, Measurand measurand, UnitOfMeasure unit) {
+            List<Double> returnValues = Arrays.asList(0.0, 0.0, 0.0);
+            List<SampledValue> sorted = sampledValues
+                    .stream()
+                    .filter(sampledValue -> sampledValue.getMeasurand() == measurand)
+                    .filter(sampledValue -> sampledValue.getUnit() == unit)
+                    .sorted(Comparator.comparing(SampledValue::getPhase))
+                    .collect(Collectors.toList());
+
+            for (int i = 0; i < 3; i++) {
+                for (SampledValue sample : sorted) {
+                    if (sample.getPhase().value().contains(Integer.toString(i + 1))) {
+                        returnValues.set(i, Double.valueOf(sample.getValue()));
+                    }
+                }
+            }
+            return returnValues;
+        }
+
+        private static List<Double> power(List<SampledValue> sampledValues) {
+            return sampledValues.stream()
+                    .filter(sampledValue -> sampledValue.getMeasurand() == Measurand.POWER_ACTIVE_IMPORT)
+                    .filter(sampledValue -> Double.valueOf(sampledValue.getValue()) > 0)
+                    .map(sampledValue -> Double.valueOf(sampledValue.getValue()))
+                    .collect(Collectors.toList());
+        }
+
+        private static double calculatedPower(List<Double> current, List<Double> voltage) {
+            double power = 0;
+            for (int i = 0; i < current.size(); i++) {
+                power += current.get(i) * voltage.get(i);
+            }
+            return power;
+        }
+
+        private static Optional<Double> energy(List<SampledValue> sampledValues) {
+            Optional<Double> kWh = sampledValues
+                    .stream()
+                    .filter(sampledValue -> sampledValue.getMeasurand() == Measurand.ENERGY_ACTIVE_IMPORT_REGISTER)
+                    .filter(sampledValue -> sampledValue.getUnit() == UnitOfMeasure.K_WH)
+                    .findFirst()
+                    .map(sampledValue -> Double.valueOf(sampledValue.getValue()));
+
+            if (kWh.isPresent()) {
+                return Optional.of(kWh.get() * 1000);
+            }
+
+            return sampledValues
+                    .stream()
+                    .filter(sampledValue -> sampledValue.getMeasurand() == Measurand.ENERGY_ACTIVE_IMPORT_REGISTER)
+                    .filter(sampledValue -> sampledValue.getUnit() == UnitOfMeasure.WH)
+                    .findFirst()
+                    .map(sampledValue -> Double.valueOf(sampledValue.getValue()));
+        }
+    }
+}
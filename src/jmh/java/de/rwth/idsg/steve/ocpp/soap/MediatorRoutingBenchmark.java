@@ -0,0 +1,116 @@
+package de.rwth.idsg.steve.ocpp.soap;
+
+import org.apache.cxf.binding.soap.Soap12;
+import org.apache.cxf.staxutils.DepthXMLStreamReader;
+import org.apache.cxf.staxutils.StaxUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the version routing of {@link MediatorInInterceptor} before (mark the stream, parse up to the body, reset)
+ * and after {@link SoapNamespaceSniffer}, on recorded MeterValues envelopes of OCPP 1.2, 1.5 and 1.6. Both include
+ * the complete parse of the message that CXF does afterwards for the target service, so that the numbers show the
+ * whole way of a message through the router endpoint.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MediatorRoutingBenchmark {
+
+    private static final String ENCODING = "UTF-8";
+    private static final QName BODY = Soap12.getInstance().getBody();
+
+    @Param({"ocpp12", "ocpp15", "ocpp16"})
+    public String version;
+
+    private byte[] envelope;
+
+    @Setup
+    public void setup() {
+        String name = "/soap/" + version + "-MeterValues.xml";
+        try (InputStream in = MediatorRoutingBenchmark.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No recorded envelope " + name);
+            }
+            envelope = in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    public void markAndReset(Blackhole bh) throws Exception {
+        BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(envelope));
+        bis.mark(bis.available());
+
+        XMLStreamReader reader = StaxUtils.createXMLStreamReader(bis, ENCODING);
+        DepthXMLStreamReader xmlReader = new DepthXMLStreamReader(reader);
+        if (xmlReader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            StaxUtils.toNextTag(xmlReader, BODY);
+            xmlReader.nextTag();
+        }
+        bh.consume(xmlReader.getName().getNamespaceURI());
+        bis.reset();
+
+        bh.consume(parseAll(bis));
+    }
+
+    @Benchmark
+    public void prefixSniffing(Blackhole bh) throws Exception {
+        SoapNamespaceSniffer.Result result = SoapNamespaceSniffer.sniff(new ByteArrayInputStream(envelope), ENCODING, BODY);
+        bh.consume(result.getNamespace());
+
+        bh.consume(parseAll(result.getReplay()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MediatorRoutingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    /**
+     * Stands in for the parsing of CXF for the target service
+     */
+    private static int parseAll(InputStream in) throws Exception {
+        XMLStreamReader reader = StaxUtils.createXMLStreamReader(in, ENCODING);
+        int events = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            events++;
+        }
+        StaxUtils.close(reader);
+        return events;
+    }
+}
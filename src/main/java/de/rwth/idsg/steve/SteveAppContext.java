@@ -112,6 +112,9 @@ public class SteveAppContext {
         ServletHolder web = new ServletHolder("spring-dispatcher", new DispatcherServlet(springContext));
         ServletHolder cxf = new ServletHolder("cxf", new CXFServlet());
 
+        // forwarded calls between cluster nodes wait for the response of the station without blocking a thread
+        web.setAsyncSupported(true);
+
         ctx.addEventListener(new ContextLoaderListener(springContext));
         ctx.addServlet(web, CONFIG.getSpringMapping());
         ctx.addServlet(cxf, CONFIG.getCxfMapping());
@@ -126,13 +129,12 @@ public class SteveAppContext {
                     EnumSet.allOf(DispatcherType.class)
             );
 
-            // /api/* filter
-            ctx.addFilter(
+            // /api/* filter. Async for the long-polling and streaming of the station events
+            FilterHolder apiFilter =
                     // The bean name is not arbitrary, but is as expected by Spring
-                    new FilterHolder(new DelegatingFilterProxy(AbstractSecurityWebApplicationInitializer.DEFAULT_FILTER_NAME)),
-                    CONFIG.getApiMapping(),
-                    EnumSet.allOf(DispatcherType.class)
-            );
+                    new FilterHolder(new DelegatingFilterProxy(AbstractSecurityWebApplicationInitializer.DEFAULT_FILTER_NAME));
+            apiFilter.setAsyncSupported(true);
+            ctx.addFilter(apiFilter, CONFIG.getApiMapping(), EnumSet.allOf(DispatcherType.class));
         }
 
         initJSP(ctx);
@@ -18,14 +18,21 @@
  */
 package de.rwth.idsg.steve;
 
+import de.rwth.idsg.steve.integration.MqttOverflowPolicy;
+import de.rwth.idsg.steve.ocpp.ws.cluster.SessionOwnershipRegistryType;
 import de.rwth.idsg.steve.ocpp.ws.custom.WsSessionSelectStrategy;
 import de.rwth.idsg.steve.ocpp.ws.custom.WsSessionSelectStrategyEnum;
+import de.rwth.idsg.steve.ocpp.ws.traffic.TrafficLogRules;
 import de.rwth.idsg.steve.utils.PropertiesFileLoader;
 import lombok.Builder;
 import lombok.Getter;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
 /**
  * @author Sevket Goekay <sevketgokay@gmail.com>
  * @since 19.08.2014
@@ -56,11 +63,16 @@ public enum SteveConfiguration {
     private final String gitDescribe;
     private final ApplicationProfile profile;
     private final Ocpp ocpp;
+    private final TrafficLog trafficLog;
+    private final FlapDamping flapDamping;
+    private final SoapClient soapClient;
     private final Auth auth;
     private final Auth apiAuth;
     private final DB db;
     private final Jetty jetty;
     private final Mqtt mqtt;
+    private final Notification notification;
+    private final Cluster cluster;
 
     SteveConfiguration() {
         PropertiesFileLoader p = new PropertiesFileLoader("main.properties");
@@ -88,6 +100,11 @@ public enum SteveConfiguration {
                .userName(p.getString("db.user"))
                .password(p.getString("db.password"))
                .sqlLogging(p.getBoolean("db.sql.logging"))
+               .replicaIp(p.getOptionalString("db.replica.ip"))
+               .replicaPort(intOrDefault(p.getOptionalInt("db.replica.port"), p.getInt("db.port")))
+               .replicaUserName(stringOrDefault(p.getOptionalString("db.replica.user"), p.getString("db.user")))
+               .replicaPassword(stringOrDefault(p.getOptionalString("db.replica.password"), p.getString("db.password")))
+               .replicaStickyInSeconds(intOrDefault(p.getOptionalInt("db.replica.sticky.seconds"), 10))
                .build();
 
         PasswordEncoder encoder = new BCryptPasswordEncoder();
@@ -108,14 +125,73 @@ public enum SteveConfiguration {
                    .autoRegisterUnknownStations(p.getOptionalBoolean("auto.register.unknown.stations"))
                    .wsSessionSelectStrategy(
                            WsSessionSelectStrategyEnum.fromName(p.getString("ws.session.select.strategy")))
+                   .asyncActions(p.getStringList("ocpp.async.actions"))
+                   .deferTransactionEvents(p.getOptionalBoolean("ocpp.transaction.events.deferred"))
                    .build();
 
+        trafficLog = TrafficLog.builder()
+                               .rules(TrafficLogRules.parse(p.getStringList("ocpp.traffic.log.rules")))
+                               .maxPayloadLength(intOrDefault(p.getOptionalInt("ocpp.traffic.log.payload.max.length"), 1000))
+                               .queueCapacity(intOrDefault(p.getOptionalInt("ocpp.traffic.log.queue.capacity"), 10_000))
+                               .historyFramesPerStation(intOrDefault(p.getOptionalInt("ocpp.message.history.frames"), 50))
+                               .historySizeInKbPerStation(intOrDefault(p.getOptionalInt("ocpp.message.history.size.kb"), 64))
+                               .historyMaxStations(intOrDefault(p.getOptionalInt("ocpp.message.history.max.stations"), 1000))
+                               .historyRetentionInMinutes(intOrDefault(p.getOptionalInt("ocpp.message.history.retention.minutes"), 60))
+                               .build();
+
+        flapDamping = FlapDamping.builder()
+                                 .enabled(p.getOptionalBoolean("ocpp.ws.flap.damping.enabled"))
+                                 .halfLifeInSeconds(intOrDefault(p.getOptionalInt("ocpp.ws.flap.half.life.seconds"), 60))
+                                 .suppressThreshold(intOrDefault(p.getOptionalInt("ocpp.ws.flap.suppress.threshold"), 3000))
+                                 .reuseThreshold(intOrDefault(p.getOptionalInt("ocpp.ws.flap.reuse.threshold"), 1000))
+                                 .throttleInSeconds(intOrDefault(p.getOptionalInt("ocpp.ws.flap.throttle.seconds"), 0))
+                                 .build();
+
+        soapClient = SoapClient.builder()
+                               .maxConnections(intOrDefault(p.getOptionalInt("ocpp.soap.client.max.connections"), 1000))
+                               .maxConnectionsPerEndpoint(intOrDefault(p.getOptionalInt("ocpp.soap.client.max.connections.per.endpoint"), 2))
+                               .connectTimeoutInMillis(intOrDefault(p.getOptionalInt("ocpp.soap.client.connect.timeout.ms"), 10_000))
+                               .receiveTimeoutInMillis(intOrDefault(p.getOptionalInt("ocpp.soap.client.receive.timeout.ms"), 60_000))
+                               .proxyCacheSize(intOrDefault(p.getOptionalInt("ocpp.soap.client.proxy.cache.size"), 10_000))
+                               .breakerFailureThreshold(intOrDefault(p.getOptionalInt("ocpp.soap.client.breaker.failures"), 5))
+                               .breakerOpenInSeconds(intOrDefault(p.getOptionalInt("ocpp.soap.client.breaker.open.seconds"), 60))
+                               .build();
+
         mqtt = Mqtt.builder()
                     .url(p.getString("mqtt.url"))
                     .username(p.getString("mqtt.username"))
                     .password(p.getString("mqtt.password"))
+                    .qos(intOrDefault(p.getOptionalInt("mqtt.qos"), 0))
+                    .outboxCapacity(intOrDefault(p.getOptionalInt("mqtt.outbox.capacity"), 10_000))
+                    .overflowPolicy(MqttOverflowPolicy.fromName(
+                            useFallbackIfNotSet(p.getOptionalString("mqtt.outbox.overflow.policy"), "DROP_OLDEST")))
+                    .flushIntervalInMillis(intOrDefault(p.getOptionalInt("mqtt.flush.interval.ms"), 100))
+                    .maxBatchSize(intOrDefault(p.getOptionalInt("mqtt.batch.size"), 500))
+                    .outboxDir(p.getOptionalString("mqtt.outbox.dir"))
+                    .segmentSizeInMb(intOrDefault(p.getOptionalInt("mqtt.outbox.segment.size.mb"), 16))
+                    .retentionInHours(intOrDefault(p.getOptionalInt("mqtt.outbox.retention.hours"), 72))
+                    .retentionInMb(intOrDefault(p.getOptionalInt("mqtt.outbox.retention.mb"), 1024))
                     .build();
 
+        notification = Notification.builder()
+                                   .digestWindowInSeconds(intOrDefault(p.getOptionalInt("notification.digest.window.seconds"), 60))
+                                   .maxMailsPerMinute(intOrDefault(p.getOptionalInt("notification.mail.max.per.minute"), 10))
+                                   .build();
+
+        String hostName = getLocalHostName();
+        String defaultNodeAddress = jetty.httpEnabled
+                ? "http://" + hostName + ":" + jetty.httpPort + contextPath
+                : "https://" + hostName + ":" + jetty.httpsPort + contextPath;
+        cluster = Cluster.builder()
+                         .enabled(p.getOptionalBoolean("cluster.enabled"))
+                         .nodeId(useFallbackIfNotSet(p.getOptionalString("cluster.node.id"), hostName))
+                         .nodeAddress(useFallbackIfNotSet(p.getOptionalString("cluster.node.address"), defaultNodeAddress))
+                         .secret(p.getOptionalString("cluster.secret"))
+                         .registryType(SessionOwnershipRegistryType.fromName(
+                                 useFallbackIfNotSet(p.getOptionalString("cluster.registry"), "DATABASE")))
+                         .forwardTimeoutInSeconds(intOrDefault(p.getOptionalInt("cluster.forward.timeout"), 30))
+                         .build();
+
         validate();
     }
 
@@ -139,6 +215,22 @@ public enum SteveConfiguration {
         }
     }
 
+    private static int intOrDefault(Integer value, int fallback) {
+        return value == null ? fallback : value;
+    }
+
+    private static String stringOrDefault(String value, String fallback) {
+        return value == null ? fallback : value;
+    }
+
+    private static String getLocalHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
     private String sanitizeContextPath(String s) {
         if (s == null || "/".equals(s)) {
             return "";
@@ -152,10 +244,47 @@ public enum SteveConfiguration {
     }
 
     private void validate() {
+        if (mqtt.qos < 0 || mqtt.qos > 2) {
+            throw new IllegalArgumentException("MQTT QoS must be 0, 1 or 2, but is " + mqtt.qos);
+        }
+
+        if (trafficLog.queueCapacity < 1) {
+            throw new IllegalArgumentException("OCPP traffic log queue capacity must be positive");
+        }
+
+        if (trafficLog.historyFramesPerStation < 0 || trafficLog.historySizeInKbPerStation < 1) {
+            throw new IllegalArgumentException("OCPP message history must keep 0 or more frames in at least 1 KB");
+        }
+
+        if (trafficLog.historyMaxStations < 1 || trafficLog.historyRetentionInMinutes < 0) {
+            throw new IllegalArgumentException("OCPP message history must keep at least 1 station for 0 or more minutes");
+        }
+
+        if (soapClient.maxConnections < 1 || soapClient.maxConnectionsPerEndpoint < 1) {
+            throw new IllegalArgumentException("SOAP client must be allowed at least 1 connection in total and per endpoint");
+        }
+
+        if (soapClient.breakerFailureThreshold < 1) {
+            throw new IllegalArgumentException("SOAP client circuit breaker must open after at least 1 failure");
+        }
+
+        if (flapDamping.halfLifeInSeconds < 1 || flapDamping.reuseThreshold >= flapDamping.suppressThreshold) {
+            throw new IllegalArgumentException("Flap damping needs a positive half-life, and a reuse threshold below the suppress threshold");
+        }
+
+        if (notification.digestWindowInSeconds < 1 || notification.maxMailsPerMinute < 1) {
+            throw new IllegalArgumentException("Notification digest window and mail rate must be positive");
+        }
+
         if (!(jetty.httpEnabled || jetty.httpsEnabled)) {
             throw new IllegalArgumentException(
                     "HTTP and HTTPS are both disabled. Well, how do you want to access the server, then?");
         }
+
+        if (cluster.enabled && (cluster.secret == null || cluster.secret.trim().length() < Cluster.MIN_SECRET_LENGTH)) {
+            throw new IllegalArgumentException("Cluster mode is enabled, but 'cluster.secret' for the communication "
+                    + "between nodes is not set or shorter than " + Cluster.MIN_SECRET_LENGTH + " characters");
+        }
     }
 
     // -------------------------------------------------------------------------
@@ -188,6 +317,17 @@ public enum SteveConfiguration {
         private final String userName;
         private final String password;
         private final boolean sqlLogging;
+
+        // Read-only replica, see de.rwth.idsg.steve.config.ReplicaRouting
+        private final String replicaIp;
+        private final int replicaPort;
+        private final String replicaUserName;
+        private final String replicaPassword;
+        private final int replicaStickyInSeconds;
+
+        public boolean isReplicaEnabled() {
+            return replicaIp != null;
+        }
     }
 
     // Credentials for Web interface access
@@ -203,6 +343,53 @@ public enum SteveConfiguration {
     public static class Ocpp {
         private final boolean autoRegisterUnknownStations;
         private final WsSessionSelectStrategy wsSessionSelectStrategy;
+        // Actions whose async-safe handlers run after the response, see de.rwth.idsg.steve.ocpp.CallHandlerRegistry
+        private final List<String> asyncActions;
+        // Side effects of StartTransaction and StopTransaction, see de.rwth.idsg.steve.service.TransactionEventService
+        private final boolean deferTransactionEvents;
+    }
+
+    // Logging of the OCPP-J messages, see de.rwth.idsg.steve.ocpp.ws.traffic.TrafficLog
+    @Builder @Getter
+    public static class TrafficLog {
+        private final TrafficLogRules rules;
+        // 0 for the whole payload
+        private final int maxPayloadLength;
+        private final int queueCapacity;
+
+        // Off-heap history of the last frames of every station, see de.rwth.idsg.steve.ocpp.ws.traffic.MessageHistory
+        private final int historyFramesPerStation;
+        private final int historySizeInKbPerStation;
+        // Beyond it, only the history of a disconnected station is released for a new one
+        private final int historyMaxStations;
+        private final int historyRetentionInMinutes;
+    }
+
+    // Connects and disconnects of flapping JSON stations, see de.rwth.idsg.steve.ocpp.ws.StationFlapDetector
+    @Builder @Getter
+    public static class FlapDamping {
+        private final boolean enabled;
+        private final int halfLifeInSeconds;
+        // Hysteresis: suppressed above the first, reported again below the second
+        private final int suppressThreshold;
+        private final int reuseThreshold;
+        // 0 to never reject a handshake
+        private final int throttleInSeconds;
+    }
+
+    // Calls to SOAP stations, see de.rwth.idsg.steve.ocpp.soap.ClientProvider
+    @Builder @Getter
+    public static class SoapClient {
+        // Connection pool of the async HTTP conduit, shared by all proxies
+        private final int maxConnections;
+        private final int maxConnectionsPerEndpoint;
+        private final int connectTimeoutInMillis;
+        private final int receiveTimeoutInMillis;
+        private final int proxyCacheSize;
+
+        // Consecutive failures after which calls to an endpoint fail fast for a while
+        private final int breakerFailureThreshold;
+        private final int breakerOpenInSeconds;
     }
 
     @Builder @Getter
@@ -210,6 +397,43 @@ public enum SteveConfiguration {
         private final String url;
         private final String username;
         private final String password;
+
+        // 0, 1 or 2
+        private final int qos;
+        // Messages are buffered in the outbox, and published asynchronously in batches
+        private final int outboxCapacity;
+        private final MqttOverflowPolicy overflowPolicy;
+        private final int flushIntervalInMillis;
+        private final int maxBatchSize;
+
+        // If set, the outbox is a durable segment log in this directory, and the capacity/overflow policy above
+        // are replaced by its retention limits
+        private final String outboxDir;
+        private final int segmentSizeInMb;
+        private final int retentionInHours;
+        private final int retentionInMb;
+    }
+
+    // Notification mails, see de.rwth.idsg.steve.service.NotificationDigest
+    @Builder @Getter
+    public static class Notification {
+        private final int digestWindowInSeconds;
+        private final int maxMailsPerMinute;
+    }
+
+    // Multi-node deployment, in which a call for a station can be routed to the node that holds its session
+    @Builder @Getter
+    public static class Cluster {
+        public static final int MIN_SECRET_LENGTH = 16;
+
+        private final boolean enabled;
+        private final String nodeId;
+        // Base URL (including the context path) under which other nodes reach this node
+        private final String nodeAddress;
+        // Shared between all nodes, authenticates the forwarded calls
+        private final String secret;
+        private final SessionOwnershipRegistryType registryType;
+        private final int forwardTimeoutInSeconds;
     }
 
 }
@@ -23,18 +23,27 @@ import com.mysql.cj.conf.PropertyKey;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.metrics.MetricsExecuteListener;
+import de.rwth.idsg.steve.ocpp.ws.cluster.DatabaseSessionOwnershipRegistry;
+import de.rwth.idsg.steve.ocpp.ws.cluster.InMemorySessionOwnershipRegistry;
+import de.rwth.idsg.steve.ocpp.ws.cluster.SessionOwnershipRegistry;
 import de.rwth.idsg.steve.service.DummyReleaseCheckService;
 import de.rwth.idsg.steve.service.GithubReleaseCheckService;
 import de.rwth.idsg.steve.service.ReleaseCheckService;
 import de.rwth.idsg.steve.utils.DateTimeUtils;
 import de.rwth.idsg.steve.utils.InternetChecker;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.jooq.ConnectionProvider;
 import org.jooq.DSLContext;
+import org.jooq.ExecuteListenerProvider;
 import org.jooq.SQLDialect;
 import org.jooq.conf.Settings;
 import org.jooq.impl.DSL;
 import org.jooq.impl.DataSourceConnectionProvider;
 import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListenerProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
@@ -44,6 +53,7 @@ import org.springframework.core.Ordered;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -73,6 +83,7 @@ import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
 public class BeanConfiguration implements WebMvcConfigurer {
 
     private HikariDataSource dataSource;
+    private HikariDataSource replicaDataSource;
     private ScheduledThreadPoolExecutor executor;
 
     /**
@@ -81,12 +92,24 @@ public class BeanConfiguration implements WebMvcConfigurer {
     private void initDataSource() {
         SteveConfiguration.DB dbConfig = CONFIG.getDb();
 
+        dataSource = createDataSource("steve", dbConfig.getIp(), dbConfig.getPort(),
+                dbConfig.getUserName(), dbConfig.getPassword(), false);
+
+        if (dbConfig.isReplicaEnabled()) {
+            replicaDataSource = createDataSource("steve-replica", dbConfig.getReplicaIp(), dbConfig.getReplicaPort(),
+                    dbConfig.getReplicaUserName(), dbConfig.getReplicaPassword(), true);
+        }
+    }
+
+    private HikariDataSource createDataSource(String poolName, String ip, int port, String userName, String password,
+                                              boolean readOnly) {
         HikariConfig hc = new HikariConfig();
 
         // set standard params
-        hc.setJdbcUrl("jdbc:mysql://" + dbConfig.getIp() + ":" + dbConfig.getPort() + "/" + dbConfig.getSchema());
-        hc.setUsername(dbConfig.getUserName());
-        hc.setPassword(dbConfig.getPassword());
+        hc.setJdbcUrl("jdbc:mysql://" + ip + ":" + port + "/" + CONFIG.getDb().getSchema());
+        hc.setUsername(userName);
+        hc.setPassword(password);
+        hc.setReadOnly(readOnly);
 
         // set non-standard params
         hc.addDataSourceProperty(PropertyKey.cachePrepStmts.getKeyName(), true);
@@ -100,7 +123,11 @@ public class BeanConfiguration implements WebMvcConfigurer {
         // https://github.com/RWTH-i5-IDSG/steve/issues/736
         hc.setMaxLifetime(580_000);
 
-        dataSource = new HikariDataSource(hc);
+        // pool usage and connection wait times as hikaricp_* metrics
+        hc.setPoolName(poolName);
+        hc.setMetricRegistry(meterRegistry());
+
+        return new HikariDataSource(hc);
     }
 
     /**
@@ -114,6 +141,8 @@ public class BeanConfiguration implements WebMvcConfigurer {
      * - http://jooq-user.narkive.com/2fvuLodn/dslcontext-and-threads
      * - https://groups.google.com/forum/#!topic/jooq-user/VK7KQcjj3Co
      * - http://stackoverflow.com/questions/32848865/jooq-dslcontext-correct-autowiring-with-spring
+     *
+     * With a replica, the connection provider only decides per statement which pool to use, see {@link ReplicaRouting}.
      */
     @Bean
     public DSLContext dslContext() {
@@ -128,15 +157,36 @@ public class BeanConfiguration implements WebMvcConfigurer {
                 // To log or not to log the sql queries, that is the question
                 .withExecuteLogging(CONFIG.getDb().isSqlLogging());
 
+        ConnectionProvider connectionProvider;
+        ExecuteListenerProvider[] listenerProviders;
+        if (replicaDataSource == null) {
+            connectionProvider = new DataSourceConnectionProvider(dataSource);
+            listenerProviders = DefaultExecuteListenerProvider.providers(
+                    new MetricsExecuteListener(meterRegistry()));
+        } else {
+            connectionProvider = new ReplicaRouting.RoutingConnectionProvider(dataSource, replicaDataSource);
+            listenerProviders = DefaultExecuteListenerProvider.providers(
+                    new MetricsExecuteListener(meterRegistry()), new ReplicaRouting.WriteListener());
+        }
+
         // Configuration for JOOQ
         org.jooq.Configuration conf = new DefaultConfiguration()
                 .set(SQLDialect.MYSQL)
-                .set(new DataSourceConnectionProvider(dataSource))
+                .set(connectionProvider)
+                .set(listenerProviders)
                 .set(settings);
 
         return DSL.using(conf);
     }
 
+    /**
+     * Scraped by Prometheus at /api/metrics
+     */
+    @Bean
+    public PrometheusMeterRegistry meterRegistry() {
+        return new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    }
+
     @Bean
     public ScheduledExecutorService scheduledExecutorService() {
         ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("SteVe-Executor-%d")
@@ -166,6 +216,22 @@ public class BeanConfiguration implements WebMvcConfigurer {
         }
     }
 
+    /**
+     * Only relevant in cluster mode. The in-memory registry is for a single node, or for tests, in which all nodes
+     * run in the same JVM and therefore can share it.
+     */
+    @Bean
+    public SessionOwnershipRegistry sessionOwnershipRegistry() {
+        switch (CONFIG.getCluster().getRegistryType()) {
+            case DATABASE:
+                return new DatabaseSessionOwnershipRegistry(dslContext());
+            case IN_MEMORY:
+                return new InMemorySessionOwnershipRegistry();
+            default:
+                throw new IllegalArgumentException("Unknown registry type: " + CONFIG.getCluster().getRegistryType());
+        }
+    }
+
     @EventListener
     public void afterStart(ContextRefreshedEvent event) {
         DateTimeUtils.checkJavaAndMySQLOffsets(dslContext());
@@ -177,6 +243,10 @@ public class BeanConfiguration implements WebMvcConfigurer {
             dataSource.close();
         }
 
+        if (replicaDataSource != null) {
+            replicaDataSource.close();
+        }
+
         if (executor != null) {
             gracefulShutDown(executor);
         }
@@ -222,6 +292,16 @@ public class BeanConfiguration implements WebMvcConfigurer {
         registry.addResourceHandler("/static/**").addResourceLocations("static/");
     }
 
+    /**
+     * Resets the read replica routing per request, see {@link ReplicaRouting}
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (CONFIG.getDb().isReplicaEnabled()) {
+            registry.addInterceptor(new ReplicaRouting.RequestInterceptor(CONFIG.getDb().getReplicaStickyInSeconds()));
+        }
+    }
+
     @Override
     public void addViewControllers(ViewControllerRegistry registry) {
         registry.addViewController("/manager/signin").setViewName("signin");
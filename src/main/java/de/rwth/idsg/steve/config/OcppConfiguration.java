@@ -18,9 +18,19 @@
  */
 package de.rwth.idsg.steve.config;
 
+import de.rwth.idsg.steve.metrics.OcppMetrics;
+import de.rwth.idsg.steve.ocpp.CallHandlerRegistry;
+import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import de.rwth.idsg.steve.ocpp.OcppTransport;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.soap.CallHandlerInvoker;
+import de.rwth.idsg.steve.ocpp.soap.CentralSystemService12_SoapServer;
+import de.rwth.idsg.steve.ocpp.soap.CentralSystemService15_SoapServer;
+import de.rwth.idsg.steve.ocpp.soap.CentralSystemService16_SoapServer;
 import de.rwth.idsg.steve.ocpp.soap.LoggingFeatureProxy;
 import de.rwth.idsg.steve.ocpp.soap.MediatorInInterceptor;
 import de.rwth.idsg.steve.ocpp.soap.MessageIdInterceptor;
+import de.rwth.idsg.steve.ocpp.soap.SoapMetricsInterceptors;
 import org.apache.cxf.Bus;
 import org.apache.cxf.bus.spring.SpringBus;
 import org.apache.cxf.common.logging.LogUtils;
@@ -30,6 +40,7 @@ import org.apache.cxf.interceptor.Interceptor;
 import org.apache.cxf.jaxws.JaxWsServerFactoryBean;
 import org.apache.cxf.message.Message;
 import org.apache.cxf.phase.PhaseInterceptor;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
@@ -57,36 +68,57 @@ public class OcppConfiguration {
         LogUtils.setLoggerClass(Slf4jLogger.class);
     }
 
-    @Autowired private ocpp.cs._2010._08.CentralSystemService ocpp12Server;
-    @Autowired private ocpp.cs._2012._06.CentralSystemService ocpp15Server;
-    @Autowired private ocpp.cs._2015._10.CentralSystemService ocpp16Server;
+    // Bus properties of org.apache.cxf.transport.http.asyncclient.AsyncHTTPConduitFactory
+    private static final String ASYNC_CONDUIT_PREFIX = "org.apache.cxf.transport.http.async.";
+
+    @Autowired private CentralSystemService12_SoapServer ocpp12Server;
+    @Autowired private CentralSystemService15_SoapServer ocpp15Server;
+    @Autowired private CentralSystemService16_SoapServer ocpp16Server;
 
     @Autowired
     @Qualifier("MessageHeaderInterceptor")
     private PhaseInterceptor<Message> messageHeaderInterceptor;
 
+    @Autowired private OcppMetrics ocppMetrics;
+
     @PostConstruct
     public void init() {
         List<Interceptor<? extends Message>> interceptors = asList(new MessageIdInterceptor(), messageHeaderInterceptor);
         List<Feature> logging = singletonList(LoggingFeatureProxy.INSTANCE.get());
 
-        createOcppService(ocpp12Server, "/CentralSystemServiceOCPP12", interceptors, logging);
-        createOcppService(ocpp15Server, "/CentralSystemServiceOCPP15", interceptors, logging);
-        createOcppService(ocpp16Server, "/CentralSystemServiceOCPP16", interceptors, logging);
+        createOcppService(ocpp12Server, "/CentralSystemServiceOCPP12", OcppVersion.V_12,
+                ocpp12Server.createHandlerRegistry(OcppProtocol.V_12_SOAP), interceptors, logging);
+        createOcppService(ocpp15Server, "/CentralSystemServiceOCPP15", OcppVersion.V_15,
+                ocpp15Server.createHandlerRegistry(OcppProtocol.V_15_SOAP), interceptors, logging);
+        createOcppService(ocpp16Server, "/CentralSystemServiceOCPP16", OcppVersion.V_16,
+                ocpp16Server.createHandlerRegistry(OcppProtocol.V_16_SOAP), interceptors, logging);
 
         // Just a dummy service to route incoming messages to the appropriate service version. This should be the last
         // one to be created, since in MediatorInInterceptor we go over created/registered services and build a map.
         //
         List<Interceptor<? extends Message>> mediator = singletonList(new MediatorInInterceptor(springBus()));
-        createOcppService(ocpp12Server, CONFIG.getRouterEndpointPath(), mediator, Collections.emptyList());
+        createOcppService(ocpp12Server, CONFIG.getRouterEndpointPath(), null, null, mediator, Collections.emptyList());
     }
 
+    /**
+     * The async calls to SOAP stations use the async HTTP conduit, whose connection pool is shared by all proxies of
+     * the bus. See {@link de.rwth.idsg.steve.ocpp.soap.ClientProvider}.
+     */
     @Bean(name = Bus.DEFAULT_BUS_ID, destroyMethod = "shutdown")
     public SpringBus springBus() {
-        return new SpringBus();
+        SpringBus bus = new SpringBus();
+        bus.setProperty(ASYNC_CONDUIT_PREFIX + "usePolicy", "ASYNC_ONLY");
+        bus.setProperty(ASYNC_CONDUIT_PREFIX + "MAX_CONNECTIONS", CONFIG.getSoapClient().getMaxConnections());
+        bus.setProperty(ASYNC_CONDUIT_PREFIX + "MAX_PER_HOST_CONNECTIONS", CONFIG.getSoapClient().getMaxConnectionsPerEndpoint());
+        return bus;
     }
 
-    private void createOcppService(Object serviceBean, String address,
+    /**
+     * @param version  null for the router, since the calls are timed by the actual service it forwards them to
+     * @param handlers null for the router, since it does not handle the calls itself
+     */
+    private void createOcppService(Object serviceBean, String address, @Nullable OcppVersion version,
+                                   @Nullable CallHandlerRegistry handlers,
                                    List<Interceptor<? extends Message>> interceptors,
                                    Collection<? extends Feature> features) {
         JaxWsServerFactoryBean f = new JaxWsServerFactoryBean();
@@ -95,6 +127,18 @@ public class OcppConfiguration {
         f.setAddress(address);
         f.getFeatures().addAll(features);
         f.getInInterceptors().addAll(interceptors);
+
+        if (handlers != null) {
+            f.setInvoker(new CallHandlerInvoker(handlers));
+        }
+
+        if (version != null) {
+            OcppMetrics.CallMetrics callMetrics = ocppMetrics.forTransport(version, OcppTransport.SOAP);
+            f.getInInterceptors().add(new SoapMetricsInterceptors.In(callMetrics));
+            f.getOutInterceptors().add(new SoapMetricsInterceptors.Out(callMetrics, false));
+            f.getOutFaultInterceptors().add(new SoapMetricsInterceptors.Out(callMetrics, true));
+        }
+
         f.create();
     }
 }
@@ -0,0 +1,179 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.config;
+
+import lombok.RequiredArgsConstructor;
+import org.jooq.ConnectionProvider;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteType;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DefaultExecuteListener;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Routes the queries of read-only repository methods to a replica of the database. A method opts in by wrapping its
+ * queries with {@link #readOnly(Supplier)}, all other queries go to the primary, as before.
+ *
+ * Reads stay consistent with the writes of the same thread: once a thread wrote, even read-only methods use the
+ * primary until the routing state is reset. The state is reset at the beginning and the end of every Web request,
+ * and a Web session that wrote keeps reading from the primary for a while, so that a redirect after a form submit
+ * shows the changes, even if the replica lags behind.
+ */
+public final class ReplicaRouting {
+
+    private static final String LAST_WRITE_KEY = ReplicaRouting.class.getName() + ".lastWrite";
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private ReplicaRouting() { }
+
+    public static <T> T readOnly(Supplier<T> supplier) {
+        State state = STATE.get();
+        state.readOnlyDepth++;
+        try {
+            return supplier.get();
+        } finally {
+            state.readOnlyDepth--;
+        }
+    }
+
+    public static void readOnly(Runnable runnable) {
+        readOnly(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    // -------------------------------------------------------------------------
+    // Package-private, for the wiring in BeanConfiguration
+    // -------------------------------------------------------------------------
+
+    static boolean useReplica() {
+        State state = STATE.get();
+        return state.readOnlyDepth > 0 && !state.wrote && !state.sticky;
+    }
+
+    static void markWritten() {
+        STATE.get().wrote = true;
+    }
+
+    static boolean hasWritten() {
+        return STATE.get().wrote;
+    }
+
+    static void reset() {
+        State state = STATE.get();
+        state.wrote = false;
+        state.sticky = false;
+    }
+
+    private static class State {
+        private int readOnlyDepth;
+        // by this thread, since the last reset
+        private boolean wrote;
+        // by the Web session, recently
+        private boolean sticky;
+    }
+
+    /**
+     * Hands out connections of the replica pool within {@link #readOnly(Supplier)}, and of the primary pool otherwise.
+     * Like {@link org.jooq.impl.DataSourceConnectionProvider}, a connection is acquired per statement and closed after.
+     */
+    @RequiredArgsConstructor
+    static class RoutingConnectionProvider implements ConnectionProvider {
+
+        private final DataSource primary;
+        private final DataSource replica;
+
+        @Override
+        public Connection acquire() {
+            try {
+                return useReplica() ? replica.getConnection() : primary.getConnection();
+            } catch (SQLException e) {
+                throw new DataAccessException("Error getting connection from data source", e);
+            }
+        }
+
+        @Override
+        public void release(Connection connection) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                throw new DataAccessException("Error closing connection " + connection, e);
+            }
+        }
+    }
+
+    /**
+     * Marks the thread as having written, before the statement is executed
+     */
+    static class WriteListener extends DefaultExecuteListener {
+
+        @Override
+        public void start(ExecuteContext ctx) {
+            if (ctx.type() != ExecuteType.READ) {
+                markWritten();
+            }
+        }
+    }
+
+    static class RequestInterceptor implements HandlerInterceptor {
+
+        private final long stickyMillis;
+
+        RequestInterceptor(int stickyInSeconds) {
+            this.stickyMillis = TimeUnit.SECONDS.toMillis(stickyInSeconds);
+        }
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            reset();
+
+            HttpSession session = request.getSession(false);
+            if (session != null) {
+                Object lastWrite = session.getAttribute(LAST_WRITE_KEY);
+                if (lastWrite != null && System.currentTimeMillis() - (Long) lastWrite < stickyMillis) {
+                    STATE.get().sticky = true;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                    Exception ex) {
+            if (hasWritten()) {
+                HttpSession session = request.getSession(false);
+                if (session != null) {
+                    session.setAttribute(LAST_WRITE_KEY, System.currentTimeMillis());
+                }
+            }
+            reset();
+        }
+    }
+}
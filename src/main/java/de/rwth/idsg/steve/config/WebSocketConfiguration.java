@@ -20,6 +20,7 @@ package de.rwth.idsg.steve.config;
 
 import com.google.common.collect.Lists;
 import de.rwth.idsg.steve.ocpp.ws.OcppWebSocketHandshakeHandler;
+import de.rwth.idsg.steve.ocpp.ws.StationFlapDetector;
 import de.rwth.idsg.steve.ocpp.ws.ocpp12.Ocpp12WebSocketEndpoint;
 import de.rwth.idsg.steve.ocpp.ws.ocpp15.Ocpp15WebSocketEndpoint;
 import de.rwth.idsg.steve.ocpp.ws.ocpp16.Ocpp16WebSocketEndpoint;
@@ -45,6 +46,7 @@ import java.util.concurrent.TimeUnit;
 public class WebSocketConfiguration implements WebSocketConfigurer {
 
     @Autowired private ChargePointHelperService chargePointHelperService;
+    @Autowired private StationFlapDetector flapDetector;
 
     @Autowired private Ocpp12WebSocketEndpoint ocpp12WebSocketEndpoint;
     @Autowired private Ocpp15WebSocketEndpoint ocpp15WebSocketEndpoint;
@@ -60,7 +62,8 @@ public class WebSocketConfiguration implements WebSocketConfigurer {
         OcppWebSocketHandshakeHandler handshakeHandler = new OcppWebSocketHandshakeHandler(
             new DefaultHandshakeHandler(),
             Lists.newArrayList(ocpp16WebSocketEndpoint, ocpp15WebSocketEndpoint, ocpp12WebSocketEndpoint),
-            chargePointHelperService
+            chargePointHelperService,
+            flapDetector
         );
 
         registry.addHandler(handshakeHandler.getDummyWebSocketHandler(), "/websocket/CentralSystemService/*", "/websocket/CentralSystemService*")
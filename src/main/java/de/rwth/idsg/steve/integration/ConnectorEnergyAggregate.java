@@ -0,0 +1,114 @@
+package de.rwth.idsg.steve.integration;
+
+import de.rwth.idsg.steve.integration.dto.ConnectorEnergyStats;
+import org.joda.time.DateTime;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolling energy statistics of one connector. Updated by the thread that handles the messages of the station,
+ * read by API requests.
+ */
+final class ConnectorEnergyAggregate {
+
+    static final long BUCKET_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    static final long ONE_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    static final long FIVE_MINUTES = TimeUnit.MINUTES.toMillis(5);
+    static final long FIFTEEN_MINUTES = TimeUnit.MINUTES.toMillis(15);
+
+    // longer than the usual meter value interval. a station that reports less often shows gaps in its power
+    static final long SAMPLE_MAX_AGE = TimeUnit.MINUTES.toMillis(5);
+
+    // without samples or a transaction for this long, the aggregate can be dropped
+    static final long IDLE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final String chargeBoxId;
+    private final int connectorId;
+
+    private final PowerRingBuffer power = new PowerRingBuffer(BUCKET_MILLIS, (int) (FIFTEEN_MINUTES / BUCKET_MILLIS), SAMPLE_MAX_AGE);
+
+    private boolean transactionActive;
+
+    // energy register readings in Wh, NaN if not known
+    private double startRegister = Double.NaN;
+    private double lastRegister = Double.NaN;
+
+    ConnectorEnergyAggregate(String chargeBoxId, int connectorId) {
+        this.chargeBoxId = chargeBoxId;
+        this.connectorId = connectorId;
+    }
+
+    /**
+     * @param registerWh     NaN, if the sample does not contain an energy register reading
+     * @param inTransaction  whether the sample belongs to a transaction
+     */
+    synchronized void onSample(long timestamp, double watts, double registerWh, boolean inTransaction) {
+        power.add(timestamp, watts);
+
+        if (!inTransaction || Double.isNaN(registerWh)) {
+            return;
+        }
+
+        // if SteVe was restarted during a transaction, its start is not known. count from the first reading then
+        if (!transactionActive) {
+            transactionActive = true;
+            startRegister = registerWh;
+        }
+        lastRegister = registerWh;
+    }
+
+    synchronized void onTransactionStarted(long timestamp, double meterStartWh) {
+        transactionActive = true;
+        startRegister = meterStartWh;
+        lastRegister = meterStartWh;
+        power.add(timestamp, 0);
+    }
+
+    synchronized void onTransactionStopped(long timestamp, double meterStopWh) {
+        transactionActive = false;
+        lastRegister = meterStopWh;
+        power.add(timestamp, 0);
+    }
+
+    /**
+     * Nothing is known about the power of the connector after this, e.g. since the station disconnected
+     */
+    synchronized void onSamplesEnded(long timestamp) {
+        power.end(timestamp);
+    }
+
+    synchronized boolean isIdle(long now) {
+        return !transactionActive && now - power.getLastTimestamp() > IDLE_MILLIS;
+    }
+
+    synchronized ConnectorEnergyStats toStats(long now, String siteId) {
+        long lastTimestamp = power.getLastTimestamp();
+
+        return ConnectorEnergyStats.builder()
+                                   .chargeBoxId(chargeBoxId)
+                                   .connectorId(connectorId)
+                                   .siteId(siteId)
+                                   .transactionActive(transactionActive)
+                                   .powerInKw(power.getWatts(now) / 1000)
+                                   .energySinceStartInKwh(energySinceStart() / 1000)
+                                   .averagePower1MinInKw(kiloWatts(power.average(now, ONE_MINUTE)))
+                                   .averagePower5MinInKw(kiloWatts(power.average(now, FIVE_MINUTES)))
+                                   .averagePower15MinInKw(kiloWatts(power.average(now, FIFTEEN_MINUTES)))
+                                   .lastSampleTimestamp(lastTimestamp < 0 ? null : new DateTime(lastTimestamp))
+                                   .build();
+    }
+
+    /**
+     * Of the running transaction, or of the last one if none is running
+     */
+    private double energySinceStart() {
+        if (Double.isNaN(startRegister) || Double.isNaN(lastRegister)) {
+            return 0;
+        }
+        return Math.max(0, lastRegister - startRegister);
+    }
+
+    private static Double kiloWatts(double watts) {
+        return Double.isNaN(watts) ? null : watts / 1000;
+    }
+}
@@ -0,0 +1,257 @@
+package de.rwth.idsg.steve.integration;
+
+import com.google.common.annotations.VisibleForTesting;
+import de.rwth.idsg.steve.integration.dto.ConnectorEnergyStats;
+import de.rwth.idsg.steve.integration.dto.EnergyMeterData;
+import de.rwth.idsg.steve.integration.dto.SiteEnergyStats;
+import de.rwth.idsg.steve.repository.ChargePointRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps rolling energy statistics per connector and per site in memory, so that dashboards do not have to aggregate
+ * the meter values in the database. Fed with the meter values and transaction events of OCPP 1.6 stations.
+ *
+ * Samples are placed on the time line by their arrival, not by the timestamp of the station, since station clocks
+ * cannot be trusted to be in sync. A charge box that is not assigned to a site forms a site of its own.
+ *
+ * The last sample of a connector is held for a limited time only, and not after its station disconnected. Connectors
+ * without transaction and samples for a while are dropped, so that the aggregates do not grow with every connector
+ * that was ever seen.
+ */
+@Slf4j
+@Service
+public class EnergyAggregationService {
+
+    private static final long EVICTION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final ChargePointRepository chargePointRepository;
+    private final ScheduledExecutorService executorService;
+
+    // chargeBoxId -> connectorId -> aggregate
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Integer, ConnectorEnergyAggregate>> aggregates =
+            new ConcurrentHashMap<>();
+
+    // chargeBoxId -> siteId. replaced as a whole on change, since it is read for every site query
+    private volatile Map<String, String> siteIds = Collections.emptyMap();
+
+    private ScheduledFuture<?> evictionFuture;
+
+    public EnergyAggregationService(ChargePointRepository chargePointRepository,
+                                    ScheduledExecutorService executorService) {
+        this.chargePointRepository = chargePointRepository;
+        this.executorService = executorService;
+    }
+
+    @PostConstruct
+    public void init() {
+        siteIds = Collections.unmodifiableMap(new HashMap<>(chargePointRepository.getSiteIds()));
+        evictionFuture = executorService.scheduleWithFixedDelay(
+                () -> evictIdle(System.currentTimeMillis()),
+                EVICTION_INTERVAL_MILLIS, EVICTION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        if (evictionFuture != null) {
+            evictionFuture.cancel(false);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Updates
+    // -------------------------------------------------------------------------
+
+    public void onMeterValue(String chargeBoxId, int connectorId, EnergyMeterData data, boolean energySet,
+                             boolean inTransaction) {
+        double registerWh = energySet ? data.getEnergy() : Double.NaN;
+        getOrCreate(chargeBoxId, connectorId).onSample(System.currentTimeMillis(), data.getPower(), registerWh, inTransaction);
+    }
+
+    public void onTransactionStarted(String chargeBoxId, int connectorId, double meterStartWh) {
+        getOrCreate(chargeBoxId, connectorId).onTransactionStarted(System.currentTimeMillis(), meterStartWh);
+    }
+
+    public void onTransactionStopped(String chargeBoxId, int connectorId, double meterStopWh) {
+        getOrCreate(chargeBoxId, connectorId).onTransactionStopped(System.currentTimeMillis(), meterStopWh);
+    }
+
+    public void onStationDisconnected(String chargeBoxId) {
+        ConcurrentHashMap<Integer, ConnectorEnergyAggregate> connectors = aggregates.get(chargeBoxId);
+        if (connectors == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (ConnectorEnergyAggregate aggregate : connectors.values()) {
+            aggregate.onSamplesEnded(now);
+        }
+    }
+
+    /**
+     * @param siteId null, to remove the charge box from its site
+     * @return false, if there is no charge box with this id
+     */
+    public synchronized boolean updateSite(String chargeBoxId, @Nullable String siteId) {
+        if (!chargePointRepository.updateSiteId(chargeBoxId, siteId)) {
+            return false;
+        }
+
+        Map<String, String> copy = new HashMap<>(siteIds);
+        if (siteId == null) {
+            copy.remove(chargeBoxId);
+        } else {
+            copy.put(chargeBoxId, siteId);
+        }
+        siteIds = Collections.unmodifiableMap(copy);
+        return true;
+    }
+
+    // -------------------------------------------------------------------------
+    // Queries
+    // -------------------------------------------------------------------------
+
+    public List<ConnectorEnergyStats> getConnectorStats(String chargeBoxId) {
+        ConcurrentHashMap<Integer, ConnectorEnergyAggregate> connectors = aggregates.get(chargeBoxId);
+        if (connectors == null) {
+            return Collections.emptyList();
+        }
+
+        long now = System.currentTimeMillis();
+        String siteId = getSiteId(chargeBoxId);
+
+        List<ConnectorEnergyStats> stats = new ArrayList<>(connectors.size());
+        for (ConnectorEnergyAggregate aggregate : connectors.values()) {
+            stats.add(aggregate.toStats(now, siteId));
+        }
+        stats.sort(Comparator.comparingInt(ConnectorEnergyStats::getConnectorId));
+        return stats;
+    }
+
+    @Nullable
+    public ConnectorEnergyStats getConnectorStats(String chargeBoxId, int connectorId) {
+        ConcurrentHashMap<Integer, ConnectorEnergyAggregate> connectors = aggregates.get(chargeBoxId);
+        if (connectors == null) {
+            return null;
+        }
+
+        ConnectorEnergyAggregate aggregate = connectors.get(connectorId);
+        if (aggregate == null) {
+            return null;
+        }
+        return aggregate.toStats(System.currentTimeMillis(), getSiteId(chargeBoxId));
+    }
+
+    public List<SiteEnergyStats> getSiteStats() {
+        Map<String, List<ConnectorEnergyStats>> connectorsBySite = new TreeMap<>();
+        for (String chargeBoxId : aggregates.keySet()) {
+            connectorsBySite.computeIfAbsent(getSiteId(chargeBoxId), k -> new ArrayList<>())
+                            .addAll(getConnectorStats(chargeBoxId));
+        }
+
+        List<SiteEnergyStats> stats = new ArrayList<>(connectorsBySite.size());
+        connectorsBySite.forEach((siteId, connectors) -> stats.add(toSiteStats(siteId, connectors)));
+        return stats;
+    }
+
+    @Nullable
+    public SiteEnergyStats getSiteStats(String siteId) {
+        List<ConnectorEnergyStats> connectors = new ArrayList<>();
+        for (String chargeBoxId : aggregates.keySet()) {
+            if (siteId.equals(getSiteId(chargeBoxId))) {
+                connectors.addAll(getConnectorStats(chargeBoxId));
+            }
+        }
+
+        if (connectors.isEmpty()) {
+            return null;
+        }
+        return toSiteStats(siteId, connectors);
+    }
+
+    public String getSiteId(String chargeBoxId) {
+        return siteIds.getOrDefault(chargeBoxId, chargeBoxId);
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * A sample that arrives while its aggregate is dropped is lost, which the next sample makes up for
+     */
+    @VisibleForTesting
+    void evictIdle(long now) {
+        for (Map.Entry<String, ConcurrentHashMap<Integer, ConnectorEnergyAggregate>> entry : aggregates.entrySet()) {
+            entry.getValue().values().removeIf(aggregate -> aggregate.isIdle(now));
+            aggregates.computeIfPresent(entry.getKey(), (k, connectors) -> connectors.isEmpty() ? null : connectors);
+        }
+    }
+
+    private ConnectorEnergyAggregate getOrCreate(String chargeBoxId, int connectorId) {
+        return aggregates.computeIfAbsent(chargeBoxId, k -> new ConcurrentHashMap<>())
+                         .computeIfAbsent(connectorId, k -> new ConnectorEnergyAggregate(chargeBoxId, connectorId));
+    }
+
+    private static SiteEnergyStats toSiteStats(String siteId, List<ConnectorEnergyStats> connectors) {
+        int activeTransactions = 0;
+        double power = 0;
+        double energy = 0;
+        double average1 = 0;
+        double average5 = 0;
+        double average15 = 0;
+        DateTime lastSample = null;
+
+        for (ConnectorEnergyStats connector : connectors) {
+            if (connector.getLastSampleTimestamp() != null
+                    && (lastSample == null || connector.getLastSampleTimestamp().isAfter(lastSample))) {
+                lastSample = connector.getLastSampleTimestamp();
+            }
+
+            if (connector.getConnectorId() == 0) {
+                continue;
+            }
+
+            if (connector.isTransactionActive()) {
+                activeTransactions++;
+                energy += connector.getEnergySinceStartInKwh();
+            }
+            power += connector.getPowerInKw();
+            average1 += orZero(connector.getAveragePower1MinInKw());
+            average5 += orZero(connector.getAveragePower5MinInKw());
+            average15 += orZero(connector.getAveragePower15MinInKw());
+        }
+
+        return SiteEnergyStats.builder()
+                              .siteId(siteId)
+                              .activeTransactions(activeTransactions)
+                              .powerInKw(power)
+                              .energySinceStartInKwh(energy)
+                              .averagePower1MinInKw(average1)
+                              .averagePower5MinInKw(average5)
+                              .averagePower15MinInKw(average15)
+                              .lastSampleTimestamp(lastSample)
+                              .connectors(connectors)
+                              .build();
+    }
+
+    private static double orZero(Double value) {
+        return value == null ? 0 : value;
+    }
+}
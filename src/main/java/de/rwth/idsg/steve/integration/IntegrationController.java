@@ -4,13 +4,21 @@ import de.rwth.idsg.steve.SteveException;
 import de.rwth.idsg.steve.integration.dto.ChargingLimitRequest;
 import de.rwth.idsg.steve.integration.dto.ChargingLimitResponse;
 import de.rwth.idsg.steve.integration.dto.ChargingProfileResponse;
+import de.rwth.idsg.steve.integration.dto.ConnectorEnergyStats;
 import de.rwth.idsg.steve.integration.dto.EnergyMeterData;
+import de.rwth.idsg.steve.integration.dto.LoadAllocation;
+import de.rwth.idsg.steve.integration.dto.SiteEnergyStats;
+import de.rwth.idsg.steve.integration.dto.SiteLoadLimitRequest;
+import de.rwth.idsg.steve.integration.dto.StationEvent;
+import de.rwth.idsg.steve.integration.dto.StationEventPage;
 import de.rwth.idsg.steve.ocpp.CommunicationTask;
 import de.rwth.idsg.steve.ocpp.OcppTransport;
 import de.rwth.idsg.steve.ocpp.RequestResult;
 import de.rwth.idsg.steve.ocpp.task.GetConfigurationTask;
 import de.rwth.idsg.steve.ocpp.task.RemoteStartTransactionTask;
 import de.rwth.idsg.steve.ocpp.task.RemoteStopTransactionTask;
+import de.rwth.idsg.steve.ocpp.ws.StationFlapDetector;
+import de.rwth.idsg.steve.ocpp.ws.data.StationFlapScore;
 import de.rwth.idsg.steve.repository.ChargePointRepository;
 import de.rwth.idsg.steve.repository.ChargingProfileRepository;
 import de.rwth.idsg.steve.repository.TaskStore;
@@ -18,6 +26,8 @@ import de.rwth.idsg.steve.repository.TransactionRepository;
 import de.rwth.idsg.steve.repository.dto.*;
 import de.rwth.idsg.steve.service.ChargePointHelperService;
 import de.rwth.idsg.steve.service.ChargePointService16_Client;
+import de.rwth.idsg.steve.service.CompositeScheduleService;
+import de.rwth.idsg.steve.service.dto.CompositeSchedule;
 import de.rwth.idsg.steve.utils.mapper.ChargingProfileDetailsMapper;
 import de.rwth.idsg.steve.web.dto.ChargePointQueryForm;
 import de.rwth.idsg.steve.web.dto.ChargingProfileAssignmentQueryForm;
@@ -27,16 +37,22 @@ import lombok.extern.slf4j.Slf4j;
 import ocpp.cp._2015._10.ChargingProfileKindType;
 import ocpp.cp._2015._10.ChargingProfilePurposeType;
 import ocpp.cp._2015._10.ChargingRateUnitType;
+import org.joda.time.DateTime;
 import org.joda.time.LocalDateTime;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Controller
@@ -44,6 +60,11 @@ import java.util.*;
 @RequestMapping(value = "/api", produces = MediaType.APPLICATION_JSON_VALUE)
 public class IntegrationController {
 
+    private static final int MAX_EVENT_WAIT_SECONDS = 60;
+
+    // clients reconnect with Last-Event-ID afterwards
+    private static final int EVENT_STREAM_TIMEOUT_MINUTES = 30;
+
     private final ChargePointRepository chargePointRepository;
     private final ChargingProfileRepository chargingProfileRepository;
     private final ChargePointHelperService chargePointHelperService;
@@ -51,8 +72,13 @@ public class IntegrationController {
     private final ChargePointService16_Client client16;
     private final MqttService mqttService;
     private final TaskStore taskStore;
+    private final EnergyAggregationService energyAggregationService;
+    private final SiteLoadBalancer siteLoadBalancer;
+    private final CompositeScheduleService compositeScheduleService;
+    private final StationEventLog stationEventLog;
+    private final StationFlapDetector flapDetector;
 
-    public IntegrationController(ChargePointRepository chargePointRepository, ChargingProfileRepository chargingProfileRepository, ChargePointHelperService chargePointHelperService, TransactionRepository transactionRepository, @Qualifier("ChargePointService16_Client") ChargePointService16_Client client16, MqttService mqttService, TaskStore taskStore) {
+    public IntegrationController(ChargePointRepository chargePointRepository, ChargingProfileRepository chargingProfileRepository, ChargePointHelperService chargePointHelperService, TransactionRepository transactionRepository, @Qualifier("ChargePointService16_Client") ChargePointService16_Client client16, MqttService mqttService, TaskStore taskStore, EnergyAggregationService energyAggregationService, SiteLoadBalancer siteLoadBalancer, CompositeScheduleService compositeScheduleService, StationEventLog stationEventLog, StationFlapDetector flapDetector) {
         this.chargePointRepository = chargePointRepository;
         this.chargingProfileRepository = chargingProfileRepository;
         this.chargePointHelperService = chargePointHelperService;
@@ -60,6 +86,11 @@ public class IntegrationController {
         this.client16 = client16;
         this.mqttService = mqttService;
         this.taskStore = taskStore;
+        this.energyAggregationService = energyAggregationService;
+        this.siteLoadBalancer = siteLoadBalancer;
+        this.compositeScheduleService = compositeScheduleService;
+        this.stationEventLog = stationEventLog;
+        this.flapDetector = flapDetector;
     }
 
     @RequestMapping(value = "/chargepoints/{chargePointId}", method = RequestMethod.POST)
@@ -80,13 +111,212 @@ public class IntegrationController {
         energyMeterData.setEnergy(10000);
         energyMeterData.setPower(3700);
         energyMeterData.setFrequency(49.985);
-        energyMeterData.setCurrent(List.of(16.0, 16.0, 16.0));
-        energyMeterData.setVoltage(List.of(220.0, 220.0, 220.0));
+        Arrays.fill(energyMeterData.getCurrent(), 16.0);
+        Arrays.fill(energyMeterData.getVoltage(), 220.0);
+        energyMeterData.setTimestamp(System.currentTimeMillis());
 
         mqttService.publishEnergyMeterData("9082359785", "1", energyMeterData);
         return ResponseEntity.ok(true);
     }
 
+    @RequestMapping(value = "/mqtt/stats", method = RequestMethod.GET)
+    public ResponseEntity<MqttPublisherStats> mqttStats() {
+        return ResponseEntity.ok(mqttService.getPublisherStats());
+    }
+
+    @RequestMapping(value = "/mqtt/replay", method = RequestMethod.POST)
+    public ResponseEntity<Integer> mqttReplay(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) DateTime from,
+                                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) DateTime to) {
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            return ResponseEntity.ok(mqttService.replay(from, to));
+        } catch (SteveException e) {
+            log.warn("MQTT replay is not possible: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * Long-polling: returns the events from the offset on right away if there are any, otherwise waits up to the given
+     * time for new ones. Continue with the epoch and nextOffset of the page.
+     */
+    @RequestMapping(value = "/events", method = RequestMethod.GET)
+    public DeferredResult<StationEventPage> pollEvents(@RequestParam(required = false) Long epoch,
+                                                       @RequestParam(defaultValue = "0") long offset,
+                                                       @RequestParam(required = false) String chargeBoxId,
+                                                       @RequestParam(defaultValue = "100") int limit,
+                                                       @RequestParam(defaultValue = "30") int waitSeconds) {
+        int wait = Math.min(Math.max(waitSeconds, 0), MAX_EVENT_WAIT_SECONDS);
+        StationEventPage page = stationEventLog.read(epoch, offset, chargeBoxId, limit);
+
+        if (!page.getEvents().isEmpty() || page.isTruncated() || wait == 0) {
+            DeferredResult<StationEventPage> result = new DeferredResult<>();
+            result.setResult(page);
+            return result;
+        }
+
+        DeferredResult<StationEventPage> result = new DeferredResult<>(TimeUnit.SECONDS.toMillis(wait), page);
+        StationEventLog.Subscription subscription = stationEventLog.subscribe(page.getEpoch(), page.getNextOffset(), chargeBoxId, limit, events -> {
+            result.setResult(events);
+            return false;
+        });
+        result.onCompletion(subscription::cancel);
+        return result;
+    }
+
+    /**
+     * Server-sent events with "epoch-offset" as event id, so that a reconnecting client resumes via Last-Event-ID.
+     * Without it, the stream starts at the given offset, or with the next event. If events were dropped before the
+     * client got them, or the Last-Event-ID is from before a restart, a "TRUNCATED" event with the oldest offset
+     * that is still available is sent. A client that does not read the stream for a while is disconnected.
+     */
+    @RequestMapping(value = "/events/stream", method = RequestMethod.GET, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                   @RequestParam(required = false) Long epoch,
+                                   @RequestParam(required = false) Long offset,
+                                   @RequestParam(required = false) String chargeBoxId) {
+        Long fromEpoch = epoch;
+        long from;
+        if (lastEventId != null) {
+            // an id without epoch cannot be checked against a restart, and starts from the oldest event
+            int separator = lastEventId.indexOf('-');
+            try {
+                fromEpoch = separator < 0 ? -1L : Long.valueOf(lastEventId.substring(0, separator));
+                from = Long.parseLong(lastEventId.substring(separator + 1)) + 1;
+            } catch (NumberFormatException e) {
+                fromEpoch = -1L;
+                from = 0;
+            }
+        } else if (offset != null) {
+            from = offset;
+        } else {
+            fromEpoch = null;
+            from = stationEventLog.getNextOffset();
+        }
+
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(EVENT_STREAM_TIMEOUT_MINUTES));
+        StationEventLog.Subscription subscription = stationEventLog.subscribe(fromEpoch, from, chargeBoxId, 1000, page -> {
+            try {
+                if (page.isTruncated()) {
+                    emitter.send(SseEmitter.event().name("TRUNCATED").data(page.getOldestOffset()));
+                }
+                for (StationEvent event : page.getEvents()) {
+                    emitter.send(SseEmitter.event()
+                                           .id(page.getEpoch() + "-" + event.getOffset())
+                                           .name(event.getType().name())
+                                           .data(event, MediaType.APPLICATION_JSON));
+                }
+                return true;
+            } catch (IOException e) {
+                // also if the write was interrupted, since the client did not read for too long
+                emitter.completeWithError(e);
+                return false;
+            }
+        });
+
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(e -> subscription.cancel());
+        return emitter;
+    }
+
+    /**
+     * Flap scores of the JSON stations that disconnected recently, highest first
+     */
+    @RequestMapping(value = "/chargepoints/flapping", method = RequestMethod.GET)
+    public ResponseEntity<List<StationFlapScore>> getFlapScores() {
+        return ResponseEntity.ok(flapDetector.getScores());
+    }
+
+    @RequestMapping(value = "/chargepoints/{chargeBoxId}/site/{siteId}", method = RequestMethod.PUT)
+    public ResponseEntity<Boolean> setSite(@PathVariable String chargeBoxId, @PathVariable String siteId) {
+        if (!energyAggregationService.updateSite(chargeBoxId, siteId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(false);
+        }
+        return ResponseEntity.ok(true);
+    }
+
+    @RequestMapping(value = "/chargepoints/{chargeBoxId}/site", method = RequestMethod.DELETE)
+    public ResponseEntity<Boolean> removeSite(@PathVariable String chargeBoxId) {
+        if (!energyAggregationService.updateSite(chargeBoxId, null)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(false);
+        }
+        return ResponseEntity.ok(true);
+    }
+
+    @RequestMapping(value = "/energy/chargepoints/{chargeBoxId}", method = RequestMethod.GET)
+    public ResponseEntity<List<ConnectorEnergyStats>> getConnectorEnergy(@PathVariable String chargeBoxId) {
+        return ResponseEntity.ok(energyAggregationService.getConnectorStats(chargeBoxId));
+    }
+
+    @RequestMapping(value = "/energy/chargepoints/{chargeBoxId}/{connectorId}", method = RequestMethod.GET)
+    public ResponseEntity<ConnectorEnergyStats> getConnectorEnergy(@PathVariable String chargeBoxId, @PathVariable int connectorId) {
+        ConnectorEnergyStats stats = energyAggregationService.getConnectorStats(chargeBoxId, connectorId);
+        if (stats == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return ResponseEntity.ok(stats);
+    }
+
+    @RequestMapping(value = "/energy/sites", method = RequestMethod.GET)
+    public ResponseEntity<List<SiteEnergyStats>> getSiteEnergy() {
+        return ResponseEntity.ok(energyAggregationService.getSiteStats());
+    }
+
+    @RequestMapping(value = "/energy/sites/{siteId}", method = RequestMethod.GET)
+    public ResponseEntity<SiteEnergyStats> getSiteEnergy(@PathVariable String siteId) {
+        SiteEnergyStats stats = energyAggregationService.getSiteStats(siteId);
+        if (stats == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return ResponseEntity.ok(stats);
+    }
+
+    @RequestMapping(value = "/sites/{siteId}/loadlimit", method = RequestMethod.PUT, consumes = "application/json")
+    public ResponseEntity<SiteLoadLimitRequest> setSiteLoadLimit(@PathVariable String siteId, @RequestBody SiteLoadLimitRequest request) {
+        if (request.getCapacityInAmps() == null || request.getCapacityInAmps() <= 0
+                || (request.getMinPerConnectorInAmps() != null && request.getMinPerConnectorInAmps() < 0)) {
+            return ResponseEntity.badRequest().body(null);
+        }
+
+        double minPerConnector = request.getMinPerConnectorInAmps() == null ? 6.0 : request.getMinPerConnectorInAmps();
+        siteLoadBalancer.setLoadLimit(SiteLoadLimit.builder()
+                                                   .siteId(siteId)
+                                                   .capacityInAmps(request.getCapacityInAmps())
+                                                   .minPerConnectorInAmps(minPerConnector)
+                                                   .build());
+
+        request.setMinPerConnectorInAmps(minPerConnector);
+        return ResponseEntity.ok(request);
+    }
+
+    @RequestMapping(value = "/sites/{siteId}/loadlimit", method = RequestMethod.DELETE)
+    public ResponseEntity<Boolean> deleteSiteLoadLimit(@PathVariable String siteId) {
+        siteLoadBalancer.deleteLoadLimit(siteId);
+        return ResponseEntity.ok(true);
+    }
+
+    @RequestMapping(value = "/sites/{siteId}/allocations", method = RequestMethod.GET)
+    public ResponseEntity<List<LoadAllocation>> getSiteAllocations(@PathVariable String siteId) {
+        return ResponseEntity.ok(siteLoadBalancer.getAllocations(siteId));
+    }
+
+    @RequestMapping(value = "/chargepoints/{chargeBoxId}/{connectorId}/compositeschedule", method = RequestMethod.GET)
+    public ResponseEntity<CompositeSchedule> getCompositeSchedule(@PathVariable String chargeBoxId, @PathVariable int connectorId,
+                                                                  @RequestParam(defaultValue = "86400") int durationInSeconds,
+                                                                  @RequestParam(required = false) String chargingRateUnit) {
+        try {
+            ChargingRateUnitType unit = chargingRateUnit == null ? null : ChargingRateUnitType.fromValue(chargingRateUnit);
+            return ResponseEntity.ok(compositeScheduleService.getCompositeSchedule(chargeBoxId, connectorId, durationInSeconds, unit));
+        } catch (SteveException | IllegalArgumentException e) {
+            log.warn("[chargeBoxId={}, connectorId={}] Cannot compute composite schedule: {}", chargeBoxId, connectorId, e.getMessage());
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+
     @RequestMapping(value = "/chargepoints/{chargeBoxId}/{connectorId}/charginglimit", method = RequestMethod.POST)
     public ResponseEntity<ChargingLimitResponse> setChargingLimit(@PathVariable String chargeBoxId, @PathVariable int connectorId, @RequestBody ChargingLimitRequest request) {
         boolean connected = chargePointHelperService.isConnected(chargeBoxId);
@@ -2,154 +2,89 @@ package de.rwth.idsg.steve.integration;
 
 import de.rwth.idsg.steve.integration.dto.ConnectorStatus;
 import de.rwth.idsg.steve.integration.dto.EnergyMeterData;
+import de.rwth.idsg.steve.ocpp.event.MeterSample;
+import de.rwth.idsg.steve.ocpp.event.OcppEvent;
+import de.rwth.idsg.steve.ocpp.event.OcppEventListener;
+import de.rwth.idsg.steve.ocpp.event.StationDisconnected;
+import de.rwth.idsg.steve.ocpp.event.StatusChanged;
 import de.rwth.idsg.steve.repository.TransactionRepository;
 import lombok.extern.slf4j.Slf4j;
 import ocpp.cs._2015._10.*;
-import org.jetbrains.annotations.NotNull;
 import org.joda.time.DateTime;
 import org.springframework.stereotype.Service;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @Service
-public class IntegrationServiceImpl implements IntegrationService {
+public class IntegrationServiceImpl implements IntegrationService, OcppEventListener {
 
     private final MqttService mqttService;
     private final TransactionRepository transactionRepository;
+    private final EnergyAggregationService energyAggregationService;
+    private final SiteLoadBalancer siteLoadBalancer;
 
-    public IntegrationServiceImpl(MqttService mqttService, TransactionRepository transactionRepository) {
+    public IntegrationServiceImpl(MqttService mqttService, TransactionRepository transactionRepository,
+                                  EnergyAggregationService energyAggregationService, SiteLoadBalancer siteLoadBalancer) {
         this.mqttService = mqttService;
         this.transactionRepository = transactionRepository;
+        this.energyAggregationService = energyAggregationService;
+        this.siteLoadBalancer = siteLoadBalancer;
     }
 
-    public void meterValues(String chargeBoxIdentity, MeterValuesRequest request) {
-        List<MeterValue> meterValues = request.getMeterValue();
-
-        for (MeterValue meterValue : meterValues) {
-            List<SampledValue> sampledValues = meterValue.getSampledValue();
-
-            List<Double> currentImport = getCurrentImport(sampledValues);
-            List<Double> voltage = getVoltage(sampledValues);
-
-            EnergyMeterData data = new EnergyMeterData();
-            data.setVoltage(voltage);
-            data.setCurrent(currentImport);
-            List<Double> power = getPower(sampledValues);
-            if (power.isEmpty()) {
-                data.setPower(getCalculatedPower(currentImport, voltage));
-            } else {
-                data.setPower(power.stream().findFirst().get());
-            }
-            data.setTimestamp(meterValue.getTimestamp().toDate());
-
-            Optional<Double> energy = getEnergy(sampledValues);
-            energy.ifPresent(data::setEnergy);
-
-            if (data.eligibleToSend()) {
-                mqttService.publishEnergyMeterData(chargeBoxIdentity, Integer.toString(request.getConnectorId()), data);
-            }
-        }
-    }
-
-    private List<Double> getCurrentImport(@NotNull List<SampledValue> sampledValues) {
-        List<Double> returnValues = Arrays.asList(0.0, 0.0, 0.0);
-        List<SampledValue> sorted = sampledValues
-                .stream()
-                .filter(sampledValue -> sampledValue.getMeasurand() == Measurand.CURRENT_IMPORT)
-                .filter(sampledValue -> sampledValue.getUnit() == UnitOfMeasure.A)
-                .sorted(Comparator.comparing(SampledValue::getPhase))
-                .collect(Collectors.toList());
-
-        // Kempower fix, they don't send a phase value at all so we just put it on phase 1
-        if (sorted.size() == 1) {
-            SampledValue sampledValue = sorted.get(0);
-            if (sampledValue.getPhase() == null) {
-                sampledValue.setPhase(Phase.L_1);
-            }
-        }
-
-        for (int i = 0; i < 3; i++) {
-            for (SampledValue sample : sorted) {
-                if (sample.getPhase().value().contains(Integer.toString(i + 1))) {
-                    returnValues.set(i, Double.valueOf(sample.getValue()));
-                }
-            }
+    /**
+     * Status changes and meter values arrive through the event bus, so that MQTT publishing, aggregation and load
+     * balancing run on the thread of this listener and not before the OCPP reply
+     */
+    @Override
+    public void onEvent(OcppEvent event, boolean endOfBatch) {
+        if (event instanceof MeterSample) {
+            meterValues(event.getChargeBoxId(), ((MeterSample) event).getRequest());
+
+        } else if (event instanceof StatusChanged) {
+            StatusChanged statusChanged = (StatusChanged) event;
+            ConnectorStatus status = new ConnectorStatus();
+            status.setStatus(statusChanged.getStatus().toString());
+            chargingBoxStatus(event.getChargeBoxId(), statusChanged.getConnectorId(), status);
+
+        } else if (event instanceof StationDisconnected) {
+            energyAggregationService.onStationDisconnected(event.getChargeBoxId());
         }
-        return returnValues;
     }
 
-    public List<Double> getVoltage(@NotNull List<SampledValue> sampledValues) {
-        List<Double> returnValues = Arrays.asList(0.0, 0.0, 0.0);
-        List<SampledValue> sorted = sampledValues
-                .stream()
-                .filter(sampledValue -> sampledValue.getMeasurand() == Measurand.VOLTAGE)
-                .filter(sampledValue -> sampledValue.getUnit() == UnitOfMeasure.V)
-                .sorted(Comparator.comparing(SampledValue::getPhase))
-                .collect(Collectors.toList());
-
-        // Kempower fix, they don't send a phase value at all so we just put it on phase 1
-        if (sorted.size() == 1) {
-            SampledValue sampledValue = sorted.get(0);
-            if (sampledValue.getPhase() == null) {
-                sampledValue.setPhase(Phase.L_1);
-            }
+    public void meterValues(String chargeBoxIdentity, MeterValuesRequest request) {
+        List<MeterValue> meterValues = request.getMeterValue();
+        if (meterValues.isEmpty()) {
+            return;
         }
 
-        for (int i = 0; i < 3; i++) {
-            for (SampledValue sample : sorted) {
-                if (sample.getPhase().value().contains(Integer.toString(i + 1))) {
-                    returnValues.set(i, Double.valueOf(sample.getValue()));
-                }
-            }
-        }
-        return returnValues;
-    }
+        int connectorId = request.getConnectorId();
+        String connector = Integer.toString(connectorId);
+        boolean inTransaction = request.getTransactionId() != null;
+        SampledValueDecoder decoder = SampledValueDecoder.forCurrentThread();
 
-    public List<Double> getPower(List<SampledValue> sampledValues) {
-        return sampledValues.stream()
-                .filter(sampledValue -> sampledValue.getMeasurand() == Measurand.POWER_ACTIVE_IMPORT)
-                .filter(sampledValue -> Double.valueOf(sampledValue.getValue()) > 0)
-                .map(sampledValue -> Double.valueOf(sampledValue.getValue()))
-                .collect(Collectors.toList());
-    }
+        for (int i = 0; i < meterValues.size(); i++) {
+            // reused for every meter value, the MQTT service serializes it before returning
+            EnergyMeterData data = decoder.decode(meterValues.get(i));
 
-    /*
-     * Assumes that the charge box only returns current and voltage, not power
-     */
-    public double getCalculatedPower(List<Double> current, List<Double> voltage) {
-        if (current.size() != voltage.size()) {
-            return 0;
-        }
+            energyAggregationService.onMeterValue(chargeBoxIdentity, connectorId, data, decoder.isEnergySet(), inTransaction);
+            siteLoadBalancer.onMeterValue(chargeBoxIdentity, connectorId, data, decoder.isCurrentSet());
 
-        double power = 0;
-        for (int i = 0; i < current.size(); i++) {
-            power += current.get(i) * voltage.get(i);
+            if (data.eligibleToSend()) {
+                mqttService.publishEnergyMeterData(chargeBoxIdentity, connector, data);
+            }
         }
-
-        return power;
     }
 
     public Optional<Double> getEnergy(List<SampledValue> sampledValues) {
-        Optional<Double> optionalEnergyInKwh = sampledValues
-                .stream()
-                .filter(sampledValue -> sampledValue.getMeasurand() == Measurand.ENERGY_ACTIVE_IMPORT_REGISTER)
-                .filter(sampledValue -> sampledValue.getUnit() == UnitOfMeasure.K_WH)
-                .findFirst()
-                .map(sampledValue -> Double.valueOf(sampledValue.getValue()));
-
-        if (optionalEnergyInKwh.isPresent()) {
-            Double energyInKwh = optionalEnergyInKwh.get();
-            return Optional.of(energyInKwh * 1000);
-        }
+        SampledValueDecoder decoder = SampledValueDecoder.forCurrentThread();
+        EnergyMeterData data = decoder.decode(sampledValues);
 
-        return sampledValues
-                .stream()
-                .filter(sampledValue -> sampledValue.getMeasurand() == Measurand.ENERGY_ACTIVE_IMPORT_REGISTER)
-                .filter(sampledValue -> sampledValue.getUnit() == UnitOfMeasure.WH)
-                .findFirst()
-                .map(sampledValue -> Double.valueOf(sampledValue.getValue()));
+        if (decoder.isEnergySet()) {
+            return Optional.of(data.getEnergy());
+        }
+        return Optional.empty();
     }
 
     public void chargingBoxStatus(String chargeBoxIdentity, int connectorIdentity, ConnectorStatus status) {
@@ -162,6 +97,9 @@ public class IntegrationServiceImpl implements IntegrationService {
         int meterStart = startTransactionRequest.getMeterStart();
         DateTime timestamp = startTransactionRequest.getTimestamp();
 
+        energyAggregationService.onTransactionStarted(chargeBoxIdentity, connectorId, meterStart);
+        siteLoadBalancer.onTransactionStarted(chargeBoxIdentity, connectorId);
+
         MeterValuesRequest request = createMeterValuesRequest(timestamp, connectorId, meterStart);
         meterValues(chargeBoxIdentity, request);
     }
@@ -180,6 +118,9 @@ public class IntegrationServiceImpl implements IntegrationService {
 
         MeterValuesRequest request = createMeterValuesRequest(timestamp, connectorId, meterStop);
         meterValues(chargeBoxIdentity, request);
+
+        energyAggregationService.onTransactionStopped(chargeBoxIdentity, connectorId, meterStop);
+        siteLoadBalancer.onTransactionStopped(chargeBoxIdentity, connectorId);
     }
 
     private MeterValuesRequest createMeterValuesRequest(DateTime timestamp, int connectorId, int energyValue) {
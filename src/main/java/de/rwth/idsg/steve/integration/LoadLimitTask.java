@@ -0,0 +1,81 @@
+package de.rwth.idsg.steve.integration;
+
+import de.rwth.idsg.steve.ocpp.OcppCallback;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.task.SetChargingProfileTask;
+import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
+import de.rwth.idsg.steve.service.dto.EnhancedSetChargingProfileParams;
+import de.rwth.idsg.steve.web.dto.ocpp.SetChargingProfileParams;
+import ocpp.cp._2015._10.ChargingProfile;
+import ocpp.cp._2015._10.ChargingProfileKindType;
+import ocpp.cp._2015._10.ChargingProfilePurposeType;
+import ocpp.cp._2015._10.ChargingRateUnitType;
+import ocpp.cp._2015._10.ChargingSchedule;
+import ocpp.cp._2015._10.ChargingSchedulePeriod;
+import ocpp.cp._2015._10.SetChargingProfileRequest;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+/**
+ * A TxProfile with a single current limit for the running transaction of a connector, as computed by the
+ * {@link SiteLoadBalancer}. Unlike {@link SetChargingProfileTask}, the profile is not stored in the database: it is
+ * replaced too often, and the station discards it at the end of the transaction anyway.
+ */
+public class LoadLimitTask extends SetChargingProfileTask {
+
+    /**
+     * Above the TxProfiles set through the API (stack level 1), so that the site capacity is not exceeded
+     */
+    static final int STACK_LEVEL = 2;
+
+    /**
+     * The station replaces a profile with the same id, so there is one per connector. Far above the primary keys of
+     * the stored profiles.
+     */
+    private static final int CHARGING_PROFILE_ID_BASE = 2_000_000_000;
+
+    private final int connectorId;
+    private final double limitInAmps;
+
+    /**
+     * @param chargePoint a station with OCPP 1.6, with the transport it is reached with
+     */
+    public LoadLimitTask(ChargePointSelect chargePoint, int connectorId, double limitInAmps) {
+        super(OcppVersion.V_16, createParams(chargePoint, connectorId), null);
+        this.connectorId = connectorId;
+        this.limitInAmps = limitInAmps;
+    }
+
+    @Override
+    public OcppCallback<String> defaultCallback() {
+        return new StringOcppCallback();
+    }
+
+    @Override
+    public SetChargingProfileRequest getOcpp16Request() {
+        ChargingSchedule schedule = new ChargingSchedule()
+                .withChargingRateUnit(ChargingRateUnitType.A)
+                .withChargingSchedulePeriod(new ChargingSchedulePeriod()
+                        .withStartPeriod(0)
+                        .withLimit(BigDecimal.valueOf(limitInAmps)));
+
+        ChargingProfile profile = new ChargingProfile()
+                .withChargingProfileId(CHARGING_PROFILE_ID_BASE + connectorId)
+                .withStackLevel(STACK_LEVEL)
+                .withChargingProfilePurpose(ChargingProfilePurposeType.TX_PROFILE)
+                .withChargingProfileKind(ChargingProfileKindType.RELATIVE)
+                .withChargingSchedule(schedule);
+
+        return new SetChargingProfileRequest()
+                .withConnectorId(connectorId)
+                .withCsChargingProfiles(profile);
+    }
+
+    private static EnhancedSetChargingProfileParams createParams(ChargePointSelect chargePoint, int connectorId) {
+        SetChargingProfileParams params = new SetChargingProfileParams();
+        params.setChargePointSelectList(Collections.singletonList(chargePoint));
+        params.setConnectorId(connectorId);
+        return new EnhancedSetChargingProfileParams(params, null);
+    }
+}
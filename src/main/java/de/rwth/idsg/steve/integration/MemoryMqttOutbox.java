@@ -0,0 +1,121 @@
+package de.rwth.idsg.steve.integration;
+
+import de.rwth.idsg.steve.SteveException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, in-memory outbox. Whatever is waiting is lost with a restart, and the overflow policy decides
+ * what happens when it is full.
+ */
+public class MemoryMqttOutbox implements MqttOutbox {
+
+    static final long MAX_BLOCK_MILLIS = 1_000;
+
+    private final int capacity;
+    private final MqttOverflowPolicy overflowPolicy;
+    private final ArrayBlockingQueue<MqttOutboxMessage> queue;
+    private final LongAdder droppedCount = new LongAdder();
+
+    public MemoryMqttOutbox(int capacity, MqttOverflowPolicy overflowPolicy) {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public boolean append(String topic, byte[] payload) {
+        MqttOutboxMessage message = new MqttOutboxMessage(topic, payload, System.currentTimeMillis());
+        boolean accepted;
+
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                accepted = queue.offer(message);
+                break;
+
+            case DROP_OLDEST:
+                while (!queue.offer(message)) {
+                    if (queue.poll() != null) {
+                        droppedCount.increment();
+                    }
+                }
+                accepted = true;
+                break;
+
+            case BLOCK:
+                try {
+                    accepted = queue.offer(message, MAX_BLOCK_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    accepted = false;
+                }
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown overflow policy: " + overflowPolicy);
+        }
+
+        if (!accepted) {
+            droppedCount.increment();
+        }
+        return accepted;
+    }
+
+    @Override
+    public List<MqttOutboxMessage> poll(int maxMessages, long timeoutMillis) throws InterruptedException {
+        MqttOutboxMessage first = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return Collections.emptyList();
+        }
+
+        List<MqttOutboxMessage> messages = new ArrayList<>(Math.min(maxMessages, queue.size() + 1));
+        messages.add(first);
+        queue.drainTo(messages, maxMessages - 1);
+        return messages;
+    }
+
+    @Override
+    public void commit() {
+        // the messages left the queue with poll already
+    }
+
+    @Override
+    public void rewind() {
+        // nothing to rewind to
+    }
+
+    @Override
+    public int replay(long fromMillis, long toMillis) {
+        throw new SteveException("Replay is only possible with the durable outbox (mqtt.outbox.dir)");
+    }
+
+    @Override
+    public boolean isDurable() {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+}
@@ -0,0 +1,56 @@
+package de.rwth.idsg.steve.integration;
+
+import java.util.List;
+
+/**
+ * Where the messages wait until the {@link MqttPublisher} gets to publish them. Messages are appended by many
+ * threads, but polled by a single one.
+ */
+public interface MqttOutbox extends AutoCloseable {
+
+    /**
+     * @return false, if the message was dropped
+     */
+    boolean append(String topic, byte[] payload);
+
+    /**
+     * @return up to maxMessages in the order they were appended, continuing after the previously polled ones.
+     *         Waits at most timeoutMillis, if none is available.
+     */
+    List<MqttOutboxMessage> poll(int maxMessages, long timeoutMillis) throws InterruptedException;
+
+    /**
+     * The polled messages are published, and will not be delivered again.
+     */
+    void commit();
+
+    /**
+     * Publishing the polled messages failed. A durable outbox delivers them again with the next poll,
+     * a volatile one has already forgotten them.
+     */
+    void rewind();
+
+    /**
+     * Appends the retained messages of the time window again, so that they are published once more.
+     *
+     * @return the number of messages to be published again
+     */
+    int replay(long fromMillis, long toMillis);
+
+    boolean isDurable();
+
+    /**
+     * Number of messages that are not published yet
+     */
+    int size();
+
+    /**
+     * Maximum number of waiting messages, or 0 if the outbox is bounded by its retention limits instead
+     */
+    int capacity();
+
+    long getDroppedCount();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,13 @@
+package de.rwth.idsg.steve.integration;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class MqttOutboxMessage {
+    private final String topic;
+    private final byte[] payload;
+    // when the message was appended to the outbox, epoch millis
+    private final long timestamp;
+}
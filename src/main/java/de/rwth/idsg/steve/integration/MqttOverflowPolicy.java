@@ -0,0 +1,33 @@
+package de.rwth.idsg.steve.integration;
+
+/**
+ * What happens to a new message, when the {@link MemoryMqttOutbox} is full.
+ */
+public enum MqttOverflowPolicy {
+
+    /**
+     * The new message is dropped. Favours the messages that are already waiting.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The oldest waiting message is dropped to make room. Favours fresh data, which is usually what the
+     * consumers of meter values and status updates want.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The caller waits for free space, but at most {@link MemoryMqttOutbox#MAX_BLOCK_MILLIS}, after which the
+     * new message is dropped. Since the caller is an OCPP message handler, it must never wait indefinitely.
+     */
+    BLOCK;
+
+    public static MqttOverflowPolicy fromName(String v) {
+        for (MqttOverflowPolicy p : MqttOverflowPolicy.values()) {
+            if (p.name().equals(v)) {
+                return p;
+            }
+        }
+        throw new IllegalArgumentException("Could not find a valid MqttOverflowPolicy for name: " + v);
+    }
+}
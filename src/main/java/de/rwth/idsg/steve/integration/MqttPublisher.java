@@ -0,0 +1,251 @@
+package de.rwth.idsg.steve.integration;
+
+import de.rwth.idsg.steve.SteveConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decouples the OCPP message handlers from the MQTT broker: {@link #publish(String, byte[])} only appends the
+ * message to the {@link MqttOutbox}. A single flusher thread wakes up when messages arrive (or at the latest after
+ * the flush interval), publishes everything that is waiting (up to the batch size) in one burst and waits for the
+ * burst to complete. While the broker is not reachable, the messages stay in the outbox.
+ */
+@Slf4j
+public class MqttPublisher implements AutoCloseable {
+
+    private static final long RECONNECT_INTERVAL_MILLIS = 5_000;
+    private static final long COMPLETION_TIMEOUT_MILLIS = 10_000;
+    private static final long DROP_REPORT_INTERVAL_MILLIS = 10_000;
+
+    private final SteveConfiguration.Mqtt config;
+    private final MqttAsyncClient client;
+    private final MqttConnectOptions options;
+
+    private final MqttOutbox outbox;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder lagSumMillis = new LongAdder();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private volatile long lastLagMillis;
+
+    // only accessed by the flusher thread
+    private long nextConnectAttempt;
+    private long nextDropReport;
+    private long reportedDropCount;
+
+    public MqttPublisher(SteveConfiguration.Mqtt config, MqttOutbox outbox) throws MqttException {
+        this.config = config;
+        this.outbox = outbox;
+
+        client = new MqttAsyncClient(config.getUrl(), UUID.randomUUID().toString(), new MemoryPersistence());
+
+        options = new MqttConnectOptions();
+        options.setAutomaticReconnect(true);
+        options.setCleanSession(true);
+        options.setConnectionTimeout(10);
+        options.setMaxInflight(Math.max(config.getMaxBatchSize(), MqttConnectOptions.MAX_INFLIGHT_DEFAULT));
+        if (config.getUsername() != null) {
+            options.setUserName(config.getUsername());
+        }
+        if (config.getPassword() != null) {
+            options.setPassword(config.getPassword().toCharArray());
+        }
+
+        flusher = new Thread(this::runFlusher, "SteVe-MqttPublisher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * @return false, if the message was dropped
+     */
+    public boolean publish(String topic, byte[] payload) {
+        return outbox.append(topic, payload);
+    }
+
+    /**
+     * @return the number of messages to be published again
+     */
+    public int replay(long fromMillis, long toMillis) {
+        return outbox.replay(fromMillis, toMillis);
+    }
+
+    public MqttPublisherStats getStats() {
+        long published = publishedCount.sum();
+        return MqttPublisherStats.builder()
+                                 .connected(client.isConnected())
+                                 .queued(outbox.size())
+                                 .durable(outbox.isDurable())
+                                 .capacity(outbox.capacity())
+                                 .published(published)
+                                 .dropped(outbox.getDroppedCount())
+                                 .failed(failedCount.sum())
+                                 .lastLagMillis(lastLagMillis)
+                                 .avgLagMillis(published == 0 ? 0 : lagSumMillis.sum() / published)
+                                 .maxLagMillis(maxLagMillis.get())
+                                 .build();
+    }
+
+    /**
+     * Gives the flusher a chance to publish what is waiting in a volatile outbox, if the broker is reachable.
+     * A durable outbox keeps them for the next start.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            flusher.join(COMPLETION_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int unpublished = outbox.size();
+        if (unpublished > 0) {
+            log.warn("Closing MQTT publisher with {} unpublished messages (durable outbox: {})",
+                    unpublished, outbox.isDurable());
+        }
+        outbox.close();
+
+        try {
+            if (client.isConnected()) {
+                client.disconnect().waitForCompletion(COMPLETION_TIMEOUT_MILLIS);
+            }
+            client.close();
+        } catch (MqttException e) {
+            log.error("Failed to close the MQTT client", e);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Flusher thread
+    // -------------------------------------------------------------------------
+
+    private void runFlusher() {
+        while (running || (!outbox.isDurable() && outbox.size() > 0)) {
+            try {
+                reportDrops();
+
+                if (!ensureConnected()) {
+                    if (!running) {
+                        break;
+                    }
+                    Thread.sleep(config.getFlushIntervalInMillis());
+                    continue;
+                }
+
+                List<MqttOutboxMessage> batch = outbox.poll(config.getMaxBatchSize(), config.getFlushIntervalInMillis());
+                if (batch.isEmpty()) {
+                    continue;
+                }
+
+                if (publishBatch(batch)) {
+                    outbox.commit();
+                } else {
+                    outbox.rewind();
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // the flusher must survive anything, otherwise nothing would be published anymore
+                log.error("Unexpected exception in MQTT publisher", e);
+            }
+        }
+    }
+
+    /**
+     * @return true, if all messages are published
+     */
+    private boolean publishBatch(List<MqttOutboxMessage> batch) {
+        List<IMqttDeliveryToken> tokens = new ArrayList<>(batch.size());
+        boolean allPublished = true;
+
+        for (MqttOutboxMessage message : batch) {
+            try {
+                tokens.add(client.publish(message.getTopic(), message.getPayload(), config.getQos(), false));
+            } catch (MqttException e) {
+                failedCount.increment();
+                log.error("Failed to publish to topic '{}'", message.getTopic(), e);
+                allPublished = false;
+                if (outbox.isDurable()) {
+                    // keep the order: the whole batch will be delivered again
+                    break;
+                }
+                // keep tokens.get(i) paired with batch.get(i)
+                tokens.add(null);
+            }
+        }
+
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.get(i) == null) {
+                continue;
+            }
+            MqttOutboxMessage message = batch.get(i);
+            try {
+                tokens.get(i).waitForCompletion(COMPLETION_TIMEOUT_MILLIS);
+                publishedCount.increment();
+                recordLag(message);
+            } catch (MqttException e) {
+                failedCount.increment();
+                log.error("Failed to publish to topic '{}'", message.getTopic(), e);
+                allPublished = false;
+            }
+        }
+        return allPublished;
+    }
+
+    private boolean ensureConnected() {
+        if (client.isConnected()) {
+            return true;
+        }
+
+        // automatic reconnect of Paho only kicks in after the first successful connect
+        long now = System.currentTimeMillis();
+        if (now >= nextConnectAttempt) {
+            nextConnectAttempt = now + RECONNECT_INTERVAL_MILLIS;
+            try {
+                client.connect(options);
+            } catch (MqttException e) {
+                // connect in progress (e.g. automatic reconnect) or broker not reachable. try again later.
+                log.debug("Could not connect to MQTT broker: {}", e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private void recordLag(MqttOutboxMessage message) {
+        long lag = Math.max(0, System.currentTimeMillis() - message.getTimestamp());
+        lastLagMillis = lag;
+        lagSumMillis.add(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+    }
+
+    private void reportDrops() {
+        long now = System.currentTimeMillis();
+        if (now < nextDropReport) {
+            return;
+        }
+        nextDropReport = now + DROP_REPORT_INTERVAL_MILLIS;
+
+        long dropped = outbox.getDroppedCount();
+        if (dropped > reportedDropCount) {
+            log.warn("Dropped {} MQTT messages since the last report, because the outbox was full",
+                    dropped - reportedDropCount);
+            reportedDropCount = dropped;
+        }
+    }
+}
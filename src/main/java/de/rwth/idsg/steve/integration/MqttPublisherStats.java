@@ -0,0 +1,22 @@
+package de.rwth.idsg.steve.integration;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class MqttPublisherStats {
+    private final boolean connected;
+    private final boolean durable;
+    private final int queued;
+    // 0, if the durable outbox is bounded by its retention limits instead
+    private final int capacity;
+    private final long published;
+    private final long dropped;
+    private final long failed;
+
+    // time between enqueueing a message and its completed publish
+    private final long lastLagMillis;
+    private final long avgLagMillis;
+    private final long maxLagMillis;
+}
@@ -1,14 +1,29 @@
 package de.rwth.idsg.steve.integration;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import de.rwth.idsg.steve.integration.dto.ConnectorStatus;
 import de.rwth.idsg.steve.integration.dto.EnergyMeterData;
+import org.joda.time.DateTime;
 
 public interface MqttService {
 
+    /**
+     * The data object is reused by the caller afterwards and must not be kept.
+     */
     void publishEnergyMeterData(String chargeBoxId, String connector, EnergyMeterData data);
 
     void publishChargeBoxStatus(String chargeBoxId, String connector, ConnectorStatus status);
 
-    void sendToMqttBroker(String path, JsonNode payload);
+    /**
+     * Does not block: the payload is serialized right away, but published asynchronously.
+     */
+    void sendToMqttBroker(String topic, Object payload);
+
+    /**
+     * Publishes the retained messages of the time window again. Requires the durable outbox.
+     *
+     * @return the number of messages to be published again
+     */
+    int replay(DateTime from, DateTime to);
+
+    MqttPublisherStats getPublisherStats();
 }
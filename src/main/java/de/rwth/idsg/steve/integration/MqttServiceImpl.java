@@ -1,7 +1,7 @@
 package de.rwth.idsg.steve.integration;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 import de.rwth.idsg.steve.SteveConfiguration;
@@ -9,70 +9,71 @@ import de.rwth.idsg.steve.integration.dto.ConnectorStatus;
 import de.rwth.idsg.steve.integration.dto.EnergyMeterData;
 import de.rwth.idsg.steve.ocpp.ws.JsonObjectMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.eclipse.paho.client.mqttv3.*;
-import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.joda.time.DateTime;
 import org.springframework.stereotype.Service;
 
-import java.nio.charset.StandardCharsets;
-import java.util.UUID;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
 public class MqttServiceImpl implements MqttService {
-    private static IMqttClient mqttClient;
 
-    private final ObjectMapper mapper = JsonObjectMapper.INSTANCE.getMapper();
+    private final MqttPublisher publisher;
 
-    public MqttServiceImpl() {
-        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        mapper.setDateFormat(new StdDateFormat().withColonInTimeZone(true));
+    // a writer instead of configuring the shared mapper, which is also used for OCPP messages
+    private final ObjectWriter writer = JsonObjectMapper.INSTANCE.getMapper()
+                                                                 .writer()
+                                                                 .without(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                                                                 .with(new StdDateFormat().withColonInTimeZone(true));
 
+    public MqttServiceImpl() throws MqttException, IOException {
         SteveConfiguration.Mqtt mqttConfig = SteveConfiguration.CONFIG.getMqtt();
+        publisher = new MqttPublisher(mqttConfig, createOutbox(mqttConfig));
+    }
 
-        try {
-            MemoryPersistence memoryPersistence = new MemoryPersistence();
-
-            mqttClient = new MqttClient(mqttConfig.getUrl(), UUID.randomUUID().toString(), memoryPersistence);
+    private static MqttOutbox createOutbox(SteveConfiguration.Mqtt mqttConfig) throws IOException {
+        if (mqttConfig.getOutboxDir() == null) {
+            return new MemoryMqttOutbox(mqttConfig.getOutboxCapacity(), mqttConfig.getOverflowPolicy());
+        }
 
-            MqttConnectOptions options = new MqttConnectOptions();
-            options.setAutomaticReconnect(true);
-            options.setCleanSession(true);
-            options.setConnectionTimeout(10);
-            options.setUserName(mqttConfig.getUsername());
-            options.setPassword(mqttConfig.getPassword().toCharArray());
+        return new SegmentLogMqttOutbox(
+                Paths.get(mqttConfig.getOutboxDir()),
+                mqttConfig.getSegmentSizeInMb() * 1024 * 1024,
+                TimeUnit.HOURS.toMillis(mqttConfig.getRetentionInHours()),
+                mqttConfig.getRetentionInMb() * 1024L * 1024L
+        );
+    }
 
-            if (!mqttClient.isConnected()) {
-                mqttClient.connect(options);
-            }
-        } catch (MqttException e) {
-            e.printStackTrace();
-        }
+    @PreDestroy
+    public void shutDown() {
+        publisher.close();
     }
 
     public void publishEnergyMeterData(String chargeBoxId, String connector, EnergyMeterData data) {
-        JsonNode payloadNode;
-        payloadNode = mapper.valueToTree(data);
-        sendToMqttBroker("ocpp/" + chargeBoxId + "/" + connector + "/em", payloadNode);
+        sendToMqttBroker("ocpp/" + chargeBoxId + "/" + connector + "/em", data);
     }
 
     public void publishChargeBoxStatus(String chargeBoxId, String connector, ConnectorStatus status){
-        JsonNode payloadNode;
-        payloadNode = mapper.valueToTree(status);
-        sendToMqttBroker("ocpp/" + chargeBoxId + "/" + connector + "/status", payloadNode);
+        sendToMqttBroker("ocpp/" + chargeBoxId + "/" + connector + "/status", status);
     }
 
-    public void sendToMqttBroker(String path, JsonNode payload) {
+    public void sendToMqttBroker(String topic, Object payload) {
         try {
+            publisher.publish(topic, writer.writeValueAsBytes(payload));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize payload for topic '{}'", topic, e);
+        }
+    }
 
-            MqttMessage mqttMessage = new MqttMessage(payload.toString().getBytes(StandardCharsets.UTF_8));
-            mqttMessage.setQos(0);
-            mqttMessage.setRetained(false);
+    public int replay(DateTime from, DateTime to) {
+        return publisher.replay(from.getMillis(), to.getMillis());
+    }
 
-            mqttClient.publish(path, mqttMessage);
-        } catch (IllegalArgumentException e) {
-            log.error("Failed to serialize energy meter data", e);
-        } catch (MqttException e) {
-            log.error("Failed to publish energy meter data to mqtt broker", e);
-        }
+    public MqttPublisherStats getPublisherStats() {
+        return publisher.getStats();
     }
 }
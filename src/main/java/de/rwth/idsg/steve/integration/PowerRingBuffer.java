@@ -0,0 +1,143 @@
+package de.rwth.idsg.steve.integration;
+
+import java.util.Arrays;
+
+/**
+ * Time weighted power history of fixed size. Power is treated as constant between two samples, and the energy of
+ * each interval is added to fixed-width time buckets in a ring. Averages are computed over the buckets in the window
+ * plus the interval since the last sample, divided by the time actually covered (so that a connector that has only
+ * reported for two minutes does not show a 15-minute average close to zero).
+ *
+ * The last sample is held for at most the maximum hold time, or until it is ended (e.g. when the station disconnects).
+ * Without a newer sample, the time after that is not covered, so that a station that went silent neither keeps its
+ * last power forever nor pulls the averages towards zero.
+ *
+ * Not thread-safe.
+ */
+final class PowerRingBuffer {
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final long maxHoldMillis;
+
+    // time / bucketMillis of the bucket that currently occupies a slot, -1 if the slot is empty
+    private final long[] bucketIds;
+    private final double[] wattMillis;
+    private final long[] coveredMillis;
+
+    private long lastTimestamp = -1;
+    private double lastWatts;
+    private boolean holding;
+
+    PowerRingBuffer(long bucketMillis, int bucketCount, long maxHoldMillis) {
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.maxHoldMillis = maxHoldMillis;
+        this.bucketIds = new long[bucketCount];
+        this.wattMillis = new double[bucketCount];
+        this.coveredMillis = new long[bucketCount];
+        Arrays.fill(bucketIds, -1);
+    }
+
+    /**
+     * The previous sample is held until this timestamp, at most for the maximum hold time. Samples older than the last
+     * one only replace the current value, since their interval cannot be placed anymore.
+     */
+    void add(long timestamp, double watts) {
+        end(timestamp);
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+        lastWatts = watts;
+        holding = true;
+    }
+
+    /**
+     * The last sample is not held after this timestamp
+     */
+    void end(long timestamp) {
+        if (holding && timestamp > lastTimestamp) {
+            integrate(lastTimestamp, holdEnd(timestamp), lastWatts);
+        }
+        holding = false;
+    }
+
+    /**
+     * @return the average power in watts over the window that ends now, NaN if nothing is known about the window
+     */
+    double average(long now, long windowMillis) {
+        long windowStart = now - windowMillis;
+        double sumWattMillis = 0;
+        double sumCoveredMillis = 0;
+
+        for (int slot = 0; slot < bucketCount; slot++) {
+            long id = bucketIds[slot];
+            if (id < 0) {
+                continue;
+            }
+
+            long bucketStart = id * bucketMillis;
+            long bucketEnd = bucketStart + bucketMillis;
+            if (bucketEnd <= windowStart || bucketStart >= now) {
+                continue;
+            }
+
+            if (bucketStart < windowStart) {
+                // the bucket is only partially in the window, assume the power was spread evenly over it
+                double share = (double) (bucketEnd - windowStart) / bucketMillis;
+                sumWattMillis += wattMillis[slot] * share;
+                sumCoveredMillis += coveredMillis[slot] * share;
+            } else {
+                sumWattMillis += wattMillis[slot];
+                sumCoveredMillis += coveredMillis[slot];
+            }
+        }
+
+        // the last sample holds until now, if it is not too old
+        if (holding) {
+            long from = Math.max(lastTimestamp, windowStart);
+            long to = holdEnd(now);
+            if (from < to) {
+                sumWattMillis += lastWatts * (to - from);
+                sumCoveredMillis += to - from;
+            }
+        }
+
+        return sumCoveredMillis == 0 ? Double.NaN : sumWattMillis / sumCoveredMillis;
+    }
+
+    long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * @return the power of the last sample, if it is still held now. otherwise 0
+     */
+    double getWatts(long now) {
+        return holding && now - lastTimestamp <= maxHoldMillis ? lastWatts : 0;
+    }
+
+    private long holdEnd(long timestamp) {
+        return Math.min(timestamp, lastTimestamp + maxHoldMillis);
+    }
+
+    private void integrate(long from, long to, double watts) {
+        // whatever lies before the oldest bucket would be overwritten right away
+        long oldest = to - bucketMillis * bucketCount;
+        long start = Math.max(from, oldest);
+
+        while (start < to) {
+            long id = start / bucketMillis;
+            long end = Math.min(to, (id + 1) * bucketMillis);
+            int slot = (int) (id % bucketCount);
+
+            if (bucketIds[slot] != id) {
+                bucketIds[slot] = id;
+                wattMillis[slot] = 0;
+                coveredMillis[slot] = 0;
+            }
+
+            wattMillis[slot] += watts * (end - start);
+            coveredMillis[slot] += end - start;
+            start = end;
+        }
+    }
+}
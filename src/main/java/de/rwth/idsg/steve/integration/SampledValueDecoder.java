@@ -0,0 +1,269 @@
+package de.rwth.idsg.steve.integration;
+
+import de.rwth.idsg.steve.integration.dto.EnergyMeterData;
+import ocpp.cs._2015._10.Measurand;
+import ocpp.cs._2015._10.MeterValue;
+import ocpp.cs._2015._10.Phase;
+import ocpp.cs._2015._10.SampledValue;
+import ocpp.cs._2015._10.UnitOfMeasure;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static de.rwth.idsg.steve.integration.dto.EnergyMeterData.PHASES;
+
+/**
+ * Extracts current, voltage, power and energy from the sampled values of a meter value in a single pass, without
+ * sorting, boxing or intermediate collections. Every thread has its own decoder that fills the same
+ * {@link EnergyMeterData} over and over again, so the result is only valid until the next decode call on that thread.
+ *
+ * Phase values are assigned like before: a sample counts for every phase whose number occurs in its phase name
+ * (L1-N counts for phase 1, L1-L2 for phases 1 and 2), and if several samples count for a phase, the one with the
+ * phase that comes last in {@link Phase} wins.
+ */
+public final class SampledValueDecoder {
+
+    private static final ThreadLocal<SampledValueDecoder> PER_THREAD = ThreadLocal.withInitial(SampledValueDecoder::new);
+
+    /**
+     * Bit i is set if a sample with this phase counts for phase i + 1. Indexed by {@link Phase#ordinal()}.
+     */
+    private static final int[] PHASE_MASKS = createPhaseMasks();
+
+    /**
+     * Powers of ten that are exactly representable as double
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Largest mantissa that is exactly representable as double (2^53)
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final EnergyMeterData data = new EnergyMeterData();
+
+    // Phase.ordinal() + 1 of the sample that set the value of a phase, 0 if none did
+    private final int[] currentRanks = new int[PHASES];
+    private final int[] voltageRanks = new int[PHASES];
+
+    private boolean currentSet;
+    private boolean energySet;
+
+    private SampledValueDecoder() { }
+
+    public static SampledValueDecoder forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    public EnergyMeterData decode(MeterValue meterValue) {
+        decode(meterValue.getSampledValue());
+        data.setTimestamp(meterValue.getTimestamp().getMillis());
+        return data;
+    }
+
+    public EnergyMeterData decode(List<SampledValue> sampledValues) {
+        data.reset();
+        Arrays.fill(currentRanks, 0);
+        Arrays.fill(voltageRanks, 0);
+
+        double[] current = data.getCurrent();
+        double[] voltage = data.getVoltage();
+
+        int currentCount = 0;
+        int voltageCount = 0;
+        double currentWithoutPhase = 0;
+        double voltageWithoutPhase = 0;
+
+        boolean powerSet = false;
+        double power = 0;
+
+        boolean kWhSet = false;
+        boolean whSet = false;
+        double kWh = 0;
+        double wh = 0;
+
+        // indexed access, since the lists are ArrayLists and iterators would be allocated otherwise
+        for (int i = 0; i < sampledValues.size(); i++) {
+            SampledValue sample = sampledValues.get(i);
+            Measurand measurand = sample.getMeasurand();
+            if (measurand == null) {
+                continue;
+            }
+
+            switch (measurand) {
+                case CURRENT_IMPORT:
+                    if (sample.getUnit() == UnitOfMeasure.A) {
+                        currentCount++;
+                        double value = parseDouble(sample.getValue());
+                        if (sample.getPhase() == null) {
+                            currentWithoutPhase = value;
+                        } else {
+                            setPerPhase(current, currentRanks, sample.getPhase(), value);
+                        }
+                    }
+                    break;
+
+                case VOLTAGE:
+                    if (sample.getUnit() == UnitOfMeasure.V) {
+                        voltageCount++;
+                        double value = parseDouble(sample.getValue());
+                        if (sample.getPhase() == null) {
+                            voltageWithoutPhase = value;
+                        } else {
+                            setPerPhase(voltage, voltageRanks, sample.getPhase(), value);
+                        }
+                    }
+                    break;
+
+                case POWER_ACTIVE_IMPORT:
+                    if (!powerSet) {
+                        double value = parseDouble(sample.getValue());
+                        if (value > 0) {
+                            power = value;
+                            powerSet = true;
+                        }
+                    }
+                    break;
+
+                case ENERGY_ACTIVE_IMPORT_REGISTER:
+                    if (!kWhSet && sample.getUnit() == UnitOfMeasure.K_WH) {
+                        kWh = parseDouble(sample.getValue());
+                        kWhSet = true;
+                    } else if (!whSet && sample.getUnit() == UnitOfMeasure.WH) {
+                        wh = parseDouble(sample.getValue());
+                        whSet = true;
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        // Kempower fix, they don't send a phase value at all so we just put it on phase 1
+        if (currentCount == 1 && currentRanks[0] == 0 && currentRanks[1] == 0 && currentRanks[2] == 0) {
+            current[0] = currentWithoutPhase;
+        }
+        if (voltageCount == 1 && voltageRanks[0] == 0 && voltageRanks[1] == 0 && voltageRanks[2] == 0) {
+            voltage[0] = voltageWithoutPhase;
+        }
+
+        if (powerSet) {
+            data.setPower(power);
+        } else {
+            // Assumes that the charge box only returns current and voltage, not power
+            double calculated = 0;
+            for (int i = 0; i < PHASES; i++) {
+                calculated += current[i] * voltage[i];
+            }
+            data.setPower(calculated);
+        }
+
+        currentSet = currentCount > 0;
+        data.setCurrentSet(currentSet);
+        data.setVoltageSet(voltageCount > 0);
+        energySet = kWhSet || whSet;
+        if (kWhSet) {
+            data.setEnergy(kWh * 1000);
+        } else if (whSet) {
+            data.setEnergy(wh);
+        }
+
+        return data;
+    }
+
+    /**
+     * @return true, if the last decoded sampled values contained a current in A
+     */
+    public boolean isCurrentSet() {
+        return currentSet;
+    }
+
+    /**
+     * @return true, if the last decoded sampled values contained an energy register reading in Wh or kWh
+     */
+    public boolean isEnergySet() {
+        return energySet;
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private static void setPerPhase(double[] values, int[] ranks, Phase phase, double value) {
+        int mask = PHASE_MASKS[phase.ordinal()];
+        int rank = phase.ordinal() + 1;
+        for (int i = 0; i < PHASES; i++) {
+            if ((mask & (1 << i)) != 0 && rank >= ranks[i]) {
+                values[i] = value;
+                ranks[i] = rank;
+            }
+        }
+    }
+
+    /**
+     * Same result as {@link Double#parseDouble(String)}. Plain decimals with at most 15 significant digits (which is
+     * what stations send in practice) are parsed without allocating: the digits and the power of ten are both exact
+     * doubles, so a single division is correctly rounded. Everything else is left to the JDK.
+     */
+    static double parseDouble(String value) {
+        int length = value.length();
+        if (length == 0 || length > 32) {
+            return Double.parseDouble(value);
+        }
+
+        int i = 0;
+        boolean negative = false;
+        char first = value.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean digitSeen = false;
+        boolean pointSeen = false;
+
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa >= MAX_EXACT_MANTISSA) {
+                    return Double.parseDouble(value);
+                }
+                digitSeen = true;
+                if (pointSeen) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !pointSeen) {
+                pointSeen = true;
+            } else {
+                return Double.parseDouble(value);
+            }
+        }
+
+        if (!digitSeen || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(value);
+        }
+
+        double result = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -result : result;
+    }
+
+    private static int[] createPhaseMasks() {
+        Phase[] phases = Phase.values();
+        int[] masks = new int[phases.length];
+        for (Phase phase : phases) {
+            for (int i = 0; i < PHASES; i++) {
+                if (phase.value().contains(Integer.toString(i + 1))) {
+                    masks[phase.ordinal()] |= 1 << i;
+                }
+            }
+        }
+        return masks;
+    }
+}
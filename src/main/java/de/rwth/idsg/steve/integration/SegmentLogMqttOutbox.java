@@ -0,0 +1,516 @@
+package de.rwth.idsg.steve.integration;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable outbox: an append-only log of memory-mapped segment files. The messages survive broker outages as well
+ * as restarts, and are published in order once the broker is reachable again (at-least-once, since a failed batch
+ * is delivered again as a whole).
+ *
+ * Each segment file is named after the log offset of its first byte. A record is laid out as
+ *
+ *   int length (of everything after this field, 0 marks the end of the segment)
+ *   int crc32 (of everything after this field)
+ *   long timestamp (epoch millis)
+ *   short topic length
+ *   topic (UTF-8)
+ *   payload
+ *
+ * The offset up to which everything is published is kept in a separate cursor file. Segments are deleted as a
+ * whole, once they are older than the retention time or the log grows beyond the retention size, even if they
+ * are not published yet. Writes are left to the page cache (no fsync), i.e. they survive a crash of the process,
+ * but not necessarily of the operating system.
+ */
+@Slf4j
+public class SegmentLogMqttOutbox implements MqttOutbox {
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CURSOR_FILE = "cursor";
+
+    private static final int LENGTH_SIZE = 4;
+    // crc + timestamp + topic length
+    private static final int HEADER_SIZE = 4 + 8 + 2;
+
+    private static final long RETENTION_CHECK_INTERVAL_MILLIS = 60_000;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long retentionMillis;
+    private final long retentionBytes;
+
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final FileChannel cursorChannel;
+    private final MappedByteBuffer cursor;
+
+    // everything before is published
+    private long committedOffset;
+    // the next poll continues here
+    private long readOffset;
+
+    // messages after committedOffset, and how many of them are polled
+    private int pendingCount;
+    private int polledCount;
+
+    private long droppedCount;
+    private long nextRetentionCheck;
+
+    public SegmentLogMqttOutbox(Path directory, int segmentSize, long retentionMillis, long retentionBytes)
+            throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retentionMillis = retentionMillis;
+        this.retentionBytes = retentionBytes;
+
+        Files.createDirectories(directory);
+
+        cursorChannel = FileChannel.open(directory.resolve(CURSOR_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        cursor = cursorChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        committedOffset = cursor.getLong(0);
+
+        for (Path path : listSegmentFiles()) {
+            segments.addLast(Segment.open(path, parseBaseOffset(path), segmentSize));
+        }
+
+        if (segments.isEmpty()) {
+            segments.addLast(Segment.open(segmentPath(committedOffset), committedOffset, segmentSize));
+        }
+
+        // the segments around the committed offset might be deleted in the meantime
+        committedOffset = Math.max(committedOffset, segments.getFirst().baseOffset);
+        committedOffset = Math.min(committedOffset, endOffset());
+        readOffset = committedOffset;
+        pendingCount = countRecords(committedOffset, endOffset());
+
+        log.info("Opened MQTT outbox in {} with {} segments and {} unpublished messages",
+                directory, segments.size(), pendingCount);
+    }
+
+    // -------------------------------------------------------------------------
+    // MqttOutbox
+    // -------------------------------------------------------------------------
+
+    @Override
+    public synchronized boolean append(String topic, byte[] payload) {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_SIZE + topicBytes.length + payload.length;
+
+        if (topicBytes.length > 0xFFFF || LENGTH_SIZE + length > segmentSize) {
+            droppedCount++;
+            log.warn("Dropped MQTT message for topic '{}', since it does not fit into a segment", topic);
+            return false;
+        }
+
+        Segment active = segments.getLast();
+        if (active.writePosition + LENGTH_SIZE + length > active.capacity()) {
+            active = roll();
+        }
+
+        active.append(System.currentTimeMillis(), topicBytes, payload, length);
+        pendingCount++;
+
+        notifyAll();
+        return true;
+    }
+
+    @Override
+    public synchronized List<MqttOutboxMessage> poll(int maxMessages, long timeoutMillis) throws InterruptedException {
+        maybeEnforceRetention();
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (readOffset >= endOffset()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return Collections.emptyList();
+            }
+            wait(remaining);
+        }
+
+        List<MqttOutboxMessage> messages = new ArrayList<>(Math.min(maxMessages, pendingCount - polledCount));
+        long end = endOffset();
+
+        while (messages.size() < maxMessages && readOffset < end) {
+            Segment segment = segmentOf(readOffset);
+            int position = (int) (readOffset - segment.baseOffset);
+
+            messages.add(segment.read(position));
+            readOffset += LENGTH_SIZE + segment.buffer.getInt(position);
+        }
+
+        polledCount += messages.size();
+        return messages;
+    }
+
+    @Override
+    public synchronized void commit() {
+        committedOffset = readOffset;
+        cursor.putLong(0, committedOffset);
+
+        pendingCount -= polledCount;
+        polledCount = 0;
+    }
+
+    @Override
+    public synchronized void rewind() {
+        readOffset = committedOffset;
+        polledCount = 0;
+    }
+
+    @Override
+    public synchronized int replay(long fromMillis, long toMillis) {
+        // the replayed messages are appended at the end, and must not be replayed again
+        long endAtStart = endOffset();
+        int count = 0;
+
+        for (Segment segment : new ArrayList<>(segments)) {
+            if (!segments.contains(segment)) {
+                // deleted due to retention, while appending the replayed messages
+                continue;
+            }
+            if (segment.isEmpty() || segment.lastTimestamp < fromMillis || segment.firstTimestamp >= toMillis) {
+                continue;
+            }
+
+            List<MqttOutboxMessage> matches = new ArrayList<>();
+            int position = 0;
+            while (position < segment.writePosition && segment.baseOffset + position < endAtStart) {
+                long timestamp = segment.buffer.getLong(position + LENGTH_SIZE + 4);
+                if (fromMillis <= timestamp && timestamp < toMillis) {
+                    matches.add(segment.read(position));
+                }
+                position += LENGTH_SIZE + segment.buffer.getInt(position);
+            }
+
+            for (MqttOutboxMessage m : matches) {
+                if (append(m.getTopic(), m.getPayload())) {
+                    count++;
+                }
+            }
+        }
+
+        log.info("Replaying {} MQTT messages between {} and {}", count, fromMillis, toMillis);
+        return count;
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    @Override
+    public synchronized int size() {
+        return pendingCount;
+    }
+
+    @Override
+    public int capacity() {
+        return 0;
+    }
+
+    @Override
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    @Override
+    public synchronized void close() {
+        cursor.force();
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+
+        try {
+            cursorChannel.close();
+        } catch (IOException e) {
+            log.error("Failed to close the cursor of the MQTT outbox", e);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private long endOffset() {
+        return segments.getLast().endOffset();
+    }
+
+    private Segment segmentOf(long offset) {
+        for (Segment segment : segments) {
+            if (offset < segment.endOffset()) {
+                return segment;
+            }
+        }
+        throw new IllegalStateException("No segment for offset " + offset);
+    }
+
+    private Segment roll() {
+        Segment segment;
+        long baseOffset = endOffset();
+        try {
+            segment = Segment.open(segmentPath(baseOffset), baseOffset, segmentSize);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create a new segment in " + directory, e);
+        }
+
+        segments.addLast(segment);
+        enforceRetention();
+        return segment;
+    }
+
+    private void maybeEnforceRetention() {
+        long now = System.currentTimeMillis();
+        if (now >= nextRetentionCheck) {
+            nextRetentionCheck = now + RETENTION_CHECK_INTERVAL_MILLIS;
+            enforceRetention();
+        }
+    }
+
+    private void enforceRetention() {
+        long minTimestamp = System.currentTimeMillis() - retentionMillis;
+
+        // the active segment is never deleted
+        while (segments.size() > 1) {
+            Segment oldest = segments.getFirst();
+            boolean expired = oldest.lastTimestamp < minTimestamp;
+            boolean tooLarge = totalBytes() > retentionBytes;
+
+            if (!expired && !tooLarge) {
+                break;
+            }
+            deleteOldest();
+        }
+    }
+
+    private void deleteOldest() {
+        Segment oldest = segments.removeFirst();
+        long nextBaseOffset = segments.getFirst().baseOffset;
+
+        if (committedOffset < nextBaseOffset) {
+            int lost = oldest.countRecords((int) Math.max(0, committedOffset - oldest.baseOffset), oldest.writePosition);
+            droppedCount += lost;
+            pendingCount -= lost;
+
+            if (readOffset <= nextBaseOffset) {
+                readOffset = nextBaseOffset;
+                polledCount = 0;
+            } else {
+                // the flusher is publishing them right now, but they are accounted for as dropped already
+                polledCount -= lost;
+            }
+
+            committedOffset = nextBaseOffset;
+            cursor.putLong(0, committedOffset);
+
+            log.warn("Deleted MQTT outbox segment {} with {} unpublished messages due to retention limits",
+                    oldest.path.getFileName(), lost);
+        }
+
+        oldest.close();
+        try {
+            Files.deleteIfExists(oldest.path);
+        } catch (IOException e) {
+            log.error("Failed to delete MQTT outbox segment {}", oldest.path, e);
+        }
+    }
+
+    private long totalBytes() {
+        long sum = 0;
+        for (Segment segment : segments) {
+            sum += segment.capacity();
+        }
+        return sum;
+    }
+
+    private int countRecords(long fromOffset, long toOffset) {
+        int count = 0;
+        for (Segment segment : segments) {
+            if (toOffset <= segment.baseOffset || segment.endOffset() <= fromOffset) {
+                continue;
+            }
+            int from = (int) Math.max(0, fromOffset - segment.baseOffset);
+            int to = (int) Math.min(segment.writePosition, toOffset - segment.baseOffset);
+            count += segment.countRecords(from, to);
+        }
+        return count;
+    }
+
+    private List<Path> listSegmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted((p1, p2) -> Long.compare(parseBaseOffset(p1), parseBaseOffset(p2)))
+                        .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(long baseOffset) {
+        return directory.resolve(String.format("%020d%s", baseOffset, SEGMENT_SUFFIX));
+    }
+
+    private static long parseBaseOffset(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // -------------------------------------------------------------------------
+    // Classes
+    // -------------------------------------------------------------------------
+
+    private static final class Segment {
+        private final long baseOffset;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private int writePosition;
+        private long firstTimestamp = Long.MAX_VALUE;
+        private long lastTimestamp = Long.MIN_VALUE;
+
+        private Segment(long baseOffset, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.baseOffset = baseOffset;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Opens an existing segment (with its actual size, which might differ from the configured one), or creates
+         * a new one. Existing records are validated, and the segment continues after the last valid one.
+         */
+        private static Segment open(Path path, long baseOffset, int segmentSize) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            long size = channel.size() > 0 ? channel.size() : segmentSize;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            Segment segment = new Segment(baseOffset, path, channel, buffer);
+            segment.recover();
+            return segment;
+        }
+
+        private int capacity() {
+            return buffer.capacity();
+        }
+
+        private long endOffset() {
+            return baseOffset + writePosition;
+        }
+
+        private boolean isEmpty() {
+            return writePosition == 0;
+        }
+
+        private void recover() {
+            int position = 0;
+            while (position + LENGTH_SIZE <= capacity()) {
+                int length = buffer.getInt(position);
+                if (length < HEADER_SIZE || position + LENGTH_SIZE + length > capacity()) {
+                    break;
+                }
+                if (buffer.getInt(position + LENGTH_SIZE) != crc(position, length)) {
+                    // torn write of a crashed process
+                    break;
+                }
+                updateTimestamps(buffer.getLong(position + LENGTH_SIZE + 4));
+                position += LENGTH_SIZE + length;
+            }
+            writePosition = position;
+            markEnd();
+        }
+
+        private void append(long timestamp, byte[] topicBytes, byte[] payload, int length) {
+            int position = writePosition;
+
+            buffer.putLong(position + LENGTH_SIZE + 4, timestamp);
+            buffer.putShort(position + LENGTH_SIZE + 4 + 8, (short) topicBytes.length);
+
+            ByteBuffer data = buffer.duplicate();
+            data.position(position + LENGTH_SIZE + HEADER_SIZE);
+            data.put(topicBytes);
+            data.put(payload);
+
+            buffer.putInt(position + LENGTH_SIZE, crc(position, length));
+            buffer.putInt(position, length);
+
+            writePosition += LENGTH_SIZE + length;
+            markEnd();
+            updateTimestamps(timestamp);
+        }
+
+        private MqttOutboxMessage read(int position) {
+            int length = buffer.getInt(position);
+            long timestamp = buffer.getLong(position + LENGTH_SIZE + 4);
+            int topicLength = buffer.getShort(position + LENGTH_SIZE + 4 + 8) & 0xFFFF;
+
+            byte[] topicBytes = new byte[topicLength];
+            byte[] payload = new byte[length - HEADER_SIZE - topicLength];
+
+            ByteBuffer data = buffer.duplicate();
+            data.position(position + LENGTH_SIZE + HEADER_SIZE);
+            data.get(topicBytes);
+            data.get(payload);
+
+            return new MqttOutboxMessage(new String(topicBytes, StandardCharsets.UTF_8), payload, timestamp);
+        }
+
+        private int countRecords(int from, int to) {
+            int count = 0;
+            int position = from;
+            while (position < to) {
+                count++;
+                position += LENGTH_SIZE + buffer.getInt(position);
+            }
+            return count;
+        }
+
+        /**
+         * Leftovers of a torn write after the last valid record must not be mistaken for a record
+         */
+        private void markEnd() {
+            if (writePosition + LENGTH_SIZE <= capacity()) {
+                buffer.putInt(writePosition, 0);
+            }
+        }
+
+        private int crc(int position, int length) {
+            ByteBuffer data = buffer.duplicate();
+            data.position(position + LENGTH_SIZE + 4);
+            data.limit(position + LENGTH_SIZE + length);
+
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            return (int) crc.getValue();
+        }
+
+        private void updateTimestamps(long timestamp) {
+            firstTimestamp = Math.min(firstTimestamp, timestamp);
+            lastTimestamp = Math.max(lastTimestamp, timestamp);
+        }
+
+        private void close() {
+            buffer.force();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.error("Failed to close MQTT outbox segment {}", path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,508 @@
+package de.rwth.idsg.steve.integration;
+
+import com.google.common.annotations.VisibleForTesting;
+import de.rwth.idsg.steve.integration.dto.EnergyMeterData;
+import de.rwth.idsg.steve.integration.dto.LoadAllocation;
+import de.rwth.idsg.steve.ocpp.ChargePointService16_InvokerImpl;
+import de.rwth.idsg.steve.ocpp.OcppCallback;
+import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import de.rwth.idsg.steve.ocpp.OcppTransport;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.ws.ConnectedStationIndex;
+import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonError;
+import de.rwth.idsg.steve.repository.ChargePointRepository;
+import de.rwth.idsg.steve.repository.SiteRepository;
+import de.rwth.idsg.steve.repository.dto.ActiveConnector;
+import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
+import de.rwth.idsg.steve.repository.dto.SiteLoadLimit;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distributes the grid capacity of a site across the connectors of the site that have a running transaction, by
+ * sending them TxProfiles with a current limit.
+ *
+ * - Transaction events and meter values only update the in-memory state of a connector and mark its site as dirty.
+ *   Every cycle, only the dirty sites are recomputed, without touching the database.
+ * - A connector that draws clearly less than its limit (e.g. the battery is almost full, or the car charges on
+ *   fewer phases) is limited to what it draws plus some headroom, and the rest goes to the others.
+ * - If the capacity is not enough for the minimum of every connector, the connectors that started first keep
+ *   charging, and the others get 0 A.
+ * - Decreases are sent in the next cycle. Increases are only sent if they are big enough, and not more often than
+ *   once per {@link #MIN_INCREASE_INTERVAL} per connector, so that stations are not flooded with profiles.
+ * - A limit that was not applied is sent again with exponential backoff. If the station answers NotSupported or with
+ *   a CALLERROR, nothing is sent to the connector anymore until its next transaction.
+ *
+ * The charge boxes of a site are the ones assigned in {@link EnergyAggregationService}. A station is reached with
+ * OCPP 1.6 JSON if it is connected with it, otherwise with OCPP 1.6 SOAP if that is its protocol in the database.
+ */
+@Slf4j
+@Service
+public class SiteLoadBalancer {
+
+    static final long CYCLE_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    static final long MIN_INCREASE_INTERVAL = TimeUnit.SECONDS.toMillis(60);
+    static final double MIN_CHANGE_IN_AMPS = 1.0;
+    static final double HEADROOM_IN_AMPS = 2.0;
+    static final long MAX_RETRY_BACKOFF = TimeUnit.MINUTES.toMillis(10);
+
+    private final SiteRepository siteRepository;
+    private final ChargePointRepository chargePointRepository;
+    private final ConnectedStationIndex connectedStationIndex;
+    private final EnergyAggregationService energyAggregationService;
+    private final ScheduledExecutorService executorService;
+
+    // not in the constructor: the invoker depends on the WebSocket endpoint, which depends on the services that feed
+    // the load balancer
+    @Autowired private ChargePointService16_InvokerImpl invoker16;
+
+    private final ConcurrentHashMap<String, SiteState> sites = new ConcurrentHashMap<>();
+
+    // chargeBoxId -> connectorId -> connector with a running transaction
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Integer, LoadConnector>> activeConnectors =
+            new ConcurrentHashMap<>();
+
+    private final Set<SiteState> dirtySites = ConcurrentHashMap.newKeySet();
+
+    private ScheduledFuture<?> cycle;
+
+    public SiteLoadBalancer(SiteRepository siteRepository, ChargePointRepository chargePointRepository,
+                            ConnectedStationIndex connectedStationIndex,
+                            EnergyAggregationService energyAggregationService,
+                            ScheduledExecutorService executorService) {
+        this.siteRepository = siteRepository;
+        this.chargePointRepository = chargePointRepository;
+        this.connectedStationIndex = connectedStationIndex;
+        this.energyAggregationService = energyAggregationService;
+        this.executorService = executorService;
+    }
+
+    @PostConstruct
+    public void init() {
+        load();
+        cycle = executorService.scheduleWithFixedDelay(
+                () -> runCycle(System.currentTimeMillis()), CYCLE_MILLIS, CYCLE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        if (cycle != null) {
+            cycle.cancel(false);
+        }
+    }
+
+    /**
+     * The limits, and the transactions that were already running before the start. Their limits are sent again in
+     * the first cycle, since nothing is known about what was sent before.
+     */
+    @VisibleForTesting
+    void load() {
+        for (SiteLoadLimit limit : siteRepository.getLoadLimits()) {
+            SiteState site = getSite(limit.getSiteId());
+            synchronized (site) {
+                site.limit = limit;
+            }
+        }
+
+        for (ActiveConnector connector : siteRepository.getActiveConnectors()) {
+            onTransactionStarted(connector.getChargeBoxId(), connector.getConnectorId());
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Events
+    // -------------------------------------------------------------------------
+
+    public void onTransactionStarted(String chargeBoxId, int connectorId) {
+        SiteState site = getSite(energyAggregationService.getSiteId(chargeBoxId));
+        LoadConnector connector = new LoadConnector(chargeBoxId, connectorId, site);
+
+        LoadConnector previous = activeConnectors.computeIfAbsent(chargeBoxId, k -> new ConcurrentHashMap<>())
+                                                 .put(connectorId, connector);
+
+        synchronized (site) {
+            if (previous != null) {
+                previous.site.connectors.remove(previous);
+            }
+            site.connectors.add(connector);
+        }
+        markDirty(site);
+    }
+
+    public void onTransactionStopped(String chargeBoxId, int connectorId) {
+        ConcurrentHashMap<Integer, LoadConnector> connectors = activeConnectors.get(chargeBoxId);
+        if (connectors == null) {
+            return;
+        }
+
+        LoadConnector connector = connectors.remove(connectorId);
+        if (connector == null) {
+            return;
+        }
+
+        synchronized (connector.site) {
+            connector.site.connectors.remove(connector);
+        }
+        markDirty(connector.site);
+    }
+
+    /**
+     * @param currentSet whether the meter value contained current samples at all
+     */
+    public void onMeterValue(String chargeBoxId, int connectorId, EnergyMeterData data, boolean currentSet) {
+        if (!currentSet) {
+            return;
+        }
+
+        ConcurrentHashMap<Integer, LoadConnector> connectors = activeConnectors.get(chargeBoxId);
+        if (connectors == null) {
+            return;
+        }
+
+        LoadConnector connector = connectors.get(connectorId);
+        if (connector == null) {
+            return;
+        }
+
+        double[] current = data.getCurrent();
+        double measured = Math.max(current[0], Math.max(current[1], current[2]));
+
+        synchronized (connector.site) {
+            double previous = connector.measuredAmps;
+            connector.measuredAmps = measured;
+
+            // small fluctuations do not change the allocation
+            if (Double.isNaN(previous) || Math.abs(measured - previous) >= MIN_CHANGE_IN_AMPS) {
+                markDirty(connector.site);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Site limits
+    // -------------------------------------------------------------------------
+
+    public void setLoadLimit(SiteLoadLimit limit) {
+        siteRepository.setLoadLimit(limit);
+
+        SiteState site = getSite(limit.getSiteId());
+        synchronized (site) {
+            site.limit = limit;
+        }
+        markDirty(site);
+    }
+
+    /**
+     * The limits that were already sent stay in place until the transactions end, since the station discards
+     * TxProfiles at the end of a transaction.
+     */
+    public void deleteLoadLimit(String siteId) {
+        siteRepository.deleteLoadLimit(siteId);
+
+        SiteState site = sites.get(siteId);
+        if (site != null) {
+            synchronized (site) {
+                site.limit = null;
+            }
+        }
+    }
+
+    @Nullable
+    public SiteLoadLimit getLoadLimit(String siteId) {
+        SiteState site = sites.get(siteId);
+        if (site == null) {
+            return null;
+        }
+
+        synchronized (site) {
+            return site.limit;
+        }
+    }
+
+    public List<LoadAllocation> getAllocations(String siteId) {
+        SiteState site = sites.get(siteId);
+        if (site == null) {
+            return Collections.emptyList();
+        }
+
+        synchronized (site) {
+            List<LoadAllocation> allocations = new ArrayList<>(site.connectors.size());
+            for (LoadConnector c : site.connectors) {
+                allocations.add(LoadAllocation.builder()
+                                              .chargeBoxId(c.chargeBoxId)
+                                              .connectorId(c.connectorId)
+                                              .measuredInAmps(nullIfNaN(c.measuredAmps))
+                                              .allocatedInAmps(nullIfNaN(c.allocatedAmps))
+                                              .sentInAmps(nullIfNaN(c.sentAmps))
+                                              .sentTimestamp(c.sentAt == 0 ? null : new DateTime(c.sentAt))
+                                              .build());
+            }
+            return allocations;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Allocation
+    // -------------------------------------------------------------------------
+
+    @VisibleForTesting
+    void runCycle(long now) {
+        try {
+            List<Runnable> sends = new ArrayList<>();
+            for (SiteState site : new ArrayList<>(dirtySites)) {
+                dirtySites.remove(site);
+                recompute(site, now, sends);
+            }
+
+            // one batch per cycle, outside of the site locks
+            for (Runnable send : sends) {
+                send.run();
+            }
+        } catch (Exception e) {
+            // the executor would not run the next cycle otherwise
+            log.error("Load balancing cycle failed", e);
+        }
+    }
+
+    private void recompute(SiteState site, long now, List<Runnable> sends) {
+        synchronized (site) {
+            if (site.limit == null || site.connectors.isEmpty()) {
+                return;
+            }
+
+            int n = site.connectors.size();
+            double[] demands = new double[n];
+            double[] allocations = new double[n];
+
+            for (int i = 0; i < n; i++) {
+                LoadConnector c = site.connectors.get(i);
+                boolean drawsLess = !Double.isNaN(c.measuredAmps)
+                        && !Double.isNaN(c.sentAmps)
+                        && c.measuredAmps + HEADROOM_IN_AMPS < c.sentAmps;
+
+                demands[i] = drawsLess ? c.measuredAmps + HEADROOM_IN_AMPS : Double.POSITIVE_INFINITY;
+            }
+
+            allocate(site.limit.getCapacityInAmps(), site.limit.getMinPerConnectorInAmps(), demands, allocations);
+
+            boolean pending = false;
+            for (int i = 0; i < n; i++) {
+                LoadConnector c = site.connectors.get(i);
+                c.allocatedAmps = allocations[i];
+
+                if (c.givenUp) {
+                    continue;
+                }
+                if (now < c.retryAt) {
+                    pending = true;
+                    continue;
+                }
+
+                boolean first = Double.isNaN(c.sentAmps);
+                boolean decrease = !first && c.allocatedAmps < c.sentAmps;
+                boolean increase = !first && c.allocatedAmps >= c.sentAmps + MIN_CHANGE_IN_AMPS;
+
+                if (increase && now - c.sentAt < MIN_INCREASE_INTERVAL) {
+                    // try again in a later cycle
+                    pending = true;
+                } else if (first || decrease || increase) {
+                    sends.add(createSend(c, now));
+                }
+            }
+
+            if (pending) {
+                dirtySites.add(site);
+            }
+        }
+    }
+
+    /**
+     * Water filling: the capacity is shared equally, except that connectors which need less than their share only
+     * get what they need, and what they leave is shared among the others. If the capacity does not cover the
+     * minimum of everyone, the connectors at the beginning of the array (the ones that started first) are served.
+     *
+     * @param demands     in the order of the transaction start, infinite if unknown
+     * @param allocations filled with the result, rounded down to 0.1 A
+     */
+    static void allocate(double capacity, double minPerConnector, double[] demands, double[] allocations) {
+        int n = demands.length;
+        int served = minPerConnector > 0 ? (int) Math.min(n, Math.floor(capacity / minPerConnector)) : n;
+
+        Arrays.fill(allocations, 0);
+        if (served == 0) {
+            return;
+        }
+
+        // ascending by demand, so that the left-over of a connector goes to the ones with higher demand
+        Integer[] order = new Integer[served];
+        for (int i = 0; i < served; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(demands[a], demands[b]));
+
+        double remaining = capacity;
+        for (int k = 0; k < served; k++) {
+            int i = order[k];
+            double share = remaining / (served - k);
+            double allocation = Math.max(minPerConnector, Math.min(demands[i], share));
+            allocation = Math.floor(allocation * 10) / 10;
+
+            allocations[i] = allocation;
+            remaining -= allocation;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private Runnable createSend(LoadConnector connector, long now) {
+        double limit = connector.allocatedAmps;
+        connector.sentAmps = limit;
+        connector.sentAt = now;
+
+        OcppCallback<String> callback = new OcppCallback<String>() {
+            @Override
+            public void success(String chargeBoxId, String status) {
+                if ("Accepted".equalsIgnoreCase(status)) {
+                    accepted(connector);
+                } else if ("NotSupported".equalsIgnoreCase(status)) {
+                    giveUp(connector, "Status: " + status);
+                } else {
+                    retry(connector, "Status: " + status);
+                }
+            }
+
+            @Override
+            public void success(String chargeBoxId, OcppJsonError error) {
+                giveUp(connector, error.toString());
+            }
+
+            @Override
+            public void failed(String chargeBoxId, Exception e) {
+                retry(connector, e.getMessage());
+            }
+        };
+
+        return () -> {
+            try {
+                ChargePointSelect chargePoint = findChargePoint(connector.chargeBoxId);
+                if (chargePoint != null) {
+                    invoke(chargePoint, new LoadLimitTask(chargePoint, connector.connectorId, limit), callback);
+                } else if (connectedStationIndex.isConnected(connector.chargeBoxId)) {
+                    giveUp(connector, "Connected with another OCPP version than 1.6");
+                } else {
+                    retry(connector, "Neither connected with OCPP 1.6 JSON nor an OCPP 1.6 SOAP station");
+                }
+            } catch (Exception e) {
+                retry(connector, e.getMessage());
+            }
+        };
+    }
+
+    @Nullable
+    private ChargePointSelect findChargePoint(String chargeBoxId) {
+        if (connectedStationIndex.get(chargeBoxId, OcppVersion.V_16) != null) {
+            return new ChargePointSelect(OcppTransport.JSON, chargeBoxId);
+        }
+        return chargePointRepository.getChargePointSelect(chargeBoxId, OcppProtocol.V_16_SOAP).orElse(null);
+    }
+
+    @VisibleForTesting
+    void invoke(ChargePointSelect chargePoint, LoadLimitTask task, OcppCallback<String> callback) {
+        task.addCallback(callback);
+        invoker16.setChargingProfile(chargePoint, task);
+    }
+
+    private void accepted(LoadConnector connector) {
+        synchronized (connector.site) {
+            connector.failedAttempts = 0;
+            connector.retryAt = 0;
+        }
+    }
+
+    /**
+     * The limit is sent again after a backoff that doubles with every failed attempt (as long as the transaction is
+     * running)
+     */
+    private void retry(LoadConnector connector, String reason) {
+        long backoff;
+        synchronized (connector.site) {
+            connector.failedAttempts++;
+            backoff = Math.min(MAX_RETRY_BACKOFF, CYCLE_MILLIS << Math.min(connector.failedAttempts - 1, 20));
+            connector.retryAt = connector.sentAt + backoff;
+            connector.sentAmps = Double.NaN;
+        }
+
+        log.warn("[chargeBoxId={}, connectorId={}] Load limit was not applied, trying again in {} ms: {}",
+                connector.chargeBoxId, connector.connectorId, backoff, reason);
+        markDirty(connector.site);
+    }
+
+    /**
+     * The station cannot apply limits. Nothing is sent anymore until the next transaction of the connector
+     */
+    private void giveUp(LoadConnector connector, String reason) {
+        log.warn("[chargeBoxId={}, connectorId={}] Load limit was not applied, not sending any until the next "
+                + "transaction: {}", connector.chargeBoxId, connector.connectorId, reason);
+
+        synchronized (connector.site) {
+            connector.givenUp = true;
+            connector.sentAmps = Double.NaN;
+        }
+    }
+
+    private void markDirty(SiteState site) {
+        dirtySites.add(site);
+    }
+
+    private SiteState getSite(String siteId) {
+        return sites.computeIfAbsent(siteId, k -> new SiteState());
+    }
+
+    private static Double nullIfNaN(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private static final class SiteState {
+        // in the order of the transaction start
+        private final List<LoadConnector> connectors = new ArrayList<>();
+        private SiteLoadLimit limit;
+    }
+
+    private static final class LoadConnector {
+        private final String chargeBoxId;
+        private final int connectorId;
+        private final SiteState site;
+
+        private double measuredAmps = Double.NaN;
+        private double allocatedAmps = Double.NaN;
+        private double sentAmps = Double.NaN;
+        private long sentAt;
+
+        private int failedAttempts;
+        private long retryAt;
+        private boolean givenUp;
+
+        private LoadConnector(String chargeBoxId, int connectorId, SiteState site) {
+            this.chargeBoxId = chargeBoxId;
+            this.connectorId = connectorId;
+            this.site = site;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package de.rwth.idsg.steve.integration;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.rwth.idsg.steve.integration.dto.EnergyMeterData;
+import de.rwth.idsg.steve.integration.dto.StationEvent;
+import de.rwth.idsg.steve.integration.dto.StationEventPage;
+import de.rwth.idsg.steve.integration.dto.StationEventType;
+import de.rwth.idsg.steve.ocpp.event.MeterSample;
+import de.rwth.idsg.steve.ocpp.event.OcppEvent;
+import de.rwth.idsg.steve.ocpp.event.OcppEventListener;
+import de.rwth.idsg.steve.ocpp.event.StatusChanged;
+import de.rwth.idsg.steve.ocpp.event.TxStarted;
+import de.rwth.idsg.steve.ocpp.event.TxStopped;
+import lombok.extern.slf4j.Slf4j;
+import ocpp.cs._2015._10.MeterValue;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded in-memory log of the status, meter and transaction events of the stations, that API consumers read with
+ * long-polling or as server-sent events instead of polling the REST API. Every event gets an offset, so that a
+ * consumer can resume after the last event it saw. The oldest events are dropped when the log is full, and a consumer
+ * that falls behind further than that is told so by {@link StationEventPage#isTruncated()}. The log is not persisted:
+ * after a restart the offsets start from 0 again. So that an offset from before is not mistaken for one of the new log,
+ * every page carries the epoch of the log (its start time), and an offset with another epoch counts as truncated.
+ *
+ * Subscribers are served on an own small pool, not on the thread of the event bus, so that a slow HTTP client does
+ * not hold up the log. Every subscriber is a cursor into the log and has at most one delivery running, which blocks
+ * a thread of the pool while writing. So that a few clients that stopped reading cannot take all threads, a delivery
+ * that runs longer than the timeout is interrupted and its subscription cancelled. This is checked whenever events
+ * are dispatched or a subscriber arrives. If a subscriber falls behind further than the log holds, its next page is
+ * truncated.
+ */
+@Slf4j
+@Component
+public class StationEventLog implements OcppEventListener {
+
+    private static final int CAPACITY = 10_000;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DELIVERY_THREADS = 4;
+    private static final long DELIVERY_TIMEOUT_MILLIS = 10_000;
+
+    private final ExecutorService executorService;
+    private final long deliveryTimeoutMillis;
+
+    private final long epoch = System.currentTimeMillis();
+
+    // guarded by this
+    private final StationEvent[] ring = new StationEvent[CAPACITY];
+    private long nextOffset;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public StationEventLog() {
+        this(Executors.newFixedThreadPool(DELIVERY_THREADS,
+                new ThreadFactoryBuilder().setNameFormat("SteVe-Events-%d").setDaemon(true).build()),
+                DELIVERY_TIMEOUT_MILLIS);
+    }
+
+    @VisibleForTesting
+    StationEventLog(ExecutorService executorService, long deliveryTimeoutMillis) {
+        this.executorService = executorService;
+        this.deliveryTimeoutMillis = deliveryTimeoutMillis;
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        executorService.shutdownNow();
+    }
+
+    @Override
+    public void onEvent(OcppEvent event, boolean endOfBatch) {
+        if (event instanceof StatusChanged) {
+            StatusChanged statusChanged = (StatusChanged) event;
+            append(StationEvent.builder()
+                               .type(StationEventType.STATUS)
+                               .chargeBoxId(event.getChargeBoxId())
+                               .connectorId(statusChanged.getConnectorId())
+                               .timestamp(event.getTimestamp())
+                               .status(statusChanged.getStatus().value())
+                               .errorCode(statusChanged.getErrorCode().value()));
+
+        } else if (event instanceof MeterSample) {
+            MeterSample sample = (MeterSample) event;
+            List<MeterValue> meterValues = sample.getRequest().getMeterValue();
+            SampledValueDecoder decoder = SampledValueDecoder.forCurrentThread();
+            for (int i = 0; i < meterValues.size(); i++) {
+                // the decoder reuses its result for the next meter value
+                EnergyMeterData data = decoder.decode(meterValues.get(i)).copy();
+                append(StationEvent.builder()
+                                   .type(StationEventType.METER)
+                                   .chargeBoxId(event.getChargeBoxId())
+                                   .connectorId(sample.getRequest().getConnectorId())
+                                   .timestamp(event.getTimestamp())
+                                   .transactionId(sample.getRequest().getTransactionId())
+                                   .meter(data));
+            }
+
+        } else if (event instanceof TxStarted) {
+            TxStarted started = (TxStarted) event;
+            append(StationEvent.builder()
+                               .type(StationEventType.TRANSACTION_STARTED)
+                               .chargeBoxId(event.getChargeBoxId())
+                               .connectorId(started.getRequest().getConnectorId())
+                               .timestamp(event.getTimestamp())
+                               .transactionId(started.getTransactionId())
+                               .meterValue(started.getRequest().getMeterStart()));
+
+        } else if (event instanceof TxStopped) {
+            TxStopped stopped = (TxStopped) event;
+            append(StationEvent.builder()
+                               .type(StationEventType.TRANSACTION_STOPPED)
+                               .chargeBoxId(event.getChargeBoxId())
+                               .timestamp(event.getTimestamp())
+                               .transactionId(stopped.getTransactionId())
+                               .meterValue(stopped.getRequest().getMeterStop()));
+        }
+
+        if (endOfBatch) {
+            scheduleDispatch();
+        }
+    }
+
+    /**
+     * @param epoch       of the page the offset is from, or null if unknown. if it is not the one of this log, the
+     *                    offset is from before a restart, and the page starts with the oldest event and is truncated
+     * @param offset      the first offset to return. if it is not in the log anymore, the page starts with the oldest
+     *                    event and is truncated
+     * @param chargeBoxId only the events of this station, or all if null
+     */
+    public synchronized StationEventPage read(@Nullable Long epoch, long offset, @Nullable String chargeBoxId, int limit) {
+        long oldestOffset = Math.max(0, nextOffset - CAPACITY);
+        boolean truncated = (epoch != null && epoch != this.epoch) || offset < oldestOffset || offset > nextOffset;
+
+        long current = truncated ? oldestOffset : offset;
+        int max = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<StationEvent> events = new ArrayList<>();
+
+        for (; current < nextOffset && events.size() < max; current++) {
+            StationEvent event = ring[(int) (current % CAPACITY)];
+            if (chargeBoxId == null || chargeBoxId.equals(event.getChargeBoxId())) {
+                events.add(event);
+            }
+        }
+
+        return new StationEventPage(this.epoch, events, current, oldestOffset, truncated);
+    }
+
+    public synchronized long getNextOffset() {
+        return nextOffset;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * The callback is called with the events from the offset on as soon as there are any, until it returns false or
+     * the subscription is cancelled
+     */
+    public Subscription subscribe(@Nullable Long epoch, long offset, @Nullable String chargeBoxId, int limit, Callback callback) {
+        interruptStalled();
+
+        Subscription subscription = new Subscription(epoch, offset, chargeBoxId, limit, callback);
+        subscriptions.add(subscription);
+
+        // the events might have arrived between the read of the caller and the subscription
+        subscription.scheduleDelivery();
+        return subscription;
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    // -------------------------------------------------------------------------
+    // Subscriptions
+    // -------------------------------------------------------------------------
+
+    @FunctionalInterface
+    public interface Callback {
+        /**
+         * @return false to end the subscription
+         */
+        boolean onEvents(StationEventPage page) throws Exception;
+    }
+
+    public final class Subscription {
+
+        private final String chargeBoxId;
+        private final int limit;
+        private final Callback callback;
+
+        // only accessed by the delivery, which does not run concurrently. the epoch is only checked once
+        @Nullable private Long epoch;
+        private long offset;
+        private final AtomicBoolean deliveryScheduled = new AtomicBoolean(false);
+
+        // the thread of the running callback and since when it runs. guarded by this
+        @Nullable private Thread deliveryThread;
+        private long deliveryStartedAt;
+
+        private Subscription(@Nullable Long epoch, long offset, String chargeBoxId, int limit, Callback callback) {
+            this.epoch = epoch;
+            this.offset = offset;
+            this.chargeBoxId = chargeBoxId;
+            this.limit = limit;
+            this.callback = callback;
+        }
+
+        public void cancel() {
+            subscriptions.remove(this);
+        }
+
+        private void scheduleDelivery() {
+            if (deliveryScheduled.compareAndSet(false, true)) {
+                try {
+                    executorService.execute(this::deliver);
+                } catch (RejectedExecutionException e) {
+                    deliveryScheduled.set(false);
+                }
+            }
+        }
+
+        private void deliver() {
+            try {
+                StationEventPage page = read(epoch, offset, chargeBoxId, limit);
+                epoch = null;
+                offset = page.getNextOffset();
+
+                if (page.getEvents().isEmpty() && !page.isTruncated()) {
+                    return;
+                }
+
+                synchronized (this) {
+                    deliveryThread = Thread.currentThread();
+                    deliveryStartedAt = System.currentTimeMillis();
+                }
+
+                boolean keep;
+                try {
+                    keep = callback.onEvents(page);
+                } catch (Exception e) {
+                    log.debug("Failed to deliver events to a subscriber, removing it", e);
+                    keep = false;
+                } finally {
+                    synchronized (this) {
+                        deliveryThread = null;
+                    }
+                    // an interrupt that came too late to stop the callback must not hit the next task of the pool
+                    Thread.interrupted();
+                }
+
+                if (!keep) {
+                    cancel();
+                }
+            } finally {
+                deliveryScheduled.set(false);
+            }
+
+            // the events that were appended during the delivery did not schedule another one
+            if (subscriptions.contains(this) && offset < getNextOffset()) {
+                scheduleDelivery();
+            }
+        }
+
+        private synchronized void interruptIfStalled(long now) {
+            if (deliveryThread != null && now - deliveryStartedAt > deliveryTimeoutMillis) {
+                log.debug("Delivery to a subscriber takes longer than {} ms, removing it", deliveryTimeoutMillis);
+                cancel();
+                deliveryThread.interrupt();
+                deliveryThread = null;
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private synchronized void append(StationEvent.StationEventBuilder builder) {
+        ring[(int) (nextOffset % CAPACITY)] = builder.offset(nextOffset).build();
+        nextOffset++;
+    }
+
+    private void scheduleDispatch() {
+        interruptStalled();
+        for (Subscription subscription : subscriptions) {
+            subscription.scheduleDelivery();
+        }
+    }
+
+    private void interruptStalled() {
+        long now = System.currentTimeMillis();
+        for (Subscription subscription : subscriptions) {
+            subscription.interruptIfStalled(now);
+        }
+    }
+}
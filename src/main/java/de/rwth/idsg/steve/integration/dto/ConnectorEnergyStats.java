@@ -0,0 +1,27 @@
+package de.rwth.idsg.steve.integration.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.joda.time.DateTime;
+
+@Getter
+@Builder
+public class ConnectorEnergyStats {
+    private final String chargeBoxId;
+    private final int connectorId;
+    private final String siteId;
+    private final boolean transactionActive;
+
+    // of the last sample
+    private final double powerInKw;
+
+    // of the running transaction, or of the last one if none is running
+    private final double energySinceStartInKwh;
+
+    // time weighted, null if there was no sample in the window
+    private final Double averagePower1MinInKw;
+    private final Double averagePower5MinInKw;
+    private final Double averagePower15MinInKw;
+
+    private final DateTime lastSampleTimestamp;
+}
@@ -1,24 +1,68 @@
 package de.rwth.idsg.steve.integration.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.Arrays;
 import java.util.Date;
-import java.util.List;
 
+/**
+ * Instances are reused by {@link de.rwth.idsg.steve.integration.SampledValueDecoder} for every meter value that is
+ * decoded on the same thread. Consumers that keep the data beyond the call they received it in have to {@link #copy()}.
+ */
 @Getter
 @Setter
 public class EnergyMeterData {
-    private List<Double> current;
+
+    public static final int PHASES = 3;
+
+    private final double[] current = new double[PHASES];
     private double energy;
     private double power;
-    private List<Double> voltage;
+    private final double[] voltage = new double[PHASES];
     private double frequency;
-    private Date timestamp;
+    private final Date timestamp = new Date(0);
+
+    // whether the meter value contained samples of these at all, since the arrays always have a value for every phase
+    @JsonIgnore private boolean currentSet;
+    @JsonIgnore private boolean voltageSet;
+
+    public void setTimestamp(Date timestamp) {
+        this.timestamp.setTime(timestamp.getTime());
+    }
+
+    public void setTimestamp(long millis) {
+        this.timestamp.setTime(millis);
+    }
+
+    public void reset() {
+        Arrays.fill(current, 0);
+        Arrays.fill(voltage, 0);
+        energy = 0;
+        power = 0;
+        frequency = 0;
+        timestamp.setTime(0);
+        currentSet = false;
+        voltageSet = false;
+    }
+
+    public EnergyMeterData copy() {
+        EnergyMeterData copy = new EnergyMeterData();
+        System.arraycopy(current, 0, copy.current, 0, PHASES);
+        System.arraycopy(voltage, 0, copy.voltage, 0, PHASES);
+        copy.energy = energy;
+        copy.power = power;
+        copy.frequency = frequency;
+        copy.timestamp.setTime(timestamp.getTime());
+        copy.currentSet = currentSet;
+        copy.voltageSet = voltageSet;
+        return copy;
+    }
 
     public boolean eligibleToSend() {
-        if(!current.isEmpty() || energy != 0 || power != 0 ||
-                !voltage.isEmpty() || frequency != 0) {
+        if(currentSet || energy != 0 || power != 0 ||
+                voltageSet || frequency != 0) {
             return true;
         } else {
             return false;
@@ -0,0 +1,22 @@
+package de.rwth.idsg.steve.integration.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.joda.time.DateTime;
+
+@Getter
+@Builder
+public class LoadAllocation {
+    private final String chargeBoxId;
+    private final int connectorId;
+
+    // highest current of the phases in the last meter value, null if the station does not report currents
+    private final Double measuredInAmps;
+
+    // null until the site has a load limit
+    private final Double allocatedInAmps;
+
+    // null if not sent yet, or if the station did not accept it
+    private final Double sentInAmps;
+    private final DateTime sentTimestamp;
+}
@@ -0,0 +1,30 @@
+package de.rwth.idsg.steve.integration.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.joda.time.DateTime;
+
+import java.util.List;
+
+/**
+ * Sums over the connectors of all charge boxes of a site. Connector 0 (the main meter of a charge box) is
+ * listed, but not included in the sums, since it measures the other connectors again.
+ */
+@Getter
+@Builder
+public class SiteEnergyStats {
+    private final String siteId;
+    private final int activeTransactions;
+    private final double powerInKw;
+
+    // of the running transactions only
+    private final double energySinceStartInKwh;
+
+    // connectors without a sample in the window count as 0
+    private final double averagePower1MinInKw;
+    private final double averagePower5MinInKw;
+    private final double averagePower15MinInKw;
+
+    private final DateTime lastSampleTimestamp;
+    private final List<ConnectorEnergyStats> connectors;
+}
@@ -0,0 +1,14 @@
+package de.rwth.idsg.steve.integration.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class SiteLoadLimitRequest {
+    // per phase, at the grid connection of the site
+    private Double capacityInAmps;
+
+    // below this, stations stop charging anyway. default is 6 A
+    private Double minPerConnectorInAmps;
+}
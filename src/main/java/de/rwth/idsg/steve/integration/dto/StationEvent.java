@@ -0,0 +1,35 @@
+package de.rwth.idsg.steve.integration.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Getter;
+import org.joda.time.DateTime;
+
+/**
+ * An entry of the {@link de.rwth.idsg.steve.integration.StationEventLog}. Only the fields of its type are set.
+ */
+@Getter
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StationEvent {
+
+    // position in the event log, increasing without gaps. consumers resume after the last offset they saw
+    private final long offset;
+    private final StationEventType type;
+    private final String chargeBoxId;
+    private final Integer connectorId;
+
+    // time of arrival at SteVe
+    private final DateTime timestamp;
+
+    // STATUS
+    private final String status;
+    private final String errorCode;
+
+    // METER
+    private final EnergyMeterData meter;
+
+    // TRANSACTION_STARTED and TRANSACTION_STOPPED, meter value in Wh. a stop has no connector id
+    private final Integer transactionId;
+    private final Integer meterValue;
+}
@@ -0,0 +1,24 @@
+package de.rwth.idsg.steve.integration.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@RequiredArgsConstructor
+public class StationEventPage {
+    // start time of the log. offsets are only valid within the same epoch
+    private final long epoch;
+
+    private final List<StationEvent> events;
+
+    // the offset to continue with
+    private final long nextOffset;
+
+    // the oldest offset that the log still holds
+    private final long oldestOffset;
+
+    // true, if events after the requested offset were already dropped from the log
+    private final boolean truncated;
+}
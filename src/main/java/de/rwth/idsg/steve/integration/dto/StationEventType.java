@@ -0,0 +1,8 @@
+package de.rwth.idsg.steve.integration.dto;
+
+public enum StationEventType {
+    STATUS,
+    METER,
+    TRANSACTION_STARTED,
+    TRANSACTION_STOPPED
+}
@@ -0,0 +1,71 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteType;
+import org.jooq.impl.DefaultExecuteListener;
+
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every statement that is executed through jOOQ, from rendering to the last fetched record. Shared by all
+ * executions, since the start time is kept in the {@link ExecuteContext}.
+ */
+public class MetricsExecuteListener extends DefaultExecuteListener {
+
+    private static final String START_NANOS = MetricsExecuteListener.class.getName() + ".startNanos";
+
+    private final EnumMap<ExecuteType, Timer> successTimers = new EnumMap<>(ExecuteType.class);
+    private final EnumMap<ExecuteType, Timer> errorTimers = new EnumMap<>(ExecuteType.class);
+
+    public MetricsExecuteListener(MeterRegistry registry) {
+        for (ExecuteType type : ExecuteType.values()) {
+            successTimers.put(type, createTimer(registry, type, "success"));
+            errorTimers.put(type, createTimer(registry, type, "error"));
+        }
+    }
+
+    @Override
+    public void start(ExecuteContext ctx) {
+        ctx.data(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void end(ExecuteContext ctx) {
+        Object start = ctx.data(START_NANOS);
+        if (start == null) {
+            return;
+        }
+
+        EnumMap<ExecuteType, Timer> timers = ctx.exception() == null ? successTimers : errorTimers;
+        timers.get(ctx.type()).record(System.nanoTime() - (Long) start, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer createTimer(MeterRegistry registry, ExecuteType type, String outcome) {
+        return Timer.builder("steve.db.statements")
+                    .description("Statements executed through jOOQ")
+                    .tag("type", type.name().toLowerCase())
+                    .tag("outcome", outcome)
+                    .register(registry);
+    }
+}
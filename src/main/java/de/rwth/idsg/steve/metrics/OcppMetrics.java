@@ -0,0 +1,129 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.metrics;
+
+import de.rwth.idsg.steve.ocpp.OcppTransport;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timers for the calls of the stations, per OCPP version, transport and action. The timers are looked up once per
+ * combination and kept, since building a timer for every call would allocate more than the call itself.
+ *
+ * The count of a timer is the number of calls, so there are no separate counters.
+ */
+@Component
+public class OcppMetrics {
+
+    public static final String UNKNOWN_ACTION = "Unknown";
+
+    private static final Duration[] SERVICE_LEVEL_OBJECTIVES = {
+            Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50),
+            Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1),
+            Duration.ofMillis(2500), Duration.ofSeconds(5)
+    };
+
+    private final MeterRegistry registry;
+    private final ConcurrentHashMap<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public OcppMetrics(MeterRegistry registry) {
+        this.registry = registry;
+
+        Gauge.builder("steve.ocpp.calls.inflight", inFlight, AtomicInteger::get)
+             .description("Calls of stations that are being processed")
+             .register(registry);
+    }
+
+    public CallMetrics forTransport(OcppVersion version, OcppTransport transport) {
+        return new CallMetrics(version, transport);
+    }
+
+    private Timer getTimer(OcppVersion version, OcppTransport transport, String action, boolean error) {
+        TimerKey key = new TimerKey(version, transport, action, error);
+
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(key, k -> Timer.builder("steve.ocpp.calls")
+                                                          .description("Calls of stations, from receiving to responding")
+                                                          .tag("version", k.version.getValue())
+                                                          .tag("transport", k.transport.name())
+                                                          .tag("action", k.action)
+                                                          .tag("outcome", k.error ? "error" : "success")
+                                                          .serviceLevelObjectives(SERVICE_LEVEL_OBJECTIVES)
+                                                          .register(registry));
+        }
+        return timer;
+    }
+
+    // -------------------------------------------------------------------------
+    // Class declarations
+    // -------------------------------------------------------------------------
+
+    /**
+     * The metrics of the calls that arrive with one OCPP version and transport
+     */
+    @RequiredArgsConstructor
+    public final class CallMetrics {
+        private final OcppVersion version;
+        private final OcppTransport transport;
+
+        /**
+         * @return the start time to pass to {@link #finished}
+         */
+        public long started() {
+            inFlight.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        /**
+         * For a call that was reported as started before
+         */
+        public void finished(long startNanos, String action, boolean error) {
+            inFlight.decrementAndGet();
+            record(startNanos, action, error);
+        }
+
+        /**
+         * For a call that was rejected before processing started, e.g. because it could not be parsed
+         */
+        public void record(long startNanos, String action, boolean error) {
+            getTimer(version, transport, action, error).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class TimerKey {
+        private final OcppVersion version;
+        private final OcppTransport transport;
+        private final String action;
+        private final boolean error;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.metrics;
+
+import de.rwth.idsg.steve.integration.MqttPublisherStats;
+import de.rwth.idsg.steve.integration.MqttService;
+import de.rwth.idsg.steve.integration.StationEventLog;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.OrderedCallExecutor;
+import de.rwth.idsg.steve.ocpp.event.OcppEventBus;
+import de.rwth.idsg.steve.ocpp.soap.SoapStationStateCache;
+import de.rwth.idsg.steve.ocpp.ws.ConnectedStationIndex;
+import de.rwth.idsg.steve.ocpp.ws.FutureResponseContextStore;
+import de.rwth.idsg.steve.ocpp.ws.StationFlapDetector;
+import de.rwth.idsg.steve.ocpp.ws.traffic.MessageHistory;
+import de.rwth.idsg.steve.ocpp.ws.traffic.TrafficLog;
+import de.rwth.idsg.steve.repository.TaskStore;
+import de.rwth.idsg.steve.service.NotificationDigest;
+import de.rwth.idsg.steve.service.TransactionEventService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmThreadMetrics;
+import io.micrometer.core.instrument.binder.system.ProcessorMetrics;
+import io.micrometer.core.instrument.binder.system.UptimeMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Gauges for the state that is kept in memory: connected stations, pending calls, tasks, the shared executor, the
+ * event bus, the OCPP-J traffic log and message history, and the MQTT outbox. They are only read when the registry is
+ * scraped.
+ */
+@Component
+public class SteveMeterBinder {
+
+    @Autowired private MeterRegistry registry;
+    @Autowired private ConnectedStationIndex connectedStationIndex;
+    @Autowired private FutureResponseContextStore futureResponseContextStore;
+    @Autowired private TaskStore taskStore;
+    @Autowired private ScheduledExecutorService executorService;
+    @Autowired private MqttService mqttService;
+    @Autowired private SoapStationStateCache soapStationStateCache;
+    @Autowired private OrderedCallExecutor orderedCallExecutor;
+    @Autowired private OcppEventBus eventBus;
+    @Autowired private StationEventLog stationEventLog;
+    @Autowired private TransactionEventService transactionEventService;
+    @Autowired private NotificationDigest notificationDigest;
+    @Autowired private StationFlapDetector flapDetector;
+
+    private JvmGcMetrics jvmGcMetrics;
+
+    @PostConstruct
+    public void init() {
+        for (OcppVersion version : OcppVersion.values()) {
+            Gauge.builder("steve.ocpp.ws.stations", connectedStationIndex, index -> index.getNumberOfChargeBoxes(version))
+                 .description("Stations that are connected via WebSocket")
+                 .tag("version", version.getValue())
+                 .register(registry);
+        }
+
+        Gauge.builder("steve.ocpp.ws.calls.pending", futureResponseContextStore, FutureResponseContextStore::getSize)
+             .description("Calls to stations that are waiting for their response")
+             .register(registry);
+
+        Gauge.builder("steve.tasks", taskStore, TaskStore::getSize)
+             .description("Tasks in the task store, finished or not")
+             .register(registry);
+
+        if (executorService instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor executor = (ThreadPoolExecutor) executorService;
+            Gauge.builder("steve.executor.queued", executor, e -> e.getQueue().size())
+                 .description("Tasks in the queue of the shared executor, including scheduled ones")
+                 .register(registry);
+            Gauge.builder("steve.executor.active", executor, ThreadPoolExecutor::getActiveCount)
+                 .description("Threads of the shared executor that are running a task")
+                 .register(registry);
+        }
+
+        Gauge.builder("steve.ocpp.ws.stations.flapping", flapDetector, StationFlapDetector::getSuppressedCount)
+             .description("Stations whose connects and disconnects are suppressed, because they are flapping")
+             .register(registry);
+        flapCounter("event", StationFlapDetector::getSuppressedEventCount);
+        flapCounter("write", StationFlapDetector::getSuppressedWriteCount);
+        flapCounter("handshake", StationFlapDetector::getThrottledCount);
+
+        Gauge.builder("steve.ocpp.calls.async.queued", orderedCallExecutor, OrderedCallExecutor::getQueueSize)
+             .description("Incoming calls that were answered, and are waiting for their async handler")
+             .register(registry);
+
+        Gauge.builder("steve.ocpp.events.pending", eventBus, OcppEventBus::getPendingCount)
+             .description("Events on the bus that the slowest listener did not consume yet")
+             .register(registry);
+        FunctionCounter.builder("steve.ocpp.events.published", eventBus, OcppEventBus::getPublishedCount)
+                       .description("Events that were published on the bus")
+                       .register(registry);
+        FunctionCounter.builder("steve.ocpp.events.blocked", eventBus, OcppEventBus::getBlockedCount)
+                       .description("Events whose publishing had to wait, because the ring of the bus was full")
+                       .register(registry);
+
+        Gauge.builder("steve.api.events.subscribers", stationEventLog, StationEventLog::getSubscriptionCount)
+             .description("API clients that are waiting for station events, by long-polling or streaming")
+             .register(registry);
+
+        Gauge.builder("steve.ocpp.traffic.log.queued", TrafficLog.INSTANCE, TrafficLog::getQueueSize)
+             .description("OCPP-J messages that are waiting to be logged")
+             .register(registry);
+        FunctionCounter.builder("steve.ocpp.traffic.log.dropped", TrafficLog.INSTANCE, TrafficLog::getDroppedCount)
+                       .description("OCPP-J messages that were not logged because the queue of the logger was full")
+                       .register(registry);
+        Gauge.builder("steve.ocpp.message.history.allocated", MessageHistory.INSTANCE, MessageHistory::getAllocatedBytes)
+             .description("Off-heap memory of the message histories of the stations")
+             .baseUnit("bytes")
+             .register(registry);
+
+        bindEndpointAddressUpdates();
+        bindTransactionEvents();
+        bindNotifications();
+        bindMqtt();
+
+        new JvmMemoryMetrics().bindTo(registry);
+        new JvmThreadMetrics().bindTo(registry);
+        new ProcessorMetrics().bindTo(registry);
+        new UptimeMetrics().bindTo(registry);
+        jvmGcMetrics = new JvmGcMetrics();
+        jvmGcMetrics.bindTo(registry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (jvmGcMetrics != null) {
+            jvmGcMetrics.close();
+        }
+    }
+
+    private void flapCounter(String kind, ToDoubleFunction<StationFlapDetector> value) {
+        FunctionCounter.builder("steve.ocpp.ws.flapping.suppressed", flapDetector, value)
+                       .description("Connect/disconnect events, protocol writes and handshakes of flapping stations that were suppressed")
+                       .tag("kind", kind)
+                       .register(registry);
+    }
+
+    private void bindEndpointAddressUpdates() {
+        endpointAddressCounter("written", SoapStationStateCache::getWrittenCount);
+        endpointAddressCounter("skipped", SoapStationStateCache::getSkippedCount);
+        endpointAddressCounter("coalesced", SoapStationStateCache::getCoalescedCount);
+    }
+
+    private void endpointAddressCounter(String result, ToDoubleFunction<SoapStationStateCache> value) {
+        FunctionCounter.builder("steve.ocpp.soap.endpoint.updates", soapStationStateCache, value)
+                       .description("Endpoint address updates of SOAP stations, by whether they were written to DB")
+                       .tag("result", result)
+                       .register(registry);
+    }
+
+    private void bindTransactionEvents() {
+        transactionEventCounter("handled", TransactionEventService::getHandledCount);
+        transactionEventCounter("retried", TransactionEventService::getRetriedCount);
+        transactionEventCounter("failed", TransactionEventService::getFailedCount);
+    }
+
+    private void transactionEventCounter(String result, ToDoubleFunction<TransactionEventService> value) {
+        FunctionCounter.builder("steve.ocpp.transaction.events", transactionEventService, value)
+                       .description("Deferred side effects of StartTransaction and StopTransaction, by outcome")
+                       .tag("result", result)
+                       .register(registry);
+    }
+
+    private void bindNotifications() {
+        FunctionCounter.builder("steve.notifications", notificationDigest, NotificationDigest::getNotificationCount)
+                       .description("Notifications that were collected for a mail")
+                       .register(registry);
+        FunctionCounter.builder("steve.notifications.cancelled", notificationDigest, NotificationDigest::getCancelledCount)
+                       .description("Connect and disconnect notifications that cancelled each other out")
+                       .register(registry);
+        notificationMailCounter("sent", NotificationDigest::getSentCount);
+        notificationMailCounter("failed", NotificationDigest::getFailedCount);
+    }
+
+    private void notificationMailCounter(String result, ToDoubleFunction<NotificationDigest> value) {
+        FunctionCounter.builder("steve.notifications.mails", notificationDigest, value)
+                       .description("Notification mails, single or digest, by outcome")
+                       .tag("result", result)
+                       .register(registry);
+    }
+
+    private void bindMqtt() {
+        mqttGauge("steve.mqtt.outbox.queued", "Messages that are waiting to be published", MqttPublisherStats::getQueued);
+        mqttGauge("steve.mqtt.connected", "1, if connected to the broker", s -> s.isConnected() ? 1 : 0);
+        mqttGauge("steve.mqtt.publish.lag.last", "Time between enqueueing and publishing the last message, in ms", MqttPublisherStats::getLastLagMillis);
+        mqttGauge("steve.mqtt.publish.lag.max", "Largest time between enqueueing and publishing a message, in ms", MqttPublisherStats::getMaxLagMillis);
+
+        mqttCounter("steve.mqtt.published", "Messages that were published", MqttPublisherStats::getPublished);
+        mqttCounter("steve.mqtt.dropped", "Messages that were dropped because the outbox was full", MqttPublisherStats::getDropped);
+        mqttCounter("steve.mqtt.failed", "Publish attempts that failed", MqttPublisherStats::getFailed);
+    }
+
+    private void mqttGauge(String name, String description, ToDoubleFunction<MqttPublisherStats> value) {
+        Gauge.builder(name, mqttService, service -> value.applyAsDouble(service.getPublisherStats()))
+             .description(description)
+             .register(registry);
+    }
+
+    private void mqttCounter(String name, String description, ToDoubleFunction<MqttPublisherStats> value) {
+        FunctionCounter.builder(name, mqttService, service -> value.applyAsDouble(service.getPublisherStats()))
+                       .description(description)
+                       .register(registry);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp;
+
+import com.google.common.collect.ImmutableMap;
+import de.rwth.idsg.ocpp.jaxb.RequestType;
+import de.rwth.idsg.ocpp.jaxb.ResponseType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.Supplier;
+
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
+/**
+ * The handlers for the incoming calls of one OCPP version, keyed by request class. It is built once at startup and
+ * used for both transports: by the WebSocket pipeline, and by the SOAP services through
+ * {@link de.rwth.idsg.steve.ocpp.soap.CallHandlerInvoker}.
+ *
+ * A handler is either sync (the response depends on its result, so it must complete before the reply) or async-safe.
+ * Only handlers whose response does not depend on their outcome may be declared async-safe. If the action is also
+ * enabled in the configuration, the reply is built right away and the handler runs afterwards on the
+ * {@link OrderedCallExecutor}, so heavy handlers like MeterValues do not hold up the station. If such a handler fails,
+ * the error is logged, but the station has already got its reply.
+ *
+ * Sync handlers still see the calls of a station in the order of arrival: if async calls of the station are pending,
+ * a sync handler waits for them before it runs.
+ */
+@Slf4j
+public final class CallHandlerRegistry {
+
+    @FunctionalInterface
+    public interface Handler<REQ extends RequestType, RES extends ResponseType> {
+        RES handle(REQ request, String chargeBoxId);
+    }
+
+    @RequiredArgsConstructor
+    private static final class Entry<REQ extends RequestType, RES extends ResponseType> {
+        private final Handler<REQ, RES> handler;
+
+        // null for sync handlers
+        private final Supplier<RES> immediateResponse;
+    }
+
+    private static final String REQUEST_CLASS_SUFFIX = "Request";
+
+    private final ImmutableMap<Class<? extends RequestType>, Entry<?, ?>> entries;
+    private final OrderedCallExecutor asyncExecutor;
+
+    private CallHandlerRegistry(Builder builder) {
+        this.entries = builder.entries.build();
+        this.asyncExecutor = builder.asyncExecutor;
+    }
+
+    public static Builder builder(OrderedCallExecutor asyncExecutor) {
+        return new Builder(asyncExecutor);
+    }
+
+    public ResponseType handle(RequestType request, String chargeBoxId) {
+        Entry<RequestType, ResponseType> entry = find(request);
+
+        if (entry.immediateResponse == null) {
+            return asyncExecutor.executeAfterPending(chargeBoxId, () -> entry.handler.handle(request, chargeBoxId));
+        }
+
+        asyncExecutor.execute(chargeBoxId, () -> {
+            try {
+                entry.handler.handle(request, chargeBoxId);
+            } catch (Exception e) {
+                log.error("Async handling of {} from '{}' failed", request.getClass().getSimpleName(), chargeBoxId, e);
+            }
+        });
+        return entry.immediateResponse.get();
+    }
+
+    public boolean isAsync(Class<? extends RequestType> requestClass) {
+        Entry<?, ?> entry = entries.get(requestClass);
+        return entry != null && entry.immediateResponse != null;
+    }
+
+    private static String getAction(Class<? extends RequestType> requestClass) {
+        String name = requestClass.getSimpleName();
+        return name.substring(0, name.length() - REQUEST_CLASS_SUFFIX.length());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<RequestType, ResponseType> find(RequestType request) {
+        Entry<?, ?> entry = entries.get(request.getClass());
+        if (entry == null) {
+            throw new IllegalArgumentException("Unexpected RequestType, dispatch method not found");
+        }
+        return (Entry<RequestType, ResponseType>) entry;
+    }
+
+    // -------------------------------------------------------------------------
+    // Builder
+    // -------------------------------------------------------------------------
+
+    public static final class Builder {
+
+        private final ImmutableMap.Builder<Class<? extends RequestType>, Entry<?, ?>> entries = ImmutableMap.builder();
+        private final OrderedCallExecutor asyncExecutor;
+
+        private Builder(OrderedCallExecutor asyncExecutor) {
+            this.asyncExecutor = asyncExecutor;
+        }
+
+        public <REQ extends RequestType, RES extends ResponseType> Builder sync(Class<REQ> requestClass,
+                                                                               Handler<REQ, RES> handler) {
+            entries.put(requestClass, new Entry<>(handler, null));
+            return this;
+        }
+
+        /**
+         * @param immediateResponse the reply, which is sent before the handler runs. Only used if the action is
+         *                          enabled in the configuration, otherwise the handler is sync.
+         */
+        public <REQ extends RequestType, RES extends ResponseType> Builder async(Class<REQ> requestClass,
+                                                                                Handler<REQ, RES> handler,
+                                                                                Supplier<RES> immediateResponse) {
+            if (CONFIG.getOcpp().getAsyncActions().contains(getAction(requestClass))) {
+                entries.put(requestClass, new Entry<>(handler, immediateResponse));
+            } else {
+                entries.put(requestClass, new Entry<>(handler, null));
+            }
+            return this;
+        }
+
+        public CallHandlerRegistry build() {
+            return new CallHandlerRegistry(this);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.rwth.idsg.steve.SteveException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs the handlers that {@link CallHandlerRegistry} declares as async. The calls of a station always go to the same
+ * single-threaded stripe, so that they are processed in the order in which they arrived. If the queue of a stripe is
+ * full, the caller waits for space: the calls are then effectively processed synchronously again, instead of being
+ * dropped or reordered.
+ *
+ * A sync call of a station, which arrives while async calls of the same station are still pending, is queued behind
+ * them and the caller waits for its result (see {@link #executeAfterPending(String, Supplier)}). This way e.g. a
+ * StopTransaction is never stored before the MeterValues that the station sent before it.
+ */
+@Slf4j
+@Component
+public class OrderedCallExecutor {
+
+    private static final int STRIPES = 4;
+    private static final int QUEUE_CAPACITY_PER_STRIPE = 10_000;
+
+    private final ThreadPoolExecutor[] stripes = new ThreadPoolExecutor[STRIPES];
+
+    // chargeBoxId -> number of its calls that are queued or running. Stations without such calls have no entry.
+    private final ConcurrentHashMap<String, Integer> pendingCalls = new ConcurrentHashMap<>();
+
+    public OrderedCallExecutor() {
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("SteVe-OcppAsync-%d")
+                                                                .build();
+
+        RejectedExecutionHandler waitForSpace = (runnable, executor) -> {
+            if (executor.isShutdown()) {
+                log.warn("Dropping an async OCPP call, since the executor is shut down");
+                ((PendingCall) runnable).drop();
+                return;
+            }
+            try {
+                executor.getQueue().put(runnable);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while waiting to queue an async OCPP call, it is dropped");
+                ((PendingCall) runnable).drop();
+            }
+        };
+
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_CAPACITY_PER_STRIPE), threadFactory, waitForSpace);
+        }
+    }
+
+    public void execute(String chargeBoxId, Runnable runnable) {
+        pendingCalls.merge(chargeBoxId, 1, Integer::sum);
+        stripes[Math.floorMod(chargeBoxId.hashCode(), STRIPES)].execute(new PendingCall(chargeBoxId, runnable));
+    }
+
+    /**
+     * Runs the call on the calling thread, if the station has no pending calls. Otherwise, it is queued behind them and
+     * the caller waits until it is processed. Exceptions of the call are rethrown as they are.
+     */
+    public <T> T executeAfterPending(String chargeBoxId, Supplier<T> call) {
+        if (!pendingCalls.containsKey(chargeBoxId)) {
+            return call.get();
+        }
+
+        FutureTask<T> task = new FutureTask<>(call::get);
+        execute(chargeBoxId, task);
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SteveException("Call of '%s' failed", chargeBoxId, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SteveException("Interrupted while waiting for the pending calls of '%s'", chargeBoxId, e);
+        }
+    }
+
+    public int getQueueSize() {
+        int size = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            size += stripe.getQueue().size();
+        }
+        return size;
+    }
+
+    private void done(String chargeBoxId) {
+        pendingCalls.computeIfPresent(chargeBoxId, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    @RequiredArgsConstructor
+    private final class PendingCall implements Runnable {
+        private final String chargeBoxId;
+        private final Runnable runnable;
+
+        @Override
+        public void run() {
+            try {
+                runnable.run();
+            } finally {
+                done(chargeBoxId);
+            }
+        }
+
+        /**
+         * Not queued at all. A sync caller waiting for the call must not wait forever.
+         */
+        private void drop() {
+            done(chargeBoxId);
+            if (runnable instanceof Future) {
+                ((Future<?>) runnable).cancel(false);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor stripe : stripes) {
+                if (!stripe.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.warn("Killing non-finished async OCPP calls");
+                    stripe.shutdownNow().forEach(runnable -> ((PendingCall) runnable).drop());
+                }
+            }
+        } catch (InterruptedException e) {
+            log.error("Termination interrupted", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.event;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process bus for the events of the OCPP services, so that side effects do not add latency to the OCPP reply.
+ *
+ * The events go through a ring buffer (LMAX Disruptor), that every {@link OcppEventListener} consumes on its own
+ * thread at its own pace. A slow listener only delays itself, until it falls behind by the whole ring: then publishing
+ * blocks the OCPP threads, since dropping events silently would be worse. Events are not persisted, the side effects
+ * that must survive a restart go through the outbox of {@link de.rwth.idsg.steve.service.TransactionEventService}.
+ */
+@Slf4j
+@Component
+public class OcppEventBus {
+
+    private static final int RING_SIZE = 1 << 14;
+    private static final int SHUTDOWN_TIMEOUT_IN_SECONDS = 10;
+
+    private static final EventTranslatorOneArg<EventHolder, OcppEvent> TRANSLATOR =
+            (holder, sequence, event) -> holder.event = event;
+
+    @Autowired private List<OcppEventListener> listeners;
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder blockedCount = new LongAdder();
+
+    private Disruptor<EventHolder> disruptor;
+    private RingBuffer<EventHolder> ringBuffer;
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void init() {
+        disruptor = new Disruptor<>(
+                EventHolder::new,
+                RING_SIZE,
+                new ThreadFactoryBuilder().setNameFormat("SteVe-EventBus-%d").setDaemon(true).build(),
+                ProducerType.MULTI,
+                new BlockingWaitStrategy()
+        );
+        disruptor.setDefaultExceptionHandler(new LoggingExceptionHandler());
+
+        EventHandler<EventHolder>[] handlers = listeners.stream()
+                                                        .map(ListenerHandler::new)
+                                                        .toArray(EventHandler[]::new);
+
+        // release the event after all listeners are done with it, so that the ring does not keep it alive
+        EventHandler<EventHolder> clearing = (holder, sequence, endOfBatch) -> holder.event = null;
+        if (handlers.length == 0) {
+            disruptor.handleEventsWith(clearing);
+        } else {
+            disruptor.handleEventsWith(handlers).then(clearing);
+        }
+
+        ringBuffer = disruptor.start();
+        log.info("Started the OCPP event bus with {} listeners", handlers.length);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        try {
+            disruptor.shutdown(SHUTDOWN_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            log.warn("The OCPP event bus did not drain in time, {} events are dropped", getPendingCount());
+            disruptor.halt();
+        }
+    }
+
+    public void publish(OcppEvent event) {
+        publishedCount.increment();
+
+        if (!ringBuffer.tryPublishEvent(TRANSLATOR, event)) {
+            blockedCount.increment();
+            ringBuffer.publishEvent(TRANSLATOR, event);
+        }
+    }
+
+    /**
+     * @return the events that the slowest listener did not consume yet
+     */
+    public long getPendingCount() {
+        return ringBuffer.getBufferSize() - ringBuffer.remainingCapacity();
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * @return the events whose publishing had to wait, because the ring was full
+     */
+    public long getBlockedCount() {
+        return blockedCount.sum();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * The preallocated slot of the ring
+     */
+    private static final class EventHolder {
+        private OcppEvent event;
+    }
+
+    private static final class ListenerHandler implements EventHandler<EventHolder> {
+
+        private final OcppEventListener listener;
+
+        private ListenerHandler(OcppEventListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onEvent(EventHolder holder, long sequence, boolean endOfBatch) throws Exception {
+            listener.onEvent(holder.event, endOfBatch);
+        }
+
+        @Override
+        public String toString() {
+            return listener.getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * Unlike the default of the Disruptor, a failing listener does not stop consuming
+     */
+    private static final class LoggingExceptionHandler implements ExceptionHandler<EventHolder> {
+
+        @Override
+        public void handleEventException(Throwable ex, long sequence, EventHolder holder) {
+            OcppEvent event = holder.event;
+            log.error("[chargeBoxId={}] Failed to handle {}", event.getChargeBoxId(), event.getClass().getSimpleName(), ex);
+        }
+
+        @Override
+        public void handleOnStartException(Throwable ex) {
+            log.error("Failed to start a listener of the OCPP event bus", ex);
+        }
+
+        @Override
+        public void handleOnShutdownException(Throwable ex) {
+            log.error("Failed to stop a listener of the OCPP event bus", ex);
+        }
+    }
+}
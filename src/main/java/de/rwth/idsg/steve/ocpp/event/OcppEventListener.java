@@ -0,0 +1,33 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.event;
+
+/**
+ * Spring beans that implement this are subscribed to the {@link OcppEventBus} at startup. Every listener has its own
+ * thread and sees all events in the order of publishing, so it does not need to be thread-safe with regard to
+ * itself.
+ */
+public interface OcppEventListener {
+
+    /**
+     * @param endOfBatch true, if no more events are available right now. Listeners that write in batches can flush
+     *                   at this point.
+     */
+    void onEvent(OcppEvent event, boolean endOfBatch) throws Exception;
+}
@@ -0,0 +1,41 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.event;
+
+import lombok.Getter;
+import ocpp.cs._2015._10.ChargePointErrorCode;
+import ocpp.cs._2015._10.ChargePointStatus;
+
+/**
+ * A station sent a StatusNotification. Connector id 0 is the station itself.
+ */
+@Getter
+public final class StatusChanged extends OcppEvent {
+
+    private final int connectorId;
+    private final ChargePointStatus status;
+    private final ChargePointErrorCode errorCode;
+
+    public StatusChanged(String chargeBoxId, int connectorId, ChargePointStatus status, ChargePointErrorCode errorCode) {
+        super(chargeBoxId);
+        this.connectorId = connectorId;
+        this.status = status;
+        this.errorCode = errorCode;
+    }
+}
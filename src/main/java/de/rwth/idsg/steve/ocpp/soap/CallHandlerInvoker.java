@@ -0,0 +1,69 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.soap;
+
+import de.rwth.idsg.ocpp.jaxb.RequestType;
+import de.rwth.idsg.steve.ocpp.CallHandlerRegistry;
+import lombok.RequiredArgsConstructor;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.MessageContentsList;
+import org.apache.cxf.service.invoker.Invoker;
+
+import java.util.List;
+
+/**
+ * Lets CXF call the handlers of the {@link CallHandlerRegistry} instead of the methods of the service bean, so that
+ * SOAP and WebSocket calls are handled the same way. The parameters of all OCPP operations are the request and the
+ * chargeBoxIdentity header. They are picked by type, since their order is up to the bindings of the service.
+ */
+@RequiredArgsConstructor
+public class CallHandlerInvoker implements Invoker {
+
+    private final CallHandlerRegistry registry;
+
+    @Override
+    public Object invoke(Exchange exchange, Object o) {
+        List<?> params = (List<?>) o;
+        RequestType request = find(params, RequestType.class);
+        String chargeBoxId = find(params, String.class);
+
+        if (request == null || chargeBoxId == null) {
+            throw new Fault(new IllegalArgumentException("Expected the request and the chargeBoxIdentity, but got "
+                    + params));
+        }
+
+        try {
+            return new MessageContentsList(registry.handle(request, chargeBoxId));
+        } catch (Fault e) {
+            throw e;
+        } catch (Exception e) {
+            throw new Fault(e);
+        }
+    }
+
+    private static <T> T find(List<?> params, Class<T> type) {
+        for (Object param : params) {
+            if (type.isInstance(param)) {
+                return type.cast(param);
+            }
+        }
+        return null;
+    }
+}
@@ -18,8 +18,10 @@
  */
 package de.rwth.idsg.steve.ocpp.soap;
 
+import de.rwth.idsg.steve.ocpp.CallHandlerRegistry;
 import de.rwth.idsg.steve.ocpp.OcppProtocol;
 import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.OrderedCallExecutor;
 import de.rwth.idsg.steve.ocpp.converter.Convert;
 import de.rwth.idsg.steve.ocpp.converter.Server12to15Impl;
 import de.rwth.idsg.steve.ocpp.converter.Server15to16Impl;
@@ -72,6 +74,25 @@ import java.util.concurrent.Future;
 public class CentralSystemService12_SoapServer implements CentralSystemService {
 
     @Autowired private CentralSystemService16_Service service;
+    @Autowired private OrderedCallExecutor orderedCallExecutor;
+
+    /**
+     * The handlers for the incoming calls, for SOAP (see {@link CallHandlerInvoker}) and for JSON. MeterValues is
+     * handled async, since its response is always empty.
+     */
+    public CallHandlerRegistry createHandlerRegistry(OcppProtocol protocol) {
+        return CallHandlerRegistry.builder(orderedCallExecutor)
+                                  .sync(BootNotificationRequest.class, (req, id) -> bootNotificationWithTransport(req, id, protocol))
+                                  .sync(FirmwareStatusNotificationRequest.class, this::firmwareStatusNotification)
+                                  .sync(StatusNotificationRequest.class, this::statusNotification)
+                                  .async(MeterValuesRequest.class, this::meterValues, MeterValuesResponse::new)
+                                  .sync(DiagnosticsStatusNotificationRequest.class, this::diagnosticsStatusNotification)
+                                  .sync(StartTransactionRequest.class, this::startTransaction)
+                                  .sync(StopTransactionRequest.class, this::stopTransaction)
+                                  .sync(HeartbeatRequest.class, this::heartbeat)
+                                  .sync(AuthorizeRequest.class, this::authorize)
+                                  .build();
+    }
 
     public BootNotificationResponse bootNotificationWithTransport(BootNotificationRequest parameters,
                                                                   String chargeBoxIdentity, OcppProtocol protocol) {
@@ -18,8 +18,10 @@
  */
 package de.rwth.idsg.steve.ocpp.soap;
 
+import de.rwth.idsg.steve.ocpp.CallHandlerRegistry;
 import de.rwth.idsg.steve.ocpp.OcppProtocol;
 import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.OrderedCallExecutor;
 import de.rwth.idsg.steve.service.CentralSystemService16_Service;
 import lombok.extern.slf4j.Slf4j;
 import ocpp.cs._2015._10.AuthorizeRequest;
@@ -70,6 +72,26 @@ import java.util.concurrent.Future;
 public class CentralSystemService16_SoapServer implements CentralSystemService {
 
     @Autowired private CentralSystemService16_Service service;
+    @Autowired private OrderedCallExecutor orderedCallExecutor;
+
+    /**
+     * The handlers for the incoming calls, for SOAP (see {@link CallHandlerInvoker}) and for JSON. MeterValues is
+     * handled async, since its response is always empty.
+     */
+    public CallHandlerRegistry createHandlerRegistry(OcppProtocol protocol) {
+        return CallHandlerRegistry.builder(orderedCallExecutor)
+                                  .sync(BootNotificationRequest.class, (req, id) -> bootNotificationWithTransport(req, id, protocol))
+                                  .sync(FirmwareStatusNotificationRequest.class, this::firmwareStatusNotification)
+                                  .sync(StatusNotificationRequest.class, this::statusNotification)
+                                  .async(MeterValuesRequest.class, this::meterValues, MeterValuesResponse::new)
+                                  .sync(DiagnosticsStatusNotificationRequest.class, this::diagnosticsStatusNotification)
+                                  .sync(StartTransactionRequest.class, this::startTransaction)
+                                  .sync(StopTransactionRequest.class, this::stopTransaction)
+                                  .sync(HeartbeatRequest.class, this::heartbeat)
+                                  .sync(AuthorizeRequest.class, this::authorize)
+                                  .sync(DataTransferRequest.class, this::dataTransfer)
+                                  .build();
+    }
 
     public BootNotificationResponse bootNotificationWithTransport(BootNotificationRequest parameters,
                                                                   String chargeBoxIdentity, OcppProtocol protocol) {
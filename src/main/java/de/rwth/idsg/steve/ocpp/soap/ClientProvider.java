@@ -19,13 +19,16 @@
 package de.rwth.idsg.steve.ocpp.soap;
 
 import com.oneandone.compositejks.SslContextBuilder;
+import org.apache.cxf.Bus;
 import org.apache.cxf.configuration.jsse.TLSClientParameters;
 import org.apache.cxf.endpoint.Client;
 import org.apache.cxf.frontend.ClientProxy;
 import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
 import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
 import org.apache.cxf.ws.addressing.WSAddressingFeature;
 import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
@@ -36,12 +39,17 @@ import javax.xml.ws.soap.SOAPBinding;
 import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
 
 /**
+ * The proxies are created on the shared bus, so that their async calls go through the async HTTP conduit with the
+ * connection pool that is configured in {@link de.rwth.idsg.steve.config.OcppConfiguration}.
+ *
  * @author Sevket Goekay <sevketgokay@gmail.com>
  * @since 21.10.2015
  */
 @Component
 public class ClientProvider {
 
+    @Autowired private Bus bus;
+
     @Nullable private TLSClientParameters tlsClientParams;
 
     @PostConstruct
@@ -59,17 +67,20 @@ public class ClientProvider {
         bean.setServiceClass(clazz);
         T clientObject = clazz.cast(bean.create());
 
+        Client client = ClientProxy.getClient(clientObject);
+        HTTPConduit http = (HTTPConduit) client.getConduit();
+        http.setClient(createPolicy());
+
         if (tlsClientParams != null) {
-            Client client = ClientProxy.getClient(clientObject);
-            HTTPConduit http = (HTTPConduit) client.getConduit();
             http.setTlsClientParameters(tlsClientParams);
         }
 
         return clientObject;
     }
 
-    private static JaxWsProxyFactoryBean getBean(String endpointAddress) {
+    private JaxWsProxyFactoryBean getBean(String endpointAddress) {
         JaxWsProxyFactoryBean f = new JaxWsProxyFactoryBean();
+        f.setBus(bus);
         f.setBindingId(SOAPBinding.SOAP12HTTP_BINDING);
         f.getFeatures().add(LoggingFeatureProxy.INSTANCE.get());
         f.getFeatures().add(new WSAddressingFeature());
@@ -77,6 +88,13 @@ public class ClientProvider {
         return f;
     }
 
+    private static HTTPClientPolicy createPolicy() {
+        HTTPClientPolicy policy = new HTTPClientPolicy();
+        policy.setConnectionTimeout(CONFIG.getSoapClient().getConnectTimeoutInMillis());
+        policy.setReceiveTimeout(CONFIG.getSoapClient().getReceiveTimeoutInMillis());
+        return policy;
+    }
+
     private static boolean shouldInitSSL() {
         return CONFIG.getJetty().getKeyStorePath() != null && CONFIG.getJetty().getKeyStorePassword() != null;
     }
@@ -21,12 +21,23 @@ package de.rwth.idsg.steve.ocpp.soap;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 
+import javax.xml.ws.AsyncHandler;
+import javax.xml.ws.Response;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
 /**
  * http://cxf.apache.org/faq.html#FAQ-AreJAX-WSclientproxiesthreadsafe?
  *
+ * The proxies are reused per endpoint address, and every proxy has its own {@link EndpointCircuitBreaker}: the async
+ * calls go through it, so that calls to an unreachable station fail immediately instead of holding a connection
+ * until the timeout.
+ *
  * @author Sevket Goekay <sevketgokay@gmail.com>
  * @since 27.08.2018
  */
@@ -38,16 +49,70 @@ public class ClientProviderWithCache<T> {
     public ClientProviderWithCache(ClientProvider delegate) {
         this.delegate = delegate;
         this.cache = CacheBuilder.newBuilder()
-                                 .maximumSize(500)
+                                 .maximumSize(CONFIG.getSoapClient().getProxyCacheSize())
                                  .expireAfterAccess(1, TimeUnit.HOURS)
                                  .build();
     }
 
     public T createClient(Class<T> clazz, String endpointAddress) {
         try {
-            return cache.get(endpointAddress, () -> delegate.createClient(clazz, endpointAddress));
+            return cache.get(endpointAddress, () -> withCircuitBreaker(clazz, endpointAddress, delegate.createClient(clazz, endpointAddress)));
         } catch (ExecutionException e) {
             throw new RuntimeException(e);
         }
     }
+
+    private static <T> T withCircuitBreaker(Class<T> clazz, String endpointAddress, T client) {
+        EndpointCircuitBreaker breaker = new EndpointCircuitBreaker(
+                endpointAddress,
+                CONFIG.getSoapClient().getBreakerFailureThreshold(),
+                TimeUnit.SECONDS.toMillis(CONFIG.getSoapClient().getBreakerOpenInSeconds())
+        );
+
+        Object proxy = Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, (p, method, args) -> {
+            int handlerIndex = findAsyncHandler(method);
+            if (handlerIndex < 0) {
+                return invoke(client, method, args);
+            }
+
+            @SuppressWarnings("unchecked")
+            AsyncHandler<Object> handler = (AsyncHandler<Object>) args[handlerIndex];
+            if (!breaker.tryAcquire(System.currentTimeMillis())) {
+                Response<Object> rejected = breaker.rejected();
+                handler.handleResponse(rejected);
+                return rejected;
+            }
+
+            args[handlerIndex] = breaker.observe(handler);
+            try {
+                return invoke(client, method, args);
+            } catch (Throwable t) {
+                // the call did not even start
+                breaker.onFailure(System.currentTimeMillis());
+                throw t;
+            }
+        });
+        return clazz.cast(proxy);
+    }
+
+    /**
+     * @return the index of the AsyncHandler parameter, or -1 for all other methods
+     */
+    private static int findAsyncHandler(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = types.length - 1; i >= 0; i--) {
+            if (types[i] == AsyncHandler.class) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Object invoke(Object client, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(client, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
 }
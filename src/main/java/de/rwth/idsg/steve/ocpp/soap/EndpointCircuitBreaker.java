@@ -0,0 +1,183 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.soap;
+
+import de.rwth.idsg.steve.SteveException;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.ws.AsyncHandler;
+import javax.xml.ws.Response;
+import javax.xml.ws.soap.SOAPFaultException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker for the calls to one SOAP endpoint. After a number of consecutive failures (the station could not
+ * be reached, or did not answer in time), the breaker opens and calls fail immediately, instead of waiting for the
+ * connect or receive timeout of every single call. When the open time is over, one call is let through as a probe:
+ * if it succeeds, the breaker closes again, otherwise it stays open for another round.
+ *
+ * A SOAP fault counts as success, since the station did answer.
+ */
+@Slf4j
+class EndpointCircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String endpointAddress;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+
+    EndpointCircuitBreaker(String endpointAddress, int failureThreshold, long openMillis) {
+        this.endpointAddress = endpointAddress;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @return true, if the call may be made. The caller must report its outcome with {@link #onSuccess()} or
+     * {@link #onFailure(long)}.
+     */
+    synchronized boolean tryAcquire(long now) {
+        switch (state) {
+            case CLOSED:
+                return true;
+
+            case OPEN:
+                if (now < openUntil) {
+                    return false;
+                }
+                // the probe
+                state = State.HALF_OPEN;
+                return true;
+
+            case HALF_OPEN:
+                // the probe is still running
+                return false;
+
+            default:
+                throw new IllegalStateException("Unknown state: " + state);
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Endpoint '{}' is reachable again", endpointAddress);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    synchronized void onFailure(long now) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state == State.CLOSED) {
+                log.warn("Endpoint '{}' failed {} times in a row, calls fail immediately for the next {} s",
+                        endpointAddress, consecutiveFailures, TimeUnit.MILLISECONDS.toSeconds(openMillis));
+            }
+            state = State.OPEN;
+            openUntil = now + openMillis;
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Reports the outcome of the call to this breaker, before the original handler gets the response
+     */
+    <T> AsyncHandler<T> observe(AsyncHandler<T> delegate) {
+        return res -> {
+            if (isFailure(res)) {
+                onFailure(System.currentTimeMillis());
+            } else {
+                onSuccess();
+            }
+            delegate.handleResponse(res);
+        };
+    }
+
+    /**
+     * The response for a call that was not made, because the breaker is open
+     */
+    <T> Response<T> rejected() {
+        return new RejectedResponse<>(new SteveException(
+                "Calls to endpoint '%s' are suspended after repeated failures", endpointAddress));
+    }
+
+    private static boolean isFailure(Response<?> res) {
+        try {
+            res.get();
+            return false;
+        } catch (ExecutionException e) {
+            return !(e.getCause() instanceof SOAPFaultException);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    private static class RejectedResponse<T> implements Response<T> {
+
+        private final ExecutionException exception;
+
+        private RejectedResponse(Exception cause) {
+            this.exception = new ExecutionException(cause);
+        }
+
+        @Override
+        public Map<String, Object> getContext() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return true;
+        }
+
+        @Override
+        public T get() throws ExecutionException {
+            throw exception;
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit) throws ExecutionException {
+            throw exception;
+        }
+    }
+}
@@ -21,7 +21,6 @@ package de.rwth.idsg.steve.ocpp.soap;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.cxf.Bus;
 import org.apache.cxf.binding.soap.SoapMessage;
-import org.apache.cxf.binding.soap.SoapVersion;
 import org.apache.cxf.endpoint.Server;
 import org.apache.cxf.endpoint.ServerRegistry;
 import org.apache.cxf.interceptor.StaxInInterceptor;
@@ -29,13 +28,7 @@ import org.apache.cxf.message.Message;
 import org.apache.cxf.phase.AbstractPhaseInterceptor;
 import org.apache.cxf.phase.Phase;
 import org.apache.cxf.service.model.EndpointInfo;
-import org.apache.cxf.staxutils.DepthXMLStreamReader;
-import org.apache.cxf.staxutils.StaxUtils;
 
-import javax.xml.stream.XMLStreamConstants;
-import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamReader;
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
@@ -59,31 +52,22 @@ public class MediatorInInterceptor extends AbstractPhaseInterceptor<SoapMessage>
     }
 
     public final void handleMessage(SoapMessage message) {
-        String schemaNamespace = "";
+        String schemaNamespace = null;
 
-        // Scan the incoming message for its schema namespace
+        // Scan the beginning of the incoming message for its schema namespace
         try {
-            // Create a buffered stream so that we get back the original stream after scanning
             InputStream is = message.getContent(InputStream.class);
-            BufferedInputStream bis = new BufferedInputStream(is);
-            bis.mark(bis.available());
-            message.setContent(InputStream.class, bis);
-
             String encoding = (String) message.get(Message.ENCODING);
-            XMLStreamReader reader = StaxUtils.createXMLStreamReader(bis, encoding);
-            DepthXMLStreamReader xmlReader = new DepthXMLStreamReader(reader);
-
-            if (xmlReader.nextTag() == XMLStreamConstants.START_ELEMENT) {
-                SoapVersion soapVersion = message.getVersion();
-                // Advance just past header
-                StaxUtils.toNextTag(xmlReader, soapVersion.getBody());
-                // Past body
-                xmlReader.nextTag();
+
+            SoapNamespaceSniffer.Result result = SoapNamespaceSniffer.sniff(is, encoding, message.getVersion().getBody());
+            message.setContent(InputStream.class, result.getReplay());
+            schemaNamespace = result.getNamespace();
+            if (schemaNamespace == null) {
+                log.warn("Could not find the schema namespace within the first {} bytes of the message",
+                        SoapNamespaceSniffer.MAX_PREFIX_SIZE);
             }
-            schemaNamespace = xmlReader.getName().getNamespaceURI();
-            bis.reset();
 
-        } catch (IOException | XMLStreamException ex) {
+        } catch (IOException ex) {
             log.error("Exception happened", ex);
         }
 
@@ -19,10 +19,7 @@
 package de.rwth.idsg.steve.ocpp.soap;
 
 import de.rwth.idsg.steve.ocpp.OcppProtocol;
-import de.rwth.idsg.steve.repository.OcppServerRepository;
 import de.rwth.idsg.steve.repository.impl.ChargePointRepositoryImpl;
-import de.rwth.idsg.steve.service.ChargePointHelperService;
-import lombok.extern.slf4j.Slf4j;
 import ocpp.cs._2015._10.RegistrationStatus;
 import org.apache.cxf.binding.soap.Soap12;
 import org.apache.cxf.binding.soap.SoapFault;
@@ -41,7 +38,6 @@ import org.springframework.stereotype.Component;
 
 import javax.xml.namespace.QName;
 import java.util.Optional;
-import java.util.concurrent.ScheduledExecutorService;
 
 import static org.apache.cxf.ws.addressing.JAXWSAConstants.ADDRESSING_PROPERTIES_INBOUND;
 
@@ -53,16 +49,15 @@ import static org.apache.cxf.ws.addressing.JAXWSAConstants.ADDRESSING_PROPERTIES
  * to send commands to the charging station, since the DB call to list the charge points will filter it out. See
  * {@link ChargePointRepositoryImpl#getChargePointSelect(OcppProtocol, java.util.List)}.
  *
+ * Both are looked up in {@link SoapStationStateCache}, which only goes to DB when something changed.
+ *
  * @author Sevket Goekay <sevketgokay@gmail.com>
  * @since 15.06.2015
  */
-@Slf4j
 @Component("MessageHeaderInterceptor")
 public class MessageHeaderInterceptor extends AbstractPhaseInterceptor<Message> {
 
-    @Autowired private OcppServerRepository ocppServerRepository;
-    @Autowired private ChargePointHelperService chargePointHelperService;
-    @Autowired private ScheduledExecutorService executorService;
+    @Autowired private SoapStationStateCache soapStationStateCache;
 
     private static final String BOOT_OPERATION_NAME = "BootNotification";
     private static final String CHARGEBOX_ID_HEADER = "ChargeBoxIdentity";
@@ -82,7 +77,7 @@ public class MessageHeaderInterceptor extends AbstractPhaseInterceptor<Message>
         QName opName = message.getExchange().getBindingOperationInfo().getOperationInfo().getName();
 
         if (!BOOT_OPERATION_NAME.equals(opName.getLocalPart())) {
-            Optional<RegistrationStatus> status = chargePointHelperService.getRegistrationStatus(chargeBoxId);
+            Optional<RegistrationStatus> status = soapStationStateCache.getRegistrationStatus(chargeBoxId);
             boolean allow = status.isPresent() && status.get() != RegistrationStatus.REJECTED;
             if (!allow) {
                 throw createAuthFault(opName);
@@ -93,16 +88,10 @@ public class MessageHeaderInterceptor extends AbstractPhaseInterceptor<Message>
         // 2. update endpoint
         // -------------------------------------------------------------------------
 
-        executorService.execute(() -> {
-            try {
-                String endpointAddress = getEndpointAddress(message);
-                if (endpointAddress != null) {
-                    ocppServerRepository.updateEndpointAddress(chargeBoxId, endpointAddress);
-                }
-            } catch (Exception e) {
-                log.error("Exception occurred", e);
-            }
-        });
+        String endpointAddress = getEndpointAddress(message);
+        if (endpointAddress != null) {
+            soapStationStateCache.updateEndpointAddress(chargeBoxId, endpointAddress);
+        }
     }
 
     private String getChargeBoxId(Message message) {
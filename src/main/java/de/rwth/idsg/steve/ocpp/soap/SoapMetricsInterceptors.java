@@ -0,0 +1,85 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.soap;
+
+import de.rwth.idsg.steve.metrics.OcppMetrics;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+import org.apache.cxf.service.model.BindingOperationInfo;
+
+/**
+ * Times the calls of SOAP stations, from receiving the request to sending the response or fault. The SOAP
+ * counterpart of the timing in the IncomingPipeline of the JSON transport.
+ */
+public final class SoapMetricsInterceptors {
+
+    private static final String START_NANOS = SoapMetricsInterceptors.class.getName() + ".startNanos";
+
+    private SoapMetricsInterceptors() { }
+
+    /**
+     * The first interceptor of the incoming chain
+     */
+    public static class In extends AbstractPhaseInterceptor<Message> {
+
+        private final OcppMetrics.CallMetrics callMetrics;
+
+        public In(OcppMetrics.CallMetrics callMetrics) {
+            super(Phase.RECEIVE);
+            this.callMetrics = callMetrics;
+        }
+
+        @Override
+        public void handleMessage(Message message) {
+            message.getExchange().put(START_NANOS, callMetrics.started());
+        }
+    }
+
+    /**
+     * The last interceptor of the outgoing chain. Added to the fault chain as well, with error set.
+     */
+    public static class Out extends AbstractPhaseInterceptor<Message> {
+
+        private final OcppMetrics.CallMetrics callMetrics;
+        private final boolean error;
+
+        public Out(OcppMetrics.CallMetrics callMetrics, boolean error) {
+            super(Phase.SETUP_ENDING);
+            this.callMetrics = callMetrics;
+            this.error = error;
+        }
+
+        @Override
+        public void handleMessage(Message message) {
+            Exchange exchange = message.getExchange();
+
+            // remove, so that a call is not counted twice, if the fault chain runs after the outgoing one failed
+            Long startNanos = (Long) exchange.remove(START_NANOS);
+            if (startNanos == null) {
+                return;
+            }
+
+            BindingOperationInfo operation = exchange.getBindingOperationInfo();
+            String action = operation == null ? OcppMetrics.UNKNOWN_ACTION : operation.getName().getLocalPart();
+            callMetrics.finished(startNanos, action, error);
+        }
+    }
+}
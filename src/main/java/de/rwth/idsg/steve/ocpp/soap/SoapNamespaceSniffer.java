@@ -0,0 +1,112 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.soap;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.apache.cxf.staxutils.DepthXMLStreamReader;
+import org.apache.cxf.staxutils.StaxUtils;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+
+/**
+ * Finds the namespace of the first element in the SOAP body, which tells the OCPP version of a message, by parsing
+ * only a prefix of the message. The prefix starts small and is doubled until the element is complete, but it never
+ * grows beyond {@link #MAX_PREFIX_SIZE}, so large messages (e.g. MeterValues) are neither buffered completely nor
+ * parsed twice. The bytes that were read are put in front of the rest of the stream again, for the actual parsing.
+ */
+final class SoapNamespaceSniffer {
+
+    /**
+     * Enough for the SOAP and WS-Addressing headers that the stations send
+     */
+    static final int INITIAL_PREFIX_SIZE = 2 * 1024;
+    static final int MAX_PREFIX_SIZE = 64 * 1024;
+
+    private SoapNamespaceSniffer() { }
+
+    @Getter
+    @RequiredArgsConstructor
+    static final class Result {
+
+        /**
+         * Null, if it could not be found within the maximum prefix
+         */
+        private final String namespace;
+
+        /**
+         * The complete message, to be used instead of the stream that was sniffed
+         */
+        private final InputStream replay;
+    }
+
+    static Result sniff(InputStream in, String encoding, QName body) throws IOException {
+        byte[] prefix = new byte[INITIAL_PREFIX_SIZE];
+        int length = 0;
+        String namespace;
+        boolean endOfStream;
+
+        while (true) {
+            length += in.readNBytes(prefix, length, prefix.length - length);
+            endOfStream = length < prefix.length;
+
+            namespace = findNamespace(prefix, length, encoding, body);
+            if (namespace != null || endOfStream || prefix.length >= MAX_PREFIX_SIZE) {
+                break;
+            }
+            prefix = Arrays.copyOf(prefix, prefix.length * 2);
+        }
+
+        InputStream head = new ByteArrayInputStream(prefix, 0, length);
+        InputStream replay = endOfStream ? head : new SequenceInputStream(head, in);
+        return new Result(namespace, replay);
+    }
+
+    /**
+     * @return null, if the prefix ends before the first element in the body is complete
+     */
+    private static String findNamespace(byte[] prefix, int length, String encoding, QName body) {
+        XMLStreamReader reader = StaxUtils.createXMLStreamReader(new ByteArrayInputStream(prefix, 0, length), encoding);
+        try {
+            DepthXMLStreamReader xmlReader = new DepthXMLStreamReader(reader);
+            if (xmlReader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                // Advance just past header
+                if (!StaxUtils.toNextTag(xmlReader, body)) {
+                    return null;
+                }
+                // Past body
+                xmlReader.nextTag();
+            }
+            return xmlReader.getName().getNamespaceURI();
+        } catch (XMLStreamException | RuntimeException e) {
+            // the prefix is incomplete, or the message is not XML at all
+            return null;
+        } finally {
+            StaxUtils.close(reader);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.soap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.rwth.idsg.steve.repository.OcppServerRepository;
+import de.rwth.idsg.steve.service.ChargePointHelperService;
+import lombok.extern.slf4j.Slf4j;
+import ocpp.cs._2015._10.RegistrationStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The last known registration status and endpoint address of the SOAP stations, so that an incoming message does not
+ * need a DB round-trip for either of them.
+ *
+ * The endpoint address is only written to DB when it differs from the last known one. Changed addresses are collected
+ * and written together shortly after, so that only the latest address of a station is written if it changes several
+ * times in between. The entries expire after a while, so that the DB is corrected eventually if the address was
+ * changed in DB in the meantime.
+ *
+ * The registration status is cached for a short time only, since other nodes of a cluster can change it as well.
+ * Unknown stations are not cached, so that they keep showing up in the list of unknown stations.
+ */
+@Slf4j
+@Component
+public class SoapStationStateCache {
+
+    private static final long FLUSH_DELAY_IN_MS = 1_000;
+
+    @Autowired private OcppServerRepository ocppServerRepository;
+    @Autowired private ChargePointHelperService chargePointHelperService;
+    @Autowired private ScheduledExecutorService executorService;
+
+    private final Cache<String, RegistrationStatus> registrationStatuses = CacheBuilder.newBuilder()
+                                                                                      .expireAfterWrite(1, TimeUnit.MINUTES)
+                                                                                      .build();
+
+    private final Cache<String, String> endpointAddresses = CacheBuilder.newBuilder()
+                                                                       .expireAfterWrite(1, TimeUnit.HOURS)
+                                                                       .build();
+
+    private final Map<String, String> pendingAddresses = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+
+    public Optional<RegistrationStatus> getRegistrationStatus(String chargeBoxId) {
+        RegistrationStatus cached = registrationStatuses.getIfPresent(chargeBoxId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<RegistrationStatus> status = chargePointHelperService.getRegistrationStatus(chargeBoxId);
+        status.ifPresent(s -> registrationStatuses.put(chargeBoxId, s));
+        return status;
+    }
+
+    /**
+     * Called after the stations were changed through the web interface
+     */
+    public void invalidateRegistrationStatuses() {
+        registrationStatuses.invalidateAll();
+    }
+
+    public void updateEndpointAddress(String chargeBoxId, String endpointAddress) {
+        if (endpointAddress.equals(endpointAddresses.getIfPresent(chargeBoxId))) {
+            skippedCount.increment();
+            return;
+        }
+
+        endpointAddresses.put(chargeBoxId, endpointAddress);
+        if (pendingAddresses.put(chargeBoxId, endpointAddress) != null) {
+            coalescedCount.increment();
+        }
+
+        if (flushScheduled.compareAndSet(false, true)) {
+            executorService.schedule(this::flush, FLUSH_DELAY_IN_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Endpoint address updates that were written to DB
+     */
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    /**
+     * Endpoint address updates that were not written to DB, since the address did not change
+     */
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    /**
+     * Endpoint address updates that were not written to DB, since a newer address replaced them before the write
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void flush() {
+        // reset first, so that an address that comes in during the flush schedules the next one
+        flushScheduled.set(false);
+
+        for (String chargeBoxId : pendingAddresses.keySet()) {
+            String endpointAddress = pendingAddresses.remove(chargeBoxId);
+            if (endpointAddress == null) {
+                continue;
+            }
+
+            try {
+                ocppServerRepository.updateEndpointAddress(chargeBoxId, endpointAddress);
+                writtenCount.increment();
+            } catch (Exception e) {
+                // forget it, so that the next message of the station tries again
+                endpointAddresses.invalidate(chargeBoxId);
+                log.error("Failed to update the endpoint address of '{}'", chargeBoxId, e);
+            }
+        }
+    }
+}
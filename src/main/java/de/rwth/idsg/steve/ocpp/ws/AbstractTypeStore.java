@@ -40,6 +40,7 @@ public abstract class AbstractTypeStore implements TypeStore {
 
     private final Map<String, Class<? extends RequestType>> requestClassMap = new HashMap<>();
     private final Map<Class<? extends RequestType>, ActionResponsePair> actionResponseMap = new HashMap<>();
+    private final Map<String, Class<? extends RequestType>> outgoingRequestClassMap = new HashMap<>();
 
     public AbstractTypeStore(String packageForRequestClassMap,
                              String packageForActionResponseMap) {
@@ -57,6 +58,11 @@ public abstract class AbstractTypeStore implements TypeStore {
         return actionResponseMap.get(requestPayload.getClass());
     }
 
+    @Override
+    public Class<? extends RequestType> findOutgoingRequestClass(String action) {
+        return outgoingRequestClassMap.get(action);
+    }
+
     // -------------------------------------------------------------------------
     // Private helpers
     // -------------------------------------------------------------------------
@@ -83,6 +89,7 @@ public abstract class AbstractTypeStore implements TypeStore {
             Preconditions.checkNotNull(responseClass);
 
             actionResponseMap.put(requestClass, new ActionResponsePair(action, responseClass));
+            outgoingRequestClassMap.put(action, requestClass);
         }
     }
 
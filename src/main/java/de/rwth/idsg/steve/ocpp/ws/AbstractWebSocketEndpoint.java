@@ -20,13 +20,14 @@ package de.rwth.idsg.steve.ocpp.ws;
 
 import com.google.common.base.Strings;
 import de.rwth.idsg.steve.config.WebSocketConfiguration;
+import de.rwth.idsg.steve.ocpp.OcppProtocol;
 import de.rwth.idsg.steve.ocpp.OcppTransport;
 import de.rwth.idsg.steve.ocpp.OcppVersion;
 import de.rwth.idsg.steve.ocpp.ws.data.CommunicationContext;
-import de.rwth.idsg.steve.ocpp.ws.data.SessionContext;
+import de.rwth.idsg.steve.ocpp.ws.data.SessionContextSnapshot;
 import de.rwth.idsg.steve.ocpp.ws.pipeline.IncomingPipeline;
+import de.rwth.idsg.steve.ocpp.ws.traffic.MessageHistory;
 import de.rwth.idsg.steve.repository.OcppServerRepository;
-import de.rwth.idsg.steve.service.NotificationService;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.socket.BinaryMessage;
@@ -37,15 +38,13 @@ import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
+
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
 
 /**
  * @author Sevket Goekay <sevketgokay@gmail.com>
@@ -56,14 +55,13 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
     @Autowired private ScheduledExecutorService service;
     @Autowired private OcppServerRepository ocppServerRepository;
     @Autowired private FutureResponseContextStore futureResponseContextStore;
-    @Autowired private NotificationService notificationService;
+    @Autowired private StationFlapDetector flapDetector;
+    @Autowired private ConnectedStationIndex connectedStationIndex;
 
     public static final String CHARGEBOX_ID_KEY = "CHARGEBOX_ID_KEY";
 
-    private final SessionContextStore sessionContextStore = new SessionContextStore();
-    private final List<Consumer<String>> connectedCallbackList = new ArrayList<>();
-    private final List<Consumer<String>> disconnectedCallbackList = new ArrayList<>();
-    private final Object sessionContextLock = new Object();
+    private final SessionContextStore sessionContextStore =
+            new SessionContextStore(CONFIG.getOcpp().getWsSessionSelectStrategy());
 
     private IncomingPipeline pipeline;
 
@@ -71,9 +69,6 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
 
     public void init(IncomingPipeline pipeline) {
         this.pipeline = pipeline;
-
-        connectedCallbackList.add((chargeBoxId) -> notificationService.ocppStationWebSocketConnected(chargeBoxId));
-        disconnectedCallbackList.add((chargeBoxId) -> notificationService.ocppStationWebSocketDisconnected(chargeBoxId));
     }
 
     @Override
@@ -107,9 +102,9 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
             return;
         }
 
-        if (!incomingString.contains("Heartbeat")) {
-            WebSocketLogger.receivedText(chargeBoxId, session, incomingString);
-        }
+        connectedStationIndex.touch(chargeBoxId);
+
+        WebSocketLogger.receivedText(chargeBoxId, session, incomingString);
 
         CommunicationContext context = new CommunicationContext(session, chargeBoxId);
         context.setIncomingString(incomingString);
@@ -118,8 +113,11 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
     }
 
     private void handlePongMessage(WebSocketSession session) {
-        WebSocketLogger.receivedPong(getChargeBoxId(session), session);
-        ocppServerRepository.updateChargeboxHeartbeat(getChargeBoxId(session), DateTime.now());
+        String chargeBoxId = getChargeBoxId(session);
+
+        WebSocketLogger.receivedPong(chargeBoxId, session);
+        connectedStationIndex.touch(chargeBoxId);
+        ocppServerRepository.updateChargeboxHeartbeat(chargeBoxId, DateTime.now());
     }
 
     @Override
@@ -127,7 +125,11 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
         String chargeBoxId = getChargeBoxId(session);
 
         WebSocketLogger.connected(chargeBoxId, session);
-        ocppServerRepository.updateOcppProtocol(chargeBoxId, getVersion().toProtocol(OcppTransport.JSON));
+
+        OcppProtocol protocol = getVersion().toProtocol(OcppTransport.JSON);
+        if (flapDetector.shouldWriteProtocol(chargeBoxId, protocol)) {
+            ocppServerRepository.updateOcppProtocol(chargeBoxId, protocol);
+        }
 
         // Just to keep the connection alive, such that the servers do not close
         // the connection because of a idle timeout, we ping-pong at fixed intervals.
@@ -139,17 +141,13 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
 
         futureResponseContextStore.addSession(session);
 
-        int sizeBeforeAdd;
-
-        synchronized (sessionContextLock) {
-            sizeBeforeAdd = sessionContextStore.getSize(chargeBoxId);
-            sessionContextStore.add(chargeBoxId, session, pingSchedule);
-        }
+        int sizeAfterAdd = sessionContextStore.add(chargeBoxId, session, pingSchedule);
 
         // Take into account that there might be multiple connections to a charging station.
         // Send notification only for the change 0 -> 1.
-        if (sizeBeforeAdd == 0) {
-            connectedCallbackList.forEach(consumer -> consumer.accept(chargeBoxId));
+        if (sizeAfterAdd == 1) {
+            connectedStationIndex.connected(chargeBoxId, protocol);
+            flapDetector.connected(chargeBoxId);
         }
     }
 
@@ -161,17 +159,16 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
 
         futureResponseContextStore.removeSession(session);
 
-        int sizeAfterRemove;
-
-        synchronized (sessionContextLock) {
-            sessionContextStore.remove(chargeBoxId, session);
-            sizeAfterRemove = sessionContextStore.getSize(chargeBoxId);
-        }
+        int sizeAfterRemove = sessionContextStore.remove(chargeBoxId, session);
 
         // Take into account that there might be multiple connections to a charging station.
         // Send notification only for the change 1 -> 0.
         if (sizeAfterRemove == 0) {
-            disconnectedCallbackList.forEach(consumer -> consumer.accept(chargeBoxId));
+            connectedStationIndex.disconnected(chargeBoxId, getVersion().toProtocol(OcppTransport.JSON));
+            if (!connectedStationIndex.isConnected(chargeBoxId)) {
+                MessageHistory.INSTANCE.disconnected(chargeBoxId);
+            }
+            flapDetector.disconnected(chargeBoxId);
         }
     }
 
@@ -193,14 +190,6 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
         return (String) session.getAttributes().get(CHARGEBOX_ID_KEY);
     }
 
-    protected void registerConnectedCallback(Consumer<String> consumer) {
-        connectedCallbackList.add(consumer);
-    }
-
-    protected void registerDisconnectedCallback(Consumer<String> consumer) {
-        disconnectedCallbackList.add(consumer);
-    }
-
     public List<String> getChargeBoxIdList() {
         return sessionContextStore.getChargeBoxIdList();
     }
@@ -209,8 +198,12 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
         return sessionContextStore.getNumberOfChargeBoxes();
     }
 
-    public Map<String, Deque<SessionContext>> getACopy() {
-        return sessionContextStore.getACopy();
+    public boolean isConnected(String chargeBoxId) {
+        return sessionContextStore.isConnected(chargeBoxId);
+    }
+
+    public SessionContextSnapshot getSnapshot() {
+        return sessionContextStore.getSnapshot();
     }
 
     public WebSocketSession getSession(String chargeBoxId) {
@@ -21,14 +21,16 @@ package de.rwth.idsg.steve.ocpp.ws;
 import de.rwth.idsg.ocpp.jaxb.RequestType;
 import de.rwth.idsg.steve.SteveException;
 import de.rwth.idsg.steve.ocpp.CommunicationTask;
+import de.rwth.idsg.steve.ocpp.ws.cluster.ClusterCallForwarder;
+import de.rwth.idsg.steve.ocpp.ws.cluster.ClusterNode;
 import de.rwth.idsg.steve.ocpp.ws.data.ActionResponsePair;
 import de.rwth.idsg.steve.ocpp.ws.data.CommunicationContext;
 import de.rwth.idsg.steve.ocpp.ws.data.FutureResponseContext;
 import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonCall;
 import de.rwth.idsg.steve.ocpp.ws.pipeline.OutgoingCallPipeline;
 import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.UUID;
 
@@ -37,13 +39,31 @@ import java.util.UUID;
  * @since 20.03.2015
  */
 @Slf4j
-@RequiredArgsConstructor
 public class ChargePointServiceInvoker {
 
     private final OutgoingCallPipeline outgoingCallPipeline;
     private final AbstractWebSocketEndpoint endpoint;
     private final TypeStore typeStore;
 
+    // null, if the calls must be delivered locally (e.g. they were already forwarded by another node)
+    @Nullable private final ClusterCallForwarder clusterCallForwarder;
+
+    public ChargePointServiceInvoker(OutgoingCallPipeline outgoingCallPipeline,
+                                     AbstractWebSocketEndpoint endpoint,
+                                     TypeStore typeStore) {
+        this(outgoingCallPipeline, endpoint, typeStore, null);
+    }
+
+    public ChargePointServiceInvoker(OutgoingCallPipeline outgoingCallPipeline,
+                                     AbstractWebSocketEndpoint endpoint,
+                                     TypeStore typeStore,
+                                     @Nullable ClusterCallForwarder clusterCallForwarder) {
+        this.outgoingCallPipeline = outgoingCallPipeline;
+        this.endpoint = endpoint;
+        this.typeStore = typeStore;
+        this.clusterCallForwarder = clusterCallForwarder;
+    }
+
     /**
      * Just a wrapper to make try-catch block and exception handling stand out
      */
@@ -76,6 +96,15 @@ public class ChargePointServiceInvoker {
 
         FutureResponseContext frc = new FutureResponseContext(task, pair.getResponseClass());
 
+        // The station is not connected to this node, but maybe to another one of the cluster
+        if (clusterCallForwarder != null && !endpoint.isConnected(chargeBoxId)) {
+            ClusterNode owner = clusterCallForwarder.findRemoteOwner(chargeBoxId);
+            if (owner != null) {
+                clusterCallForwarder.forward(owner, endpoint.getVersion(), chargeBoxId, call, frc);
+                return;
+            }
+        }
+
         CommunicationContext context = new CommunicationContext(endpoint.getSession(chargeBoxId), chargeBoxId);
         context.setOutgoingMessage(call);
         context.setFutureResponseContext(frc);
@@ -0,0 +1,241 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws;
+
+import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.ws.data.ConnectedStation;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Single lookup point for the WebSocket/JSON stations that are currently connected, regardless of the OCPP
+ * version (i.e. endpoint) they are connected to. The session stores of the endpoints remain responsible for
+ * the actual sessions, whereas this index is only about "is the station connected and since when".
+ *
+ * SOAP stations do not appear here, since there is no connection to keep track of. They are reached via the
+ * endpoint address stored in DB.
+ *
+ * A station can have sessions at the endpoints of several OCPP versions at the same time. It is tracked per
+ * version, and only counts as disconnected (which e.g. releases its cluster claim) when the last version is gone.
+ */
+@Slf4j
+@Service
+public class ConnectedStationIndex {
+
+    /**
+     * Key   (String)                                = chargeBoxId
+     * Value (Map<OcppVersion, ConnectedStation>)    = connection metadata per version, in the order of connecting.
+     *                                                 Never empty, and replaced instead of modified.
+     */
+    private final ConcurrentHashMap<String, Map<OcppVersion, ConnectedStation>> lookupTable = new ConcurrentHashMap<>();
+
+    private final Map<OcppVersion, AtomicInteger> countPerVersion = new EnumMap<>(OcppVersion.class);
+
+    private final List<Consumer<ConnectedStation>> connectedListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<ConnectedStation>> disconnectedListeners = new CopyOnWriteArrayList<>();
+
+    public ConnectedStationIndex() {
+        for (OcppVersion version : OcppVersion.values()) {
+            countPerVersion.put(version, new AtomicInteger(0));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Listeners
+    // -------------------------------------------------------------------------
+
+    /**
+     * Called when a station connects with its first OCPP version.
+     */
+    public void addConnectedListener(Consumer<ConnectedStation> listener) {
+        connectedListeners.add(listener);
+    }
+
+    /**
+     * Called when a station disconnects with its last OCPP version.
+     */
+    public void addDisconnectedListener(Consumer<ConnectedStation> listener) {
+        disconnectedListeners.add(listener);
+    }
+
+    // -------------------------------------------------------------------------
+    // Updates from the endpoints
+    // -------------------------------------------------------------------------
+
+    /**
+     * Called when the first session of a station is opened at an endpoint.
+     */
+    public void connected(String chargeBoxId, OcppProtocol protocol) {
+        ConnectedStation station = new ConnectedStation(chargeBoxId, protocol, DateTime.now());
+        OcppVersion version = protocol.getVersion();
+
+        boolean first;
+        synchronized (lookupTable) {
+            Map<OcppVersion, ConnectedStation> previous = lookupTable.get(chargeBoxId);
+            Map<OcppVersion, ConnectedStation> updated = new LinkedHashMap<>();
+            if (previous != null) {
+                updated.putAll(previous);
+                // keep the order of connecting, even if the version was (unexpectedly) there already
+                updated.remove(version);
+            }
+            updated.put(version, station);
+            lookupTable.put(chargeBoxId, Collections.unmodifiableMap(updated));
+
+            if (previous == null || !previous.containsKey(version)) {
+                countPerVersion.get(version).incrementAndGet();
+            }
+            first = previous == null;
+        }
+
+        if (first) {
+            notify(connectedListeners, station);
+        }
+    }
+
+    /**
+     * Called when the last session of a station is closed at an endpoint.
+     */
+    public void disconnected(String chargeBoxId, OcppProtocol protocol) {
+        OcppVersion version = protocol.getVersion();
+
+        ConnectedStation station;
+        boolean last;
+        synchronized (lookupTable) {
+            Map<OcppVersion, ConnectedStation> previous = lookupTable.get(chargeBoxId);
+            station = previous == null ? null : previous.get(version);
+            if (station == null) {
+                return;
+            }
+
+            Map<OcppVersion, ConnectedStation> updated = new LinkedHashMap<>(previous);
+            updated.remove(version);
+            last = updated.isEmpty();
+            if (last) {
+                lookupTable.remove(chargeBoxId);
+            } else {
+                lookupTable.put(chargeBoxId, Collections.unmodifiableMap(updated));
+            }
+            countPerVersion.get(version).decrementAndGet();
+        }
+
+        if (last) {
+            notify(disconnectedListeners, station);
+        }
+    }
+
+    public void touch(String chargeBoxId) {
+        Map<OcppVersion, ConnectedStation> stations = lookupTable.get(chargeBoxId);
+        if (stations != null) {
+            long now = System.currentTimeMillis();
+            for (ConnectedStation station : stations.values()) {
+                station.touch(now);
+            }
+        }
+    }
+
+    public void callSent(String chargeBoxId) {
+        ConnectedStation station = get(chargeBoxId);
+        if (station != null) {
+            station.incrementInFlight();
+        }
+    }
+
+    public void callsCompleted(String chargeBoxId, int count) {
+        ConnectedStation station = get(chargeBoxId);
+        if (station != null) {
+            station.decrementInFlight(count);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Queries
+    // -------------------------------------------------------------------------
+
+    public boolean isConnected(String chargeBoxId) {
+        return lookupTable.containsKey(chargeBoxId);
+    }
+
+    /**
+     * @return the connection with the OCPP version the station connected with most recently
+     */
+    @Nullable
+    public ConnectedStation get(String chargeBoxId) {
+        Map<OcppVersion, ConnectedStation> stations = lookupTable.get(chargeBoxId);
+        if (stations == null) {
+            return null;
+        }
+        ConnectedStation latest = null;
+        for (ConnectedStation station : stations.values()) {
+            latest = station;
+        }
+        return latest;
+    }
+
+    @Nullable
+    public ConnectedStation get(String chargeBoxId, OcppVersion version) {
+        Map<OcppVersion, ConnectedStation> stations = lookupTable.get(chargeBoxId);
+        return stations == null ? null : stations.get(version);
+    }
+
+    public int getNumberOfChargeBoxes() {
+        return lookupTable.size();
+    }
+
+    public int getNumberOfChargeBoxes(OcppVersion version) {
+        return countPerVersion.get(version).get();
+    }
+
+    public List<String> getChargeBoxIdList(OcppVersion version) {
+        List<String> list = new ArrayList<>(getNumberOfChargeBoxes(version));
+        for (Map.Entry<String, Map<OcppVersion, ConnectedStation>> entry : lookupTable.entrySet()) {
+            if (entry.getValue().containsKey(version)) {
+                list.add(entry.getKey());
+            }
+        }
+        return list;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static void notify(List<Consumer<ConnectedStation>> listeners, ConnectedStation station) {
+        for (Consumer<ConnectedStation> listener : listeners) {
+            try {
+                listener.accept(station);
+            } catch (Exception e) {
+                log.error("Connection listener failed for chargeBoxId '{}'", station.getChargeBoxId(), e);
+            }
+        }
+    }
+}
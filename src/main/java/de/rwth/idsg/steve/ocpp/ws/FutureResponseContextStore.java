@@ -23,6 +23,7 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.WebSocketSession;
 
@@ -40,6 +41,8 @@ import java.util.function.BiFunction;
 @Service
 public class FutureResponseContextStore {
 
+    @Autowired private ConnectedStationIndex connectedStationIndex;
+
     // We store for each chargeBox connection, multiple pairs of (messageId, context)
     // (session, (messageId, context))
     private final Map<WebSocketSession, Map<String, FutureResponseContext>> lookupTable = new ConcurrentHashMap<>();
@@ -50,12 +53,18 @@ public class FutureResponseContextStore {
 
     public void removeSession(WebSocketSession session) {
         log.debug("Deleting the store for sessionId '{}'", session.getId());
-        lookupTable.remove(session);
+        Map<String, FutureResponseContext> map = lookupTable.remove(session);
+
+        // the responses to these will never arrive
+        if (map != null && !map.isEmpty()) {
+            connectedStationIndex.callsCompleted(getChargeBoxId(session), map.size());
+        }
     }
 
     public void add(WebSocketSession session, String messageId, FutureResponseContext context) {
         Map<String, FutureResponseContext> map = addIfAbsent(session);
         map.put(messageId, context);
+        connectedStationIndex.callSent(getChargeBoxId(session));
         log.debug("Store size for sessionId '{}': {}", session.getId(), map.size());
     }
 
@@ -63,9 +72,28 @@ public class FutureResponseContextStore {
     public FutureResponseContext get(WebSocketSession session, String messageId) {
         RemoveFunction removeFunction = new RemoveFunction(messageId);
         lookupTable.computeIfPresent(session, removeFunction);
+
+        if (removeFunction.removedContext != null) {
+            connectedStationIndex.callsCompleted(getChargeBoxId(session), 1);
+        }
         return removeFunction.removedContext;
     }
 
+    /**
+     * @return the number of calls to stations that are waiting for their response
+     */
+    public int getSize() {
+        int size = 0;
+        for (Map<String, FutureResponseContext> map : lookupTable.values()) {
+            size += map.size();
+        }
+        return size;
+    }
+
+    private static String getChargeBoxId(WebSocketSession session) {
+        return (String) session.getAttributes().get(AbstractWebSocketEndpoint.CHARGEBOX_ID_KEY);
+    }
+
     private Map<String, FutureResponseContext> addIfAbsent(WebSocketSession session) {
         return lookupTable.computeIfAbsent(session, innerSession -> {
             log.debug("Creating new store for sessionId '{}'", innerSession.getId());
@@ -18,28 +18,39 @@
  */
 package de.rwth.idsg.steve.ocpp.ws;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.util.concurrent.Striped;
 import de.rwth.idsg.steve.SteveException;
 import de.rwth.idsg.steve.ocpp.ws.custom.WsSessionSelectStrategy;
 import de.rwth.idsg.steve.ocpp.ws.data.SessionContext;
+import de.rwth.idsg.steve.ocpp.ws.data.SessionContextSnapshot;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
 import org.joda.time.DateTime;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.util.ArrayDeque;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.locks.Lock;
-
-import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 
 /**
+ * The sessions of a station are kept in an immutable {@link StationSessions} which is replaced (copy-on-write)
+ * within {@link ConcurrentHashMap#compute(Object, BiFunction)}. This way, there is no lock to acquire for readers
+ * and the writers of different stations do not block each other. A station has rarely more than one or two
+ * connections, therefore the copying is negligible.
+ *
+ * Every modification increments the version of the store. A {@link SessionContextSnapshot} is only built when
+ * a reader asks for it and the version has changed since the last one was built. Until then, all readers share
+ * the same snapshot.
+ *
  * @author Sevket Goekay <sevketgokay@gmail.com>
  * @since 17.03.2015
  */
@@ -47,95 +58,81 @@ import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
 public class SessionContextStore {
 
     /**
-     * Key   (String)                = chargeBoxId
-     * Value (Deque<SessionContext>) = WebSocket session contexts
+     * Key   (String)          = chargeBoxId
+     * Value (StationSessions) = WebSocket session contexts
      */
-    private final ConcurrentHashMap<String, Deque<SessionContext>> lookupTable = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StationSessions> lookupTable = new ConcurrentHashMap<>();
 
-    private final Striped<Lock> locks = Striped.lock(16);
+    private final AtomicLong version = new AtomicLong(0);
+    private final AtomicReference<SessionContextSnapshot> snapshot = new AtomicReference<>(SessionContextSnapshot.EMPTY);
 
-    private final WsSessionSelectStrategy wsSessionSelectStrategy = CONFIG.getOcpp().getWsSessionSelectStrategy();
+    private final WsSessionSelectStrategy wsSessionSelectStrategy;
 
-    public void add(String chargeBoxId, WebSocketSession session, ScheduledFuture pingSchedule) {
-        Lock l = locks.get(chargeBoxId);
-        l.lock();
-        try {
-            SessionContext context = new SessionContext(session, pingSchedule, DateTime.now());
+    public SessionContextStore(WsSessionSelectStrategy wsSessionSelectStrategy) {
+        this.wsSessionSelectStrategy = wsSessionSelectStrategy;
+    }
 
-            Deque<SessionContext> endpointDeque = lookupTable.computeIfAbsent(chargeBoxId, str -> new ArrayDeque<>());
-            endpointDeque.addLast(context); // Adding at the end
+    /**
+     * @return the number of sessions of the station after adding
+     */
+    public int add(String chargeBoxId, WebSocketSession session, ScheduledFuture pingSchedule) {
+        SessionContext context = new SessionContext(session, pingSchedule, DateTime.now());
 
-            log.debug("A new SessionContext is stored for chargeBoxId '{}'. Store size: {}",
-                    chargeBoxId, endpointDeque.size());
-        } finally {
-            l.unlock();
-        }
+        StationSessions sessions = lookupTable.compute(
+                chargeBoxId,
+                (id, existing) -> existing == null ? StationSessions.of(context) : existing.with(context)
+        );
+        version.incrementAndGet();
+
+        log.debug("A new SessionContext is stored for chargeBoxId '{}'. Store size: {}", chargeBoxId, sessions.size());
+        return sessions.size();
     }
 
-    public void remove(String chargeBoxId, WebSocketSession session) {
-        Lock l = locks.get(chargeBoxId);
-        l.lock();
-        try {
-            Deque<SessionContext> endpointDeque = lookupTable.get(chargeBoxId);
-            if (endpointDeque == null) {
-                log.debug("No session context to remove for chargeBoxId '{}'", chargeBoxId);
-                return;
-            }
+    /**
+     * @return the number of sessions of the station after removing
+     */
+    public int remove(String chargeBoxId, WebSocketSession session) {
+        RemoveFunction removeFunction = new RemoveFunction(session.getId());
+
+        // Returning null from the function deletes the entry, in order to correctly calculate
+        // the number of connected chargeboxes with getNumberOfChargeBoxes()
+        StationSessions remaining = lookupTable.computeIfPresent(chargeBoxId, removeFunction);
+        int sizeAfterRemove = remaining == null ? 0 : remaining.size();
+
+        SessionContext removed = removeFunction.removedContext;
+        if (removed == null) {
+            log.debug("No session context to remove for chargeBoxId '{}'", chargeBoxId);
+            return sizeAfterRemove;
+        }
 
-            // Prevent "java.util.ConcurrentModificationException: null"
-            // Reason: Cannot modify the set (remove the item) we are iterating
-            // Solution: Iterate the set, find the item, remove the item after the for-loop
-            //
-            SessionContext toRemove = null;
-            for (SessionContext context : endpointDeque) {
-                if (context.getSession().getId().equals(session.getId())) {
-                    toRemove = context;
-                    break;
-                }
-            }
+        version.incrementAndGet();
+        removed.getPingSchedule().cancel(true);
 
-            if (toRemove != null) {
-                // 1. Cancel the ping task
-                toRemove.getPingSchedule().cancel(true);
-                // 2. Delete from collection
-                if (endpointDeque.remove(toRemove)) {
-                    log.debug("A SessionContext is removed for chargeBoxId '{}'. Store size: {}",
-                            chargeBoxId, endpointDeque.size());
-                }
-                // 3. Delete empty collection from lookup table in order to correctly calculate
-                // the number of connected chargeboxes with getNumberOfChargeBoxes()
-                if (endpointDeque.size() == 0) {
-                    lookupTable.remove(chargeBoxId);
-                }
-            }
-        } finally {
-            l.unlock();
-        }
+        log.debug("A SessionContext is removed for chargeBoxId '{}'. Store size: {}", chargeBoxId, sizeAfterRemove);
+        return sizeAfterRemove;
     }
 
     public WebSocketSession getSession(String chargeBoxId) {
-        Lock l = locks.get(chargeBoxId);
-        l.lock();
-        try {
-            Deque<SessionContext> endpointDeque = lookupTable.get(chargeBoxId);
-            if (endpointDeque == null) {
-                throw new NoSuchElementException();
-            }
-            return wsSessionSelectStrategy.getSession(endpointDeque);
-        } catch (NoSuchElementException e) {
-            throw new SteveException("No session context for chargeBoxId '%s'", chargeBoxId, e);
-        } finally {
-            l.unlock();
+        StationSessions sessions = lookupTable.get(chargeBoxId);
+        if (sessions == null) {
+            throw new SteveException("No session context for chargeBoxId '%s'", chargeBoxId);
         }
+        return wsSessionSelectStrategy.getSession(sessions.ordered, sessions.selectCounter.getAndIncrement());
+    }
+
+    @Nullable
+    public SessionContext getSessionContext(String chargeBoxId, String sessionId) {
+        StationSessions sessions = lookupTable.get(chargeBoxId);
+        return sessions == null ? null : sessions.bySessionId.get(sessionId);
     }
 
     public int getSize(String chargeBoxId) {
-        Deque<SessionContext> endpointDeque = lookupTable.get(chargeBoxId);
-        if (endpointDeque == null) {
-            return 0;
-        } else {
-            return endpointDeque.size();
-        }
+        StationSessions sessions = lookupTable.get(chargeBoxId);
+        return sessions == null ? 0 : sessions.size();
+    }
+
+    public boolean isConnected(String chargeBoxId) {
+        return lookupTable.containsKey(chargeBoxId);
     }
 
     public int getNumberOfChargeBoxes() {
@@ -146,7 +143,100 @@ public class SessionContextStore {
         return Collections.list(lookupTable.keys());
     }
 
-    public Map<String, Deque<SessionContext>> getACopy() {
-        return ImmutableMap.copyOf(lookupTable);
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Returns the snapshot that belongs to the current version, building it only if no reader did so before.
+     *
+     * The version is read before iterating the lookup table. Since modifications increment the version only
+     * after they are applied to the table, a snapshot never lags behind its version (it might be ahead, which
+     * only results in one unnecessary rebuild later).
+     */
+    public SessionContextSnapshot getSnapshot() {
+        SessionContextSnapshot current = snapshot.get();
+        long currentVersion = version.get();
+        if (current.getVersion() == currentVersion) {
+            return current;
+        }
+
+        ImmutableMap.Builder<String, ImmutableList<SessionContext>> builder =
+                ImmutableMap.builderWithExpectedSize(lookupTable.size());
+
+        for (Map.Entry<String, StationSessions> entry : lookupTable.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue().ordered);
+        }
+
+        SessionContextSnapshot fresh = new SessionContextSnapshot(currentVersion, builder.build());
+        return snapshot.accumulateAndGet(fresh, (prev, next) -> next.getVersion() > prev.getVersion() ? next : prev);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Immutable except for the select counter, which is carried over to the next copy.
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class StationSessions {
+
+        // in insertion order, i.e. the order in which the sessions were opened
+        private final ImmutableMap<String, SessionContext> bySessionId;
+        private final ImmutableList<SessionContext> ordered;
+        private final AtomicInteger selectCounter;
+
+        private static StationSessions of(SessionContext context) {
+            return new StationSessions(
+                    ImmutableMap.of(context.getSession().getId(), context),
+                    ImmutableList.of(context),
+                    new AtomicInteger(0)
+            );
+        }
+
+        private StationSessions with(SessionContext context) {
+            ImmutableMap<String, SessionContext> map = ImmutableMap.<String, SessionContext>builder()
+                                                                    .putAll(bySessionId)
+                                                                    .put(context.getSession().getId(), context)
+                                                                    .buildKeepingLast();
+            return new StationSessions(map, map.values().asList(), selectCounter);
+        }
+
+        @Nullable
+        private StationSessions without(String sessionId) {
+            if (bySessionId.size() == 1) {
+                return null;
+            }
+
+            ImmutableMap.Builder<String, SessionContext> builder = ImmutableMap.builder();
+            for (Map.Entry<String, SessionContext> entry : bySessionId.entrySet()) {
+                if (!entry.getKey().equals(sessionId)) {
+                    builder.put(entry);
+                }
+            }
+            ImmutableMap<String, SessionContext> map = builder.build();
+            return new StationSessions(map, map.values().asList(), selectCounter);
+        }
+
+        private int size() {
+            return bySessionId.size();
+        }
+    }
+
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static class RemoveFunction implements BiFunction<String, StationSessions, StationSessions> {
+
+        private final String sessionId;
+        @Nullable private SessionContext removedContext;
+
+        @Override
+        public StationSessions apply(String chargeBoxId, StationSessions sessions) {
+            removedContext = sessions.bySessionId.get(sessionId);
+            if (removedContext == null) {
+                return sessions;
+            }
+            return sessions.without(sessionId);
+        }
     }
 }
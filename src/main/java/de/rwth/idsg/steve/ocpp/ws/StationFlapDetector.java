@@ -0,0 +1,356 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws;
+
+import com.google.common.annotations.VisibleForTesting;
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import de.rwth.idsg.steve.ocpp.event.OcppEvent;
+import de.rwth.idsg.steve.ocpp.event.OcppEventBus;
+import de.rwth.idsg.steve.ocpp.event.StationConnected;
+import de.rwth.idsg.steve.ocpp.event.StationDisconnected;
+import de.rwth.idsg.steve.ocpp.ws.data.StationFlapScore;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
+/**
+ * Flap damping of JSON stations, like the route flap damping of BGP. Every disconnect adds {@link #PENALTY} to the
+ * score of the station, which decays exponentially. Above the suppress threshold, connects and disconnects of the
+ * station are not published and the OCPP protocol is not written again, until the score decays below the reuse
+ * threshold. Since the thresholds differ, a station does not toggle between the two states at the border.
+ *
+ * The disconnect that crosses the suppress threshold is still published, so that a flapping station looks
+ * disconnected to the listeners until it is stable again. When it is released, the state it is in at that time is
+ * published, if it differs from the last published one.
+ *
+ * Only the transitions of the whole station (0 -> 1 and 1 -> 0 sessions) are counted, not those of every session.
+ */
+@Slf4j
+@Component
+public class StationFlapDetector {
+
+    static final double PENALTY = 1000;
+
+    /**
+     * How often the scores of suppressed stations are checked against the reuse threshold
+     */
+    private static final int RELEASE_CHECK_INTERVAL_IN_SECONDS = 5;
+
+    /**
+     * Below this score, a released station is no longer tracked
+     */
+    private static final double NEGLIGIBLE_SCORE = 1;
+
+    @Autowired private OcppEventBus eventBus;
+    @Autowired private ScheduledExecutorService executorService;
+
+    private final SteveConfiguration.FlapDamping config = CONFIG.getFlapDamping();
+    private final double decayPerMilli = Math.log(2) / TimeUnit.SECONDS.toMillis(config.getHalfLifeInSeconds());
+
+    private final Map<String, FlapState> states = new ConcurrentHashMap<>();
+
+    private final LongAdder suppressedEventCount = new LongAdder();
+    private final LongAdder suppressedWriteCount = new LongAdder();
+    private final LongAdder throttledCount = new LongAdder();
+
+    private ScheduledFuture<?> releaseFuture;
+
+    @PostConstruct
+    public void init() {
+        if (config.isEnabled()) {
+            releaseFuture = executorService.scheduleWithFixedDelay(
+                    this::releaseStable, RELEASE_CHECK_INTERVAL_IN_SECONDS, RELEASE_CHECK_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        if (releaseFuture != null) {
+            releaseFuture.cancel(false);
+        }
+    }
+
+    /**
+     * @return true, if the handshake of the station should be rejected, because it is suppressed and opened its last
+     *         connection less than the throttle time ago
+     */
+    public boolean isThrottled(String chargeBoxId) {
+        if (!config.isEnabled() || config.getThrottleInSeconds() <= 0) {
+            return false;
+        }
+
+        FlapState state = states.get(chargeBoxId);
+        if (state == null) {
+            return false;
+        }
+
+        long throttleMillis = TimeUnit.SECONDS.toMillis(config.getThrottleInSeconds());
+        boolean throttled;
+        synchronized (state) {
+            throttled = state.suppressed && System.currentTimeMillis() - state.lastConnectAt < throttleMillis;
+        }
+        if (throttled) {
+            throttledCount.increment();
+        }
+        return throttled;
+    }
+
+    /**
+     * @return false, if the station is suppressed and the same protocol was already written for it
+     */
+    public boolean shouldWriteProtocol(String chargeBoxId, OcppProtocol protocol) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+
+        boolean write = withState(chargeBoxId, state -> {
+            if (state.suppressed && state.writtenProtocol == protocol) {
+                return false;
+            }
+            state.writtenProtocol = protocol;
+            return true;
+        });
+
+        if (!write) {
+            suppressedWriteCount.increment();
+        }
+        return write;
+    }
+
+    public void connected(String chargeBoxId) {
+        connected(chargeBoxId, System.currentTimeMillis());
+    }
+
+    public void disconnected(String chargeBoxId) {
+        disconnected(chargeBoxId, System.currentTimeMillis());
+    }
+
+    public List<StationFlapScore> getScores() {
+        long now = System.currentTimeMillis();
+        List<StationFlapScore> scores = new ArrayList<>(states.size());
+        for (Map.Entry<String, FlapState> e : states.entrySet()) {
+            FlapState state = e.getValue();
+            synchronized (state) {
+                scores.add(StationFlapScore.builder()
+                                           .chargeBoxId(e.getKey())
+                                           .score(decay(state, now))
+                                           .suppressed(state.suppressed)
+                                           .connected(state.connected)
+                                           .disconnects(state.disconnects)
+                                           .lastDisconnect(state.lastDisconnectAt == 0 ? null : new DateTime(state.lastDisconnectAt))
+                                           .build());
+            }
+        }
+        scores.sort(Comparator.comparingDouble(StationFlapScore::getScore).reversed());
+        return scores;
+    }
+
+    public int getSuppressedCount() {
+        int count = 0;
+        for (FlapState state : states.values()) {
+            synchronized (state) {
+                if (state.suppressed) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public long getSuppressedEventCount() {
+        return suppressedEventCount.sum();
+    }
+
+    public long getSuppressedWriteCount() {
+        return suppressedWriteCount.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttledCount.sum();
+    }
+
+    // -------------------------------------------------------------------------
+    // Package-private with explicit time, for tests
+    // -------------------------------------------------------------------------
+
+    @VisibleForTesting
+    void connected(String chargeBoxId, long now) {
+        if (!config.isEnabled()) {
+            eventBus.publish(new StationConnected(chargeBoxId));
+            return;
+        }
+
+        boolean publish = withState(chargeBoxId, state -> {
+            decay(state, now);
+            state.connected = true;
+            state.lastConnectAt = now;
+            if (state.suppressed) {
+                return false;
+            }
+            state.publishedConnected = true;
+            return true;
+        });
+
+        publishOrCount(publish, new StationConnected(chargeBoxId));
+    }
+
+    @VisibleForTesting
+    void disconnected(String chargeBoxId, long now) {
+        if (!config.isEnabled()) {
+            eventBus.publish(new StationDisconnected(chargeBoxId));
+            return;
+        }
+
+        boolean publish = withState(chargeBoxId, state -> {
+            // Whether to publish is decided before the penalty, so that the disconnect that starts the suppression
+            // is still published
+            boolean wasSuppressed = state.suppressed;
+
+            double score = decay(state, now) + PENALTY;
+            state.score = score;
+            state.connected = false;
+            state.disconnects++;
+            state.lastDisconnectAt = now;
+
+            if (!wasSuppressed && score > config.getSuppressThreshold()) {
+                state.suppressed = true;
+                log.warn("Station '{}' is flapping (score {}), its connects and disconnects are suppressed", chargeBoxId, (int) score);
+            }
+
+            if (wasSuppressed) {
+                return false;
+            }
+            state.publishedConnected = false;
+            return true;
+        });
+
+        publishOrCount(publish, new StationDisconnected(chargeBoxId));
+    }
+
+    @VisibleForTesting
+    void releaseStable(long now) {
+        for (Map.Entry<String, FlapState> e : states.entrySet()) {
+            String chargeBoxId = e.getKey();
+            FlapState state = e.getValue();
+
+            OcppEvent toPublish = null;
+            synchronized (state) {
+                double score = decay(state, now);
+
+                if (state.suppressed && score < config.getReuseThreshold()) {
+                    state.suppressed = false;
+                    log.info("Station '{}' is stable again (score {})", chargeBoxId, (int) score);
+
+                    if (state.connected != state.publishedConnected) {
+                        state.publishedConnected = state.connected;
+                        toPublish = state.connected ? new StationConnected(chargeBoxId) : new StationDisconnected(chargeBoxId);
+                    }
+                }
+
+                if (!state.suppressed && score < NEGLIGIBLE_SCORE) {
+                    state.removed = true;
+                    states.remove(chargeBoxId, state);
+                }
+            }
+
+            if (toPublish != null) {
+                eventBus.publish(toPublish);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void releaseStable() {
+        try {
+            releaseStable(System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("Failed to release the stable stations", e);
+        }
+    }
+
+    private void publishOrCount(boolean publish, OcppEvent event) {
+        if (publish) {
+            eventBus.publish(event);
+        } else {
+            suppressedEventCount.increment();
+        }
+    }
+
+    /**
+     * The state is only modified while holding its lock. A state that was removed in the meantime is not used, but
+     * replaced by a new one.
+     */
+    private <T> T withState(String chargeBoxId, Function<FlapState, T> function) {
+        while (true) {
+            FlapState state = states.computeIfAbsent(chargeBoxId, k -> new FlapState());
+            synchronized (state) {
+                if (!state.removed) {
+                    return function.apply(state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the lock of the state
+     */
+    private double decay(FlapState state, long now) {
+        long elapsed = now - state.updatedAt;
+        if (elapsed > 0) {
+            state.score *= Math.exp(-decayPerMilli * elapsed);
+            state.updatedAt = now;
+        }
+        return state.score;
+    }
+
+    private static class FlapState {
+        private double score;
+        private long updatedAt;
+        private boolean suppressed;
+        private boolean removed;
+
+        private boolean connected;
+        private boolean publishedConnected;
+        private OcppProtocol writtenProtocol;
+
+        private int disconnects;
+        private long lastConnectAt;
+        private long lastDisconnectAt;
+    }
+}
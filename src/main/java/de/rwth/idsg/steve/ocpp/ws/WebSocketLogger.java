@@ -18,6 +18,7 @@
  */
 package de.rwth.idsg.steve.ocpp.ws;
 
+import de.rwth.idsg.steve.ocpp.ws.traffic.TrafficLog;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.WebSocketSession;
@@ -40,7 +41,7 @@ public final class WebSocketLogger {
     }
 
     public static void sending(String chargeBoxId, WebSocketSession session, String msg) {
-        log.info("[chargeBoxId={}, sessionId={}] Sending: {}", chargeBoxId, session.getId(), msg);
+        TrafficLog.INSTANCE.sent(chargeBoxId, session.getId(), msg);
     }
 
     public static void sendingPing(String chargeBoxId, WebSocketSession session) {
@@ -52,7 +53,7 @@ public final class WebSocketLogger {
     }
 
     public static void receivedText(String chargeBoxId, WebSocketSession session, String msg) {
-        log.info("[chargeBoxId={}, sessionId={}] Received: {}", chargeBoxId, session.getId(), msg);
+        TrafficLog.INSTANCE.received(chargeBoxId, session.getId(), msg);
     }
 
     public static void receivedEmptyText(String chargeBoxId, WebSocketSession session) {
@@ -0,0 +1,147 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.rwth.idsg.steve.SteveException;
+import de.rwth.idsg.steve.ocpp.CommunicationTask;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.ws.JsonObjectMapper;
+import de.rwth.idsg.steve.ocpp.ws.data.CommunicationContext;
+import de.rwth.idsg.steve.ocpp.ws.data.FutureResponseContext;
+import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonCall;
+import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonResult;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * The sending side of the internal channel: Delivers an outgoing CALL to the node that holds the session of the
+ * station, and feeds the outcome into the {@link CommunicationTask}, as if the station was connected to this node.
+ */
+@Slf4j
+@Component
+public class ClusterCallForwarder {
+
+    static final String CALLS_PATH = "/cluster/calls";
+    static final String SECRET_HEADER = "X-SteVe-Cluster-Secret";
+
+    @Autowired private ClusterService clusterService;
+
+    private final ObjectMapper mapper = JsonObjectMapper.INSTANCE.getMapper();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+                                                    .connectTimeout(Duration.ofSeconds(5))
+                                                    .build();
+
+    @Nullable
+    public ClusterNode findRemoteOwner(String chargeBoxId) {
+        return clusterService.findRemoteOwner(chargeBoxId);
+    }
+
+    public void forward(ClusterNode owner, OcppVersion version, String chargeBoxId,
+                        OcppJsonCall call, FutureResponseContext frc) {
+        ForwardedCall forwardedCall = new ForwardedCall(
+                chargeBoxId, version, call.getAction(), mapper.valueToTree(call.getPayload())
+        );
+
+        byte[] body;
+        try {
+            body = mapper.writeValueAsBytes(forwardedCall);
+        } catch (JsonProcessingException e) {
+            throw new SteveException("Could not serialize the call for chargeBoxId '%s'", chargeBoxId, e);
+        }
+
+        // give the owner a chance to respond with its own timeout, before we give up
+        int timeoutInSeconds = clusterService.getForwardTimeoutInSeconds() + 5;
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(owner.getAddress() + CALLS_PATH))
+                                         .timeout(Duration.ofSeconds(timeoutInSeconds))
+                                         .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                                         .header(SECRET_HEADER, clusterService.getSecret())
+                                         .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                                         .build();
+
+        log.debug("Forwarding '{}' for chargeBoxId '{}' to node '{}'", call.getAction(), chargeBoxId, owner.getNodeId());
+
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                  .whenComplete((response, throwable) -> {
+                      if (throwable != null) {
+                          failed(frc.getTask(), chargeBoxId,
+                                 new SteveException("Forwarding to node '%s' failed", owner.getNodeId(), throwable));
+                      } else {
+                          handleResponse(owner, chargeBoxId, frc, response);
+                      }
+                  });
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void handleResponse(ClusterNode owner, String chargeBoxId, FutureResponseContext frc,
+                                HttpResponse<byte[]> response) {
+        CommunicationTask task = frc.getTask();
+
+        if (response.statusCode() != HttpStatus.OK.value()) {
+            failed(task, chargeBoxId,
+                   new SteveException("Node '%s' responded with HTTP status %s", owner.getNodeId(), response.statusCode()));
+            return;
+        }
+
+        try {
+            ForwardedCallResult result = mapper.readValue(response.body(), ForwardedCallResult.class);
+
+            // no session, since the response is not coming from the station, but it should be handled the same way
+            CommunicationContext context = new CommunicationContext(null, chargeBoxId);
+
+            if (result.isSetResult()) {
+                OcppJsonResult jsonResult = new OcppJsonResult();
+                jsonResult.setPayload(mapper.treeToValue(result.getResult(), frc.getResponseClass()));
+                context.createResultHandler(task);
+                context.getResultHandler().accept(jsonResult);
+
+            } else if (result.isSetError()) {
+                context.createErrorHandler(task);
+                context.getErrorHandler().accept(result.toError());
+
+            } else {
+                failed(task, chargeBoxId,
+                       new SteveException("Node '%s' could not deliver the call: %s", owner.getNodeId(), result.getFailure()));
+            }
+        } catch (Exception e) {
+            failed(task, chargeBoxId, e);
+        }
+    }
+
+    private static void failed(CommunicationTask task, String chargeBoxId, Exception e) {
+        log.error("Forwarded call for chargeBoxId '{}' failed", chargeBoxId, e);
+        task.defaultCallback().failed(chargeBoxId, e);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.rwth.idsg.ocpp.jaxb.RequestType;
+import de.rwth.idsg.steve.ocpp.OcppTransport;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.ws.AbstractWebSocketEndpoint;
+import de.rwth.idsg.steve.ocpp.ws.ChargePointServiceInvoker;
+import de.rwth.idsg.steve.ocpp.ws.JsonObjectMapper;
+import de.rwth.idsg.steve.ocpp.ws.TypeStore;
+import de.rwth.idsg.steve.ocpp.ws.ocpp12.Ocpp12TypeStore;
+import de.rwth.idsg.steve.ocpp.ws.ocpp12.Ocpp12WebSocketEndpoint;
+import de.rwth.idsg.steve.ocpp.ws.ocpp15.Ocpp15TypeStore;
+import de.rwth.idsg.steve.ocpp.ws.ocpp15.Ocpp15WebSocketEndpoint;
+import de.rwth.idsg.steve.ocpp.ws.ocpp16.Ocpp16TypeStore;
+import de.rwth.idsg.steve.ocpp.ws.ocpp16.Ocpp16WebSocketEndpoint;
+import de.rwth.idsg.steve.ocpp.ws.pipeline.OutgoingCallPipeline;
+import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The receiving side of the internal channel: Sends a {@link ForwardedCall} to the station over the local session.
+ * The call is never forwarded again, even if the station disconnected in the meantime, to prevent ping-pong
+ * between the nodes.
+ */
+@Slf4j
+@Component
+public class ClusterCallReceiver {
+
+    @Autowired private ClusterService clusterService;
+    @Autowired private OutgoingCallPipeline pipeline;
+    @Autowired private Ocpp12WebSocketEndpoint ocpp12WebSocketEndpoint;
+    @Autowired private Ocpp15WebSocketEndpoint ocpp15WebSocketEndpoint;
+    @Autowired private Ocpp16WebSocketEndpoint ocpp16WebSocketEndpoint;
+
+    private final ObjectMapper mapper = JsonObjectMapper.INSTANCE.getMapper();
+
+    private final Map<OcppVersion, ChargePointServiceInvoker> invokers = new EnumMap<>(OcppVersion.class);
+    private final Map<OcppVersion, TypeStore> typeStores = new EnumMap<>(OcppVersion.class);
+
+    @PostConstruct
+    public void init() {
+        register(ocpp12WebSocketEndpoint, Ocpp12TypeStore.INSTANCE);
+        register(ocpp15WebSocketEndpoint, Ocpp15TypeStore.INSTANCE);
+        register(ocpp16WebSocketEndpoint, Ocpp16TypeStore.INSTANCE);
+    }
+
+    public CompletableFuture<ForwardedCallResult> execute(ForwardedCall call) {
+        String chargeBoxId = call.getChargeBoxId();
+
+        TypeStore typeStore = typeStores.get(call.getVersion());
+        Class<? extends RequestType> requestClass = typeStore.findOutgoingRequestClass(call.getAction());
+        if (requestClass == null) {
+            return failure("Action '" + call.getAction() + "' is not found for " + call.getVersion());
+        }
+
+        RequestType request;
+        try {
+            request = mapper.treeToValue(call.getPayload(), requestClass);
+        } catch (JsonProcessingException e) {
+            log.error("Could not deserialize the forwarded call '{}' for chargeBoxId '{}'", call.getAction(), chargeBoxId, e);
+            return failure("Payload of action '" + call.getAction() + "' could not be deserialized");
+        }
+
+        log.debug("Executing forwarded call '{}' for chargeBoxId '{}'", call.getAction(), chargeBoxId);
+
+        ChargePointSelect cps = new ChargePointSelect(OcppTransport.JSON, chargeBoxId);
+        ForwardedCallTask task = new ForwardedCallTask(call.getVersion(), cps, request);
+        invokers.get(call.getVersion()).runPipeline(cps, task);
+
+        return task.getResultFuture()
+                   .completeOnTimeout(
+                           ForwardedCallResult.ofFailure("The station did not respond in time"),
+                           clusterService.getForwardTimeoutInSeconds(),
+                           TimeUnit.SECONDS
+                   );
+    }
+
+    private void register(AbstractWebSocketEndpoint endpoint, TypeStore typeStore) {
+        // without a ClusterCallForwarder on purpose, see class javadoc
+        invokers.put(endpoint.getVersion(), new ChargePointServiceInvoker(pipeline, endpoint, typeStore));
+        typeStores.put(endpoint.getVersion(), typeStore);
+    }
+
+    private static CompletableFuture<ForwardedCallResult> failure(String message) {
+        return CompletableFuture.completedFuture(ForwardedCallResult.ofFailure(message));
+    }
+}
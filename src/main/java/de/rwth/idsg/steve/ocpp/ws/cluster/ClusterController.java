@@ -0,0 +1,82 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Internal channel between the nodes of a cluster. Not meant for any other client, therefore it is not part of the
+ * integration API and authenticated with the shared cluster secret instead.
+ */
+@Slf4j
+@Controller
+@ResponseBody
+@RequestMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+public class ClusterController {
+
+    private final ClusterService clusterService;
+    private final ClusterCallReceiver clusterCallReceiver;
+
+    public ClusterController(ClusterService clusterService, ClusterCallReceiver clusterCallReceiver) {
+        this.clusterService = clusterService;
+        this.clusterCallReceiver = clusterCallReceiver;
+    }
+
+    @RequestMapping(value = ClusterCallForwarder.CALLS_PATH, method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<ForwardedCallResult>> call(
+            @RequestHeader(value = ClusterCallForwarder.SECRET_HEADER, required = false) String secret,
+            @RequestBody ForwardedCall call) {
+
+        if (!clusterService.isEnabled()) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+
+        if (!isSecretValid(secret)) {
+            log.warn("Rejected forwarded call for chargeBoxId '{}' with an invalid cluster secret", call.getChargeBoxId());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+
+        return clusterCallReceiver.execute(call)
+                                  .thenApply(ResponseEntity::ok);
+    }
+
+    private boolean isSecretValid(String secret) {
+        if (secret == null || secret.isBlank()) {
+            return false;
+        }
+        // constant-time comparison
+        return MessageDigest.isEqual(
+                secret.getBytes(StandardCharsets.UTF_8),
+                clusterService.getSecret().getBytes(StandardCharsets.UTF_8)
+        );
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.cluster;
+
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.ws.ConnectedStationIndex;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.List;
+
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
+/**
+ * Publishes the stations connected to this node in the {@link SessionOwnershipRegistry}, so that the other
+ * nodes know where to forward the calls for these stations.
+ */
+@Slf4j
+@Service
+public class ClusterService {
+
+    @Autowired private SessionOwnershipRegistry registry;
+    @Autowired private ConnectedStationIndex connectedStationIndex;
+
+    @Getter private final boolean enabled;
+    @Getter private final ClusterNode self;
+    @Getter private final String secret;
+    @Getter private final int forwardTimeoutInSeconds;
+
+    public ClusterService() {
+        SteveConfiguration.Cluster config = CONFIG.getCluster();
+        enabled = config.isEnabled();
+        self = new ClusterNode(config.getNodeId(), config.getNodeAddress());
+        secret = config.getSecret();
+        forwardTimeoutInSeconds = config.getForwardTimeoutInSeconds();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+
+        // the sessions of a previous run are gone, no matter how it ended
+        registry.releaseAll(self);
+
+        connectedStationIndex.addConnectedListener(station -> registry.claim(station.getChargeBoxId(),
+                station.getProtocol().getVersion(), self));
+        connectedStationIndex.addDisconnectedListener(station -> registry.release(station.getChargeBoxId(), self));
+
+        log.info("Cluster mode is enabled. This node is {}", self);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        if (enabled) {
+            registry.releaseAll(self);
+        }
+    }
+
+    /**
+     * @return the node that holds the session of the station, if it is not this one
+     */
+    @Nullable
+    public ClusterNode findRemoteOwner(String chargeBoxId) {
+        if (!enabled) {
+            return null;
+        }
+
+        ClusterNode owner = registry.findOwner(chargeBoxId);
+        if (owner == null || self.equals(owner)) {
+            return null;
+        }
+        return owner;
+    }
+
+    /**
+     * @return the stations of the version that are connected to the other nodes
+     */
+    public List<String> getRemoteChargeBoxIdList(OcppVersion version) {
+        if (!enabled) {
+            return Collections.emptyList();
+        }
+        return registry.getChargeBoxIdList(version, self);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.cluster;
+
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import jooq.steve.db.tables.records.ClusterSessionOwnerRecord;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+import org.jooq.DSLContext;
+
+import java.util.List;
+
+import static jooq.steve.db.tables.ClusterSessionOwner.CLUSTER_SESSION_OWNER;
+
+@RequiredArgsConstructor
+public class DatabaseSessionOwnershipRegistry implements SessionOwnershipRegistry {
+
+    private final DSLContext ctx;
+
+    @Override
+    public void claim(String chargeBoxId, OcppVersion version, ClusterNode node) {
+        DateTime now = DateTime.now();
+
+        ctx.insertInto(CLUSTER_SESSION_OWNER)
+           .set(CLUSTER_SESSION_OWNER.CHARGE_BOX_ID, chargeBoxId)
+           .set(CLUSTER_SESSION_OWNER.OCPP_VERSION, version.getValue())
+           .set(CLUSTER_SESSION_OWNER.NODE_ID, node.getNodeId())
+           .set(CLUSTER_SESSION_OWNER.NODE_ADDRESS, node.getAddress())
+           .set(CLUSTER_SESSION_OWNER.CLAIMED_AT, now)
+           .onDuplicateKeyUpdate()
+           .set(CLUSTER_SESSION_OWNER.OCPP_VERSION, version.getValue())
+           .set(CLUSTER_SESSION_OWNER.NODE_ID, node.getNodeId())
+           .set(CLUSTER_SESSION_OWNER.NODE_ADDRESS, node.getAddress())
+           .set(CLUSTER_SESSION_OWNER.CLAIMED_AT, now)
+           .execute();
+    }
+
+    @Override
+    public void release(String chargeBoxId, ClusterNode node) {
+        ctx.deleteFrom(CLUSTER_SESSION_OWNER)
+           .where(CLUSTER_SESSION_OWNER.CHARGE_BOX_ID.eq(chargeBoxId))
+           .and(CLUSTER_SESSION_OWNER.NODE_ID.eq(node.getNodeId()))
+           .execute();
+    }
+
+    @Override
+    public void releaseAll(ClusterNode node) {
+        ctx.deleteFrom(CLUSTER_SESSION_OWNER)
+           .where(CLUSTER_SESSION_OWNER.NODE_ID.eq(node.getNodeId()))
+           .execute();
+    }
+
+    @Nullable
+    @Override
+    public ClusterNode findOwner(String chargeBoxId) {
+        ClusterSessionOwnerRecord r = ctx.selectFrom(CLUSTER_SESSION_OWNER)
+                                         .where(CLUSTER_SESSION_OWNER.CHARGE_BOX_ID.eq(chargeBoxId))
+                                         .fetchOne();
+        if (r == null) {
+            return null;
+        }
+        return new ClusterNode(r.getNodeId(), r.getNodeAddress());
+    }
+
+    @Override
+    public List<String> getChargeBoxIdList(OcppVersion version, ClusterNode excludedNode) {
+        return ctx.select(CLUSTER_SESSION_OWNER.CHARGE_BOX_ID)
+                  .from(CLUSTER_SESSION_OWNER)
+                  .where(CLUSTER_SESSION_OWNER.OCPP_VERSION.eq(version.getValue()))
+                  .and(CLUSTER_SESSION_OWNER.NODE_ID.ne(excludedNode.getNodeId()))
+                  .fetch(CLUSTER_SESSION_OWNER.CHARGE_BOX_ID);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.cluster;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.JsonNode;
+import de.rwth.idsg.steve.ocpp.ws.data.ErrorCode;
+import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonError;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The outcome of a {@link ForwardedCall}. Exactly one of these is set:
+ *
+ * - result: CALL_RESULT payload of the station
+ * - errorCode (+ description, details): CALL_ERROR of the station
+ * - failure: the call could not be delivered to the station
+ */
+@Getter
+@Setter
+public class ForwardedCallResult {
+    private JsonNode result;
+
+    private ErrorCode errorCode;
+    private String errorDescription;
+    private String errorDetails;
+
+    private String failure;
+
+    public static ForwardedCallResult ofResult(JsonNode result) {
+        ForwardedCallResult r = new ForwardedCallResult();
+        r.setResult(result);
+        return r;
+    }
+
+    public static ForwardedCallResult ofError(OcppJsonError error) {
+        ForwardedCallResult r = new ForwardedCallResult();
+        r.setErrorCode(error.getErrorCode());
+        r.setErrorDescription(error.getErrorDescription());
+        r.setErrorDetails(error.getErrorDetails());
+        return r;
+    }
+
+    public static ForwardedCallResult ofFailure(String failure) {
+        ForwardedCallResult r = new ForwardedCallResult();
+        r.setFailure(failure);
+        return r;
+    }
+
+    @JsonIgnore
+    public OcppJsonError toError() {
+        OcppJsonError error = new OcppJsonError();
+        error.setErrorCode(errorCode);
+        error.setErrorDescription(errorDescription);
+        error.setErrorDetails(errorDetails);
+        return error;
+    }
+
+    @JsonIgnore
+    public boolean isSetResult() {
+        return result != null;
+    }
+
+    @JsonIgnore
+    public boolean isSetError() {
+        return errorCode != null;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.rwth.idsg.ocpp.jaxb.RequestType;
+import de.rwth.idsg.ocpp.jaxb.ResponseType;
+import de.rwth.idsg.steve.ocpp.CommunicationTask;
+import de.rwth.idsg.steve.ocpp.OcppCallback;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.ws.JsonObjectMapper;
+import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonError;
+import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
+import de.rwth.idsg.steve.web.dto.ocpp.ChargePointSelection;
+
+import javax.xml.ws.AsyncHandler;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Executes a {@link ForwardedCall} at the node that holds the session. The actual task (with its callbacks and
+ * result bookkeeping) lives at the node where the call was triggered, this one only captures the outcome to be
+ * sent back.
+ */
+public class ForwardedCallTask extends CommunicationTask<ChargePointSelection, ResponseType> {
+
+    private static final ObjectMapper MAPPER = JsonObjectMapper.INSTANCE.getMapper();
+
+    private final RequestType request;
+    private final CompletableFuture<ForwardedCallResult> resultFuture = new CompletableFuture<>();
+
+    public ForwardedCallTask(OcppVersion ocppVersion, ChargePointSelect cps, RequestType request) {
+        super(ocppVersion, () -> Collections.singletonList(cps));
+        this.request = request;
+    }
+
+    public CompletableFuture<ForwardedCallResult> getResultFuture() {
+        return resultFuture;
+    }
+
+    @Override
+    public OcppCallback<ResponseType> defaultCallback() {
+        return new ForwardedCallCallback();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends RequestType> T getOcpp12Request() {
+        return (T) request;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends RequestType> T getOcpp15Request() {
+        return (T) request;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends RequestType> T getOcpp16Request() {
+        return (T) request;
+    }
+
+    @Override
+    public <T extends ResponseType> AsyncHandler<T> getOcpp12Handler(String chargeBoxId) {
+        return createHandler(chargeBoxId);
+    }
+
+    @Override
+    public <T extends ResponseType> AsyncHandler<T> getOcpp15Handler(String chargeBoxId) {
+        return createHandler(chargeBoxId);
+    }
+
+    @Override
+    public <T extends ResponseType> AsyncHandler<T> getOcpp16Handler(String chargeBoxId) {
+        return createHandler(chargeBoxId);
+    }
+
+    private <T extends ResponseType> AsyncHandler<T> createHandler(String chargeBoxId) {
+        return res -> {
+            try {
+                success(chargeBoxId, res.get());
+            } catch (Exception e) {
+                failed(chargeBoxId, e);
+            }
+        };
+    }
+
+    // -------------------------------------------------------------------------
+    // Classes
+    // -------------------------------------------------------------------------
+
+    /**
+     * Invoked by the super constructor already, therefore it must not capture any fields at creation time.
+     */
+    private class ForwardedCallCallback implements OcppCallback<ResponseType> {
+
+        @Override
+        public void success(String chargeBoxId, ResponseType response) {
+            resultFuture.complete(ForwardedCallResult.ofResult(MAPPER.valueToTree(response)));
+        }
+
+        @Override
+        public void success(String chargeBoxId, OcppJsonError error) {
+            resultFuture.complete(ForwardedCallResult.ofError(error));
+        }
+
+        @Override
+        public void failed(String chargeBoxId, Exception e) {
+            resultFuture.complete(ForwardedCallResult.ofFailure(e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.cluster;
+
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stand-in for a shared registry, if all nodes (or the only node) live in the same JVM.
+ */
+public class InMemorySessionOwnershipRegistry implements SessionOwnershipRegistry {
+
+    /**
+     * Key   (String) = chargeBoxId
+     * Value (Claim)  = the node that holds the session, and the version of it
+     */
+    private final ConcurrentHashMap<String, Claim> lookupTable = new ConcurrentHashMap<>();
+
+    @Override
+    public void claim(String chargeBoxId, OcppVersion version, ClusterNode node) {
+        lookupTable.put(chargeBoxId, new Claim(node, version));
+    }
+
+    @Override
+    public void release(String chargeBoxId, ClusterNode node) {
+        lookupTable.computeIfPresent(chargeBoxId, (id, claim) -> claim.node.equals(node) ? null : claim);
+    }
+
+    @Override
+    public void releaseAll(ClusterNode node) {
+        lookupTable.values().removeIf(claim -> claim.node.equals(node));
+    }
+
+    @Nullable
+    @Override
+    public ClusterNode findOwner(String chargeBoxId) {
+        Claim claim = lookupTable.get(chargeBoxId);
+        return claim == null ? null : claim.node;
+    }
+
+    @Override
+    public List<String> getChargeBoxIdList(OcppVersion version, ClusterNode excludedNode) {
+        List<String> list = new ArrayList<>();
+        for (Map.Entry<String, Claim> entry : lookupTable.entrySet()) {
+            Claim claim = entry.getValue();
+            if (claim.version == version && !claim.node.equals(excludedNode)) {
+                list.add(entry.getKey());
+            }
+        }
+        return list;
+    }
+
+    @RequiredArgsConstructor
+    private static final class Claim {
+        private final ClusterNode node;
+        private final OcppVersion version;
+    }
+}
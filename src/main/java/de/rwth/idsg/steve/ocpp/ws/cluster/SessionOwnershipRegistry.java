@@ -0,0 +1,56 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.cluster;
+
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Keeps track of which node of the cluster holds the WebSocket session(s) of a station. A station is connected
+ * to exactly one node at a time (the load balancer decides which one), but the outgoing calls can be triggered
+ * at any node.
+ */
+public interface SessionOwnershipRegistry {
+
+    /**
+     * The station connected to the node. The last claim wins, since a reconnecting station might land on
+     * another node before the old node noticed the disconnect.
+     */
+    void claim(String chargeBoxId, OcppVersion version, ClusterNode node);
+
+    /**
+     * The station disconnected from the node. Has no effect, if the station is already claimed by another node.
+     */
+    void release(String chargeBoxId, ClusterNode node);
+
+    /**
+     * Removes all claims of the node, e.g. leftovers of a previous run that was not shut down gracefully.
+     */
+    void releaseAll(ClusterNode node);
+
+    @Nullable
+    ClusterNode findOwner(String chargeBoxId);
+
+    /**
+     * @return the stations of the version, whose sessions are held by any node other than the given one
+     */
+    List<String> getChargeBoxIdList(OcppVersion version, ClusterNode excludedNode);
+}
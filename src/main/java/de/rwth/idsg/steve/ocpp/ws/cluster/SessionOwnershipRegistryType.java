@@ -0,0 +1,42 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.cluster;
+
+public enum SessionOwnershipRegistryType {
+
+    /**
+     * Ownership is stored in the shared database. This is the one to use with multiple nodes.
+     */
+    DATABASE,
+
+    /**
+     * Ownership is kept in the memory of the JVM. Only meaningful for a single node or for tests, in which
+     * multiple nodes run within the same JVM.
+     */
+    IN_MEMORY;
+
+    public static SessionOwnershipRegistryType fromName(String v) {
+        for (SessionOwnershipRegistryType t : SessionOwnershipRegistryType.values()) {
+            if (t.name().equals(v)) {
+                return t;
+            }
+        }
+        throw new IllegalArgumentException("Could not find a valid SessionOwnershipRegistryType for name: " + v);
+    }
+}
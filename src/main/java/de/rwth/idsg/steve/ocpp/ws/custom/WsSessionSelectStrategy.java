@@ -21,16 +21,19 @@ package de.rwth.idsg.steve.ocpp.ws.custom;
 import de.rwth.idsg.steve.ocpp.ws.data.SessionContext;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.util.Deque;
+import java.util.List;
 
 /**
  * We want to support multiple connections to a charge point. For sending messages we need a
  * mechanism to select one WebSocketSession. Implementations of this interface should use
  * different mechanisms to realize that.
  *
+ * The list of session contexts is immutable and in the order the sessions were opened. The select count is
+ * incremented for every call for the same station, so that stateful strategies do not need to keep state.
+ *
  * @author Sevket Goekay <sevketgokay@gmail.com>
  * @since 30.04.2015
  */
 public interface WsSessionSelectStrategy {
-    WebSocketSession getSession(Deque<SessionContext> sessionContexts);
+    WebSocketSession getSession(List<SessionContext> sessionContexts, int selectCount);
 }
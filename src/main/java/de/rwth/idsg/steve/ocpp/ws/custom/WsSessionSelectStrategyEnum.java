@@ -22,7 +22,7 @@ import de.rwth.idsg.steve.ocpp.ws.data.SessionContext;
 import lombok.Getter;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.util.Deque;
+import java.util.List;
 
 /**
  * @author Sevket Goekay <sevketgokay@gmail.com>
@@ -36,8 +36,8 @@ public enum WsSessionSelectStrategyEnum implements WsSessionSelectStrategy {
          * Always use the last opened session/connection.
          */
         @Override
-        public WebSocketSession getSession(Deque<SessionContext> sessionContexts) {
-            return sessionContexts.getLast().getSession();
+        public WebSocketSession getSession(List<SessionContext> sessionContexts, int selectCount) {
+            return sessionContexts.get(sessionContexts.size() - 1).getSession();
         }
     },
 
@@ -47,11 +47,9 @@ public enum WsSessionSelectStrategyEnum implements WsSessionSelectStrategy {
          * This would allow to distribute load to different connections.
          */
         @Override
-        public WebSocketSession getSession(Deque<SessionContext> sessionContexts) {
-            // Remove the first item, and add at the end
-            SessionContext s = sessionContexts.removeFirst();
-            sessionContexts.addLast(s);
-            return s.getSession();
+        public WebSocketSession getSession(List<SessionContext> sessionContexts, int selectCount) {
+            // floorMod, since the count overflows eventually
+            return sessionContexts.get(Math.floorMod(selectCount, sessionContexts.size())).getSession();
         }
     };
 
@@ -0,0 +1,67 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.data;
+
+import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import lombok.Getter;
+import org.joda.time.DateTime;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection metadata of a WebSocket/JSON station. The identity fields are final, the rest is updated
+ * in place from the message handling threads.
+ */
+public final class ConnectedStation {
+
+    @Getter private final String chargeBoxId;
+    @Getter private final OcppProtocol protocol;
+    @Getter private final DateTime openSince;
+
+    private volatile long lastSeenMillis;
+    private final AtomicInteger inFlightCalls = new AtomicInteger(0);
+
+    public ConnectedStation(String chargeBoxId, OcppProtocol protocol, DateTime openSince) {
+        this.chargeBoxId = chargeBoxId;
+        this.protocol = protocol;
+        this.openSince = openSince;
+        this.lastSeenMillis = openSince.getMillis();
+    }
+
+    public DateTime getLastSeen() {
+        return new DateTime(lastSeenMillis);
+    }
+
+    public int getInFlightCalls() {
+        return inFlightCalls.get();
+    }
+
+    public void touch(long millis) {
+        lastSeenMillis = millis;
+    }
+
+    public void incrementInFlight() {
+        inFlightCalls.incrementAndGet();
+    }
+
+    public void decrementInFlight(int count) {
+        // never go below zero, e.g. for a response that arrives after the calls of the session were dropped
+        inFlightCalls.accumulateAndGet(count, (current, delta) -> Math.max(0, current - delta));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.data;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of all WebSocket sessions of one endpoint at a given version of the store. Since nothing
+ * in here can change, the same instance is handed out to all readers until the store is modified again.
+ */
+@RequiredArgsConstructor
+public final class SessionContextSnapshot {
+
+    public static final SessionContextSnapshot EMPTY = new SessionContextSnapshot(0, ImmutableMap.of());
+
+    @Getter private final long version;
+
+    /**
+     * Key   (String)               = chargeBoxId
+     * Value (List<SessionContext>) = WebSocket session contexts, in the order they were opened
+     */
+    private final ImmutableMap<String, ImmutableList<SessionContext>> contexts;
+
+    public boolean isConnected(String chargeBoxId) {
+        return contexts.containsKey(chargeBoxId);
+    }
+
+    public List<SessionContext> get(String chargeBoxId) {
+        List<SessionContext> list = contexts.get(chargeBoxId);
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    public Set<String> getChargeBoxIds() {
+        return contexts.keySet();
+    }
+
+    public int getNumberOfChargeBoxes() {
+        return contexts.size();
+    }
+
+    public Map<String, ImmutableList<SessionContext>> asMap() {
+        return contexts;
+    }
+}
@@ -18,11 +18,13 @@
  */
 package de.rwth.idsg.steve.ocpp.ws.pipeline;
 
+import de.rwth.idsg.steve.metrics.OcppMetrics;
 import de.rwth.idsg.steve.ocpp.ws.data.CommunicationContext;
 import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonCall;
 import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonError;
 import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonMessage;
 import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonResult;
+import de.rwth.idsg.steve.ocpp.ws.traffic.MessageHistory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -40,27 +42,37 @@ public class IncomingPipeline implements Consumer<CommunicationContext> {
 
     private final Serializer serializer = Serializer.INSTANCE;
     private final Sender sender = Sender.INSTANCE;
+    private final MessageHistory messageHistory = MessageHistory.INSTANCE;
 
     private final Deserializer deserializer;
     private final AbstractCallHandler handler;
+    private final OcppMetrics.CallMetrics callMetrics;
 
     @Override
     public void accept(CommunicationContext context) {
+        long startNanos = System.nanoTime();
+        messageHistory.received(context.getChargeBoxId(), context.getSession().getId(), context.getIncomingString());
         deserializer.accept(context);
 
         // When the incoming could not be deserialized
         if (context.isSetOutgoingError()) {
             serializer.accept(context);
             sender.accept(context);
+            callMetrics.record(startNanos, OcppMetrics.UNKNOWN_ACTION, true);
             return;
         }
 
         OcppJsonMessage msg = context.getIncomingMessage();
 
         if (msg instanceof OcppJsonCall) {
-            handler.accept(context);
-            serializer.accept(context);
-            sender.accept(context);
+            startNanos = callMetrics.started();
+            try {
+                handler.accept(context);
+                serializer.accept(context);
+                sender.accept(context);
+            } finally {
+                callMetrics.finished(startNanos, ((OcppJsonCall) msg).getAction(), context.isSetOutgoingError());
+            }
 
         } else if (msg instanceof OcppJsonResult) {
             context.getResultHandler()
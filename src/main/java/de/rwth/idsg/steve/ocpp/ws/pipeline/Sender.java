@@ -18,11 +18,11 @@
  */
 package de.rwth.idsg.steve.ocpp.ws.pipeline;
 
-import com.google.common.base.Strings;
 import de.rwth.idsg.steve.SteveException;
 import de.rwth.idsg.steve.ocpp.ws.WebSocketLogger;
 import de.rwth.idsg.steve.ocpp.ws.data.CommunicationContext;
 import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonCall;
+import de.rwth.idsg.steve.ocpp.ws.traffic.MessageHistory;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
@@ -42,16 +42,12 @@ public enum Sender implements Consumer<CommunicationContext> {
 
     @Override
     public void accept(CommunicationContext context) {
-        String incomingString = context.getIncomingString();
         String outgoingString = context.getOutgoingString();
         String chargeBoxId = context.getChargeBoxId();
         WebSocketSession session = context.getSession();
 
-        if (Strings.isNullOrEmpty(incomingString)) {
-            WebSocketLogger.sending(chargeBoxId, session, outgoingString);
-        } else if (!context.getIncomingString().contains("Heartbeat")) {
-            WebSocketLogger.sending(chargeBoxId, session, outgoingString);
-        }
+        WebSocketLogger.sending(chargeBoxId, session, outgoingString);
+        MessageHistory.INSTANCE.sent(chargeBoxId, session.getId(), outgoingString);
 
         TextMessage out = new TextMessage(outgoingString);
         try {
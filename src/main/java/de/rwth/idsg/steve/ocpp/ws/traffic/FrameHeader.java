@@ -0,0 +1,105 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.traffic;
+
+import de.rwth.idsg.steve.ocpp.ws.data.MessageType;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Message type, id and action of an OCPP-J frame, read from its beginning without parsing the JSON.
+ * For frames that do not start like an OCPP-J message, all fields are null.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class FrameHeader {
+
+    // for frames without a message type, and responses whose call is not known
+    static final String UNKNOWN_ACTION = "Unknown";
+
+    private static final FrameHeader INVALID = new FrameHeader(null, null, null);
+
+    @Nullable private final MessageType messageType;
+    @Nullable private final String messageId;
+    // only set for calls
+    @Nullable private final String action;
+
+    static FrameHeader parse(String frame) {
+        int i = skipWhitespace(frame, 0);
+        if (!charAt(frame, i, '[')) {
+            return INVALID;
+        }
+
+        i = skipWhitespace(frame, i + 1);
+        if (i >= frame.length() || frame.charAt(i) < '2' || frame.charAt(i) > '4') {
+            return INVALID;
+        }
+        MessageType messageType = MessageType.fromTypeNr(frame.charAt(i) - '0');
+
+        i = skipWhitespace(frame, i + 1);
+        if (!charAt(frame, i, ',')) {
+            return INVALID;
+        }
+        i = skipWhitespace(frame, i + 1);
+        int end = endOfString(frame, i);
+        if (end < 0) {
+            return INVALID;
+        }
+        String messageId = frame.substring(i + 1, end);
+
+        if (messageType != MessageType.CALL) {
+            return new FrameHeader(messageType, messageId, null);
+        }
+
+        i = skipWhitespace(frame, end + 1);
+        if (!charAt(frame, i, ',')) {
+            return INVALID;
+        }
+        i = skipWhitespace(frame, i + 1);
+        end = endOfString(frame, i);
+        if (end < 0) {
+            return INVALID;
+        }
+        return new FrameHeader(messageType, messageId, frame.substring(i + 1, end));
+    }
+
+    private static int skipWhitespace(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean charAt(String s, int i, char c) {
+        return i < s.length() && s.charAt(i) == c;
+    }
+
+    /**
+     * @param start index of the opening quote
+     * @return index of the closing quote, or -1. Ids and actions do not contain escaped quotes.
+     */
+    private static int endOfString(String s, int start) {
+        if (!charAt(s, start, '"')) {
+            return -1;
+        }
+        return s.indexOf('"', start + 1);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.traffic;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The last frames of a station, overwriting the oldest. The frames are encoded as UTF-8 into a direct buffer of fixed
+ * size, so that they neither count against the heap nor have to be copied by the GC. Only a few numbers per frame
+ * are kept on the heap.
+ *
+ * Every frame is stored contiguously: if it does not fit into the rest of the buffer, it starts at the beginning
+ * again. A frame that is larger than the whole buffer is cut off.
+ */
+final class FrameRingBuffer {
+
+    private final ByteBuffer data;
+    private final int capacity;
+    private final CharsetEncoder encoder = UTF_8.newEncoder()
+                                               .onMalformedInput(CodingErrorAction.REPLACE)
+                                               .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // per frame, indexed by slot
+    private final long[] timestamps;
+    private final boolean[] sent;
+    private final String[] sessionIds;
+    // positions only grow, the position in the buffer is the remainder of the capacity
+    private final long[] positions;
+    private final int[] byteLengths;
+    private final int[] charLengths;
+
+    // slot of the oldest frame
+    private int first;
+    private int count;
+    private long nextPosition;
+
+    FrameRingBuffer(int maxFrames, int capacityInBytes) {
+        this.data = ByteBuffer.allocateDirect(capacityInBytes);
+        this.capacity = capacityInBytes;
+        this.timestamps = new long[maxFrames];
+        this.sent = new boolean[maxFrames];
+        this.sessionIds = new String[maxFrames];
+        this.positions = new long[maxFrames];
+        this.byteLengths = new int[maxFrames];
+        this.charLengths = new int[maxFrames];
+    }
+
+    synchronized void add(long timestamp, boolean isSent, String sessionId, String frame) {
+        int length = Math.min(utf8Length(frame), capacity);
+
+        long position = nextPosition;
+        int offset = (int) (position % capacity);
+        if (offset + length > capacity) {
+            position += capacity - offset;
+            offset = 0;
+        }
+        long end = position + length;
+
+        // a frame survives, as long as it lies within the last capacity bytes
+        while (count > 0 && (count == timestamps.length || positions[first] < end - capacity)) {
+            sessionIds[first] = null;
+            first = (first + 1) % timestamps.length;
+            count--;
+        }
+
+        data.limit(offset + length).position(offset);
+        encoder.reset();
+        // an overflow only means that the frame is cut off at the end of the buffer
+        encoder.encode(CharBuffer.wrap(frame), data, true);
+        encoder.flush(data);
+
+        int slot = (first + count) % timestamps.length;
+        timestamps[slot] = timestamp;
+        sent[slot] = isSent;
+        sessionIds[slot] = sessionId;
+        positions[slot] = position;
+        byteLengths[slot] = data.position() - offset;
+        charLengths[slot] = frame.length();
+
+        count++;
+        nextPosition = position + byteLengths[slot];
+    }
+
+    /**
+     * @return the frames, the oldest first
+     */
+    synchronized List<Frame> getFrames() {
+        List<Frame> frames = new ArrayList<>(count);
+        ByteBuffer view = data.duplicate();
+        for (int i = 0; i < count; i++) {
+            int slot = (first + i) % timestamps.length;
+            int offset = (int) (positions[slot] % capacity);
+            view.limit(offset + byteLengths[slot]).position(offset);
+            frames.add(new Frame(timestamps[slot], sent[slot], sessionIds[slot], charLengths[slot], UTF_8.decode(view).toString()));
+        }
+        return frames;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Length of the string in UTF-8, without encoding it. Unpaired surrogates are replaced by one byte.
+     */
+    static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    static final class Frame {
+        final long timestamp;
+        final boolean sent;
+        final String sessionId;
+        final int length;
+        final String payload;
+
+        private Frame(long timestamp, boolean sent, String sessionId, int length, String payload) {
+            this.timestamp = timestamp;
+            this.sent = sent;
+            this.sessionId = sessionId;
+            this.length = length;
+            this.payload = payload;
+        }
+    }
+}
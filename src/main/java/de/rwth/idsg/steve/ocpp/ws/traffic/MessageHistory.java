@@ -0,0 +1,203 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.traffic;
+
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.ocpp.ws.data.MessageType;
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
+/**
+ * The last raw OCPP-J frames of every station, so that the communication with a misbehaving station can be looked
+ * at without searching the log files. Fed by the pipelines with every frame that is received or sent.
+ *
+ * The history of a station is kept for a while after it disconnects, since the frames before a connection loss are
+ * often the interesting ones. Its memory is allocated off-heap when the first frame arrives. It is released (i.e.
+ * left to the GC, which frees the direct buffer) when the station stays disconnected for the retention time. When the
+ * maximum number of stations is reached, the history of the station that disconnected first is released early to
+ * make room for a new one. Connected stations are never evicted: if all of them are connected, a new station gets no
+ * history until one disconnects. This way a new station costs O(1), even when the maximum is exceeded for good.
+ *
+ * There is no thread of its own: the histories are checked for expiry with the frames that arrive anyway.
+ */
+public enum MessageHistory {
+    INSTANCE;
+
+    private static final long EXPIRY_CHECK_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final int framesPerStation;
+    private final int bytesPerStation;
+    private final int maxStations;
+    private final long retentionMillis;
+
+    private final Map<String, StationHistory> histories = new ConcurrentHashMap<>();
+
+    // the disconnected stations in the order of their disconnect. Might contain stations that connected again, or
+    // whose history is released already. These are skipped and cleaned up with the expiry check.
+    private final Queue<String> disconnectedStations = new ConcurrentLinkedQueue<>();
+
+    private volatile long nextExpiryCheck;
+
+    MessageHistory() {
+        SteveConfiguration.TrafficLog config = CONFIG.getTrafficLog();
+        framesPerStation = config.getHistoryFramesPerStation();
+        bytesPerStation = config.getHistorySizeInKbPerStation() * 1024;
+        maxStations = config.getHistoryMaxStations();
+        retentionMillis = TimeUnit.MINUTES.toMillis(config.getHistoryRetentionInMinutes());
+    }
+
+    public void received(String chargeBoxId, String sessionId, String frame) {
+        add(chargeBoxId, false, sessionId, frame);
+    }
+
+    public void sent(String chargeBoxId, String sessionId, String frame) {
+        add(chargeBoxId, true, sessionId, frame);
+    }
+
+    /**
+     * Called when the last session of the station is closed. The history is released after the retention time,
+     * unless the station connects again.
+     */
+    public void disconnected(String chargeBoxId) {
+        StationHistory history = histories.get(chargeBoxId);
+        if (history != null) {
+            history.disconnectedAt = System.currentTimeMillis();
+            disconnectedStations.offer(chargeBoxId);
+        }
+    }
+
+    private void add(String chargeBoxId, boolean sent, String sessionId, String frame) {
+        if (framesPerStation == 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        expireIfDue(now);
+
+        StationHistory history = histories.get(chargeBoxId);
+        if (history == null) {
+            if (histories.size() >= maxStations && !evictDisconnected()) {
+                return;
+            }
+            history = histories.computeIfAbsent(chargeBoxId, k -> new StationHistory(framesPerStation, bytesPerStation));
+        }
+
+        history.disconnectedAt = 0;
+        history.buffer.add(now, sent, sessionId, frame);
+    }
+
+    /**
+     * @return the last frames of the station, the newest first
+     */
+    public List<TrafficEntry> getHistory(String chargeBoxId) {
+        StationHistory history = histories.get(chargeBoxId);
+        if (history == null) {
+            return Collections.emptyList();
+        }
+
+        List<FrameRingBuffer.Frame> frames = history.buffer.getFrames();
+        List<TrafficEntry> entries = new ArrayList<>(frames.size());
+
+        // responses get the action of the call with the same message id, as long as it is still in the history
+        Map<String, String> callActions = new HashMap<>();
+        for (FrameRingBuffer.Frame frame : frames) {
+            FrameHeader header = FrameHeader.parse(frame.payload);
+            String action = FrameHeader.UNKNOWN_ACTION;
+            if (header.getMessageType() == MessageType.CALL) {
+                action = header.getAction();
+                callActions.put(header.getMessageId(), action);
+            } else if (header.getMessageType() != null) {
+                action = callActions.getOrDefault(header.getMessageId(), FrameHeader.UNKNOWN_ACTION);
+            }
+
+            entries.add(new TrafficEntry(new DateTime(frame.timestamp),
+                    frame.sent ? TrafficEntry.Direction.SENT : TrafficEntry.Direction.RECEIVED, frame.sessionId,
+                    header.getMessageType(), header.getMessageId(), action, frame.length, frame.payload));
+        }
+
+        Collections.reverse(entries);
+        return entries;
+    }
+
+    /**
+     * @return the off-heap memory of all histories, in bytes
+     */
+    public long getAllocatedBytes() {
+        return (long) histories.size() * bytesPerStation;
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void expireIfDue(long now) {
+        if (now < nextExpiryCheck) {
+            return;
+        }
+        nextExpiryCheck = now + EXPIRY_CHECK_INTERVAL_MILLIS;
+
+        histories.values().removeIf(history -> {
+            long disconnectedAt = history.disconnectedAt;
+            return disconnectedAt > 0 && now - disconnectedAt >= retentionMillis;
+        });
+        disconnectedStations.removeIf(chargeBoxId -> !isDisconnected(histories.get(chargeBoxId)));
+    }
+
+    /**
+     * Makes room for the history of a new station by releasing the one of the station that disconnected first. With
+     * concurrent new stations, the maximum can be exceeded by a few.
+     *
+     * @return false, if all stations with a history are connected
+     */
+    private boolean evictDisconnected() {
+        String chargeBoxId;
+        while ((chargeBoxId = disconnectedStations.poll()) != null) {
+            StationHistory history = histories.get(chargeBoxId);
+            if (isDisconnected(history) && histories.remove(chargeBoxId, history)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDisconnected(StationHistory history) {
+        return history != null && history.disconnectedAt > 0;
+    }
+
+    private static final class StationHistory {
+        private final FrameRingBuffer buffer;
+        // 0 while connected
+        private volatile long disconnectedAt;
+
+        private StationHistory(int maxFrames, int capacityInBytes) {
+            this.buffer = new FrameRingBuffer(maxFrames, capacityInBytes);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.traffic;
+
+import de.rwth.idsg.steve.ocpp.ws.data.MessageType;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+
+/**
+ * A message that was received from or sent to a station, as kept in its {@link MessageHistory}
+ */
+@Getter
+@RequiredArgsConstructor
+public class TrafficEntry {
+
+    public enum Direction {
+        RECEIVED, SENT
+    }
+
+    private final DateTime timestamp;
+    private final Direction direction;
+    private final String sessionId;
+    @Nullable private final MessageType messageType;
+    @Nullable private final String messageId;
+    // for responses, the action of the call they belong to
+    private final String action;
+    // of the whole message, in characters
+    private final int length;
+    // only the beginning, if the message did not fit into the history
+    private final String payload;
+}
@@ -0,0 +1,237 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.traffic;
+
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.ocpp.ws.data.MessageType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
+/**
+ * Logs the OCPP-J messages off the hot path: the WebSocket threads only put the message into a bounded queue (and
+ * drop it, if the queue is full), a background thread does the rest. For every message, it
+ *
+ * - finds the action, for responses from the call with the same message id, and
+ * - logs it according to the rules of the action (level and sampling) with the payload truncated.
+ *
+ * Messages of stations with full payload logging are always logged at INFO, without truncation.
+ */
+@Slf4j
+public enum TrafficLog {
+    INSTANCE;
+
+    private static final int BATCH_SIZE = 256;
+
+    // calls without response (e.g. of disconnected stations) should not pile up forever
+    private static final int MAX_PENDING_CALLS = 100_000;
+
+    private final TrafficLogRules rules;
+    private final int maxPayloadLength;
+
+    private final BlockingQueue<Frame> queue;
+    private final LongAdder dropped = new LongAdder();
+
+    private final Set<String> fullPayloadStations = ConcurrentHashMap.newKeySet();
+
+    // only accessed by the background thread
+    private final Map<String, String> pendingCallActions = new HashMap<>();
+    private final Map<String, long[]> sampleCounters = new HashMap<>();
+
+    TrafficLog() {
+        SteveConfiguration.TrafficLog config = CONFIG.getTrafficLog();
+        rules = config.getRules();
+        maxPayloadLength = config.getMaxPayloadLength();
+        queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+
+        Thread worker = new Thread(this::run, "ocpp-traffic-log");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // -------------------------------------------------------------------------
+    // Hot path
+    // -------------------------------------------------------------------------
+
+    public void received(String chargeBoxId, String sessionId, String message) {
+        enqueue(new Frame(TrafficEntry.Direction.RECEIVED, chargeBoxId, sessionId, message));
+    }
+
+    public void sent(String chargeBoxId, String sessionId, String message) {
+        enqueue(new Frame(TrafficEntry.Direction.SENT, chargeBoxId, sessionId, message));
+    }
+
+    private void enqueue(Frame frame) {
+        if (!queue.offer(frame)) {
+            dropped.increment();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Runtime settings and queries
+    // -------------------------------------------------------------------------
+
+    public void setFullPayloadLogging(String chargeBoxId, boolean enabled) {
+        if (enabled) {
+            fullPayloadStations.add(chargeBoxId);
+        } else {
+            fullPayloadStations.remove(chargeBoxId);
+        }
+        log.info("Full payload logging for chargeBoxId={} is {}", chargeBoxId, enabled ? "on" : "off");
+    }
+
+    public boolean isFullPayloadLogging(String chargeBoxId) {
+        return fullPayloadStations.contains(chargeBoxId);
+    }
+
+    public Set<String> getFullPayloadStations() {
+        return Collections.unmodifiableSet(new TreeSet<>(fullPayloadStations));
+    }
+
+    /**
+     * @return the number of messages that were neither logged nor kept, since the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    // -------------------------------------------------------------------------
+    // Background thread
+    // -------------------------------------------------------------------------
+
+    private void run() {
+        List<Frame> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (Frame frame : batch) {
+                    process(frame);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Failed to log OCPP-J traffic", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(Frame frame) {
+        FrameHeader header = FrameHeader.parse(frame.message);
+        String action = resolveAction(frame.chargeBoxId, header);
+
+        boolean full = fullPayloadStations.contains(frame.chargeBoxId);
+        TrafficLogRules.Rule rule = full ? TrafficLogRules.ALL : rules.forAction(action);
+        if (rule.getLevel() == TrafficLogRules.Level.OFF || !isSampled(action, rule.getSampleEvery())) {
+            return;
+        }
+
+        String payload = full ? frame.message : truncate(frame.message);
+
+        String format = "[chargeBoxId={}, sessionId={}] {}: action={}, type={}, messageId={}, length={}, payload={}";
+        Object[] args = {
+                frame.chargeBoxId, frame.sessionId,
+                frame.direction == TrafficEntry.Direction.RECEIVED ? "Received" : "Sending",
+                action, header.getMessageType(), header.getMessageId(), frame.message.length(), payload
+        };
+
+        switch (rule.getLevel()) {
+            case DEBUG:
+                log.debug(format, args);
+                break;
+            case INFO:
+                log.info(format, args);
+                break;
+            case WARN:
+                log.warn(format, args);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Calls carry their action, responses get the one of the call with the same message id
+     */
+    private String resolveAction(String chargeBoxId, FrameHeader header) {
+        if (header.getMessageType() == null) {
+            return FrameHeader.UNKNOWN_ACTION;
+        }
+
+        String key = chargeBoxId + '/' + header.getMessageId();
+        if (header.getMessageType() == MessageType.CALL) {
+            if (pendingCallActions.size() >= MAX_PENDING_CALLS) {
+                pendingCallActions.clear();
+            }
+            pendingCallActions.put(key, header.getAction());
+            return header.getAction();
+        }
+
+        String action = pendingCallActions.remove(key);
+        return action == null ? FrameHeader.UNKNOWN_ACTION : action;
+    }
+
+    private boolean isSampled(String action, int sampleEvery) {
+        if (sampleEvery == 1) {
+            return true;
+        }
+        long[] counter = sampleCounters.computeIfAbsent(action, k -> new long[1]);
+        return counter[0]++ % sampleEvery == 0;
+    }
+
+    private String truncate(String message) {
+        if (maxPayloadLength <= 0 || message.length() <= maxPayloadLength) {
+            return message;
+        }
+        return message.substring(0, maxPayloadLength) + "...";
+    }
+
+    private static final class Frame {
+        private final TrafficEntry.Direction direction;
+        private final String chargeBoxId;
+        private final String sessionId;
+        private final String message;
+
+        private Frame(TrafficEntry.Direction direction, String chargeBoxId, String sessionId, String message) {
+            this.direction = direction;
+            this.chargeBoxId = chargeBoxId;
+            this.sessionId = sessionId;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.traffic;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per action, the level at which OCPP-J messages are logged and how many of them: "MeterValues=INFO/10" logs every
+ * tenth MeterValues request and response at INFO. "*" is the rule for all actions without an own rule.
+ */
+public final class TrafficLogRules {
+
+    public enum Level {
+        OFF, DEBUG, INFO, WARN
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Rule {
+        private final Level level;
+        // 1 for every message
+        private final int sampleEvery;
+    }
+
+    static final Rule ALL = new Rule(Level.INFO, 1);
+
+    private static final String WILDCARD = "*";
+
+    private final Map<String, Rule> rules;
+    private final Rule defaultRule;
+
+    private TrafficLogRules(Map<String, Rule> rules) {
+        this.rules = Collections.unmodifiableMap(rules);
+        this.defaultRule = rules.getOrDefault(WILDCARD, ALL);
+    }
+
+    public Rule forAction(String action) {
+        return rules.getOrDefault(action, defaultRule);
+    }
+
+    /**
+     * @param rules like "Heartbeat=DEBUG", "MeterValues=INFO/10" or "*=INFO". If empty, everything is logged at INFO.
+     */
+    public static TrafficLogRules parse(List<String> rules) {
+        Map<String, Rule> map = new HashMap<>();
+        for (String rule : rules) {
+            int equals = rule.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Traffic log rule '" + rule + "' is not of the form <action>=<level>[/<n>]");
+            }
+
+            String action = rule.substring(0, equals).trim();
+            String value = rule.substring(equals + 1).trim();
+
+            int sampleEvery = 1;
+            int slash = value.indexOf('/');
+            if (slash >= 0) {
+                sampleEvery = Integer.parseInt(value.substring(slash + 1).trim());
+                value = value.substring(0, slash).trim();
+                if (sampleEvery < 1) {
+                    throw new IllegalArgumentException("Traffic log rule '" + rule + "' must sample every n >= 1 messages");
+                }
+            }
+
+            map.put(action, new Rule(Level.valueOf(value.toUpperCase()), sampleEvery));
+        }
+        return new TrafficLogRules(map);
+    }
+}
@@ -39,6 +39,11 @@ import java.util.Optional;
 public interface ChargePointRepository {
     Optional<String> getRegistrationStatus(String chargeBoxId);
     List<ChargePointSelect> getChargePointSelect(OcppProtocol protocol, List<String> inStatusFilter);
+
+    /**
+     * @return the charge box, if it uses this protocol and has an endpoint address
+     */
+    Optional<ChargePointSelect> getChargePointSelect(String chargeBoxId, OcppProtocol protocol);
     List<String> getChargeBoxIds();
     Map<String, Integer> getChargeBoxIdPkPair(List<String> chargeBoxIdList);
 
@@ -54,6 +59,16 @@ public interface ChargePointRepository {
 
     List<Integer> getNonZeroConnectorIds(String chargeBoxId);
 
+    /**
+     * @return site ids of the charge boxes that are assigned to a site, keyed by charge box id
+     */
+    Map<String, String> getSiteIds();
+
+    /**
+     * @return false, if there is no charge box with this id
+     */
+    boolean updateSiteId(String chargeBoxId, @Nullable String siteId);
+
     void addChargePointList(List<String> chargeBoxIdList);
     int addChargePoint(ChargePointForm form);
     void updateChargePoint(ChargePointForm form);
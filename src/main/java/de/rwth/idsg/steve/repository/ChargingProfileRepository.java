@@ -62,6 +62,12 @@ public interface ChargingProfileRepository {
 
     ChargingProfile.Details getDetails(int chargingProfilePk);
 
+    /**
+     * @return the profiles that are assigned to this connector or to connector 0 of the charge box, periods ordered by
+     * their start
+     */
+    List<ChargingProfile.AssignedDetails> getAssignedDetails(String chargeBoxId, int connectorId);
+
     int add(ChargingProfileForm form);
 
     void update(ChargingProfileForm form);
@@ -0,0 +1,35 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.repository;
+
+import de.rwth.idsg.steve.repository.dto.ActiveConnector;
+import de.rwth.idsg.steve.repository.dto.SiteLoadLimit;
+
+import java.util.List;
+
+public interface SiteRepository {
+    List<SiteLoadLimit> getLoadLimits();
+    void setLoadLimit(SiteLoadLimit limit);
+    void deleteLoadLimit(String siteId);
+
+    /**
+     * @return the connectors with a running transaction, in the order of the transaction start
+     */
+    List<ActiveConnector> getActiveConnectors();
+}
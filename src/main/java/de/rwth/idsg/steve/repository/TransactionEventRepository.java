@@ -0,0 +1,60 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.repository;
+
+import de.rwth.idsg.steve.repository.dto.TransactionEvent;
+import org.joda.time.DateTime;
+
+import java.util.List;
+
+/**
+ * The events are inserted by {@link OcppServerRepository}, in the same database transaction as the transaction data.
+ */
+public interface TransactionEventRepository {
+
+    /**
+     * Returns the oldest event of each station with less than the given attempts, if it is due and not claimed by
+     * another node. The later events of a station are not returned before its oldest one is handled, so that a
+     * station that waits for a retry does not hold up the others.
+     */
+    List<TransactionEvent> getDue(int maxAttempts, DateTime now, int limit);
+
+    /**
+     * Returns true, if the event was not claimed by another node (or its claim expired) and is now claimed by the
+     * owner until the given time
+     */
+    boolean claim(int eventPk, String owner, DateTime now, DateTime claimedUntil);
+
+    /**
+     * Extends the claim. Returns false, if the event is not claimed by the owner anymore.
+     */
+    boolean renewClaim(int eventPk, String owner, DateTime claimedUntil);
+
+    /**
+     * Stores the progress and extends the claim. Returns false, if the event is not claimed by the owner anymore.
+     */
+    boolean saveProgress(int eventPk, String owner, int progress, DateTime claimedUntil);
+
+    /**
+     * Releases the claim of the owner, so that the event is tried again at the given time
+     */
+    void reschedule(int eventPk, String owner, int progress, int attempts, DateTime nextAttemptAt);
+
+    void delete(int eventPk, String owner);
+}
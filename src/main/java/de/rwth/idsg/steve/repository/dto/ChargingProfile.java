@@ -63,4 +63,15 @@ public class ChargingProfile {
         private final ChargingProfileRecord profile;
         private final List<ChargingSchedulePeriodRecord> periods;
     }
+
+    /**
+     * A profile together with the connector it is assigned to
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class AssignedDetails {
+        private final int connectorId;
+        private final ChargingProfileRecord profile;
+        private final List<ChargingSchedulePeriodRecord> periods;
+    }
 }
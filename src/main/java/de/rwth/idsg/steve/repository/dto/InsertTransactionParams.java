@@ -43,6 +43,10 @@ public class InsertTransactionParams {
     // this came after splitting transaction table into two tables (start and stop)
     private final DateTime eventTimestamp;
 
+    // the request as JSON, if its side effects are deferred. written to the transaction_event outbox together with
+    // the transaction.
+    private final String eventPayload;
+
     public boolean isSetReservationId() {
         return reservationId != null;
     }
@@ -41,4 +41,8 @@ public class UpdateTransactionParams {
     // these two came after splitting transaction table into two tables (start and stop)
     private final TransactionStopEventActor eventActor;
     private final DateTime eventTimestamp;
+
+    // the request as JSON, if its side effects are deferred. written to the transaction_event outbox together with
+    // the transaction stop.
+    private final String eventPayload;
 }
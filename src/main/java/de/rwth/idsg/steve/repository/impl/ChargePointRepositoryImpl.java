@@ -19,6 +19,7 @@
 package de.rwth.idsg.steve.repository.impl;
 
 import de.rwth.idsg.steve.SteveException;
+import de.rwth.idsg.steve.config.ReplicaRouting;
 import de.rwth.idsg.steve.ocpp.OcppProtocol;
 import de.rwth.idsg.steve.repository.AddressRepository;
 import de.rwth.idsg.steve.repository.ChargePointRepository;
@@ -90,6 +91,17 @@ public class ChargePointRepositoryImpl implements ChargePointRepository {
                   .map(r -> new ChargePointSelect(protocol.getTransport(), r.value1(), r.value2()));
     }
 
+    @Override
+    public Optional<ChargePointSelect> getChargePointSelect(String chargeBoxId, OcppProtocol protocol) {
+        return ctx.select(CHARGE_BOX.CHARGE_BOX_ID, CHARGE_BOX.ENDPOINT_ADDRESS)
+                  .from(CHARGE_BOX)
+                  .where(CHARGE_BOX.CHARGE_BOX_ID.equal(chargeBoxId))
+                  .and(CHARGE_BOX.OCPP_PROTOCOL.equal(protocol.getCompositeValue()))
+                  .and(CHARGE_BOX.ENDPOINT_ADDRESS.isNotNull())
+                  .fetchOptional()
+                  .map(r -> new ChargePointSelect(protocol.getTransport(), r.value1(), r.value2()));
+    }
+
     @Override
     public List<String> getChargeBoxIds() {
         return ctx.select(CHARGE_BOX.CHARGE_BOX_ID)
@@ -162,7 +174,7 @@ public class ChargePointRepositoryImpl implements ChargePointRepository {
     }
     @Override
     public List<ChargePoint.Overview> getOverview(ChargePointQueryForm form) {
-        return getOverviewInternal(form)
+        return ReplicaRouting.readOnly(() -> getOverviewInternal(form))
                 .map(r -> ChargePoint.Overview.builder()
                         .chargeBoxPk(r.value1())
                         .chargeBoxId(r.value2())
@@ -328,6 +340,23 @@ public class ChargePointRepositoryImpl implements ChargePointRepository {
                   .fetch(CONNECTOR.CONNECTOR_ID);
     }
 
+    @Override
+    public Map<String, String> getSiteIds() {
+        return ctx.select(CHARGE_BOX.CHARGE_BOX_ID, CHARGE_BOX.SITE_ID)
+                  .from(CHARGE_BOX)
+                  .where(CHARGE_BOX.SITE_ID.isNotNull())
+                  .fetchMap(CHARGE_BOX.CHARGE_BOX_ID, CHARGE_BOX.SITE_ID);
+    }
+
+    @Override
+    public boolean updateSiteId(String chargeBoxId, String siteId) {
+        int count = ctx.update(CHARGE_BOX)
+                       .set(CHARGE_BOX.SITE_ID, siteId)
+                       .where(CHARGE_BOX.CHARGE_BOX_ID.equal(chargeBoxId))
+                       .execute();
+        return count == 1;
+    }
+
     @Override
     public void addChargePointList(List<String> chargeBoxIdList) {
         List<ChargeBoxRecord> batch = chargeBoxIdList.stream()
@@ -22,6 +22,7 @@ import de.rwth.idsg.steve.SteveException;
 import de.rwth.idsg.steve.repository.ChargingProfileRepository;
 import de.rwth.idsg.steve.repository.dto.ChargingProfile;
 import de.rwth.idsg.steve.repository.dto.ChargingProfileAssignment;
+import de.rwth.idsg.steve.repository.dto.ChargingProfileAssignmentEvent;
 import de.rwth.idsg.steve.utils.DateTimeUtils;
 import de.rwth.idsg.steve.web.dto.ChargingProfileAssignmentQueryForm;
 import de.rwth.idsg.steve.web.dto.ChargingProfileForm;
@@ -35,14 +36,21 @@ import org.jetbrains.annotations.Nullable;
 import org.jooq.Condition;
 import org.jooq.DSLContext;
 import org.jooq.Record1;
+import org.jooq.Record2;
+import org.jooq.Result;
 import org.jooq.SelectConditionStep;
 import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static de.rwth.idsg.steve.utils.CustomDSL.includes;
@@ -61,6 +69,7 @@ import static jooq.steve.db.tables.ChargeBox.CHARGE_BOX;
 public class ChargingProfileRepositoryImpl implements ChargingProfileRepository {
 
     @Autowired private DSLContext ctx;
+    @Autowired private ApplicationEventPublisher eventPublisher;
 
     // -------------------------------------------------------------------------
     // OCPP operations
@@ -77,6 +86,8 @@ public class ChargingProfileRepositoryImpl implements ChargingProfileRepository
            .set(CONNECTOR_CHARGING_PROFILE.CONNECTOR_PK, connectorPkSelect)
            .set(CONNECTOR_CHARGING_PROFILE.CHARGING_PROFILE_PK, chargingProfilePk)
            .execute();
+
+        eventPublisher.publishEvent(new ChargingProfileAssignmentEvent(chargeBoxId, connectorId));
     }
 
     @Override
@@ -89,6 +100,8 @@ public class ChargingProfileRepositoryImpl implements ChargingProfileRepository
            .where(CONNECTOR_CHARGING_PROFILE.CONNECTOR_PK.in(connectorPkSelect))
            .and(CONNECTOR_CHARGING_PROFILE.CHARGING_PROFILE_PK.eq(chargingProfilePk))
            .execute();
+
+        eventPublisher.publishEvent(new ChargingProfileAssignmentEvent(chargeBoxId, null));
     }
 
     @Override
@@ -137,6 +150,8 @@ public class ChargingProfileRepositoryImpl implements ChargingProfileRepository
            .where(CONNECTOR_CHARGING_PROFILE.CONNECTOR_PK.in(connectorPkSelect))
            .and(profilePkCondition)
            .execute();
+
+        eventPublisher.publishEvent(new ChargingProfileAssignmentEvent(chargeBoxId, connectorId));
     }
 
     // -------------------------------------------------------------------------
@@ -266,6 +281,48 @@ public class ChargingProfileRepositoryImpl implements ChargingProfileRepository
         return null;
     }
 
+    @Override
+    public List<ChargingProfile.AssignedDetails> getAssignedDetails(String chargeBoxId, int connectorId) {
+        Result<Record2<Integer, Integer>> assignments =
+                ctx.select(CONNECTOR.CONNECTOR_ID, CONNECTOR_CHARGING_PROFILE.CHARGING_PROFILE_PK)
+                   .from(CONNECTOR_CHARGING_PROFILE)
+                   .join(CONNECTOR)
+                   .on(CONNECTOR.CONNECTOR_PK.eq(CONNECTOR_CHARGING_PROFILE.CONNECTOR_PK))
+                   .where(CONNECTOR.CHARGE_BOX_ID.eq(chargeBoxId))
+                   .and(CONNECTOR.CONNECTOR_ID.in(0, connectorId))
+                   .fetch();
+
+        if (assignments.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Set<Integer> profilePks = assignments.intoSet(CONNECTOR_CHARGING_PROFILE.CHARGING_PROFILE_PK);
+
+        Map<Integer, ChargingProfileRecord> profiles =
+                ctx.selectFrom(CHARGING_PROFILE)
+                   .where(CHARGING_PROFILE.CHARGING_PROFILE_PK.in(profilePks))
+                   .fetchMap(CHARGING_PROFILE.CHARGING_PROFILE_PK);
+
+        Map<Integer, List<ChargingSchedulePeriodRecord>> periods =
+                ctx.selectFrom(CHARGING_SCHEDULE_PERIOD)
+                   .where(CHARGING_SCHEDULE_PERIOD.CHARGING_PROFILE_PK.in(profilePks))
+                   .orderBy(CHARGING_SCHEDULE_PERIOD.START_PERIOD_IN_SECONDS)
+                   .fetchGroups(CHARGING_SCHEDULE_PERIOD.CHARGING_PROFILE_PK);
+
+        List<ChargingProfile.AssignedDetails> details = new ArrayList<>(assignments.size());
+        for (Record2<Integer, Integer> assignment : assignments) {
+            ChargingProfileRecord profile = profiles.get(assignment.value2());
+            if (profile != null) {
+                details.add(new ChargingProfile.AssignedDetails(
+                        assignment.value1(),
+                        profile,
+                        periods.getOrDefault(assignment.value2(), Collections.emptyList())
+                ));
+            }
+        }
+        return details;
+    }
+
     @Override
     public int add(ChargingProfileForm form) {
         return ctx.transactionResult(configuration -> {
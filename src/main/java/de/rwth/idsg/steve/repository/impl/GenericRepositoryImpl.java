@@ -18,6 +18,7 @@
  */
 package de.rwth.idsg.steve.repository.impl;
 
+import de.rwth.idsg.steve.config.ReplicaRouting;
 import de.rwth.idsg.steve.repository.GenericRepository;
 import de.rwth.idsg.steve.repository.ReservationStatus;
 import de.rwth.idsg.steve.repository.dto.DbVersion;
@@ -99,7 +100,7 @@ public class GenericRepositoryImpl implements GenericRepository {
                    .where(date(CHARGE_BOX.LAST_HEARTBEAT_TIMESTAMP).lessThan(date(yesterdaysNow)))
                    .asField("heartbeats_earlier");
 
-        Record7<Integer, Integer, Integer, Integer, Integer, Integer, Integer> gs =
+        Record7<Integer, Integer, Integer, Integer, Integer, Integer, Integer> gs = ReplicaRouting.readOnly(() ->
                 ctx.select(
                         numChargeBoxes,
                         numOcppTags,
@@ -108,7 +109,7 @@ public class GenericRepositoryImpl implements GenericRepository {
                         heartbeatsToday,
                         heartbeatsYesterday,
                         heartbeatsEarlier
-                ).fetchOne();
+                ).fetchOne());
 
         return Statistics.builder()
                          .numChargeBoxes(gs.value1())
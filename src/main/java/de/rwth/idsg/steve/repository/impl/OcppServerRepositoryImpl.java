@@ -26,6 +26,7 @@ import de.rwth.idsg.steve.repository.OcppServerRepository;
 import de.rwth.idsg.steve.repository.ReservationRepository;
 import de.rwth.idsg.steve.repository.dto.InsertConnectorStatusParams;
 import de.rwth.idsg.steve.repository.dto.InsertTransactionParams;
+import de.rwth.idsg.steve.repository.dto.TransactionEventType;
 import de.rwth.idsg.steve.repository.dto.TransactionStatusUpdate;
 import de.rwth.idsg.steve.repository.dto.UpdateChargeboxParams;
 import de.rwth.idsg.steve.repository.dto.UpdateTransactionParams;
@@ -54,6 +55,7 @@ import static jooq.steve.db.tables.Connector.CONNECTOR;
 import static jooq.steve.db.tables.ConnectorMeterValue.CONNECTOR_METER_VALUE;
 import static jooq.steve.db.tables.ConnectorStatus.CONNECTOR_STATUS;
 import static jooq.steve.db.tables.OcppTag.OCPP_TAG;
+import static jooq.steve.db.tables.TransactionEvent.TRANSACTION_EVENT;
 import static jooq.steve.db.tables.TransactionStart.TRANSACTION_START;
 import static jooq.steve.db.tables.TransactionStop.TRANSACTION_STOP;
 import static jooq.steve.db.tables.TransactionStopFailed.TRANSACTION_STOP_FAILED;
@@ -270,17 +272,27 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
 
         // JOOQ will throw an exception, if something goes wrong
         try {
-            ctx.insertInto(TRANSACTION_STOP)
-               .set(TRANSACTION_STOP.TRANSACTION_PK, p.getTransactionId())
-               .set(TRANSACTION_STOP.EVENT_TIMESTAMP, p.getEventTimestamp())
-               .set(TRANSACTION_STOP.EVENT_ACTOR, p.getEventActor())
-               .set(TRANSACTION_STOP.STOP_TIMESTAMP, p.getStopTimestamp())
-               .set(TRANSACTION_STOP.STOP_VALUE, p.getStopMeterValue())
-               .set(TRANSACTION_STOP.STOP_REASON, p.getStopReason())
-               .execute();
+            ctx.transaction(configuration -> {
+                DSLContext ctx = DSL.using(configuration);
+
+                ctx.insertInto(TRANSACTION_STOP)
+                   .set(TRANSACTION_STOP.TRANSACTION_PK, p.getTransactionId())
+                   .set(TRANSACTION_STOP.EVENT_TIMESTAMP, p.getEventTimestamp())
+                   .set(TRANSACTION_STOP.EVENT_ACTOR, p.getEventActor())
+                   .set(TRANSACTION_STOP.STOP_TIMESTAMP, p.getStopTimestamp())
+                   .set(TRANSACTION_STOP.STOP_VALUE, p.getStopMeterValue())
+                   .set(TRANSACTION_STOP.STOP_REASON, p.getStopReason())
+                   .execute();
+
+                insertTransactionEvent(ctx, TransactionEventType.STOP, p.getChargeBoxId(), p.getTransactionId(), p.getEventPayload());
+            });
         } catch (Exception e) {
             log.error("Exception occurred", e);
             tryInsertingFailed(p, e);
+
+            // the side effects were always handled, even if the stop could not be inserted. if this fails as well,
+            // the station gets an error and sends the message again.
+            insertTransactionEvent(ctx, TransactionEventType.STOP, p.getChargeBoxId(), p.getTransactionId(), p.getEventPayload());
         }
 
         // -------------------------------------------------------------------------
@@ -330,20 +342,29 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
                 return new TransactionDataHolder(true, r.value1());
             }
 
-            Integer transactionId = ctx.insertInto(TRANSACTION_START)
-                                       .set(TRANSACTION_START.EVENT_TIMESTAMP, p.getEventTimestamp())
-                                       .set(TRANSACTION_START.CONNECTOR_PK, connectorPkQuery)
-                                       .set(TRANSACTION_START.ID_TAG, p.getIdTag())
-                                       .set(TRANSACTION_START.START_TIMESTAMP, p.getStartTimestamp())
-                                       .set(TRANSACTION_START.START_VALUE, p.getStartMeterValue())
-                                       .returning(TRANSACTION_START.TRANSACTION_PK)
-                                       .fetchOne()
-                                       .getTransactionPk();
-
-            // Actually unnecessary, because JOOQ will throw an exception, if something goes wrong
-            if (transactionId == null) {
-                throw new SteveException("Failed to INSERT transaction into database");
-            }
+            // the event of the deferred side effects is part of the same database transaction, so that they are
+            // neither lost nor handled for a transaction that was not inserted
+            int transactionId = ctx.transactionResult(configuration -> {
+                DSLContext ctx = DSL.using(configuration);
+
+                Integer id = ctx.insertInto(TRANSACTION_START)
+                                .set(TRANSACTION_START.EVENT_TIMESTAMP, p.getEventTimestamp())
+                                .set(TRANSACTION_START.CONNECTOR_PK, connectorPkQuery)
+                                .set(TRANSACTION_START.ID_TAG, p.getIdTag())
+                                .set(TRANSACTION_START.START_TIMESTAMP, p.getStartTimestamp())
+                                .set(TRANSACTION_START.START_VALUE, p.getStartMeterValue())
+                                .returning(TRANSACTION_START.TRANSACTION_PK)
+                                .fetchOne()
+                                .getTransactionPk();
+
+                // Actually unnecessary, because JOOQ will throw an exception, if something goes wrong
+                if (id == null) {
+                    throw new SteveException("Failed to INSERT transaction into database");
+                }
+
+                insertTransactionEvent(ctx, TransactionEventType.START, p.getChargeBoxId(), id, p.getEventPayload());
+                return id;
+            });
 
             return new TransactionDataHolder(false, transactionId);
         } finally {
@@ -376,6 +397,20 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
         }
     }
 
+    private static void insertTransactionEvent(DSLContext ctx, TransactionEventType type, String chargeBoxId,
+                                               int transactionId, String payload) {
+        if (payload == null) {
+            return;
+        }
+
+        ctx.insertInto(TRANSACTION_EVENT)
+           .set(TRANSACTION_EVENT.EVENT_TYPE, type.name())
+           .set(TRANSACTION_EVENT.CHARGE_BOX_ID, chargeBoxId)
+           .set(TRANSACTION_EVENT.TRANSACTION_PK, transactionId)
+           .set(TRANSACTION_EVENT.PAYLOAD, payload)
+           .execute();
+    }
+
     /**
      * If the connector information was not received before, insert it. Otherwise, ignore.
      */
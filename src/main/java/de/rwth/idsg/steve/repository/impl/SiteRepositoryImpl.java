@@ -0,0 +1,87 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.repository.impl;
+
+import de.rwth.idsg.steve.repository.SiteRepository;
+import de.rwth.idsg.steve.repository.dto.ActiveConnector;
+import de.rwth.idsg.steve.repository.dto.SiteLoadLimit;
+import org.jooq.DSLContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static jooq.steve.db.tables.Connector.CONNECTOR;
+import static jooq.steve.db.tables.SiteLoadLimit.SITE_LOAD_LIMIT;
+import static jooq.steve.db.tables.Transaction.TRANSACTION;
+
+@Repository
+public class SiteRepositoryImpl implements SiteRepository {
+
+    @Autowired private DSLContext ctx;
+
+    @Override
+    public List<SiteLoadLimit> getLoadLimits() {
+        return ctx.selectFrom(SITE_LOAD_LIMIT)
+                  .fetch()
+                  .map(r -> SiteLoadLimit.builder()
+                                         .siteId(r.getSiteId())
+                                         .capacityInAmps(r.getCapacityInAmps().doubleValue())
+                                         .minPerConnectorInAmps(r.getMinPerConnectorInAmps().doubleValue())
+                                         .build());
+    }
+
+    @Override
+    public void setLoadLimit(SiteLoadLimit limit) {
+        BigDecimal capacity = BigDecimal.valueOf(limit.getCapacityInAmps());
+        BigDecimal minPerConnector = BigDecimal.valueOf(limit.getMinPerConnectorInAmps());
+
+        ctx.insertInto(SITE_LOAD_LIMIT)
+           .set(SITE_LOAD_LIMIT.SITE_ID, limit.getSiteId())
+           .set(SITE_LOAD_LIMIT.CAPACITY_IN_AMPS, capacity)
+           .set(SITE_LOAD_LIMIT.MIN_PER_CONNECTOR_IN_AMPS, minPerConnector)
+           .onDuplicateKeyUpdate()
+           .set(SITE_LOAD_LIMIT.CAPACITY_IN_AMPS, capacity)
+           .set(SITE_LOAD_LIMIT.MIN_PER_CONNECTOR_IN_AMPS, minPerConnector)
+           .execute();
+    }
+
+    @Override
+    public void deleteLoadLimit(String siteId) {
+        ctx.delete(SITE_LOAD_LIMIT)
+           .where(SITE_LOAD_LIMIT.SITE_ID.equal(siteId))
+           .execute();
+    }
+
+    @Override
+    public List<ActiveConnector> getActiveConnectors() {
+        return ctx.select(CONNECTOR.CHARGE_BOX_ID, CONNECTOR.CONNECTOR_ID)
+                  .from(TRANSACTION)
+                  .join(CONNECTOR)
+                    .on(TRANSACTION.CONNECTOR_PK.equal(CONNECTOR.CONNECTOR_PK))
+                  .where(TRANSACTION.STOP_TIMESTAMP.isNull())
+                  .orderBy(TRANSACTION.START_TIMESTAMP, TRANSACTION.TRANSACTION_PK)
+                  .fetch()
+                  .map(r -> ActiveConnector.builder()
+                                           .chargeBoxId(r.value1())
+                                           .connectorId(r.value2())
+                                           .build());
+    }
+}
@@ -84,4 +84,9 @@ public class TaskStoreImpl implements TaskStore {
                    .filter(entry -> entry.getValue().isFinished())
                    .forEach(entry -> lookupTable.remove(entry.getKey()));
     }
+
+    @Override
+    public int getSize() {
+        return lookupTable.size();
+    }
 }
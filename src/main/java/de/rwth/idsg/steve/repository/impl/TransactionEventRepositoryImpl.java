@@ -0,0 +1,125 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.repository.impl;
+
+import de.rwth.idsg.steve.repository.TransactionEventRepository;
+import de.rwth.idsg.steve.repository.dto.TransactionEvent;
+import de.rwth.idsg.steve.repository.dto.TransactionEventType;
+import jooq.steve.db.tables.records.TransactionEventRecord;
+import org.joda.time.DateTime;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+import static jooq.steve.db.tables.TransactionEvent.TRANSACTION_EVENT;
+
+@Repository
+public class TransactionEventRepositoryImpl implements TransactionEventRepository {
+
+    @Autowired private DSLContext ctx;
+
+    @Override
+    public List<TransactionEvent> getDue(int maxAttempts, DateTime now, int limit) {
+        return ctx.selectFrom(TRANSACTION_EVENT)
+                  .where(TRANSACTION_EVENT.EVENT_PK.in(
+                          DSL.select(DSL.min(TRANSACTION_EVENT.EVENT_PK))
+                             .from(TRANSACTION_EVENT)
+                             .where(TRANSACTION_EVENT.ATTEMPTS.lessThan(maxAttempts))
+                             .groupBy(TRANSACTION_EVENT.CHARGE_BOX_ID)
+                  ))
+                  .and(TRANSACTION_EVENT.NEXT_ATTEMPT_AT.lessOrEqual(now))
+                  .and(TRANSACTION_EVENT.CLAIMED_UNTIL.isNull().or(TRANSACTION_EVENT.CLAIMED_UNTIL.lessThan(now)))
+                  .orderBy(TRANSACTION_EVENT.EVENT_PK)
+                  .limit(limit)
+                  .fetch()
+                  .map(TransactionEventRepositoryImpl::map);
+    }
+
+    @Override
+    public boolean claim(int eventPk, String owner, DateTime now, DateTime claimedUntil) {
+        int count = ctx.update(TRANSACTION_EVENT)
+                       .set(TRANSACTION_EVENT.CLAIMED_BY, owner)
+                       .set(TRANSACTION_EVENT.CLAIMED_UNTIL, claimedUntil)
+                       .where(TRANSACTION_EVENT.EVENT_PK.eq(eventPk))
+                       .and(TRANSACTION_EVENT.CLAIMED_UNTIL.isNull().or(TRANSACTION_EVENT.CLAIMED_UNTIL.lessThan(now)))
+                       .execute();
+
+        return count == 1;
+    }
+
+    @Override
+    public boolean renewClaim(int eventPk, String owner, DateTime claimedUntil) {
+        int count = ctx.update(TRANSACTION_EVENT)
+                       .set(TRANSACTION_EVENT.CLAIMED_UNTIL, claimedUntil)
+                       .where(TRANSACTION_EVENT.EVENT_PK.eq(eventPk))
+                       .and(TRANSACTION_EVENT.CLAIMED_BY.eq(owner))
+                       .execute();
+
+        return count == 1;
+    }
+
+    @Override
+    public boolean saveProgress(int eventPk, String owner, int progress, DateTime claimedUntil) {
+        int count = ctx.update(TRANSACTION_EVENT)
+                       .set(TRANSACTION_EVENT.PROGRESS, progress)
+                       .set(TRANSACTION_EVENT.CLAIMED_UNTIL, claimedUntil)
+                       .where(TRANSACTION_EVENT.EVENT_PK.eq(eventPk))
+                       .and(TRANSACTION_EVENT.CLAIMED_BY.eq(owner))
+                       .execute();
+
+        return count == 1;
+    }
+
+    @Override
+    public void reschedule(int eventPk, String owner, int progress, int attempts, DateTime nextAttemptAt) {
+        ctx.update(TRANSACTION_EVENT)
+           .set(TRANSACTION_EVENT.PROGRESS, progress)
+           .set(TRANSACTION_EVENT.ATTEMPTS, attempts)
+           .set(TRANSACTION_EVENT.NEXT_ATTEMPT_AT, nextAttemptAt)
+           .set(TRANSACTION_EVENT.CLAIMED_BY, (String) null)
+           .set(TRANSACTION_EVENT.CLAIMED_UNTIL, (DateTime) null)
+           .where(TRANSACTION_EVENT.EVENT_PK.eq(eventPk))
+           .and(TRANSACTION_EVENT.CLAIMED_BY.eq(owner))
+           .execute();
+    }
+
+    @Override
+    public void delete(int eventPk, String owner) {
+        ctx.deleteFrom(TRANSACTION_EVENT)
+           .where(TRANSACTION_EVENT.EVENT_PK.eq(eventPk))
+           .and(TRANSACTION_EVENT.CLAIMED_BY.eq(owner))
+           .execute();
+    }
+
+    private static TransactionEvent map(TransactionEventRecord r) {
+        return TransactionEvent.builder()
+                               .eventPk(r.getEventPk())
+                               .type(TransactionEventType.valueOf(r.getEventType()))
+                               .chargeBoxId(r.getChargeBoxId())
+                               .transactionId(r.getTransactionPk())
+                               .payload(r.getPayload())
+                               .progress(r.getProgress())
+                               .attempts(r.getAttempts())
+                               .nextAttemptAt(r.getNextAttemptAt())
+                               .build();
+    }
+}
@@ -19,6 +19,7 @@
 package de.rwth.idsg.steve.repository.impl;
 
 import de.rwth.idsg.steve.SteveException;
+import de.rwth.idsg.steve.config.ReplicaRouting;
 import de.rwth.idsg.steve.repository.TransactionRepository;
 import de.rwth.idsg.steve.repository.dto.Transaction;
 import de.rwth.idsg.steve.repository.dto.TransactionDetails;
@@ -62,14 +63,14 @@ public class TransactionRepositoryImpl implements TransactionRepository {
 
     @Override
     public List<Transaction> getTransactions(TransactionQueryForm form) {
-        return getInternal(form).fetch()
-                                .map(new TransactionMapper());
+        return ReplicaRouting.readOnly(() -> getInternal(form).fetch())
+                             .map(new TransactionMapper());
     }
 
     @Override
     public void writeTransactionsCSV(TransactionQueryForm form, Writer writer) {
-        getInternalCSV(form).fetch()
-                            .formatCSV(writer);
+        ReplicaRouting.readOnly(() -> getInternalCSV(form).fetch())
+                      .formatCSV(writer);
     }
 
     @Override
@@ -18,9 +18,10 @@
  */
 package de.rwth.idsg.steve.service;
 
-import de.rwth.idsg.steve.integration.IntegrationService;
-import de.rwth.idsg.steve.integration.dto.ConnectorStatus;
 import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import de.rwth.idsg.steve.ocpp.event.MeterSample;
+import de.rwth.idsg.steve.ocpp.event.OcppEventBus;
+import de.rwth.idsg.steve.ocpp.event.StatusChanged;
 import de.rwth.idsg.steve.repository.OcppServerRepository;
 import de.rwth.idsg.steve.repository.SettingsRepository;
 import de.rwth.idsg.steve.repository.dto.InsertConnectorStatusParams;
@@ -35,7 +36,6 @@ import ocpp.cs._2015._10.AuthorizeRequest;
 import ocpp.cs._2015._10.AuthorizeResponse;
 import ocpp.cs._2015._10.BootNotificationRequest;
 import ocpp.cs._2015._10.BootNotificationResponse;
-import ocpp.cs._2015._10.ChargePointStatus;
 import ocpp.cs._2015._10.DataTransferRequest;
 import ocpp.cs._2015._10.DataTransferResponse;
 import ocpp.cs._2015._10.DataTransferStatus;
@@ -76,7 +76,8 @@ public class CentralSystemService16_Service {
     @Autowired private NotificationService notificationService;
     @Autowired private ChargePointHelperService chargePointHelperService;
 
-    @Autowired private IntegrationService integrationService;
+    @Autowired private OcppEventBus eventBus;
+    @Autowired private TransactionEventService transactionEventService;
 
     public BootNotificationResponse bootNotification(BootNotificationRequest parameters, String chargeBoxIdentity,
                                                      OcppProtocol ocppProtocol) {
@@ -142,13 +143,8 @@ public class CentralSystemService16_Service {
 
         ocppServerRepository.insertConnectorStatus(params);
 
-        if (parameters.getStatus() == ChargePointStatus.FAULTED) {
-            notificationService.ocppStationStatusFailure(
-                    chargeBoxIdentity, parameters.getConnectorId(), parameters.getErrorCode().value());
-        }
-        ConnectorStatus status = new ConnectorStatus();
-        status.setStatus(parameters.getStatus().toString());
-        integrationService.chargingBoxStatus(chargeBoxIdentity, parameters.getConnectorId(), status);
+        eventBus.publish(new StatusChanged(
+                chargeBoxIdentity, parameters.getConnectorId(), parameters.getStatus(), parameters.getErrorCode()));
 
         return new StatusNotificationResponse();
     }
@@ -161,7 +157,7 @@ public class CentralSystemService16_Service {
                 parameters.getTransactionId()
         );
 
-        integrationService.meterValues(chargeBoxIdentity, parameters);
+        eventBus.publish(new MeterSample(chargeBoxIdentity, parameters));
 
         return new MeterValuesResponse();
     }
@@ -182,21 +178,14 @@ public class CentralSystemService16_Service {
         );
 
         InsertTransactionParams params =
-                InsertTransactionParams.builder()
-                                       .chargeBoxId(chargeBoxIdentity)
-                                       .connectorId(parameters.getConnectorId())
-                                       .idTag(parameters.getIdTag())
-                                       .startTimestamp(parameters.getTimestamp())
-                                       .startMeterValue(Integer.toString(parameters.getMeterStart()))
-                                       .reservationId(parameters.getReservationId())
-                                       .eventTimestamp(DateTime.now())
-                                       .build();
+                insertParams(parameters, chargeBoxIdentity)
+                        .eventTimestamp(DateTime.now())
+                        .eventPayload(transactionEventService.toPayload(parameters))
+                        .build();
 
         int transactionId = ocppServerRepository.insertTransaction(params);
 
-        notificationService.ocppTransactionStarted(transactionId, params);
-
-        integrationService.onStartTransaction(chargeBoxIdentity, parameters);
+        transactionEventService.transactionStarted(chargeBoxIdentity, transactionId, parameters);
 
         return new StartTransactionResponse()
                 .withIdTagInfo(info)
@@ -204,9 +193,6 @@ public class CentralSystemService16_Service {
     }
 
     public StopTransactionResponse stopTransaction(StopTransactionRequest parameters, String chargeBoxIdentity) {
-        int transactionId = parameters.getTransactionId();
-        String stopReason = parameters.isSetReason() ? parameters.getReason().value() : null;
-
         // Get the authorization info of the user, before making tx changes (will affectAuthorizationStatus)
         IdTagInfo idTagInfo = ocppTagService.getIdTagInfo(
                 parameters.getIdTag(),
@@ -215,23 +201,14 @@ public class CentralSystemService16_Service {
         );
 
         UpdateTransactionParams params =
-                UpdateTransactionParams.builder()
-                                       .chargeBoxId(chargeBoxIdentity)
-                                       .transactionId(transactionId)
-                                       .stopTimestamp(parameters.getTimestamp())
-                                       .stopMeterValue(Integer.toString(parameters.getMeterStop()))
-                                       .stopReason(stopReason)
-                                       .eventTimestamp(DateTime.now())
-                                       .eventActor(TransactionStopEventActor.station)
-                                       .build();
+                updateParams(parameters, chargeBoxIdentity)
+                        .eventTimestamp(DateTime.now())
+                        .eventPayload(transactionEventService.toPayload(parameters))
+                        .build();
 
         ocppServerRepository.updateTransaction(params);
 
-        ocppServerRepository.insertMeterValues(chargeBoxIdentity, parameters.getTransactionData(), transactionId);
-
-        notificationService.ocppTransactionEnded(params);
-
-        integrationService.onStopTransaction(chargeBoxIdentity, parameters);
+        transactionEventService.transactionStopped(chargeBoxIdentity, parameters);
 
         return new StopTransactionResponse().withIdTagInfo(idTagInfo);
     }
@@ -270,4 +247,32 @@ public class CentralSystemService16_Service {
         // https://github.com/RWTH-i5-IDSG/steve/pull/36
         return new DataTransferResponse().withStatus(DataTransferStatus.ACCEPTED);
     }
+
+    // -------------------------------------------------------------------------
+    // Also used by TransactionEventService to restore the params from the request of an event
+    // -------------------------------------------------------------------------
+
+    static InsertTransactionParams.InsertTransactionParamsBuilder insertParams(StartTransactionRequest parameters,
+                                                                              String chargeBoxIdentity) {
+        return InsertTransactionParams.builder()
+                                      .chargeBoxId(chargeBoxIdentity)
+                                      .connectorId(parameters.getConnectorId())
+                                      .idTag(parameters.getIdTag())
+                                      .startTimestamp(parameters.getTimestamp())
+                                      .startMeterValue(Integer.toString(parameters.getMeterStart()))
+                                      .reservationId(parameters.getReservationId());
+    }
+
+    static UpdateTransactionParams.UpdateTransactionParamsBuilder updateParams(StopTransactionRequest parameters,
+                                                                              String chargeBoxIdentity) {
+        String stopReason = parameters.isSetReason() ? parameters.getReason().value() : null;
+
+        return UpdateTransactionParams.builder()
+                                      .chargeBoxId(chargeBoxIdentity)
+                                      .transactionId(parameters.getTransactionId())
+                                      .stopTimestamp(parameters.getTimestamp())
+                                      .stopMeterValue(Integer.toString(parameters.getMeterStop()))
+                                      .stopReason(stopReason)
+                                      .eventActor(TransactionStopEventActor.station);
+    }
 }
@@ -18,13 +18,16 @@
  */
 package de.rwth.idsg.steve.service;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Striped;
-import de.rwth.idsg.steve.SteveException;
 import de.rwth.idsg.steve.ocpp.OcppProtocol;
 import de.rwth.idsg.steve.ocpp.OcppTransport;
 import de.rwth.idsg.steve.ocpp.OcppVersion;
-import de.rwth.idsg.steve.ocpp.ws.AbstractWebSocketEndpoint;
+import de.rwth.idsg.steve.ocpp.ws.ConnectedStationIndex;
+import de.rwth.idsg.steve.ocpp.ws.cluster.ClusterService;
+import de.rwth.idsg.steve.ocpp.ws.data.ConnectedStation;
 import de.rwth.idsg.steve.ocpp.ws.data.SessionContext;
+import de.rwth.idsg.steve.ocpp.ws.data.SessionContextSnapshot;
 import de.rwth.idsg.steve.ocpp.ws.ocpp12.Ocpp12WebSocketEndpoint;
 import de.rwth.idsg.steve.ocpp.ws.ocpp15.Ocpp15WebSocketEndpoint;
 import de.rwth.idsg.steve.ocpp.ws.ocpp16.Ocpp16WebSocketEndpoint;
@@ -43,18 +46,14 @@ import ocpp.cs._2015._10.RegistrationStatus;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.web.socket.WebSocketSession;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Deque;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
@@ -76,7 +75,11 @@ public class ChargePointHelperService {
     // SOAP-based charge points are stored in DB with an endpoint address
     @Autowired private ChargePointRepository chargePointRepository;
 
-    // For WebSocket-based charge points, the active sessions are stored in memory
+    // For WebSocket-based charge points, the connected stations of all versions are indexed in memory
+    @Autowired private ConnectedStationIndex connectedStationIndex;
+    @Autowired private ClusterService clusterService;
+
+    // ... and the active sessions are stored per endpoint
     @Autowired private Ocpp12WebSocketEndpoint ocpp12WebSocketEndpoint;
     @Autowired private Ocpp15WebSocketEndpoint ocpp15WebSocketEndpoint;
     @Autowired private Ocpp16WebSocketEndpoint ocpp16WebSocketEndpoint;
@@ -97,20 +100,20 @@ public class ChargePointHelperService {
         }
     }
 
+    /**
+     * In cluster mode, a station connected to another node counts as connected as well, since the calls
+     * are forwarded to that node.
+     */
     public boolean isConnected(String chargeBoxId) {
-        try {
-            WebSocketSession session = ocpp16WebSocketEndpoint.getSession(chargeBoxId);
-            return session != null;
-        } catch (SteveException e) {
-            return false;
-        }
+        return connectedStationIndex.isConnected(chargeBoxId)
+                || clusterService.findRemoteOwner(chargeBoxId) != null;
     }
 
     public Statistics getStats() {
         Statistics stats = genericRepository.getStats();
-        stats.setNumOcpp12JChargeBoxes(ocpp12WebSocketEndpoint.getNumberOfChargeBoxes());
-        stats.setNumOcpp15JChargeBoxes(ocpp15WebSocketEndpoint.getNumberOfChargeBoxes());
-        stats.setNumOcpp16JChargeBoxes(ocpp16WebSocketEndpoint.getNumberOfChargeBoxes());
+        stats.setNumOcpp12JChargeBoxes(connectedStationIndex.getNumberOfChargeBoxes(OcppVersion.V_12));
+        stats.setNumOcpp15JChargeBoxes(connectedStationIndex.getNumberOfChargeBoxes(OcppVersion.V_15));
+        stats.setNumOcpp16JChargeBoxes(connectedStationIndex.getNumberOfChargeBoxes(OcppVersion.V_16));
 
         List<ConnectorStatus> latestList = chargePointRepository.getChargePointConnectorStatus();
         stats.setStatusCountMap(ConnectorStatusCountFilter.getStatusCountMap(latestList));
@@ -119,12 +122,6 @@ public class ChargePointHelperService {
     }
 
     public List<ConnectorStatus> getChargePointConnectorStatus(ConnectorStatusForm params) {
-        Map<String, Deque<SessionContext>> ocpp12Map = ocpp12WebSocketEndpoint.getACopy();
-        Map<String, Deque<SessionContext>> ocpp15Map = ocpp15WebSocketEndpoint.getACopy();
-        Map<String, Deque<SessionContext>> ocpp16Map = ocpp16WebSocketEndpoint.getACopy();
-
-        Set<String> connectedJsonChargeBoxIds = new HashSet<>(extractIds(Arrays.asList(ocpp12Map, ocpp15Map, ocpp16Map)));
-
         List<ConnectorStatus> latestList = chargePointRepository.getChargePointConnectorStatus(params);
 
         // iterate over JSON stations and mark disconnected ones
@@ -133,7 +130,7 @@ public class ChargePointHelperService {
         for (ConnectorStatus status : latestList) {
             OcppProtocol protocol = status.getOcppProtocol();
             if (protocol != null && protocol.getTransport() == OcppTransport.JSON) {
-                status.setJsonAndDisconnected(!connectedJsonChargeBoxIds.contains(status.getChargeBoxId()));
+                status.setJsonAndDisconnected(!connectedStationIndex.isConnected(status.getChargeBoxId()));
             }
         }
 
@@ -141,19 +138,19 @@ public class ChargePointHelperService {
     }
 
     public List<OcppJsonStatus> getOcppJsonStatus() {
-        Map<String, Deque<SessionContext>> ocpp12Map = ocpp12WebSocketEndpoint.getACopy();
-        Map<String, Deque<SessionContext>> ocpp15Map = ocpp15WebSocketEndpoint.getACopy();
-        Map<String, Deque<SessionContext>> ocpp16Map = ocpp16WebSocketEndpoint.getACopy();
+        SessionContextSnapshot ocpp12Snapshot = ocpp12WebSocketEndpoint.getSnapshot();
+        SessionContextSnapshot ocpp15Snapshot = ocpp15WebSocketEndpoint.getSnapshot();
+        SessionContextSnapshot ocpp16Snapshot = ocpp16WebSocketEndpoint.getSnapshot();
 
-        List<String> idList = extractIds(Arrays.asList(ocpp12Map, ocpp15Map, ocpp16Map));
+        List<String> idList = extractIds(Arrays.asList(ocpp12Snapshot, ocpp15Snapshot, ocpp16Snapshot));
         Map<String, Integer> primaryKeyLookup = chargePointRepository.getChargeBoxIdPkPair(idList);
 
         DateTime now = DateTime.now();
         List<OcppJsonStatus> returnList = new ArrayList<>();
 
-        appendList(ocpp12Map, returnList, now, OcppVersion.V_12, primaryKeyLookup);
-        appendList(ocpp15Map, returnList, now, OcppVersion.V_15, primaryKeyLookup);
-        appendList(ocpp16Map, returnList, now, OcppVersion.V_16, primaryKeyLookup);
+        appendList(ocpp12Snapshot, returnList, now, OcppVersion.V_12, primaryKeyLookup);
+        appendList(ocpp15Snapshot, returnList, now, OcppVersion.V_15, primaryKeyLookup);
+        appendList(ocpp16Snapshot, returnList, now, OcppVersion.V_16, primaryKeyLookup);
         return returnList;
     }
 
@@ -164,11 +161,11 @@ public class ChargePointHelperService {
     public List<ChargePointSelect> getChargePoints(OcppVersion version, List<RegistrationStatus> inStatusFilter) {
         switch (version) {
             case V_12:
-                return getChargePoints(OcppProtocol.V_12_SOAP, inStatusFilter, ocpp12WebSocketEndpoint);
+                return getChargePoints(OcppProtocol.V_12_SOAP, inStatusFilter);
             case V_15:
-                return getChargePoints(OcppProtocol.V_15_SOAP, inStatusFilter, ocpp15WebSocketEndpoint);
+                return getChargePoints(OcppProtocol.V_15_SOAP, inStatusFilter);
             case V_16:
-                return getChargePoints(OcppProtocol.V_16_SOAP, inStatusFilter, ocpp16WebSocketEndpoint);
+                return getChargePoints(OcppProtocol.V_16_SOAP, inStatusFilter);
             default:
                 throw new IllegalArgumentException("Unknown OCPP version: " + version);
         }
@@ -219,34 +216,43 @@ public class ChargePointHelperService {
         }
     }
 
-    private List<ChargePointSelect> getChargePoints(OcppProtocol protocol, List<RegistrationStatus> inStatusFilter,
-                                                    AbstractWebSocketEndpoint jsonEndpoint) {
+    private List<ChargePointSelect> getChargePoints(OcppProtocol protocol, List<RegistrationStatus> inStatusFilter) {
         List<String> statusFilter = inStatusFilter.stream()
                                                   .map(RegistrationStatus::value)
                                                   .collect(Collectors.toList());
 
         List<ChargePointSelect> returnList = chargePointRepository.getChargePointSelect(protocol, statusFilter);
-        for (String chargeBoxId : jsonEndpoint.getChargeBoxIdList()) {
+        for (String chargeBoxId : connectedStationIndex.getChargeBoxIdList(protocol.getVersion())) {
             returnList.add(new ChargePointSelect(OcppTransport.JSON, chargeBoxId));
         }
+
+        // in cluster mode, the calls for the stations of the other nodes are forwarded to them
+        for (String chargeBoxId : clusterService.getRemoteChargeBoxIdList(protocol.getVersion())) {
+            if (!connectedStationIndex.isConnected(chargeBoxId)) {
+                returnList.add(new ChargePointSelect(OcppTransport.JSON, chargeBoxId));
+            }
+        }
         return returnList;
     }
 
-    private static List<String> extractIds(List<Map<String, Deque<SessionContext>>> ocppMaps) {
-        return ocppMaps.stream()
-                       .map(Map::keySet)
-                       .flatMap(Collection::stream)
-                       .collect(Collectors.toList());
+    private static List<String> extractIds(List<SessionContextSnapshot> snapshots) {
+        return snapshots.stream()
+                        .map(SessionContextSnapshot::getChargeBoxIds)
+                        .flatMap(Collection::stream)
+                        .collect(Collectors.toList());
     }
 
-    private static void appendList(Map<String, Deque<SessionContext>> map, List<OcppJsonStatus> returnList,
-                                   DateTime now, OcppVersion version, Map<String, Integer> primaryKeyLookup) {
+    private void appendList(SessionContextSnapshot snapshot, List<OcppJsonStatus> returnList,
+                            DateTime now, OcppVersion version, Map<String, Integer> primaryKeyLookup) {
 
-        for (Map.Entry<String, Deque<SessionContext>> entry : map.entrySet()) {
+        for (Map.Entry<String, ImmutableList<SessionContext>> entry : snapshot.asMap().entrySet()) {
             String chargeBoxId = entry.getKey();
-            Deque<SessionContext> endpointDeque = entry.getValue();
 
-            for (SessionContext ctx : endpointDeque) {
+            ConnectedStation station = connectedStationIndex.get(chargeBoxId, version);
+            DateTime lastSeen = station == null ? null : station.getLastSeen();
+            int inFlightCalls = station == null ? 0 : station.getInFlightCalls();
+
+            for (SessionContext ctx : entry.getValue()) {
                 DateTime openSince = ctx.getOpenSince();
 
                 OcppJsonStatus status = OcppJsonStatus.builder()
@@ -256,6 +262,9 @@ public class ChargePointHelperService {
                                                       .connectedSince(DateTimeUtils.humanize(openSince))
                                                       .connectionDuration(DateTimeUtils.timeElapsed(openSince, now))
                                                       .version(version)
+                                                      .lastSeenDT(lastSeen)
+                                                      .lastSeen(DateTimeUtils.humanize(lastSeen))
+                                                      .inFlightCalls(inFlightCalls)
                                                       .build();
 
                 returnList.add(status);
@@ -0,0 +1,317 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.service.dto.CompositeSchedule;
+import lombok.RequiredArgsConstructor;
+import ocpp.cp._2015._10.ChargingProfileKindType;
+import ocpp.cp._2015._10.ChargingProfilePurposeType;
+import ocpp.cp._2015._10.ChargingRateUnitType;
+import ocpp.cp._2015._10.RecurrencyKindType;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static ocpp.cp._2015._10.ChargingProfilePurposeType.CHARGE_POINT_MAX_PROFILE;
+import static ocpp.cp._2015._10.ChargingProfilePurposeType.TX_DEFAULT_PROFILE;
+import static ocpp.cp._2015._10.ChargingProfilePurposeType.TX_PROFILE;
+
+/**
+ * Computes the composite schedule of a connector the way a station does (OCPP 1.6, section 3.13):
+ *
+ * - Within a purpose, the valid profile with the highest stack level wins. At equal stack levels, a profile of the
+ * connector itself wins over one of connector 0.
+ * - A TxProfile overrides the TxDefaultProfiles.
+ * - The ChargePointMaxProfile of connector 0 caps the result. The composite schedule of connector 0 consists of it
+ * alone.
+ *
+ * There are two things SteVe cannot know: relative profiles are assumed to start with the schedule, since the start
+ * of the transaction is not tracked, and TxProfiles are assumed to be in use until they are cleared. Limits are
+ * converted between A and W with a nominal voltage of 230 V and the number of phases of the period (3, if absent).
+ */
+final class CompositeScheduleCalculator {
+
+    static final double NOMINAL_VOLTAGE = 230;
+    static final int DEFAULT_NUMBER_PHASES = 3;
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long WEEK_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private CompositeScheduleCalculator() { }
+
+    static CompositeSchedule calculate(String chargeBoxId, int connectorId, List<Profile> profiles,
+                                       DateTime start, int durationInSeconds,
+                                       @Nullable ChargingRateUnitType requestedUnit) {
+        List<Profile> relevant = new ArrayList<>(profiles.size());
+        for (Profile profile : profiles) {
+            if (isRelevant(profile, connectorId)) {
+                relevant.add(profile);
+            }
+        }
+
+        ChargingRateUnitType unit = requestedUnit;
+        if (unit == null) {
+            unit = relevant.isEmpty() ? ChargingRateUnitType.A : relevant.get(0).unit;
+        }
+
+        long startMillis = start.getMillis();
+        long endMillis = startMillis + TimeUnit.SECONDS.toMillis(durationInSeconds);
+
+        // the only points in time at which the composite limit can change
+        TreeSet<Long> changes = new TreeSet<>();
+        changes.add(startMillis);
+        for (Profile profile : relevant) {
+            addChanges(profile, startMillis, endMillis, changes);
+        }
+
+        List<CompositeSchedule.Period> periods = new ArrayList<>();
+        for (long time : changes) {
+            CompositeSchedule.Period period = evaluate(relevant, time, startMillis, unit);
+
+            int size = periods.size();
+            if (size > 0 && periods.get(size - 1).getStartPeriodInSeconds() == period.getStartPeriodInSeconds()) {
+                // two changes within the same second: the later one counts
+                periods.remove(--size);
+            }
+            if (size > 0 && isSameLimit(periods.get(size - 1), period)) {
+                continue;
+            }
+            periods.add(period);
+        }
+
+        return CompositeSchedule.builder()
+                                .chargeBoxId(chargeBoxId)
+                                .connectorId(connectorId)
+                                .startSchedule(start)
+                                .durationInSeconds(durationInSeconds)
+                                .chargingRateUnit(unit)
+                                .periods(periods)
+                                .build();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private static boolean isRelevant(Profile profile, int connectorId) {
+        switch (profile.purpose) {
+            case CHARGE_POINT_MAX_PROFILE:
+                return profile.connectorId == 0;
+            case TX_DEFAULT_PROFILE:
+                return connectorId != 0 && (profile.connectorId == 0 || profile.connectorId == connectorId);
+            case TX_PROFILE:
+                return connectorId != 0 && profile.connectorId == connectorId;
+            default:
+                return false;
+        }
+    }
+
+    private static CompositeSchedule.Period evaluate(List<Profile> profiles, long time, long startMillis,
+                                                     ChargingRateUnitType unit) {
+        Profile max = null, tx = null, txDefault = null;
+        int maxIndex = -1, txIndex = -1, txDefaultIndex = -1;
+
+        for (Profile profile : profiles) {
+            int index = profile.periodAt(time, startMillis);
+            if (index < 0) {
+                continue;
+            }
+
+            switch (profile.purpose) {
+                case CHARGE_POINT_MAX_PROFILE:
+                    if (profile.isAbove(max)) {
+                        max = profile;
+                        maxIndex = index;
+                    }
+                    break;
+                case TX_PROFILE:
+                    if (profile.isAbove(tx)) {
+                        tx = profile;
+                        txIndex = index;
+                    }
+                    break;
+                case TX_DEFAULT_PROFILE:
+                    if (profile.isAbove(txDefault)) {
+                        txDefault = profile;
+                        txDefaultIndex = index;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (tx == null) {
+            tx = txDefault;
+            txIndex = txDefaultIndex;
+        }
+
+        double limit = Double.NaN;
+        int numberPhases = 0;
+
+        if (tx != null) {
+            limit = tx.limitAt(txIndex, unit);
+            numberPhases = tx.numberPhases[txIndex];
+        }
+        if (max != null) {
+            double maxLimit = max.limitAt(maxIndex, unit);
+            if (Double.isNaN(limit) || maxLimit < limit) {
+                limit = maxLimit;
+                numberPhases = max.numberPhases[maxIndex];
+            }
+        }
+
+        return new CompositeSchedule.Period(
+                (int) TimeUnit.MILLISECONDS.toSeconds(time - startMillis),
+                Double.isNaN(limit) ? null : BigDecimal.valueOf(limit).setScale(1, RoundingMode.HALF_UP),
+                numberPhases == 0 ? null : numberPhases
+        );
+    }
+
+    private static void addChanges(Profile profile, long startMillis, long endMillis, TreeSet<Long> changes) {
+        addChange(profile.validFrom, startMillis, endMillis, changes);
+        addChange(profile.validTo, startMillis, endMillis, changes);
+
+        long recurrence = profile.getRecurrenceMillis();
+        for (long scheduleStart = profile.getScheduleStart(startMillis, startMillis); scheduleStart < endMillis; scheduleStart += recurrence) {
+            for (int startPeriod : profile.startPeriods) {
+                addChange(scheduleStart + TimeUnit.SECONDS.toMillis(startPeriod), startMillis, endMillis, changes);
+            }
+            if (profile.durationInSeconds != null) {
+                addChange(scheduleStart + TimeUnit.SECONDS.toMillis(profile.durationInSeconds), startMillis, endMillis, changes);
+            }
+            if (recurrence == 0) {
+                break;
+            }
+        }
+    }
+
+    private static void addChange(long time, long startMillis, long endMillis, TreeSet<Long> changes) {
+        if (time > startMillis && time < endMillis) {
+            changes.add(time);
+        }
+    }
+
+    private static boolean isSameLimit(CompositeSchedule.Period a, CompositeSchedule.Period b) {
+        return (a.getLimit() == null ? b.getLimit() == null : b.getLimit() != null && a.getLimit().compareTo(b.getLimit()) == 0)
+                && (a.getNumberPhases() == null ? b.getNumberPhases() == null : a.getNumberPhases().equals(b.getNumberPhases()));
+    }
+
+    static double convert(double limit, ChargingRateUnitType from, ChargingRateUnitType to, int numberPhases) {
+        if (from == to) {
+            return limit;
+        }
+        double factor = NOMINAL_VOLTAGE * (numberPhases > 0 ? numberPhases : DEFAULT_NUMBER_PHASES);
+        return from == ChargingRateUnitType.A ? limit * factor : limit / factor;
+    }
+
+    // -------------------------------------------------------------------------
+    // Class declarations
+    // -------------------------------------------------------------------------
+
+    /**
+     * A charging profile with its schedule, prepared for repeated evaluation
+     */
+    @RequiredArgsConstructor
+    static final class Profile {
+        final int connectorId;
+        final int stackLevel;
+        final ChargingProfilePurposeType purpose;
+        final ChargingProfileKindType kind;
+        @Nullable final RecurrencyKindType recurrencyKind;
+        final long validFrom; // Long.MIN_VALUE, if absent
+        final long validTo; // Long.MAX_VALUE, if absent
+        @Nullable final Long startSchedule;
+        @Nullable final Integer durationInSeconds;
+        final ChargingRateUnitType unit;
+
+        // the periods, ordered by start
+        final int[] startPeriods;
+        final double[] limits;
+        final int[] numberPhases; // 0, if absent
+
+        /**
+         * @return the index of the period that is active at this time, or -1 if the profile is not active
+         */
+        int periodAt(long time, long startMillis) {
+            if (time < validFrom || time >= validTo) {
+                return -1;
+            }
+
+            long offset = time - getScheduleStart(time, startMillis);
+            if (offset < 0) {
+                return -1;
+            }
+            if (durationInSeconds != null && offset >= TimeUnit.SECONDS.toMillis(durationInSeconds)) {
+                return -1;
+            }
+
+            int index = -1;
+            for (int i = 0; i < startPeriods.length && TimeUnit.SECONDS.toMillis(startPeriods[i]) <= offset; i++) {
+                index = i;
+            }
+            return index;
+        }
+
+        double limitAt(int index, ChargingRateUnitType to) {
+            return convert(limits[index], unit, to, numberPhases[index]);
+        }
+
+        boolean isAbove(@Nullable Profile other) {
+            return other == null
+                    || stackLevel > other.stackLevel
+                    || (stackLevel == other.stackLevel && connectorId > other.connectorId);
+        }
+
+        /**
+         * @return the start of the schedule (occurrence) that covers this time
+         */
+        long getScheduleStart(long time, long startMillis) {
+            long anchor;
+            if (kind == ChargingProfileKindType.RELATIVE) {
+                anchor = startMillis;
+            } else if (startSchedule != null) {
+                anchor = startSchedule;
+            } else if (validFrom != Long.MIN_VALUE) {
+                anchor = validFrom;
+            } else {
+                anchor = startMillis;
+            }
+
+            long recurrence = getRecurrenceMillis();
+            if (recurrence == 0) {
+                return anchor;
+            }
+            return anchor + Math.floorDiv(time - anchor, recurrence) * recurrence;
+        }
+
+        long getRecurrenceMillis() {
+            if (kind != ChargingProfileKindType.RECURRING || recurrencyKind == null) {
+                return 0;
+            }
+            return recurrencyKind == RecurrencyKindType.WEEKLY ? WEEK_MILLIS : DAY_MILLIS;
+        }
+    }
+}
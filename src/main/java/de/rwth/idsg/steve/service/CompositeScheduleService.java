@@ -0,0 +1,179 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.SteveException;
+import de.rwth.idsg.steve.repository.ChargingProfileRepository;
+import de.rwth.idsg.steve.repository.dto.ChargingProfile;
+import de.rwth.idsg.steve.repository.dto.ChargingProfileAssignmentEvent;
+import de.rwth.idsg.steve.service.dto.CompositeSchedule;
+import jooq.steve.db.tables.records.ChargingProfileRecord;
+import jooq.steve.db.tables.records.ChargingSchedulePeriodRecord;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ocpp.cp._2015._10.ChargingProfileKindType;
+import ocpp.cp._2015._10.ChargingProfilePurposeType;
+import ocpp.cp._2015._10.ChargingRateUnitType;
+import ocpp.cp._2015._10.RecurrencyKindType;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes composite schedules from the charging profiles that SteVe has assigned to the connectors, instead of
+ * asking the station with GetCompositeSchedule. The assigned profiles are cached per connector until an assignment of
+ * the charge box changes, so that a schedule can be computed without a database query most of the time.
+ *
+ * The schedule only reflects what has been set through SteVe: the station may have discarded TxProfiles at the end of
+ * a transaction, or may have profiles that were set by other means.
+ */
+@Slf4j
+@Service
+public class CompositeScheduleService {
+
+    public static final int MAX_DURATION_IN_SECONDS = (int) TimeUnit.DAYS.toSeconds(31);
+
+    @Autowired private ChargingProfileRepository chargingProfileRepository;
+
+    private final ConcurrentHashMap<ConnectorKey, List<CompositeScheduleCalculator.Profile>> cache = new ConcurrentHashMap<>();
+
+    // incremented on every invalidation, so that a load that overlaps with one is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public CompositeSchedule getCompositeSchedule(String chargeBoxId, int connectorId, int durationInSeconds,
+                                                  @Nullable ChargingRateUnitType chargingRateUnit) {
+        return getCompositeSchedule(chargeBoxId, connectorId, DateTime.now(), durationInSeconds, chargingRateUnit);
+    }
+
+    public CompositeSchedule getCompositeSchedule(String chargeBoxId, int connectorId, DateTime start,
+                                                  int durationInSeconds,
+                                                  @Nullable ChargingRateUnitType chargingRateUnit) {
+        if (connectorId < 0) {
+            throw new SteveException("Connector id must not be negative");
+        }
+        if (durationInSeconds <= 0 || durationInSeconds > MAX_DURATION_IN_SECONDS) {
+            throw new SteveException("Duration must be between 1 and %s seconds", MAX_DURATION_IN_SECONDS);
+        }
+
+        return CompositeScheduleCalculator.calculate(
+                chargeBoxId, connectorId, getProfiles(chargeBoxId, connectorId), start, durationInSeconds, chargingRateUnit
+        );
+    }
+
+    @EventListener
+    public void onAssignmentChanged(ChargingProfileAssignmentEvent event) {
+        generation.incrementAndGet();
+
+        String chargeBoxId = event.getChargeBoxId();
+        Integer connectorId = event.getConnectorId();
+
+        // the profiles of connector 0 belong to the schedules of all connectors
+        if (connectorId == null || connectorId == 0) {
+            cache.keySet().removeIf(key -> key.chargeBoxId.equals(chargeBoxId));
+        } else {
+            cache.remove(new ConnectorKey(chargeBoxId, connectorId));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private List<CompositeScheduleCalculator.Profile> getProfiles(String chargeBoxId, int connectorId) {
+        ConnectorKey key = new ConnectorKey(chargeBoxId, connectorId);
+
+        List<CompositeScheduleCalculator.Profile> profiles = cache.get(key);
+        if (profiles != null) {
+            return profiles;
+        }
+
+        long loadedAt = generation.get();
+        profiles = load(chargeBoxId, connectorId);
+
+        cache.put(key, profiles);
+        if (generation.get() != loadedAt) {
+            // an assignment changed while loading. the invalidation might have run before the put
+            cache.remove(key, profiles);
+        }
+        return profiles;
+    }
+
+    private List<CompositeScheduleCalculator.Profile> load(String chargeBoxId, int connectorId) {
+        List<ChargingProfile.AssignedDetails> details = chargingProfileRepository.getAssignedDetails(chargeBoxId, connectorId);
+        if (details.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<CompositeScheduleCalculator.Profile> profiles = new ArrayList<>(details.size());
+        for (ChargingProfile.AssignedDetails assigned : details) {
+            profiles.add(toProfile(assigned));
+        }
+        return Collections.unmodifiableList(profiles);
+    }
+
+    private static CompositeScheduleCalculator.Profile toProfile(ChargingProfile.AssignedDetails details) {
+        ChargingProfileRecord profile = details.getProfile();
+        List<ChargingSchedulePeriodRecord> periods = details.getPeriods();
+
+        int size = periods.size();
+        int[] startPeriods = new int[size];
+        double[] limits = new double[size];
+        int[] numberPhases = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            ChargingSchedulePeriodRecord period = periods.get(i);
+            startPeriods[i] = period.getStartPeriodInSeconds();
+            limits[i] = period.getPowerLimit().doubleValue();
+            numberPhases[i] = period.getNumberPhases() == null ? 0 : period.getNumberPhases();
+        }
+
+        return new CompositeScheduleCalculator.Profile(
+                details.getConnectorId(),
+                profile.getStackLevel(),
+                ChargingProfilePurposeType.fromValue(profile.getChargingProfilePurpose()),
+                ChargingProfileKindType.fromValue(profile.getChargingProfileKind()),
+                profile.getRecurrencyKind() == null ? null : RecurrencyKindType.fromValue(profile.getRecurrencyKind()),
+                profile.getValidFrom() == null ? Long.MIN_VALUE : profile.getValidFrom().getMillis(),
+                profile.getValidTo() == null ? Long.MAX_VALUE : profile.getValidTo().getMillis(),
+                profile.getStartSchedule() == null ? null : profile.getStartSchedule().getMillis(),
+                profile.getDurationInSeconds(),
+                ChargingRateUnitType.fromValue(profile.getChargingRateUnit()),
+                startPeriods,
+                limits,
+                numberPhases
+        );
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class ConnectorKey {
+        private final String chargeBoxId;
+        private final int connectorId;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.utils.LogFileIndex;
+import de.rwth.idsg.steve.utils.LogFileRetriever;
+import de.rwth.idsg.steve.web.dto.LogPage;
+import de.rwth.idsg.steve.web.dto.LogQueryForm;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pages of the log file for the log viewer. The index of the file is only built and kept up to date in the
+ * background, requests are served from the index as far as it goes.
+ */
+@Slf4j
+@Service
+public class LogViewerService {
+
+    private static final long INDEX_INTERVAL_IN_SECONDS = 10;
+
+    @Autowired private ScheduledExecutorService executorService;
+
+    private LogFileIndex index;
+    private ScheduledFuture<?> indexSchedule;
+
+    @PostConstruct
+    public void init() {
+        Optional<LogFileIndex> p = LogFileRetriever.INSTANCE.getPath().map(LogFileIndex::new);
+        if (p.isPresent()) {
+            index = p.get();
+            indexSchedule = executorService.scheduleWithFixedDelay(
+                    this::updateIndex, 0, INDEX_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (indexSchedule != null) {
+            indexSchedule.cancel(false);
+        }
+    }
+
+    /**
+     * @return empty, if there is no log file
+     */
+    public Optional<LogPage> getPage(LogQueryForm params) throws IOException {
+        if (index == null) {
+            return Optional.empty();
+        }
+
+        // Without offsets, a time range starts at its beginning, and the whole file at its end
+        LogPage page;
+        if (params.getBefore() != null) {
+            page = index.backward(params.getBefore(), params.getChargeBoxId(), params.getFrom(), params.getTo());
+        } else if (params.getOffset() != null || params.getFrom() != null || params.getTo() != null) {
+            long offset = params.getOffset() == null ? 0 : params.getOffset();
+            page = index.forward(offset, params.getChargeBoxId(), params.getFrom(), params.getTo());
+        } else {
+            page = index.backward(Long.MAX_VALUE, params.getChargeBoxId());
+        }
+        return Optional.of(page);
+    }
+
+    private void updateIndex() {
+        try {
+            index.update();
+        } catch (IOException e) {
+            log.warn("Failed to index the log file {}", index.getPath(), e);
+        }
+    }
+}
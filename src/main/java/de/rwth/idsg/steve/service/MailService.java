@@ -36,7 +36,6 @@ import jakarta.mail.Transport;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import java.util.Properties;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -50,7 +49,6 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 public class MailService {
 
     @Autowired private SettingsRepository settingsRepository;
-    @Autowired private ScheduledExecutorService executorService;
 
     private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
     private final Lock readLock = readWriteLock.readLock();
@@ -87,16 +85,6 @@ public class MailService {
         }
     }
 
-    public void sendAsync(String subject, String body) {
-        executorService.execute(() -> {
-            try {
-                send(subject, body);
-            } catch (MessagingException e) {
-                log.error("Failed to send mail", e);
-            }
-        });
-    }
-
     public void send(String subject, String body) throws MessagingException {
         MailSettings settings = getSettings();
 
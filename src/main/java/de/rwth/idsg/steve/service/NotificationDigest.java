@@ -0,0 +1,240 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.rwth.idsg.steve.NotificationFeature;
+import jakarta.mail.MessagingException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static de.rwth.idsg.steve.NotificationFeature.OcppStationWebSocketConnected;
+import static de.rwth.idsg.steve.NotificationFeature.OcppStationWebSocketDisconnected;
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+import static java.lang.String.format;
+
+/**
+ * Collects the notifications of a time window and sends them as one mail per feature, so that a burst of events
+ * (e.g. all stations reconnecting after a network outage) does not turn into a burst of SMTP transactions:
+ *
+ * - A feature with a single notification in the window gets the usual mail, several become one digest mail.
+ * - A disconnect that is followed by a connect of the same station within the window cancel each other out. The
+ *   station is only listed with the number of its reconnects at the end of the disconnect digest. A connect that is
+ *   followed by a disconnect leaves the station offline, and both are sent.
+ * - Mails are sent on an own thread, at most at the configured rate. Waiting for the rate limit or a slow mail server
+ *   only delays the next window, and never blocks the shared executor.
+ */
+@Slf4j
+@Component
+public class NotificationDigest {
+
+    @Autowired private MailService mailService;
+
+    private final int windowInSeconds = CONFIG.getNotification().getDigestWindowInSeconds();
+
+    private final RateLimiter rateLimiter =
+            RateLimiter.create(CONFIG.getNotification().getMaxMailsPerMinute() / 60.0);
+
+    private final ScheduledExecutorService mailExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("SteVe-Mail-%d").setDaemon(true).build());
+
+    // Guarded by this
+    private Map<NotificationFeature, List<Entry>> pending = new EnumMap<>(NotificationFeature.class);
+    private Map<String, Integer> reconnects = new LinkedHashMap<>();
+
+    private final LongAdder notificationCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        mailExecutor.scheduleWithFixedDelay(this::flush, windowInSeconds, windowInSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        // Send what was collected so far, instead of losing it
+        mailExecutor.execute(this::flush);
+        mailExecutor.shutdown();
+        try {
+            if (!mailExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Dropping notification mails that could not be sent in time");
+                mailExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            log.error("Termination interrupted", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param chargeBoxId of the station the notification is about, used to detect reconnects
+     */
+    public synchronized void add(NotificationFeature feature, @Nullable String chargeBoxId, String subject, String body) {
+        notificationCount.increment();
+
+        if (feature == OcppStationWebSocketConnected && chargeBoxId != null
+                && removePending(OcppStationWebSocketDisconnected, chargeBoxId)) {
+            reconnects.merge(chargeBoxId, 1, Integer::sum);
+            cancelledCount.add(2);
+            return;
+        }
+
+        pending.computeIfAbsent(feature, k -> new ArrayList<>()).add(new Entry(chargeBoxId, subject, body));
+    }
+
+    public long getNotificationCount() {
+        return notificationCount.sum();
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    @VisibleForTesting
+    void flush() {
+        Map<NotificationFeature, List<Entry>> batch;
+        Map<String, Integer> batchReconnects;
+        synchronized (this) {
+            if (pending.isEmpty() && reconnects.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            batchReconnects = reconnects;
+            pending = new EnumMap<>(NotificationFeature.class);
+            reconnects = new LinkedHashMap<>();
+        }
+
+        if (!batchReconnects.isEmpty()) {
+            batch.computeIfAbsent(OcppStationWebSocketDisconnected, k -> new ArrayList<>());
+        }
+
+        for (Map.Entry<NotificationFeature, List<Entry>> e : batch.entrySet()) {
+            boolean withReconnects = e.getKey() == OcppStationWebSocketDisconnected && !batchReconnects.isEmpty();
+            List<Entry> entries = e.getValue();
+
+            if (entries.size() == 1 && !withReconnects) {
+                send(entries.get(0).getSubject(), entries.get(0).getBody());
+            } else {
+                send(createDigestSubject(e.getKey(), entries, batchReconnects),
+                     createDigestBody(entries, batchReconnects, withReconnects));
+            }
+        }
+    }
+
+    private void send(String subject, String body) {
+        rateLimiter.acquire();
+        try {
+            mailService.send(subject, body);
+            sentCount.increment();
+        } catch (MessagingException | RuntimeException e) {
+            failedCount.increment();
+            log.error("Failed to send mail", e);
+        }
+    }
+
+    private String createDigestSubject(NotificationFeature feature, List<Entry> entries, Map<String, Integer> reconnects) {
+        if (entries.isEmpty()) {
+            return format("%s charging station(s) reconnected within %s seconds", reconnects.size(), windowInSeconds);
+        }
+        return format("%s notifications within %s seconds, when%s", entries.size(), windowInSeconds, feature.getText());
+    }
+
+    private static String createDigestBody(List<Entry> entries, Map<String, Integer> reconnects, boolean withReconnects) {
+        String newLine = System.lineSeparator();
+        StringBuilder sb = new StringBuilder();
+
+        for (Entry entry : entries) {
+            if (sb.length() > 0) {
+                sb.append(newLine).append(newLine);
+            }
+            sb.append("# ").append(entry.getSubject()).append(newLine).append(entry.getBody());
+        }
+
+        if (withReconnects) {
+            if (sb.length() > 0) {
+                sb.append(newLine).append(newLine);
+            }
+            sb.append("Disconnected and connected again (number of times):");
+            reconnects.forEach((chargeBoxId, count) ->
+                    sb.append(newLine).append("- ").append(chargeBoxId).append(": ").append(count));
+        }
+
+        return sb.toString();
+    }
+
+    private boolean removePending(NotificationFeature feature, String chargeBoxId) {
+        List<Entry> entries = pending.get(feature);
+        if (entries == null) {
+            return false;
+        }
+
+        // The most recent one, since only that one can be the counterpart
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (Objects.equals(entries.get(i).getChargeBoxId(), chargeBoxId)) {
+                entries.remove(i);
+                if (entries.isEmpty()) {
+                    pending.remove(feature);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class Entry {
+        @Nullable private final String chargeBoxId;
+        private final String subject;
+        private final String body;
+    }
+}
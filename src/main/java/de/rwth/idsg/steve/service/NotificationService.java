@@ -20,10 +20,16 @@ package de.rwth.idsg.steve.service;
 
 import com.google.common.base.Strings;
 import de.rwth.idsg.steve.NotificationFeature;
+import de.rwth.idsg.steve.ocpp.event.OcppEvent;
+import de.rwth.idsg.steve.ocpp.event.OcppEventListener;
+import de.rwth.idsg.steve.ocpp.event.StationConnected;
+import de.rwth.idsg.steve.ocpp.event.StationDisconnected;
+import de.rwth.idsg.steve.ocpp.event.StatusChanged;
 import de.rwth.idsg.steve.repository.dto.InsertTransactionParams;
 import de.rwth.idsg.steve.repository.dto.MailSettings;
 import de.rwth.idsg.steve.repository.dto.UpdateTransactionParams;
 import lombok.extern.slf4j.Slf4j;
+import ocpp.cs._2015._10.ChargePointStatus;
 import ocpp.cs._2015._10.RegistrationStatus;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -45,9 +51,27 @@ import static java.lang.String.format;
  */
 @Slf4j
 @Service
-public class NotificationService {
+public class NotificationService implements OcppEventListener {
 
     @Autowired private MailService mailService;
+    @Autowired private NotificationDigest notificationDigest;
+
+    @Override
+    public void onEvent(OcppEvent event, boolean endOfBatch) {
+        if (event instanceof StationConnected) {
+            ocppStationWebSocketConnected(event.getChargeBoxId());
+
+        } else if (event instanceof StationDisconnected) {
+            ocppStationWebSocketDisconnected(event.getChargeBoxId());
+
+        } else if (event instanceof StatusChanged) {
+            StatusChanged statusChanged = (StatusChanged) event;
+            if (statusChanged.getStatus() == ChargePointStatus.FAULTED) {
+                ocppStationStatusFailure(
+                        event.getChargeBoxId(), statusChanged.getConnectorId(), statusChanged.getErrorCode().value());
+            }
+        }
+    }
 
     public void ocppStationBooted(String chargeBoxId, Optional<RegistrationStatus> status) {
         if (isDisabled(OcppStationBooted)) {
@@ -62,7 +86,7 @@ public class NotificationService {
             body = format("Charging station '%s' is NOT in database", chargeBoxId);
         }
 
-        mailService.sendAsync(subject, addTimestamp(body));
+        notificationDigest.add(OcppStationBooted, chargeBoxId, subject, addTimestamp(body));
     }
 
     public void ocppStationWebSocketConnected(String chargeBoxId) {
@@ -72,7 +96,7 @@ public class NotificationService {
 
         String subject = format("Connected to JSON charging station '%s'", chargeBoxId);
 
-        mailService.sendAsync(subject, addTimestamp(""));
+        notificationDigest.add(OcppStationWebSocketConnected, chargeBoxId, subject, addTimestamp(""));
     }
 
     public void ocppStationWebSocketDisconnected(String chargeBoxId) {
@@ -82,7 +106,7 @@ public class NotificationService {
 
         String subject = format("Disconnected from JSON charging station '%s'", chargeBoxId);
 
-        mailService.sendAsync(subject, addTimestamp(""));
+        notificationDigest.add(OcppStationWebSocketDisconnected, chargeBoxId, subject, addTimestamp(""));
     }
 
     public void ocppStationStatusFailure(String chargeBoxId, int connectorId, String errorCode) {
@@ -93,7 +117,7 @@ public class NotificationService {
         String subject = format("Connector '%s' of charging station '%s' is FAULTED", connectorId, chargeBoxId);
         String body = format("Status Error Code: '%s'", errorCode);
 
-        mailService.sendAsync(subject, addTimestamp(body));
+        notificationDigest.add(OcppStationStatusFailure, chargeBoxId, subject, addTimestamp(body));
     }
 
     public void ocppTransactionStarted(int transactionId, InsertTransactionParams params) {
@@ -103,7 +127,7 @@ public class NotificationService {
 
         String subject = format("Transaction '%s' has started on charging station '%s' on connector '%s'", transactionId, params.getChargeBoxId(), params.getConnectorId());
 
-        mailService.sendAsync(subject, addTimestamp(createContent(params)));
+        notificationDigest.add(OcppTransactionStarted, params.getChargeBoxId(), subject, addTimestamp(createContent(params)));
     }
 
     public void ocppTransactionEnded(UpdateTransactionParams params) {
@@ -113,7 +137,7 @@ public class NotificationService {
 
         String subject = format("Transaction '%s' has ended on charging station '%s'", params.getTransactionId(), params.getChargeBoxId());
 
-        mailService.sendAsync(subject, addTimestamp(createContent(params)));
+        notificationDigest.add(OcppTransactionEnded, params.getChargeBoxId(), subject, addTimestamp(createContent(params)));
     }
 
     // -------------------------------------------------------------------------
@@ -0,0 +1,330 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import de.rwth.idsg.steve.SteveException;
+import de.rwth.idsg.steve.integration.IntegrationService;
+import de.rwth.idsg.steve.ocpp.event.OcppEventBus;
+import de.rwth.idsg.steve.ocpp.event.TxStarted;
+import de.rwth.idsg.steve.ocpp.event.TxStopped;
+import de.rwth.idsg.steve.ocpp.ws.JsonObjectMapper;
+import de.rwth.idsg.steve.repository.OcppServerRepository;
+import de.rwth.idsg.steve.repository.TransactionEventRepository;
+import de.rwth.idsg.steve.repository.dto.InsertTransactionParams;
+import de.rwth.idsg.steve.repository.dto.TransactionEvent;
+import de.rwth.idsg.steve.repository.dto.UpdateTransactionParams;
+import lombok.extern.slf4j.Slf4j;
+import ocpp.cs._2015._10.StartTransactionRequest;
+import ocpp.cs._2015._10.StopTransactionRequest;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
+/**
+ * The side effects of StartTransaction and StopTransaction: notification mails, the integration (MQTT publishing,
+ * energy aggregation, load balancing) and the meter values of the transaction data. Only the transaction id and the
+ * IdTagInfo are needed for the response, so these are deferred if configured:
+ *
+ * The request is written as an event to the transaction_event table, in the same database transaction as the
+ * transaction data (transactional outbox). After the response, the events are handled on the shared executor. An event
+ * remembers how many of its side effects were handled, so that a retry continues with the one that failed and does not
+ * send mails twice. The events of a station are handled in order: while an event waits for its retry, the later ones
+ * of the station wait as well. After {@link #MAX_ATTEMPTS}, an event is given up and stays in the table for
+ * inspection. In a cluster, every node polls the table, and an event is claimed before it is handled. The claim is
+ * renewed while the event is handled, and the progress is stored after every side effect. If a node still loses the
+ * claim (e.g. since it was stuck longer than the claim lasts), it stops before the next side effect, and the node that
+ * took over continues after the last stored one. So at most the side effect that was running is handled twice.
+ *
+ * The last side effect publishes TxStarted or TxStopped on the {@link OcppEventBus}, for the listeners that do not
+ * need the guarantees of the outbox.
+ *
+ * A repeated StartTransaction for a transaction that already exists does not create another event, since the side
+ * effects were already handled for the first one.
+ */
+@Slf4j
+@Service
+public class TransactionEventService {
+
+    @VisibleForTesting
+    static final int BATCH_SIZE = 100;
+    @VisibleForTesting
+    static final int MAX_ATTEMPTS = 10;
+    private static final int MAX_BACKOFF_IN_SECONDS = 300;
+    private static final int CLAIM_IN_SECONDS = 60;
+    private static final int RENEW_CLAIM_IN_SECONDS = CLAIM_IN_SECONDS / 3;
+
+    // picks up events that were written by other nodes, or that are due for a retry
+    private static final int POLL_INTERVAL_IN_SECONDS = 5;
+
+    private static final ObjectMapper MAPPER = JsonObjectMapper.INSTANCE.getMapper();
+
+    @Autowired private TransactionEventRepository transactionEventRepository;
+    @Autowired private OcppServerRepository ocppServerRepository;
+    @Autowired private NotificationService notificationService;
+    @Autowired private IntegrationService integrationService;
+    @Autowired private OcppEventBus eventBus;
+    @Autowired private ScheduledExecutorService executorService;
+
+    private final boolean deferred = CONFIG.getOcpp().isDeferTransactionEvents();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    // unique per run, so that a restarted node does not continue with the claims of its previous run
+    private final String claimOwner = UUID.randomUUID().toString();
+
+    private final LongAdder handledCount = new LongAdder();
+    private final LongAdder retriedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    private ScheduledFuture<?> pollFuture;
+
+    @PostConstruct
+    public void init() {
+        if (deferred) {
+            pollFuture = executorService.scheduleWithFixedDelay(
+                    this::wakeUp, POLL_INTERVAL_IN_SECONDS, POLL_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        if (pollFuture != null) {
+            pollFuture.cancel(false);
+        }
+    }
+
+    /**
+     * @return the payload of the event for {@link InsertTransactionParams} and {@link UpdateTransactionParams}, or
+     *         null if the side effects are not deferred
+     */
+    @Nullable
+    public String toPayload(Object request) {
+        if (!deferred) {
+            return null;
+        }
+
+        try {
+            return MAPPER.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new SteveException("Failed to serialize the transaction event", e);
+        }
+    }
+
+    public void transactionStarted(String chargeBoxId, int transactionId, StartTransactionRequest request) {
+        if (deferred) {
+            wakeUp();
+        } else {
+            startSteps(chargeBoxId, transactionId, request).forEach(Runnable::run);
+        }
+    }
+
+    public void transactionStopped(String chargeBoxId, StopTransactionRequest request) {
+        if (deferred) {
+            wakeUp();
+        } else {
+            stopSteps(chargeBoxId, request.getTransactionId(), request).forEach(Runnable::run);
+        }
+    }
+
+    public long getHandledCount() {
+        return handledCount.sum();
+    }
+
+    public long getRetriedCount() {
+        return retriedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void wakeUp() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            executorService.execute(this::drain);
+        }
+    }
+
+    /**
+     * Synchronized, since the events of a station must not be handled by two threads at the same time
+     */
+    @VisibleForTesting
+    synchronized void drain() {
+        // events that are written from now on need another run
+        drainScheduled.set(false);
+
+        try {
+            // every run gets the oldest due event of each station. Once it is handled, the next event of the station
+            // becomes due in the next run.
+            boolean handledAny = true;
+            while (handledAny) {
+                handledAny = false;
+                DateTime now = DateTime.now();
+
+                for (TransactionEvent event : transactionEventRepository.getDue(MAX_ATTEMPTS, now, BATCH_SIZE)) {
+                    boolean handled = transactionEventRepository.claim(event.getEventPk(), claimOwner, now,
+                                                                       now.plusSeconds(CLAIM_IN_SECONDS))
+                            && handleClaimed(event);
+
+                    handledAny |= handled;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to handle the transaction events", e);
+        }
+    }
+
+    private boolean handleClaimed(TransactionEvent event) {
+        AtomicBoolean claimLost = new AtomicBoolean(false);
+        ScheduledFuture<?> renewal = executorService.scheduleAtFixedRate(
+                () -> renewClaim(event, claimLost), RENEW_CLAIM_IN_SECONDS, RENEW_CLAIM_IN_SECONDS, TimeUnit.SECONDS);
+        try {
+            return handle(event, claimLost);
+        } finally {
+            renewal.cancel(false);
+        }
+    }
+
+    private void renewClaim(TransactionEvent event, AtomicBoolean claimLost) {
+        try {
+            DateTime claimedUntil = DateTime.now().plusSeconds(CLAIM_IN_SECONDS);
+            if (!transactionEventRepository.renewClaim(event.getEventPk(), claimOwner, claimedUntil)) {
+                claimLost.set(true);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to renew the claim of the transaction event {}", event.getEventPk(), e);
+        }
+    }
+
+    private boolean handle(TransactionEvent event, AtomicBoolean claimLost) {
+        int step = event.getProgress();
+        try {
+            List<Runnable> steps = createSteps(event);
+            while (step < steps.size()) {
+                if (claimLost.get()) {
+                    return onClaimLost(event);
+                }
+
+                steps.get(step).run();
+                step++;
+
+                if (step < steps.size() && !saveProgress(event, step)) {
+                    return onClaimLost(event);
+                }
+            }
+        } catch (Exception e) {
+            int attempts = event.getAttempts() + 1;
+            DateTime nextAttemptAt = DateTime.now().plusSeconds(getBackoffInSeconds(attempts));
+            transactionEventRepository.reschedule(event.getEventPk(), claimOwner, step, attempts, nextAttemptAt);
+
+            if (attempts < MAX_ATTEMPTS) {
+                retriedCount.increment();
+                log.warn("[chargeBoxId={}, transactionId={}] Failed to handle the {} event (attempt {}), will retry",
+                        event.getChargeBoxId(), event.getTransactionId(), event.getType(), attempts, e);
+            } else {
+                failedCount.increment();
+                log.error("[chargeBoxId={}, transactionId={}] Giving up the {} event after {} failed attempts",
+                        event.getChargeBoxId(), event.getTransactionId(), event.getType(), attempts, e);
+            }
+            return false;
+        }
+
+        transactionEventRepository.delete(event.getEventPk(), claimOwner);
+        handledCount.increment();
+        return true;
+    }
+
+    /**
+     * Also renews the claim, since the next side effect starts now
+     */
+    private boolean saveProgress(TransactionEvent event, int progress) {
+        DateTime claimedUntil = DateTime.now().plusSeconds(CLAIM_IN_SECONDS);
+        return transactionEventRepository.saveProgress(event.getEventPk(), claimOwner, progress, claimedUntil);
+    }
+
+    private static boolean onClaimLost(TransactionEvent event) {
+        log.warn("[chargeBoxId={}, transactionId={}] Lost the claim of the {} event, another node continues with it",
+                event.getChargeBoxId(), event.getTransactionId(), event.getType());
+        return false;
+    }
+
+    @VisibleForTesting
+    List<Runnable> createSteps(TransactionEvent event) throws IOException {
+        switch (event.getType()) {
+            case START:
+                StartTransactionRequest start = MAPPER.readValue(event.getPayload(), StartTransactionRequest.class);
+                return startSteps(event.getChargeBoxId(), event.getTransactionId(), start);
+            case STOP:
+                StopTransactionRequest stop = MAPPER.readValue(event.getPayload(), StopTransactionRequest.class);
+                return stopSteps(event.getChargeBoxId(), event.getTransactionId(), stop);
+            default:
+                throw new SteveException("Unknown transaction event type %s", event.getType());
+        }
+    }
+
+    /**
+     * The order of the steps must not change, since the progress of the events refers to it
+     */
+    private List<Runnable> startSteps(String chargeBoxId, int transactionId, StartTransactionRequest request) {
+        InsertTransactionParams params = CentralSystemService16_Service.insertParams(request, chargeBoxId).build();
+        return Arrays.asList(
+                () -> notificationService.ocppTransactionStarted(transactionId, params),
+                () -> integrationService.onStartTransaction(chargeBoxId, request),
+                () -> eventBus.publish(new TxStarted(chargeBoxId, transactionId, request))
+        );
+    }
+
+    /**
+     * The order of the steps must not change, since the progress of the events refers to it
+     */
+    private List<Runnable> stopSteps(String chargeBoxId, int transactionId, StopTransactionRequest request) {
+        UpdateTransactionParams params = CentralSystemService16_Service.updateParams(request, chargeBoxId).build();
+        return Arrays.asList(
+                () -> ocppServerRepository.insertMeterValues(chargeBoxId, request.getTransactionData(), transactionId),
+                () -> notificationService.ocppTransactionEnded(params),
+                () -> integrationService.onStopTransaction(chargeBoxId, request),
+                () -> eventBus.publish(new TxStopped(chargeBoxId, request))
+        );
+    }
+
+    @VisibleForTesting
+    static int getBackoffInSeconds(int attempts) {
+        return Math.min(1 << Math.min(attempts, 16), MAX_BACKOFF_IN_SECONDS);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ocpp.cp._2015._10.ChargingRateUnitType;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * The schedule a connector is expected to follow, as computed by SteVe from the charging profiles that are assigned to
+ * it. Same structure as the ChargingSchedule of a GetCompositeSchedule response, except that a period may be without
+ * limit, if no profile is active during it.
+ */
+@Getter
+@Builder
+public class CompositeSchedule {
+    private final String chargeBoxId;
+    private final int connectorId;
+    private final DateTime startSchedule;
+    private final int durationInSeconds;
+    private final ChargingRateUnitType chargingRateUnit;
+    private final List<Period> periods;
+
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Period {
+        private final int startPeriodInSeconds;
+        @Nullable private final BigDecimal limit;
+        @Nullable private final Integer numberPhases;
+    }
+}
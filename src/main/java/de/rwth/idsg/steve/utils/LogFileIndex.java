@@ -0,0 +1,694 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.utils;
+
+import de.rwth.idsg.steve.web.dto.LogPage;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTimeZone;
+import org.joda.time.IllegalFieldValueException;
+import org.joda.time.LocalDateTime;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads pages of a log file through memory-mapped windows, so that the file is never read as a whole. For the time
+ * and station filters, an index is built incrementally from the part of the file that was not indexed yet:
+ *
+ * - the offset and timestamp of the first line in every block of the file, to find the page for a point in time by
+ *   binary search, and
+ * - per chargeBoxId, the blocks with lines that mention it (as "chargeBoxId=..."), so that only these blocks have to
+ *   be read for the lines of a station.
+ *
+ * When the file is rolled over (it gets shorter or is another file), the index starts from scratch.
+ *
+ * Pages are served from the index as far as it goes. The index lock is only held for one window at a time during an
+ * update, so that pages can be read while a large file is indexed for the first time. Beyond the index, at most
+ * {@link #UNINDEXED_SCAN_LENGTH} bytes are read per page.
+ */
+public class LogFileIndex {
+
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    // the part of the file that is mapped at a time
+    private static final int WINDOW_SIZE = 16 * 1024 * 1024;
+
+    // of the part behind the index that is read for a page, before it stops and continues with the next page
+    private static final int UNINDEXED_SCAN_LENGTH = WINDOW_SIZE;
+
+    private static final int PAGE_SIZE = 64 * 1024;
+    private static final int MAX_LINES = 500;
+
+    private static final byte[] CHARGE_BOX_ID_KEY = "chargeBoxId=".getBytes(US_ASCII);
+    private static final int MAX_CHARGE_BOX_ID_LENGTH = 255;
+
+    // the timestamp is searched at the beginning of a line, like in "[INFO ] 2026-10-19 10:00:00,123 ..."
+    private static final int TIMESTAMP_SEARCH_LENGTH = 64;
+    private static final int TIMESTAMP_LENGTH = "yyyy-MM-dd HH:mm:ss".length();
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final Path path;
+
+    // only one update at a time, which holds the lock of the index only while it adds a window
+    private final Object updateLock = new Object();
+
+    @Nullable private Object fileKey;
+    // the index covers the file up to here, which is the end of a line
+    private long indexedLength;
+
+    // the first line with a timestamp in every block, ordered by offset
+    private long[] checkpointOffsets = new long[64];
+    private long[] checkpointTimestamps = new long[64];
+    private int checkpointCount;
+
+    private final Map<String, BlockList> blocksByChargeBoxId = new HashMap<>();
+
+    public LogFileIndex(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Indexes the lines that were appended since the last call
+     */
+    public void update() throws IOException {
+        synchronized (updateLock) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+                long size = channel.size();
+
+                long position;
+                synchronized (this) {
+                    if (size < indexedLength || !Objects.equals(key, fileKey)) {
+                        reset();
+                        fileKey = key;
+                    }
+                    position = indexedLength;
+                }
+
+                while (position < size) {
+                    int length = (int) Math.min(WINDOW_SIZE, size - position);
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                    int end = lastIndexOf(window, length, (byte) '\n') + 1;
+                    if (end == 0) {
+                        if (length < WINDOW_SIZE) {
+                            // the last line is still being written
+                            return;
+                        }
+                        // a line that is longer than the window is indexed in parts
+                        end = length;
+                    }
+
+                    synchronized (this) {
+                        indexLines(window, position, end);
+                        indexedLength = position + end;
+                    }
+                    position += end;
+                }
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Pages
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param chargeBoxId if set, only the lines that mention the station
+     * @param from if set, only lines from this time on
+     * @param to if set, only lines until this time
+     */
+    public synchronized LogPage forward(long offset, @Nullable String chargeBoxId,
+                                        @Nullable LocalDateTime from, @Nullable LocalDateTime to) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long first = from == null ? 0 : checkpointBefore(toMillis(from));
+            long start = alignToLine(channel, Math.min(Math.max(offset, first), size));
+
+            // the end of what is read for this page
+            long limit = Math.min(size, Math.max(start, indexedLength) + UNINDEXED_SCAN_LENGTH);
+
+            LineCollector collector = new LineCollector(chargeBoxId, from, to);
+            if (chargeBoxId == null) {
+                forEachLine(channel, start, limit, collector);
+            } else {
+                BlockList blocks = blocksByChargeBoxId.getOrDefault(chargeBoxId, BlockList.EMPTY);
+                for (int i = blocks.indexOfFirstFrom(toBlock(start)); i < blocks.size && !collector.done; i++) {
+                    long blockStart = (long) blocks.blocks[i] * BLOCK_SIZE;
+                    long lineStart = blockStart > start ? alignToLine(channel, blockStart) : start;
+                    forEachLine(channel, lineStart, Math.min(blockStart + BLOCK_SIZE, indexedLength), collector);
+                }
+                // lines at the end of the file that are not indexed yet
+                if (!collector.done && indexedLength < limit) {
+                    forEachLine(channel, Math.max(start, indexedLength), limit, collector);
+                }
+            }
+
+            // if the collector is not done, there are no more lines until the limit
+            long end = collector.done ? Math.max(start, collector.resumeOffset) : limit;
+            long last = collector.afterTo ? end : size;
+            return toPage(size, first, last, collector.lines.isEmpty() ? start : collector.startOffset, end, collector.lines);
+        }
+    }
+
+    /**
+     * @param chargeBoxId if set, only the lines that mention the station
+     */
+    public LogPage backward(long before, @Nullable String chargeBoxId) throws IOException {
+        return backward(before, chargeBoxId, null, null);
+    }
+
+    /**
+     * @param chargeBoxId if set, only the lines that mention the station
+     * @param from if set, only lines from this time on
+     * @param to if set, only lines until this time
+     */
+    public synchronized LogPage backward(long before, @Nullable String chargeBoxId,
+                                         @Nullable LocalDateTime from, @Nullable LocalDateTime to) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long first = from == null ? 0 : checkpointBefore(toMillis(from));
+            long last = to == null ? size : checkpointAfter(toMillis(to), size);
+            long end = Math.max(first, Math.min(before, last));
+
+            if (chargeBoxId == null) {
+                long start = alignToLine(channel, Math.max(first, end - PAGE_SIZE));
+                LineCollector collector = new LineCollector(null, from, to, Integer.MAX_VALUE);
+                forEachLine(channel, start, end, collector);
+
+                // the last lines, if there are too many
+                List<String> lines = collector.lines;
+                if (lines.size() > MAX_LINES) {
+                    start = collector.offsets.get(lines.size() - MAX_LINES);
+                    lines = new ArrayList<>(lines.subList(lines.size() - MAX_LINES, lines.size()));
+                }
+                return toPage(size, first, last, start, end, lines);
+            }
+
+            // collect the blocks from the newest on, until there are enough lines
+            List<List<String>> newestFirst = new ArrayList<>();
+            int lineCount = 0;
+            long start = end;
+
+            if (indexedLength < end) {
+                long indexEnd = Math.max(first, indexedLength);
+                long scanStart = Math.max(indexEnd, alignToLine(channel, Math.max(0, end - UNINDEXED_SCAN_LENGTH)));
+                LineCollector collector = new LineCollector(chargeBoxId, from, to, Integer.MAX_VALUE);
+                forEachLine(channel, scanStart, end, collector);
+
+                List<String> lines = collector.lines;
+                if (lines.size() > MAX_LINES) {
+                    scanStart = collector.offsets.get(lines.size() - MAX_LINES);
+                    lines = new ArrayList<>(lines.subList(lines.size() - MAX_LINES, lines.size()));
+                }
+                if (scanStart > indexEnd) {
+                    // the rest behind the index is left for the older pages
+                    return toPage(size, first, last, scanStart, end, lines);
+                }
+                newestFirst.add(lines);
+                lineCount += lines.size();
+                start = indexEnd;
+            }
+
+            BlockList blocks = blocksByChargeBoxId.getOrDefault(chargeBoxId, BlockList.EMPTY);
+            for (int i = blocks.indexOfFirstFrom(toBlock(end - 1) + 1) - 1; i >= 0 && lineCount < MAX_LINES; i--) {
+                long blockStart = (long) blocks.blocks[i] * BLOCK_SIZE;
+                if (blockStart + BLOCK_SIZE <= first) {
+                    break;
+                }
+                long lineStart = blockStart > first ? alignToLine(channel, blockStart) : first;
+                LineCollector collector = new LineCollector(chargeBoxId, from, to);
+                forEachLine(channel, lineStart, Math.min(blockStart + BLOCK_SIZE, Math.min(end, indexedLength)), collector);
+                newestFirst.add(collector.lines);
+                lineCount += collector.lines.size();
+                start = Math.max(first, blockStart);
+            }
+            if (lineCount < MAX_LINES) {
+                start = first;
+            }
+
+            List<String> lines = new ArrayList<>(lineCount);
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                lines.addAll(newestFirst.get(i));
+            }
+            return toPage(size, first, last, start, end, lines);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Indexing
+    // -------------------------------------------------------------------------
+
+    private void reset() {
+        indexedLength = 0;
+        checkpointCount = 0;
+        blocksByChargeBoxId.clear();
+    }
+
+    private void indexLines(ByteBuffer window, long base, int end) {
+        int lineStart = 0;
+        for (int i = 0; i < end; i++) {
+            if (window.get(i) == '\n') {
+                indexLine(window, base, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < end) {
+            indexLine(window, base, lineStart, end);
+        }
+    }
+
+    private void indexLine(ByteBuffer window, long base, int lineStart, int lineEnd) {
+        long offset = base + lineStart;
+        int block = toBlock(offset);
+
+        if (checkpointCount == 0 || toBlock(checkpointOffsets[checkpointCount - 1]) < block) {
+            long timestamp = parseTimestamp(window, lineStart, lineEnd);
+            if (timestamp != NO_TIMESTAMP) {
+                addCheckpoint(offset, timestamp);
+            }
+        }
+
+        int i = lineStart;
+        while ((i = indexOf(window, CHARGE_BOX_ID_KEY, i, lineEnd)) >= 0) {
+            int idStart = i + CHARGE_BOX_ID_KEY.length;
+            int idEnd = idStart;
+            while (idEnd < lineEnd && idEnd - idStart < MAX_CHARGE_BOX_ID_LENGTH && !isDelimiter(window.get(idEnd))) {
+                idEnd++;
+            }
+            if (idEnd > idStart) {
+                blocksByChargeBoxId.computeIfAbsent(decode(window, idStart, idEnd), k -> new BlockList())
+                                   .addIfLast(block);
+            }
+            i = idEnd;
+        }
+    }
+
+    private void addCheckpoint(long offset, long timestamp) {
+        if (checkpointCount == checkpointOffsets.length) {
+            checkpointOffsets = Arrays.copyOf(checkpointOffsets, checkpointCount * 2);
+            checkpointTimestamps = Arrays.copyOf(checkpointTimestamps, checkpointCount * 2);
+        }
+        checkpointOffsets[checkpointCount] = offset;
+        checkpointTimestamps[checkpointCount] = timestamp;
+        checkpointCount++;
+    }
+
+    /**
+     * @return the offset of the last checkpoint before the time, from which on the lines of this time are found
+     */
+    private long checkpointBefore(long timestamp) {
+        int low = 0;
+        int high = checkpointCount - 1;
+        long offset = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (checkpointTimestamps[mid] < timestamp) {
+                offset = checkpointOffsets[mid];
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * @return the offset of the first checkpoint after the time, before which all lines of this time are found
+     */
+    private long checkpointAfter(long timestamp, long size) {
+        int low = 0;
+        int high = checkpointCount - 1;
+        long offset = size;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (checkpointTimestamps[mid] > timestamp) {
+                offset = checkpointOffsets[mid];
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return offset;
+    }
+
+    // -------------------------------------------------------------------------
+    // Reading
+    // -------------------------------------------------------------------------
+
+    private interface LineConsumer {
+        /**
+         * @return false, if no more lines are needed
+         */
+        boolean accept(long offset, long endOffset, String line);
+    }
+
+    /**
+     * Calls the consumer with every line that starts at or after from (which has to be the start of a line) and
+     * before to. The last line may end behind to.
+     */
+    private static void forEachLine(FileChannel channel, long from, long to, LineConsumer consumer) throws IOException {
+        long size = channel.size();
+        long position = from;
+        while (position < to && position < size) {
+            int length = (int) Math.min(WINDOW_SIZE, size - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            int lineStart = 0;
+            for (int i = 0; i < length && position + lineStart < to; i++) {
+                if (window.get(i) == '\n') {
+                    if (!consumer.accept(position + lineStart, position + i + 1, decode(window, lineStart, i))) {
+                        return;
+                    }
+                    lineStart = i + 1;
+                }
+            }
+
+            boolean atEnd = position + length == size;
+            if (position + lineStart < to && (lineStart == 0 || atEnd) && lineStart < length) {
+                // the line that is still being written, or a part of a line that is longer than the window
+                if (!consumer.accept(position + lineStart, position + length, decode(window, lineStart, length))) {
+                    return;
+                }
+                lineStart = length;
+            }
+            if (atEnd && lineStart == length) {
+                return;
+            }
+            position += lineStart;
+        }
+    }
+
+    /**
+     * @return the offset, if it is the start of a line, otherwise the start of the next line
+     */
+    private static long alignToLine(FileChannel channel, long offset) throws IOException {
+        long size = channel.size();
+        if (offset == 0 || offset >= size) {
+            return Math.min(offset, size);
+        }
+
+        long position = offset - 1;
+        while (position < size) {
+            int length = (int) Math.min(BLOCK_SIZE, size - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += length;
+        }
+        return size;
+    }
+
+    /**
+     * Collects the lines of a page, until it has enough lines or bytes, or a line is after the time range
+     */
+    private static final class LineCollector implements LineConsumer {
+        @Nullable private final String chargeBoxId;
+        private final long notBefore;
+        private final long notAfter;
+
+        private final int maxLines;
+
+        private final List<String> lines = new ArrayList<>();
+        private final List<Long> offsets = new ArrayList<>();
+        private long startOffset;
+        private int bytes;
+        private boolean done;
+        // done, because a line is after the time range
+        private boolean afterTo;
+
+        // behind the last line that was looked at, where the next page continues
+        private long resumeOffset;
+
+        // of the last line with a timestamp, for the lines without one (like stack traces)
+        private long lastTimestamp = NO_TIMESTAMP;
+
+        private LineCollector(@Nullable String chargeBoxId, @Nullable LocalDateTime from, @Nullable LocalDateTime to) {
+            this(chargeBoxId, from, to, MAX_LINES);
+        }
+
+        private LineCollector(@Nullable String chargeBoxId, @Nullable LocalDateTime from, @Nullable LocalDateTime to,
+                              int maxLines) {
+            this.chargeBoxId = chargeBoxId;
+            this.notBefore = from == null ? Long.MIN_VALUE : toMillis(from);
+            this.notAfter = to == null ? Long.MAX_VALUE : toMillis(to);
+            this.maxLines = maxLines;
+        }
+
+        @Override
+        public boolean accept(long offset, long endOffset, String line) {
+            if (notBefore != Long.MIN_VALUE || notAfter != Long.MAX_VALUE) {
+                long timestamp = parseTimestamp(line);
+                if (timestamp != NO_TIMESTAMP) {
+                    lastTimestamp = timestamp;
+                }
+                if (lastTimestamp != NO_TIMESTAMP && lastTimestamp > notAfter) {
+                    done = true;
+                    afterTo = true;
+                    return false;
+                }
+            }
+
+            resumeOffset = endOffset;
+            if (lastTimestamp != NO_TIMESTAMP && lastTimestamp < notBefore) {
+                return true;
+            }
+            if (chargeBoxId != null && !mentions(line, chargeBoxId)) {
+                return true;
+            }
+
+            if (lines.isEmpty()) {
+                startOffset = offset;
+            }
+            lines.add(line);
+            offsets.add(offset);
+            bytes += (int) (endOffset - offset);
+            done = lines.size() >= maxLines || bytes >= PAGE_SIZE;
+            return !done;
+        }
+    }
+
+    private LogPage toPage(long size, long first, long last, long start, long end, List<String> lines) {
+        return LogPage.builder()
+                      .path(path.toAbsolutePath().toString())
+                      .fileSize(size)
+                      .firstOffset(first)
+                      .lastOffset(last)
+                      .startOffset(start)
+                      .endOffset(end)
+                      .lines(lines)
+                      .build();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static int toBlock(long offset) {
+        return (int) (offset / BLOCK_SIZE);
+    }
+
+    private static String decode(ByteBuffer window, int start, int end) {
+        if (end > start && window.get(end - 1) == '\r') {
+            end--;
+        }
+        ByteBuffer slice = window.duplicate();
+        slice.position(start);
+        slice.limit(end);
+        return UTF_8.decode(slice).toString();
+    }
+
+    private static boolean isDelimiter(int c) {
+        switch (c) {
+            case ',':
+            case ']':
+            case ')':
+            case '}':
+            case ';':
+            case '"':
+            case ' ':
+            case '\t':
+            case '\r':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return true, if the line contains "chargeBoxId=" with exactly this id
+     */
+    static boolean mentions(String line, String chargeBoxId) {
+        String key = "chargeBoxId=" + chargeBoxId;
+        int i = 0;
+        while ((i = line.indexOf(key, i)) >= 0) {
+            int end = i + key.length();
+            if (end == line.length() || isDelimiter(line.charAt(end))) {
+                return true;
+            }
+            i = end;
+        }
+        return false;
+    }
+
+    private static int indexOf(ByteBuffer window, byte[] pattern, int from, int to) {
+        byte first = pattern[0];
+        for (int i = from; i <= to - pattern.length; i++) {
+            if (window.get(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < pattern.length && window.get(i + j) == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(ByteBuffer window, int length, byte b) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (window.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long parseTimestamp(ByteBuffer window, int lineStart, int lineEnd) {
+        int end = Math.min(lineEnd, lineStart + TIMESTAMP_SEARCH_LENGTH);
+        if (end - lineStart < TIMESTAMP_LENGTH) {
+            return NO_TIMESTAMP;
+        }
+        return parseTimestamp(decode(window, lineStart, end));
+    }
+
+    /**
+     * @return the first "yyyy-MM-dd HH:mm:ss" at the beginning of the line, in millis as if it was UTC (only used
+     * for comparisons with times in the same time zone)
+     */
+    static long parseTimestamp(String line) {
+        int end = Math.min(line.length(), TIMESTAMP_SEARCH_LENGTH) - TIMESTAMP_LENGTH;
+        for (int i = 0; i <= end; i++) {
+            if (isTimestampAt(line, i)) {
+                try {
+                    return new LocalDateTime(
+                            number(line, i, 4), number(line, i + 5, 2), number(line, i + 8, 2),
+                            number(line, i + 11, 2), number(line, i + 14, 2), number(line, i + 17, 2)
+                    ).toDateTime(DateTimeZone.UTC).getMillis();
+                } catch (IllegalFieldValueException e) {
+                    return NO_TIMESTAMP;
+                }
+            }
+        }
+        return NO_TIMESTAMP;
+    }
+
+    private static boolean isTimestampAt(String s, int i) {
+        // yyyy-MM-dd HH:mm:ss
+        for (int j = 0; j < TIMESTAMP_LENGTH; j++) {
+            char c = s.charAt(i + j);
+            switch (j) {
+                case 4:
+                case 7:
+                    if (c != '-') {
+                        return false;
+                    }
+                    break;
+                case 10:
+                    if (c != ' ' && c != 'T') {
+                        return false;
+                    }
+                    break;
+                case 13:
+                case 16:
+                    if (c != ':') {
+                        return false;
+                    }
+                    break;
+                default:
+                    if (c < '0' || c > '9') {
+                        return false;
+                    }
+                    break;
+            }
+        }
+        return true;
+    }
+
+    private static int number(String s, int start, int length) {
+        return Integer.parseInt(s.substring(start, start + length));
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toDateTime(DateTimeZone.UTC).getMillis();
+    }
+
+    /**
+     * Ascending block numbers
+     */
+    private static final class BlockList {
+        private static final BlockList EMPTY = new BlockList();
+
+        private int[] blocks = new int[8];
+        private int size;
+
+        private void addIfLast(int block) {
+            if (size > 0 && blocks[size - 1] >= block) {
+                return;
+            }
+            if (size == blocks.length) {
+                blocks = Arrays.copyOf(blocks, size * 2);
+            }
+            blocks[size++] = block;
+        }
+
+        /**
+         * @return the index of the first block that is not before the given one, or size
+         */
+        private int indexOfFirstFrom(int block) {
+            int i = Arrays.binarySearch(blocks, 0, size, block);
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+}
@@ -19,6 +19,9 @@
 package de.rwth.idsg.steve.web.controller;
 
 import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import de.rwth.idsg.steve.ocpp.soap.SoapStationStateCache;
+import de.rwth.idsg.steve.ocpp.ws.traffic.MessageHistory;
+import de.rwth.idsg.steve.ocpp.ws.traffic.TrafficLog;
 import de.rwth.idsg.steve.repository.ChargePointRepository;
 import de.rwth.idsg.steve.repository.dto.ChargePoint;
 import de.rwth.idsg.steve.service.ChargePointHelperService;
@@ -36,6 +39,7 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import javax.validation.Valid;
 import java.util.Arrays;
@@ -54,6 +58,7 @@ public class ChargePointsController {
 
     @Autowired protected ChargePointRepository chargePointRepository;
     @Autowired protected ChargePointHelperService chargePointHelperService;
+    @Autowired protected SoapStationStateCache soapStationStateCache;
 
     protected static final String PARAMS = "params";
 
@@ -73,6 +78,7 @@ public class ChargePointsController {
 
     protected static final String DETAILS_PATH = "/details/{chargeBoxPk}";
     protected static final String DELETE_PATH = "/delete/{chargeBoxPk}";
+    protected static final String TRAFFIC_LOG_PATH = "/details/{chargeBoxPk}/trafficLog";
     protected static final String UPDATE_PATH = "/update";
     protected static final String ADD_PATH = "/add";
 
@@ -117,9 +123,21 @@ public class ChargePointsController {
         model.addAttribute("registrationStatusList", getRegistrationStatusList(cp.getChargeBox()));
         addCountryCodes(model);
 
+        String chargeBoxId = cp.getChargeBox().getChargeBoxId();
+        model.addAttribute("messageHistory", MessageHistory.INSTANCE.getHistory(chargeBoxId));
+        model.addAttribute("fullPayloadLogging", TrafficLog.INSTANCE.isFullPayloadLogging(chargeBoxId));
+
         return "data-man/chargepointDetails";
     }
 
+    @RequestMapping(value = TRAFFIC_LOG_PATH, method = RequestMethod.POST)
+    public String setFullPayloadLogging(@PathVariable("chargeBoxPk") int chargeBoxPk,
+                                        @RequestParam("fullPayload") boolean fullPayload) {
+        ChargePoint.Details cp = chargePointRepository.getDetails(chargeBoxPk);
+        TrafficLog.INSTANCE.setFullPayloadLogging(cp.getChargeBox().getChargeBoxId(), fullPayload);
+        return "redirect:/manager/chargepoints/details/" + chargeBoxPk;
+    }
+
     private List<String> getRegistrationStatusList(ChargeBoxRecord chargeBoxRecord) {
         if (chargeBoxRecord.getOcppProtocol() == null) {
             return upToOcpp15RegistrationStatusList;
@@ -178,12 +196,14 @@ public class ChargePointsController {
         }
 
         chargePointRepository.updateChargePoint(chargePointForm);
+        soapStationStateCache.invalidateRegistrationStatuses();
         return toOverview();
     }
 
     @RequestMapping(value = DELETE_PATH, method = RequestMethod.POST)
     public String delete(@PathVariable("chargeBoxPk") int chargeBoxPk) {
         chargePointRepository.deleteChargePoint(chargeBoxPk);
+        soapStationStateCache.invalidateRegistrationStatuses();
         return toOverview();
     }
 
@@ -18,19 +18,20 @@
  */
 package de.rwth.idsg.steve.web.controller;
 
+import de.rwth.idsg.steve.service.LogViewerService;
 import de.rwth.idsg.steve.utils.LogFileRetriever;
+import de.rwth.idsg.steve.web.dto.LogQueryForm;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
-import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.Optional;
 
 /**
  * @author Sevket Goekay <sevketgokay@gmail.com>
@@ -41,22 +42,31 @@ import java.util.Optional;
 @RequestMapping(value = "/manager")
 public class LogController {
 
+    private static final String PARAMS = "params";
+
+    @Autowired private LogViewerService logViewerService;
+
+    /**
+     * Shows one page of the log file at a time (the end of it, by default) instead of the whole file, which can be
+     * several GB large.
+     */
     @RequestMapping(value = "/log", method = RequestMethod.GET)
-    public void log(HttpServletResponse response) {
-        response.setContentType("text/plain");
+    public String log(@Valid @ModelAttribute(PARAMS) LogQueryForm params, BindingResult result, Model model) {
+        model.addAttribute("logFile", getLogFilePath());
+        if (result.hasErrors()) {
+            return "log";
+        }
 
-        try (PrintWriter writer = response.getWriter()) {
-            Optional<Path> p = LogFileRetriever.INSTANCE.getPath();
-            if (p.isPresent()) {
-                Files.lines(p.get(), StandardCharsets.UTF_8)
-                     .forEach(writer::println);
-            } else {
-                writer.write(LogFileRetriever.INSTANCE.getErrorMessage());
-            }
+        try {
+            logViewerService.getPage(params)
+                            .ifPresent(page -> model.addAttribute("page", page));
         } catch (IOException e) {
             log.error("Exception happened", e);
+            model.addAttribute("readError", e.getMessage());
         }
+        return "log";
     }
+
     public String getLogFilePath() {
         return LogFileRetriever.INSTANCE.getLogFilePathOrErrorMessage();
     }
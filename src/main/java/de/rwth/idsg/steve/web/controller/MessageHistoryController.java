@@ -0,0 +1,44 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.web.controller;
+
+import de.rwth.idsg.steve.ocpp.ws.traffic.MessageHistory;
+import de.rwth.idsg.steve.ocpp.ws.traffic.TrafficEntry;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+
+/**
+ * The last OCPP-J frames of a station, the newest first. Below /api, so that it is protected like the rest of the API.
+ */
+@Controller
+@ResponseBody
+@RequestMapping(value = "/api", produces = MediaType.APPLICATION_JSON_VALUE)
+public class MessageHistoryController {
+
+    @RequestMapping(value = "/chargepoints/{chargeBoxId}/messages", method = RequestMethod.GET)
+    public List<TrafficEntry> getMessages(@PathVariable("chargeBoxId") String chargeBoxId) {
+        return MessageHistory.INSTANCE.getHistory(chargeBoxId);
+    }
+}
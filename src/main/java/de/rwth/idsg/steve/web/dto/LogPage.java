@@ -0,0 +1,54 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.web.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * A part of the log file. The offsets are byte positions in the file, so that the next or previous page can be
+ * requested from them.
+ */
+@Getter
+@Builder
+public final class LogPage {
+    private final String path;
+    private final long fileSize;
+
+    // where the lines of the time range start and end, the whole file without one
+    private final long firstOffset;
+    private final long lastOffset;
+
+    // of the first line
+    private final long startOffset;
+    // behind the last line
+    private final long endOffset;
+
+    private final List<String> lines;
+
+    public boolean isOlderAvailable() {
+        return startOffset > firstOffset;
+    }
+
+    public boolean isNewerAvailable() {
+        return endOffset < lastOffset;
+    }
+}
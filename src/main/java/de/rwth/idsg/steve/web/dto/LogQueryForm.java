@@ -0,0 +1,58 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.web.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.joda.time.LocalDateTime;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Min;
+
+/**
+ * Without offsets, the page at the end of the log file is shown.
+ */
+@Getter
+@Setter
+public class LogQueryForm {
+
+    // only lines that mention this station
+    private String chargeBoxId;
+
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    // the page starts at this byte position, or at the first line after it
+    @Min(value = 0, message = "Offset must be at least {value}")
+    private Long offset;
+
+    // the page ends before this byte position
+    @Min(value = 0, message = "Before must be at least {value}")
+    private Long before;
+
+    @AssertTrue(message = "'To' must be after 'From'")
+    public boolean isFromToValid() {
+        return from == null || to == null || to.isAfter(from);
+    }
+
+    @AssertTrue(message = "Only one of 'Offset' and 'Before' can be set")
+    public boolean isOffsetOrBefore() {
+        return offset == null || before == null;
+    }
+}
@@ -35,4 +35,9 @@ public final class OcppJsonStatus {
     private final String connectionDuration;
     private final OcppVersion version;
     private final DateTime connectedSinceDT;
+
+    // Metadata of the station (not of this particular connection)
+    private final String lastSeen;
+    private final DateTime lastSeenDT;
+    private final int inFlightCalls;
 }
@@ -0,0 +1,11 @@
+-- which node of a cluster currently holds the WebSocket session of a charge box
+CREATE TABLE cluster_session_owner (
+  charge_box_id VARCHAR(255) NOT NULL,
+  ocpp_version VARCHAR(10) NOT NULL,
+  node_id VARCHAR(255) NOT NULL,
+  node_address VARCHAR(255) NOT NULL,
+  claimed_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+  PRIMARY KEY (charge_box_id)
+);
+
+CREATE INDEX cluster_session_owner_node_id_idx ON cluster_session_owner (node_id);
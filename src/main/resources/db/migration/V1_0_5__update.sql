@@ -0,0 +1,4 @@
+-- charge boxes with the same site share a grid connection, e.g. for aggregated energy statistics
+ALTER TABLE charge_box ADD COLUMN site_id VARCHAR(255) NULL DEFAULT NULL;
+
+CREATE INDEX charge_box_site_id_idx ON charge_box (site_id);
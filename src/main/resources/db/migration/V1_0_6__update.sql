@@ -0,0 +1,7 @@
+-- grid capacity of a site that the load balancer distributes across its charging connectors
+CREATE TABLE site_load_limit (
+  site_id VARCHAR(255) NOT NULL,
+  capacity_in_amps DECIMAL(10, 1) NOT NULL,
+  min_per_connector_in_amps DECIMAL(10, 1) NOT NULL DEFAULT 6.0,
+  PRIMARY KEY (site_id)
+);
@@ -0,0 +1,19 @@
+-- side effects of StartTransaction and StopTransaction that are handled after the response, written in the same
+-- database transaction as the transaction data
+CREATE TABLE transaction_event (
+  event_pk INT NOT NULL AUTO_INCREMENT,
+  event_type VARCHAR(16) NOT NULL,
+  charge_box_id VARCHAR(255) NOT NULL,
+  transaction_pk INT UNSIGNED NOT NULL,
+  payload MEDIUMTEXT NOT NULL,
+  progress INT NOT NULL DEFAULT 0,
+  attempts INT NOT NULL DEFAULT 0,
+  next_attempt_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+  claimed_by VARCHAR(36) NULL DEFAULT NULL,
+  claimed_until TIMESTAMP(6) NULL DEFAULT NULL,
+  created_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+  PRIMARY KEY (event_pk)
+);
+
+CREATE INDEX transaction_event_attempts_idx ON transaction_event (attempts);
+CREATE INDEX transaction_event_charge_box_id_idx ON transaction_event (charge_box_id, event_pk);
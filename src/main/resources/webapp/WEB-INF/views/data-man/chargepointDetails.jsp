@@ -66,6 +66,13 @@
                     <a href="${ctxPath}/manager/chargingProfiles/assignments?chargeBoxId=${chargePointForm.chargeBoxId}">ALL</a>
                 </td>
             </tr>
+            <tr>
+                <td>Log:</td>
+                <td>
+                    <c:url var="logUrl" value="/manager/log"><c:param name="chargeBoxId" value="${chargePointForm.chargeBoxId}"/></c:url>
+                    <a href="${logUrl}">LATEST</a>
+                </td>
+            </tr>
             </tbody>
         </table>
 
@@ -123,5 +130,48 @@
             <%@ include file="00-cp-misc.jsp" %>
 
     </form:form>
+
+    <c:if test="${not empty cp}">
+    <section><span>
+        OCPP-J Message History
+        <a class="tooltip" href="#"><img src="${ctxPath}/static/images/info.png" style="vertical-align:middle">
+            <span>The last messages exchanged with the charge point since the start of SteVe, the newest first. Full payload logging additionally writes every message of the charge point to the log at INFO, without truncating it.</span>
+        </a>
+    </span></section>
+    <div class="add-margin-bottom">
+        Full payload logging: ${fullPayloadLogging ? 'ON' : 'OFF'}
+        &nbsp;
+        <form:form cssClass="inline" action="${ctxPath}/manager/chargepoints/details/${chargePointForm.chargeBoxPk}/trafficLog" method="post">
+            <input type="hidden" name="fullPayload" value="${!fullPayloadLogging}"/>
+            <input type="submit" class="blueSubmit" value="${fullPayloadLogging ? 'Switch off' : 'Switch on'}"/>
+        </form:form>
+    </div>
+    <table class="res">
+        <thead>
+        <tr>
+            <th>Timestamp</th>
+            <th>Direction</th>
+            <th>Message Type</th>
+            <th>Action</th>
+            <th>Message ID</th>
+            <th>Length</th>
+            <th>Payload</th>
+        </tr>
+        </thead>
+        <tbody>
+        <c:forEach items="${messageHistory}" var="entry">
+            <tr>
+                <td>${entry.timestamp}</td>
+                <td>${entry.direction}</td>
+                <td>${entry.messageType}</td>
+                <td><c:out value="${entry.action}"/></td>
+                <td><c:out value="${entry.messageId}"/></td>
+                <td>${entry.length}</td>
+                <td style="word-break: break-all"><c:out value="${entry.payload}"/></td>
+            </tr>
+        </c:forEach>
+        </tbody>
+    </table>
+    </c:if>
 </div></div>
 <%@ include file="../00-footer.jsp" %>
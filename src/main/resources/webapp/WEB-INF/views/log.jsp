@@ -0,0 +1,105 @@
+<%--
+
+    SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+    Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+    All Rights Reserved.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+--%>
+<%@ include file="00-header.jsp" %>
+<%@ include file="00-op-bind-errors.jsp" %>
+<script type="text/javascript">
+    $(document).ready(function() {
+        <%@ include file="snippets/dateTimePicker-past.js" %>
+    });
+</script>
+<div class="content">
+<section><span>
+Log
+<a class="tooltip" href="#"><img src="${ctxPath}/static/images/info.png" style="vertical-align:middle">
+<span>Shows one page of the log file at a time, by default its end. With a ChargeBox ID, only the lines that mention the
+charge point are shown. With From/To, the lines of this period (in the time zone of the log file).</span>
+</a>
+</span></section>
+    <form:form action="${ctxPath}/manager/log" method="get" modelAttribute="params">
+        <table class="userInput">
+            <tr>
+                <td>Log File:</td>
+                <td>${logFile}</td>
+            </tr>
+            <tr>
+                <td>ChargeBox ID:</td>
+                <td><form:input path="chargeBoxId"/></td>
+            </tr>
+            <tr>
+                <td>From:</td>
+                <td><form:input path="from" cssClass="dateTimePicker"/></td>
+            </tr>
+            <tr>
+                <td>To:</td>
+                <td><form:input path="to" cssClass="dateTimePicker"/></td>
+            </tr>
+            <tr>
+                <td></td>
+                <td id="add_space">
+                    <input type="submit" value="Get">
+                </td>
+            </tr>
+        </table>
+    </form:form>
+    <br>
+
+    <c:if test="${not empty readError}">
+        <div class="error">Could not read the log file: <c:out value="${readError}"/></div>
+    </c:if>
+
+    <c:if test="${not empty page}">
+        <spring:bind path="params.from"><c:set var="fromText" value="${status.value}"/></spring:bind>
+        <spring:bind path="params.to"><c:set var="toText" value="${status.value}"/></spring:bind>
+        <c:url var="olderUrl" value="/manager/log">
+            <c:param name="chargeBoxId" value="${params.chargeBoxId}"/>
+            <c:param name="from" value="${fromText}"/>
+            <c:param name="to" value="${toText}"/>
+            <c:param name="before" value="${page.startOffset}"/>
+        </c:url>
+        <c:url var="newerUrl" value="/manager/log">
+            <c:param name="chargeBoxId" value="${params.chargeBoxId}"/>
+            <c:param name="from" value="${fromText}"/>
+            <c:param name="to" value="${toText}"/>
+            <c:param name="offset" value="${page.endOffset}"/>
+        </c:url>
+        <c:url var="endUrl" value="/manager/log">
+            <c:param name="chargeBoxId" value="${params.chargeBoxId}"/>
+        </c:url>
+        <div>
+            Bytes ${page.startOffset} - ${page.endOffset} of ${page.fileSize}, ${page.lines.size()} lines
+            &nbsp;|&nbsp;
+            <c:choose>
+                <c:when test="${page.olderAvailable}"><a href="${olderUrl}">Older</a></c:when>
+                <c:otherwise>Older</c:otherwise>
+            </c:choose>
+            &nbsp;|&nbsp;
+            <c:choose>
+                <c:when test="${page.newerAvailable}"><a href="${newerUrl}">Newer</a></c:when>
+                <c:otherwise>Newer</c:otherwise>
+            </c:choose>
+            &nbsp;|&nbsp;
+            <a href="${endUrl}">End</a>
+        </div>
+        <pre style="white-space: pre-wrap; word-break: break-all"><c:forEach items="${page.lines}" var="line"><c:out value="${line}"/>
+</c:forEach></pre>
+    </c:if>
+</div>
+<%@ include file="00-footer.jsp" %>
@@ -0,0 +1,61 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ReplicaRoutingTest {
+
+    @AfterEach
+    public void tearDown() {
+        ReplicaRouting.reset();
+    }
+
+    @Test
+    public void testOnlyReadOnlyScopeUsesReplica() {
+        Assertions.assertFalse(ReplicaRouting.useReplica());
+        Assertions.assertTrue(ReplicaRouting.readOnly(ReplicaRouting::useReplica));
+
+        // nested scopes
+        ReplicaRouting.readOnly(() -> {
+            ReplicaRouting.readOnly(() -> Assertions.assertTrue(ReplicaRouting.useReplica()));
+            Assertions.assertTrue(ReplicaRouting.useReplica());
+        });
+        Assertions.assertFalse(ReplicaRouting.useReplica());
+    }
+
+    @Test
+    public void testReadsAfterWriteUsePrimary() {
+        ReplicaRouting.markWritten();
+        Assertions.assertFalse(ReplicaRouting.readOnly(ReplicaRouting::useReplica));
+
+        ReplicaRouting.reset();
+        Assertions.assertTrue(ReplicaRouting.readOnly(ReplicaRouting::useReplica));
+    }
+
+    @Test
+    public void testScopeEndsOnException() {
+        Assertions.assertThrows(IllegalStateException.class, () -> ReplicaRouting.readOnly(() -> {
+            throw new IllegalStateException("expected");
+        }));
+        Assertions.assertFalse(ReplicaRouting.useReplica());
+    }
+}
@@ -0,0 +1,121 @@
+package de.rwth.idsg.steve.integration;
+
+import de.rwth.idsg.steve.integration.dto.ConnectorEnergyStats;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static de.rwth.idsg.steve.integration.ConnectorEnergyAggregate.FIFTEEN_MINUTES;
+import static de.rwth.idsg.steve.integration.ConnectorEnergyAggregate.FIVE_MINUTES;
+import static de.rwth.idsg.steve.integration.ConnectorEnergyAggregate.ONE_MINUTE;
+
+public class ConnectorEnergyAggregateTest {
+
+    private static final long START = 1_666_000_000_000L;
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testAveragesAreTimeWeighted() {
+        PowerRingBuffer buffer = new PowerRingBuffer(10_000, 90, FIFTEEN_MINUTES);
+
+        // 11 kW for 10 minutes, then nothing for 5 minutes
+        buffer.add(START, 11_000);
+        buffer.add(START + 10 * ONE_MINUTE, 0);
+        long now = START + 15 * ONE_MINUTE;
+
+        Assertions.assertEquals(0, buffer.average(now, ONE_MINUTE), DELTA);
+        Assertions.assertEquals(0, buffer.average(now, FIVE_MINUTES), DELTA);
+        Assertions.assertEquals(11_000 * 10.0 / 15, buffer.average(now, FIFTEEN_MINUTES), DELTA);
+    }
+
+    @Test
+    public void testAverageOnlyOverCoveredTime() {
+        PowerRingBuffer buffer = new PowerRingBuffer(10_000, 90, FIFTEEN_MINUTES);
+        Assertions.assertTrue(Double.isNaN(buffer.average(START, ONE_MINUTE)));
+
+        // the last sample holds until now, even if the station has only reported for 2 minutes
+        buffer.add(START, 7_000);
+        buffer.add(START + ONE_MINUTE, 3_000);
+        long now = START + 2 * ONE_MINUTE;
+
+        Assertions.assertEquals(3_000, buffer.average(now, ONE_MINUTE), DELTA);
+        Assertions.assertEquals(5_000, buffer.average(now, FIFTEEN_MINUTES), DELTA);
+    }
+
+    @Test
+    public void testOldBucketsAreOverwritten() {
+        PowerRingBuffer buffer = new PowerRingBuffer(10_000, 90, FIFTEEN_MINUTES);
+        buffer.add(START, 22_000);
+        buffer.add(START + FIFTEEN_MINUTES, 1_000);
+        buffer.add(START + 2 * FIFTEEN_MINUTES, 1_000);
+
+        Assertions.assertEquals(1_000, buffer.average(START + 2 * FIFTEEN_MINUTES, FIFTEEN_MINUTES), DELTA);
+    }
+
+    @Test
+    public void testLastSampleExpires() {
+        PowerRingBuffer buffer = new PowerRingBuffer(10_000, 90, FIVE_MINUTES);
+
+        // held for 5 minutes only, the rest of the window is not covered
+        buffer.add(START, 11_000);
+        long now = START + 10 * ONE_MINUTE;
+        Assertions.assertEquals(11_000, buffer.average(now, FIFTEEN_MINUTES), DELTA);
+        Assertions.assertTrue(Double.isNaN(buffer.average(now, ONE_MINUTE)));
+        Assertions.assertEquals(0, buffer.getWatts(now), DELTA);
+
+        // and not at all after it ended, e.g. with a disconnect
+        buffer.add(now, 7_000);
+        buffer.end(now + ONE_MINUTE);
+        Assertions.assertEquals(0, buffer.getWatts(now + 2 * ONE_MINUTE), DELTA);
+        Assertions.assertEquals(7_000, buffer.average(now + 2 * ONE_MINUTE, 2 * ONE_MINUTE), DELTA);
+    }
+
+    @Test
+    public void testIdleAggregate() {
+        ConnectorEnergyAggregate aggregate = new ConnectorEnergyAggregate("cb-1", 1);
+        aggregate.onTransactionStarted(START, 0);
+        aggregate.onSample(START + ONE_MINUTE, 11_000, 183, true);
+
+        long later = START + ConnectorEnergyAggregate.IDLE_MILLIS + FIFTEEN_MINUTES;
+        Assertions.assertFalse(aggregate.isIdle(later));
+
+        aggregate.onTransactionStopped(START + 2 * ONE_MINUTE, 366);
+        Assertions.assertFalse(aggregate.isIdle(START + 3 * ONE_MINUTE));
+        Assertions.assertTrue(aggregate.isIdle(later));
+    }
+
+    @Test
+    public void testEnergySinceStart() {
+        ConnectorEnergyAggregate aggregate = new ConnectorEnergyAggregate("cb-1", 1);
+
+        aggregate.onTransactionStarted(START, 124_904);
+        aggregate.onSample(START + ONE_MINUTE, 11_000, 125_087, true);
+        aggregate.onSample(START + 2 * ONE_MINUTE, 11_000, Double.NaN, true);
+
+        ConnectorEnergyStats stats = aggregate.toStats(START + 2 * ONE_MINUTE, "site-1");
+        Assertions.assertTrue(stats.isTransactionActive());
+        Assertions.assertEquals(11, stats.getPowerInKw(), DELTA);
+        Assertions.assertEquals(0.183, stats.getEnergySinceStartInKwh(), DELTA);
+        Assertions.assertEquals(5.5, stats.getAveragePower5MinInKw(), DELTA);
+
+        aggregate.onTransactionStopped(START + 3 * ONE_MINUTE, 125_270);
+        // a sample outside of a transaction does not change the energy of the last one
+        aggregate.onSample(START + 4 * ONE_MINUTE, 0, 125_300, false);
+
+        stats = aggregate.toStats(START + 4 * ONE_MINUTE, "site-1");
+        Assertions.assertFalse(stats.isTransactionActive());
+        Assertions.assertEquals(0, stats.getPowerInKw(), DELTA);
+        Assertions.assertEquals(0.366, stats.getEnergySinceStartInKwh(), DELTA);
+    }
+
+    @Test
+    public void testStartUnknownAfterRestart() {
+        ConnectorEnergyAggregate aggregate = new ConnectorEnergyAggregate("cb-1", 2);
+
+        aggregate.onSample(START, 3_700, 10_000, true);
+        aggregate.onSample(START + ONE_MINUTE, 3_700, 10_062, true);
+
+        ConnectorEnergyStats stats = aggregate.toStats(START + ONE_MINUTE, "cb-1");
+        Assertions.assertTrue(stats.isTransactionActive());
+        Assertions.assertEquals(0.062, stats.getEnergySinceStartInKwh(), DELTA);
+    }
+}
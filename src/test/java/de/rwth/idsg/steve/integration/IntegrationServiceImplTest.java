@@ -1,7 +1,6 @@
 package de.rwth.idsg.steve.integration;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.joda.JodaModule;
 import de.rwth.idsg.steve.integration.dto.ConnectorStatus;
@@ -34,7 +33,10 @@ public class IntegrationServiceImplTest {
         mqttService = new TestMqttService();
         transactionRepository = new TestTransactionRepository();
 
-        integrationService = new IntegrationServiceImpl(mqttService, transactionRepository);
+        EnergyAggregationService energyAggregationService = new EnergyAggregationService(null, null);
+        SiteLoadBalancer siteLoadBalancer = new SiteLoadBalancer(null, null, null, energyAggregationService, null);
+
+        integrationService = new IntegrationServiceImpl(mqttService, transactionRepository, energyAggregationService, siteLoadBalancer);
     }
 
     @Test
@@ -56,9 +58,9 @@ public class IntegrationServiceImplTest {
 
         Assertions.assertEquals("charge-box-1", call1.chargeBoxId);
         Assertions.assertEquals("1", call1.connector);
-        Assertions.assertEquals(0, data1.getCurrent().get(0));
-        Assertions.assertEquals(0.010999999940395355, data1.getCurrent().get(1));
-        Assertions.assertEquals(0, data1.getCurrent().get(2));
+        Assertions.assertEquals(0, data1.getCurrent()[0]);
+        Assertions.assertEquals(0.010999999940395355, data1.getCurrent()[1]);
+        Assertions.assertEquals(0, data1.getCurrent()[2]);
 
 
         TestMqttService.EnergyMeterCall call2 = energyMeterCalls.get(1);
@@ -66,9 +68,9 @@ public class IntegrationServiceImplTest {
 
         Assertions.assertEquals("charge-box-1", call2.chargeBoxId);
         Assertions.assertEquals("1", call2.connector);
-        Assertions.assertEquals(0, data2.getCurrent().get(0));
-        Assertions.assertEquals(0, data2.getCurrent().get(1));
-        Assertions.assertEquals(0, data2.getCurrent().get(2));
+        Assertions.assertEquals(0, data2.getCurrent()[0]);
+        Assertions.assertEquals(0, data2.getCurrent()[1]);
+        Assertions.assertEquals(0, data2.getCurrent()[2]);
 
 
         TestMqttService.EnergyMeterCall call3 = energyMeterCalls.get(2);
@@ -76,9 +78,9 @@ public class IntegrationServiceImplTest {
 
         Assertions.assertEquals("charge-box-1", call3.chargeBoxId);
         Assertions.assertEquals("1", call3.connector);
-        Assertions.assertEquals(14.20199966430664, data3.getCurrent().get(0));
-        Assertions.assertEquals(0, data3.getCurrent().get(1));
-        Assertions.assertEquals(0, data3.getCurrent().get(2));
+        Assertions.assertEquals(14.20199966430664, data3.getCurrent()[0]);
+        Assertions.assertEquals(0, data3.getCurrent()[1]);
+        Assertions.assertEquals(0, data3.getCurrent()[2]);
     }
 
     @Test
@@ -101,13 +103,13 @@ public class IntegrationServiceImplTest {
         Assertions.assertEquals("charge-box-1", energyMeterCall.chargeBoxId);
         Assertions.assertEquals("1", energyMeterCall.connector);
 
-        Assertions.assertEquals(53, data.getCurrent().get(0));
-        Assertions.assertEquals(0, data.getCurrent().get(1));
-        Assertions.assertEquals(0, data.getCurrent().get(2));
+        Assertions.assertEquals(53, data.getCurrent()[0]);
+        Assertions.assertEquals(0, data.getCurrent()[1]);
+        Assertions.assertEquals(0, data.getCurrent()[2]);
 
-        Assertions.assertEquals(448, data.getVoltage().get(0));
-        Assertions.assertEquals(0, data.getVoltage().get(1));
-        Assertions.assertEquals(0, data.getVoltage().get(2));
+        Assertions.assertEquals(448, data.getVoltage()[0]);
+        Assertions.assertEquals(0, data.getVoltage()[1]);
+        Assertions.assertEquals(0, data.getVoltage()[2]);
 
         Assertions.assertEquals(23744, data.getPower());
         Assertions.assertEquals(1139, data.getEnergy());
@@ -423,7 +425,7 @@ public class IntegrationServiceImplTest {
 
         @Override
         public void publishEnergyMeterData(String chargeBoxId, String connector, EnergyMeterData data) {
-            energyMeterCalls.add(new EnergyMeterCall(chargeBoxId, connector, data));
+            energyMeterCalls.add(new EnergyMeterCall(chargeBoxId, connector, data.copy()));
         }
 
         @Override
@@ -432,8 +434,18 @@ public class IntegrationServiceImplTest {
         }
 
         @Override
-        public void sendToMqttBroker(String path, JsonNode payload) {
+        public void sendToMqttBroker(String topic, Object payload) {
+
+        }
+
+        @Override
+        public int replay(DateTime from, DateTime to) {
+            return 0;
+        }
 
+        @Override
+        public MqttPublisherStats getPublisherStats() {
+            return null;
         }
 
         private static class EnergyMeterCall {
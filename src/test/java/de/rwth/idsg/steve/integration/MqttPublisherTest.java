@@ -0,0 +1,172 @@
+package de.rwth.idsg.steve.integration;
+
+import de.rwth.idsg.steve.SteveConfiguration;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class MqttPublisherTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Server broker;
+    private Properties brokerProps;
+    private String brokerUrl;
+
+    @BeforeEach
+    public void startBroker() throws IOException {
+        int port = findFreePort();
+
+        brokerProps = new Properties();
+        brokerProps.setProperty("host", "127.0.0.1");
+        brokerProps.setProperty("port", Integer.toString(port));
+        brokerProps.setProperty("websocket_port", "disabled");
+        brokerProps.setProperty("allow_anonymous", "true");
+        brokerProps.setProperty("persistent_store", tempDir.resolve("moquette_store.h2").toString());
+
+        broker = new Server();
+        broker.startServer(new MemoryConfig(brokerProps));
+        brokerUrl = "tcp://127.0.0.1:" + port;
+    }
+
+    @AfterEach
+    public void stopBroker() {
+        broker.stopServer();
+    }
+
+    @Test
+    public void testPublishInOrder() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        MqttClient subscriber = new MqttClient(brokerUrl, "subscriber", new MemoryPersistence());
+        subscriber.connect();
+        subscriber.subscribe("ocpp/#", 1, (topic, message) ->
+                received.add(topic + "=" + new String(message.getPayload(), StandardCharsets.UTF_8)));
+
+        try (MqttPublisher publisher = new MqttPublisher(config(brokerUrl, 1),
+                new MemoryMqttOutbox(1_000, MqttOverflowPolicy.BLOCK))) {
+            for (int i = 0; i < 100; i++) {
+                Assertions.assertTrue(publisher.publish("ocpp/cp-1/1/em", bytes("{\"i\":" + i + "}")));
+            }
+
+            for (int i = 0; i < 100; i++) {
+                String message = received.poll(10, TimeUnit.SECONDS);
+                Assertions.assertEquals("ocpp/cp-1/1/em={\"i\":" + i + "}", message);
+            }
+
+            MqttPublisherStats stats = publisher.getStats();
+            Assertions.assertTrue(stats.isConnected());
+            Assertions.assertEquals(100, stats.getPublished());
+            Assertions.assertEquals(0, stats.getDropped());
+            Assertions.assertEquals(0, stats.getFailed());
+            Assertions.assertEquals(0, stats.getQueued());
+        } finally {
+            subscriber.disconnect();
+            subscriber.close();
+        }
+    }
+
+    @Test
+    public void testDropNewestWhileBrokerUnreachable() throws Exception {
+        String unreachableUrl = "tcp://127.0.0.1:" + findFreePort();
+
+        try (MqttPublisher publisher = new MqttPublisher(config(unreachableUrl, 0),
+                new MemoryMqttOutbox(10, MqttOverflowPolicy.DROP_NEWEST))) {
+            int accepted = 0;
+            for (int i = 0; i < 15; i++) {
+                if (publisher.publish("ocpp/cp-1/1/status", bytes("{}"))) {
+                    accepted++;
+                }
+            }
+
+            MqttPublisherStats stats = publisher.getStats();
+            Assertions.assertEquals(10, accepted);
+            Assertions.assertEquals(10, stats.getQueued());
+            Assertions.assertEquals(5, stats.getDropped());
+            Assertions.assertEquals(0, stats.getPublished());
+        }
+    }
+
+    @Test
+    public void testDropOldestWhileBrokerUnreachable() throws Exception {
+        String unreachableUrl = "tcp://127.0.0.1:" + findFreePort();
+
+        try (MqttPublisher publisher = new MqttPublisher(config(unreachableUrl, 0),
+                new MemoryMqttOutbox(10, MqttOverflowPolicy.DROP_OLDEST))) {
+            for (int i = 0; i < 15; i++) {
+                Assertions.assertTrue(publisher.publish("ocpp/cp-1/1/status", bytes("{}")));
+            }
+
+            MqttPublisherStats stats = publisher.getStats();
+            Assertions.assertEquals(10, stats.getQueued());
+            Assertions.assertEquals(5, stats.getDropped());
+        }
+    }
+
+    @Test
+    public void testDurableOutboxDrainsAfterBrokerOutage() throws Exception {
+        broker.stopServer();
+
+        MqttOutbox outbox = new SegmentLogMqttOutbox(tempDir.resolve("outbox"), 64 * 1024, TimeUnit.HOURS.toMillis(1), 1024 * 1024);
+
+        try (MqttPublisher publisher = new MqttPublisher(config(brokerUrl, 1), outbox)) {
+            for (int i = 0; i < 20; i++) {
+                Assertions.assertTrue(publisher.publish("ocpp/cp-1/1/em", bytes("{\"i\":" + i + "}")));
+            }
+            Assertions.assertEquals(20, publisher.getStats().getQueued());
+
+            broker.startServer(new MemoryConfig(brokerProps));
+
+            BlockingQueue<String> received = new LinkedBlockingQueue<>();
+            MqttClient subscriber = new MqttClient(brokerUrl, "subscriber", new MemoryPersistence());
+            subscriber.connect();
+            subscriber.subscribe("ocpp/#", 1, (topic, message) ->
+                    received.add(new String(message.getPayload(), StandardCharsets.UTF_8)));
+
+            try {
+                for (int i = 0; i < 20; i++) {
+                    // the publisher retries to connect every few seconds
+                    Assertions.assertEquals("{\"i\":" + i + "}", received.poll(15, TimeUnit.SECONDS));
+                }
+            } finally {
+                subscriber.disconnect();
+                subscriber.close();
+            }
+        }
+    }
+
+    private static SteveConfiguration.Mqtt config(String url, int qos) {
+        return SteveConfiguration.Mqtt.builder()
+                                      .url(url)
+                                      .qos(qos)
+                                      .flushIntervalInMillis(20)
+                                      .maxBatchSize(50)
+                                      .build();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package de.rwth.idsg.steve.integration;
+
+import de.rwth.idsg.steve.integration.dto.EnergyMeterData;
+import ocpp.cs._2015._10.Measurand;
+import ocpp.cs._2015._10.Phase;
+import ocpp.cs._2015._10.SampledValue;
+import ocpp.cs._2015._10.UnitOfMeasure;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class SampledValueDecoderTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "0", "-0", "1139", "448.0", "0.024", "15.823", "-3.5", "+7", "1.", ".5", "4.3",
+            "0.010999999940395355", "14.20199966430664", "123456789012345678", "1e3", "1.5E-2", "NaN", " 12 "
+    })
+    public void testParseDouble(String value) {
+        Assertions.assertEquals(Double.parseDouble(value), SampledValueDecoder.parseDouble(value));
+    }
+
+    @Test
+    public void testThreePhases() {
+        EnergyMeterData data = SampledValueDecoder.forCurrentThread().decode(Arrays.asList(
+                sample(Measurand.CURRENT_IMPORT, UnitOfMeasure.A, Phase.L_3, "16.3"),
+                sample(Measurand.CURRENT_IMPORT, UnitOfMeasure.A, Phase.L_1, "16.1"),
+                sample(Measurand.CURRENT_IMPORT, UnitOfMeasure.A, Phase.L_2, "16.2"),
+                sample(Measurand.VOLTAGE, UnitOfMeasure.V, Phase.L_1_N, "230"),
+                sample(Measurand.VOLTAGE, UnitOfMeasure.V, Phase.L_2_N, "231"),
+                sample(Measurand.VOLTAGE, UnitOfMeasure.V, Phase.L_3_N, "232"),
+                sample(Measurand.ENERGY_ACTIVE_IMPORT_REGISTER, UnitOfMeasure.WH, null, "1000"),
+                sample(Measurand.ENERGY_ACTIVE_IMPORT_REGISTER, UnitOfMeasure.K_WH, null, "2.5")
+        ));
+
+        Assertions.assertArrayEquals(new double[]{16.1, 16.2, 16.3}, data.getCurrent());
+        Assertions.assertArrayEquals(new double[]{230, 231, 232}, data.getVoltage());
+        Assertions.assertEquals(16.1 * 230 + 16.2 * 231 + 16.3 * 232, data.getPower());
+        Assertions.assertEquals(2500, data.getEnergy());
+        Assertions.assertTrue(SampledValueDecoder.forCurrentThread().isEnergySet());
+    }
+
+    @Test
+    public void testLaterPhaseWins() {
+        EnergyMeterData data = SampledValueDecoder.forCurrentThread().decode(Arrays.asList(
+                sample(Measurand.VOLTAGE, UnitOfMeasure.V, Phase.L_1_L_2, "400"),
+                sample(Measurand.VOLTAGE, UnitOfMeasure.V, Phase.L_1_N, "230"),
+                sample(Measurand.VOLTAGE, UnitOfMeasure.V, Phase.L_1, "231"),
+                sample(Measurand.POWER_ACTIVE_IMPORT, UnitOfMeasure.W, null, "0"),
+                sample(Measurand.POWER_ACTIVE_IMPORT, UnitOfMeasure.W, null, "3593")
+        ));
+
+        // like the sorting by phase before: L1-L2 comes after L1-N and L1, and counts for phase 1 and 2
+        Assertions.assertArrayEquals(new double[]{400, 400, 0}, data.getVoltage());
+        Assertions.assertEquals(3593, data.getPower());
+        Assertions.assertEquals(0, data.getEnergy());
+        Assertions.assertFalse(SampledValueDecoder.forCurrentThread().isEnergySet());
+    }
+
+    @Test
+    public void testEligibleToSend() {
+        SampledValueDecoder decoder = SampledValueDecoder.forCurrentThread();
+
+        Assertions.assertFalse(decoder.decode(Collections.emptyList()).eligibleToSend());
+        Assertions.assertFalse(decoder.decode(Arrays.asList(
+                sample(Measurand.SO_C, UnitOfMeasure.PERCENT, null, "80"),
+                sample(Measurand.TEMPERATURE, UnitOfMeasure.CELSIUS, null, "21")
+        )).eligibleToSend());
+
+        // an idle connector still reports its current
+        Assertions.assertTrue(decoder.decode(Collections.singletonList(
+                sample(Measurand.CURRENT_IMPORT, UnitOfMeasure.A, Phase.L_1, "0")
+        )).eligibleToSend());
+        Assertions.assertTrue(decoder.decode(Collections.singletonList(
+                sample(Measurand.VOLTAGE, UnitOfMeasure.V, Phase.L_1_N, "0")
+        )).eligibleToSend());
+
+        // a copy keeps it
+        EnergyMeterData data = decoder.decode(Collections.singletonList(
+                sample(Measurand.CURRENT_IMPORT, UnitOfMeasure.A, null, "0")
+        ));
+        Assertions.assertTrue(data.copy().eligibleToSend());
+    }
+
+    private static SampledValue sample(Measurand measurand, UnitOfMeasure unit, Phase phase, String value) {
+        return new SampledValue().withMeasurand(measurand)
+                                 .withUnit(unit)
+                                 .withPhase(phase)
+                                 .withValue(value);
+    }
+}
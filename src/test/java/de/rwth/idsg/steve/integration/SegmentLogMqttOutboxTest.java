@@ -0,0 +1,173 @@
+package de.rwth.idsg.steve.integration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class SegmentLogMqttOutboxTest {
+
+    private static final long RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testPollCommitRewind() throws Exception {
+        try (SegmentLogMqttOutbox outbox = open(4096, 1024 * 1024)) {
+            for (int i = 0; i < 5; i++) {
+                outbox.append("topic/" + i, bytes("payload-" + i));
+            }
+            Assertions.assertEquals(5, outbox.size());
+
+            List<MqttOutboxMessage> first = outbox.poll(3, 0);
+            assertMessages(first, 0, 3);
+
+            // publishing failed: the same messages again
+            outbox.rewind();
+            assertMessages(outbox.poll(3, 0), 0, 3);
+            outbox.commit();
+            Assertions.assertEquals(2, outbox.size());
+
+            assertMessages(outbox.poll(10, 0), 3, 2);
+            outbox.commit();
+            Assertions.assertEquals(0, outbox.size());
+            Assertions.assertTrue(outbox.poll(10, 0).isEmpty());
+        }
+    }
+
+    @Test
+    public void testReopenContinuesAfterCommitted() throws Exception {
+        try (SegmentLogMqttOutbox outbox = open(256, 1024 * 1024)) {
+            // small segments, so that the messages span multiple of them
+            for (int i = 0; i < 20; i++) {
+                outbox.append("topic/" + i, bytes("payload-" + i));
+            }
+            outbox.poll(7, 0);
+            outbox.commit();
+        }
+
+        try (SegmentLogMqttOutbox outbox = open(256, 1024 * 1024)) {
+            Assertions.assertEquals(13, outbox.size());
+            assertMessages(outbox.poll(100, 0), 7, 13);
+
+            outbox.append("topic/20", bytes("payload-20"));
+            assertMessages(outbox.poll(100, 0), 20, 1);
+        }
+    }
+
+    @Test
+    public void testTornWriteIsDiscarded() throws Exception {
+        try (SegmentLogMqttOutbox outbox = open(4096, 1024 * 1024)) {
+            for (int i = 0; i < 3; i++) {
+                outbox.append("topic/" + i, bytes("payload-" + i));
+            }
+        }
+
+        // simulate a crash in the middle of writing the next record: a length without valid content
+        Path segment = listSegments().get(0);
+        long end;
+        try (SegmentLogMqttOutbox outbox = open(4096, 1024 * 1024)) {
+            List<MqttOutboxMessage> all = outbox.poll(100, 0);
+            Assertions.assertEquals(3, all.size());
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            end = findEnd(channel);
+            channel.write(ByteBuffer.allocate(4).putInt(0, 100), end);
+        }
+
+        try (SegmentLogMqttOutbox outbox = open(4096, 1024 * 1024)) {
+            Assertions.assertEquals(3, outbox.size());
+            outbox.append("topic/3", bytes("payload-3"));
+            assertMessages(outbox.poll(100, 0), 0, 4);
+        }
+    }
+
+    @Test
+    public void testRetentionBySize() throws Exception {
+        // each segment is 256 bytes, i.e. at most 4 segments are retained
+        try (SegmentLogMqttOutbox outbox = open(256, 1024)) {
+            for (int i = 0; i < 100; i++) {
+                outbox.append("topic/" + i, bytes("payload-" + i));
+            }
+
+            Assertions.assertTrue(listSegments().size() <= 4);
+            Assertions.assertTrue(outbox.getDroppedCount() > 0);
+            Assertions.assertEquals(100, outbox.getDroppedCount() + outbox.size());
+
+            // whatever is left, is the newest in order
+            List<MqttOutboxMessage> left = outbox.poll(1000, 0);
+            int firstIndex = 100 - left.size();
+            assertMessages(left, firstIndex, left.size());
+        }
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        try (SegmentLogMqttOutbox outbox = open(4096, 1024 * 1024)) {
+            for (int i = 0; i < 3; i++) {
+                outbox.append("topic/" + i, bytes("payload-" + i));
+            }
+            outbox.poll(100, 0);
+            outbox.commit();
+
+            long now = System.currentTimeMillis();
+            Assertions.assertEquals(0, outbox.replay(now - 2 * RETENTION_MILLIS, now - RETENTION_MILLIS));
+            Assertions.assertEquals(3, outbox.replay(now - RETENTION_MILLIS, now + RETENTION_MILLIS));
+
+            assertMessages(outbox.poll(100, 0), 0, 3);
+        }
+    }
+
+    private SegmentLogMqttOutbox open(int segmentSize, long retentionBytes) throws Exception {
+        return new SegmentLogMqttOutbox(dir, segmentSize, RETENTION_MILLIS, retentionBytes);
+    }
+
+    private List<Path> listSegments() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".log"))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Walks the records of the segment by their length fields
+     */
+    private static long findEnd(FileChannel channel) throws Exception {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        long position = 0;
+        while (true) {
+            length.clear();
+            channel.read(length, position);
+            int l = length.getInt(0);
+            if (l == 0) {
+                return position;
+            }
+            position += 4 + l;
+        }
+    }
+
+    private static void assertMessages(List<MqttOutboxMessage> messages, int firstIndex, int count) {
+        Assertions.assertEquals(count, messages.size());
+        for (int i = 0; i < count; i++) {
+            MqttOutboxMessage m = messages.get(i);
+            Assertions.assertEquals("topic/" + (firstIndex + i), m.getTopic());
+            Assertions.assertEquals("payload-" + (firstIndex + i), new String(m.getPayload(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,185 @@
+package de.rwth.idsg.steve.integration;
+
+import de.rwth.idsg.steve.integration.dto.LoadAllocation;
+import de.rwth.idsg.steve.ocpp.OcppCallback;
+import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import de.rwth.idsg.steve.ocpp.ws.ConnectedStationIndex;
+import de.rwth.idsg.steve.repository.SiteRepository;
+import de.rwth.idsg.steve.repository.dto.ActiveConnector;
+import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
+import de.rwth.idsg.steve.repository.dto.SiteLoadLimit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static de.rwth.idsg.steve.integration.SiteLoadBalancer.CYCLE_MILLIS;
+
+public class SiteLoadBalancerTest {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+    private static final long START = 1_666_000_000_000L;
+
+    @Test
+    public void testEqualShares() {
+        double[] allocations = new double[3];
+        SiteLoadBalancer.allocate(63, 6, new double[]{INF, INF, INF}, allocations);
+
+        Assertions.assertArrayEquals(new double[]{21, 21, 21}, allocations);
+    }
+
+    @Test
+    public void testLeftOverGoesToOthers() {
+        double[] allocations = new double[3];
+        SiteLoadBalancer.allocate(63, 6, new double[]{INF, 10, INF}, allocations);
+
+        Assertions.assertArrayEquals(new double[]{26.5, 10, 26.5}, allocations);
+    }
+
+    @Test
+    public void testMinimumIsKept() {
+        double[] allocations = new double[3];
+        SiteLoadBalancer.allocate(32, 6, new double[]{INF, 2, INF}, allocations);
+
+        Assertions.assertArrayEquals(new double[]{13, 6, 13}, allocations);
+    }
+
+    @Test
+    public void testFirstStartedAreServed() {
+        double[] allocations = new double[4];
+        SiteLoadBalancer.allocate(16, 6, new double[]{INF, INF, INF, INF}, allocations);
+
+        Assertions.assertArrayEquals(new double[]{8, 8, 0, 0}, allocations);
+    }
+
+    @Test
+    public void testRoundedDown() {
+        double[] allocations = new double[3];
+        SiteLoadBalancer.allocate(32, 6, new double[]{INF, INF, INF}, allocations);
+
+        Assertions.assertArrayEquals(new double[]{10.6, 10.7, 10.7}, allocations, 1e-9);
+        Assertions.assertTrue(allocations[0] + allocations[1] + allocations[2] <= 32 + 1e-9);
+    }
+
+    @Test
+    public void testFailedLimitIsSentAgainWithBackoff() {
+        RecordingLoadBalancer balancer = createLoadBalancer();
+        balancer.onTransactionStarted("cb-1", 1);
+
+        balancer.runCycle(START);
+        Assertions.assertEquals(1, balancer.callbacks.size());
+        balancer.callbacks.get(0).failed("cb-1", new RuntimeException("timeout"));
+
+        // the first retry after one cycle, the next after two
+        balancer.runCycle(START + CYCLE_MILLIS - 1);
+        Assertions.assertEquals(1, balancer.callbacks.size());
+        balancer.runCycle(START + CYCLE_MILLIS);
+        Assertions.assertEquals(2, balancer.callbacks.size());
+        balancer.callbacks.get(1).success("cb-1", "Rejected");
+
+        balancer.runCycle(START + 2 * CYCLE_MILLIS);
+        Assertions.assertEquals(2, balancer.callbacks.size());
+        balancer.runCycle(START + 3 * CYCLE_MILLIS);
+        Assertions.assertEquals(3, balancer.callbacks.size());
+
+        // accepted, so nothing else to send
+        balancer.callbacks.get(2).success("cb-1", "Accepted");
+        balancer.runCycle(START + 10 * CYCLE_MILLIS);
+        Assertions.assertEquals(3, balancer.callbacks.size());
+    }
+
+    @Test
+    public void testNotSupportedStopsUntilNextTransaction() {
+        RecordingLoadBalancer balancer = createLoadBalancer();
+        balancer.onTransactionStarted("cb-1", 1);
+
+        balancer.runCycle(START);
+        balancer.callbacks.get(0).success("cb-1", "NotSupported");
+
+        balancer.onTransactionStarted("cb-1", 2);
+        balancer.runCycle(START + SiteLoadBalancer.MAX_RETRY_BACKOFF);
+
+        // only the new connector
+        Assertions.assertEquals(2, balancer.callbacks.size());
+        Assertions.assertEquals(List.of(1, 2), balancer.connectorIds);
+
+        balancer.onTransactionStopped("cb-1", 1);
+        balancer.onTransactionStarted("cb-1", 1);
+        balancer.runCycle(START + 2 * SiteLoadBalancer.MAX_RETRY_BACKOFF);
+        Assertions.assertEquals(List.of(1, 2, 1), balancer.connectorIds);
+    }
+
+    @Test
+    public void testRunningTransactionsAreLoaded() {
+        TestSiteRepository siteRepository = new TestSiteRepository();
+        siteRepository.setLoadLimit(SiteLoadLimit.builder().siteId("cb-1").capacityInAmps(16).minPerConnectorInAmps(6).build());
+        for (int connectorId : new int[]{3, 1, 2}) {
+            siteRepository.activeConnectors.add(ActiveConnector.builder().chargeBoxId("cb-1").connectorId(connectorId).build());
+        }
+
+        RecordingLoadBalancer balancer = new RecordingLoadBalancer(siteRepository);
+        balancer.load();
+        balancer.runCycle(START);
+
+        // in the order of the transaction start, the last one does not get its minimum
+        Assertions.assertEquals(List.of(3, 1, 2), balancer.connectorIds);
+        List<LoadAllocation> allocations = balancer.getAllocations("cb-1");
+        Assertions.assertEquals(8, allocations.get(0).getAllocatedInAmps(), 1e-9);
+        Assertions.assertEquals(8, allocations.get(1).getAllocatedInAmps(), 1e-9);
+        Assertions.assertEquals(0, allocations.get(2).getAllocatedInAmps(), 1e-9);
+    }
+
+    private static RecordingLoadBalancer createLoadBalancer() {
+        RecordingLoadBalancer balancer = new RecordingLoadBalancer(new TestSiteRepository());
+        balancer.setLoadLimit(SiteLoadLimit.builder().siteId("cb-1").capacityInAmps(32).minPerConnectorInAmps(6).build());
+        return balancer;
+    }
+
+    private static class RecordingLoadBalancer extends SiteLoadBalancer {
+        private final List<OcppCallback<String>> callbacks = new ArrayList<>();
+        private final List<Integer> connectorIds = new ArrayList<>();
+
+        private RecordingLoadBalancer(SiteRepository siteRepository) {
+            super(siteRepository, null, createIndex(), new EnergyAggregationService(null, null), null);
+        }
+
+        private static ConnectedStationIndex createIndex() {
+            ConnectedStationIndex index = new ConnectedStationIndex();
+            index.connected("cb-1", OcppProtocol.V_16_JSON);
+            return index;
+        }
+
+        @Override
+        void invoke(ChargePointSelect chargePoint, LoadLimitTask task, OcppCallback<String> callback) {
+            callbacks.add(callback);
+            Assertions.assertFalse(chargePoint.isSoap());
+            connectorIds.add(task.getOcpp16Request().getConnectorId());
+        }
+    }
+
+    private static class TestSiteRepository implements SiteRepository {
+        private final List<SiteLoadLimit> limits = new ArrayList<>();
+        private final List<ActiveConnector> activeConnectors = new ArrayList<>();
+
+        @Override
+        public List<SiteLoadLimit> getLoadLimits() {
+            return limits;
+        }
+
+        @Override
+        public void setLoadLimit(SiteLoadLimit limit) {
+            limits.add(limit);
+        }
+
+        @Override
+        public void deleteLoadLimit(String siteId) {
+            limits.removeIf(limit -> limit.getSiteId().equals(siteId));
+        }
+
+        @Override
+        public List<ActiveConnector> getActiveConnectors() {
+            return activeConnectors;
+        }
+    }
+}
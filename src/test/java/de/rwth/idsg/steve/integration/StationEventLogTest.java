@@ -0,0 +1,165 @@
+package de.rwth.idsg.steve.integration;
+
+import de.rwth.idsg.steve.integration.dto.StationEventPage;
+import de.rwth.idsg.steve.ocpp.event.StatusChanged;
+import ocpp.cs._2015._10.ChargePointErrorCode;
+import ocpp.cs._2015._10.ChargePointStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class StationEventLogTest {
+
+    private ExecutorService executorService;
+    private StationEventLog eventLog;
+
+    @BeforeEach
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(2);
+        eventLog = new StationEventLog(executorService, TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testResumeFromOffset() {
+        publishStatus("cb-1", 3);
+
+        StationEventPage first = eventLog.read(null, 0, null, 2);
+        Assertions.assertEquals(2, first.getEvents().size());
+        Assertions.assertEquals(2, first.getNextOffset());
+        Assertions.assertFalse(first.isTruncated());
+
+        StationEventPage second = eventLog.read(null, first.getNextOffset(), null, 2);
+        Assertions.assertEquals(1, second.getEvents().size());
+        Assertions.assertEquals(2, second.getEvents().get(0).getOffset());
+        Assertions.assertEquals(3, second.getNextOffset());
+    }
+
+    @Test
+    public void testFilterByStationSkipsOthers() {
+        publishStatus("cb-1", 2);
+        publishStatus("cb-2", 2);
+
+        StationEventPage page = eventLog.read(null, 0, "cb-2", 100);
+        Assertions.assertEquals(2, page.getEvents().size());
+        Assertions.assertEquals("cb-2", page.getEvents().get(0).getChargeBoxId());
+        Assertions.assertEquals(4, page.getNextOffset());
+    }
+
+    @Test
+    public void testOldEventsAreTruncated() {
+        publishStatus("cb-1", 10_005);
+
+        StationEventPage page = eventLog.read(null, 0, null, 1);
+        Assertions.assertTrue(page.isTruncated());
+        Assertions.assertEquals(5, page.getEvents().get(0).getOffset());
+        Assertions.assertEquals(5, page.getOldestOffset());
+
+        // offsets of a previous run are ahead of the log
+        Assertions.assertTrue(eventLog.read(null, 20_000, null, 1).isTruncated());
+    }
+
+    @Test
+    public void testOffsetOfOtherEpochIsTruncated() {
+        publishStatus("cb-1", 3);
+
+        StationEventPage page = eventLog.read(eventLog.getEpoch(), 1, null, 10);
+        Assertions.assertFalse(page.isTruncated());
+        Assertions.assertEquals(2, page.getEvents().size());
+
+        // the same offset from before a restart
+        page = eventLog.read(eventLog.getEpoch() - 1, 1, null, 10);
+        Assertions.assertTrue(page.isTruncated());
+        Assertions.assertEquals(3, page.getEvents().size());
+        Assertions.assertEquals(eventLog.getEpoch(), page.getEpoch());
+    }
+
+    @Test
+    public void testSubscriberGetsNewEvents() throws Exception {
+        publishStatus("cb-1", 1);
+
+        CompletableFuture<StationEventPage> received = new CompletableFuture<>();
+        eventLog.subscribe(null, eventLog.getNextOffset(), null, 100, page -> {
+            received.complete(page);
+            return false;
+        });
+        publishStatus("cb-1", 1);
+
+        StationEventPage page = received.get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(1, page.getEvents().size());
+        Assertions.assertEquals(1, page.getEvents().get(0).getOffset());
+    }
+
+    @Test
+    public void testSlowSubscriberDoesNotBlockOthers() throws Exception {
+        CountDownLatch slowEntered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        eventLog.subscribe(null, 0, null, 100, page -> {
+            slowEntered.countDown();
+            release.await();
+            return true;
+        });
+
+        publishStatus("cb-1", 1);
+        Assertions.assertTrue(slowEntered.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<StationEventPage> received = new CompletableFuture<>();
+        eventLog.subscribe(null, eventLog.getNextOffset(), null, 100, page -> {
+            received.complete(page);
+            return false;
+        });
+        publishStatus("cb-1", 1);
+
+        StationEventPage page = received.get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(1, page.getEvents().size());
+        Assertions.assertEquals(1, page.getEvents().get(0).getOffset());
+        release.countDown();
+    }
+
+    @Test
+    public void testStalledSubscriberIsRemoved() throws Exception {
+        eventLog = new StationEventLog(executorService, 100);
+
+        CountDownLatch stalledEntered = new CountDownLatch(1);
+        CompletableFuture<Boolean> interrupted = new CompletableFuture<>();
+        eventLog.subscribe(null, 0, null, 100, page -> {
+            stalledEntered.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.complete(true);
+                throw e;
+            }
+            return true;
+        });
+
+        publishStatus("cb-1", 1);
+        Assertions.assertTrue(stalledEntered.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, eventLog.getSubscriptionCount());
+
+        // the next dispatch finds the delivery running for too long
+        Thread.sleep(200);
+        publishStatus("cb-1", 1);
+
+        Assertions.assertTrue(interrupted.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, eventLog.getSubscriptionCount());
+    }
+
+    private void publishStatus(String chargeBoxId, int count) {
+        for (int i = 0; i < count; i++) {
+            StatusChanged event = new StatusChanged(chargeBoxId, 1, ChargePointStatus.CHARGING, ChargePointErrorCode.NO_ERROR);
+            eventLog.onEvent(event, i == count - 1);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.metrics;
+
+import de.rwth.idsg.steve.ocpp.OcppTransport;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class OcppMetricsTest {
+
+    @Test
+    public void testCallsPerActionAndOutcome() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        OcppMetrics metrics = new OcppMetrics(registry);
+        OcppMetrics.CallMetrics json16 = metrics.forTransport(OcppVersion.V_16, OcppTransport.JSON);
+
+        long first = json16.started();
+        long second = json16.started();
+        Assertions.assertEquals(2, registry.get("steve.ocpp.calls.inflight").gauge().value());
+
+        json16.finished(first, "Heartbeat", false);
+        json16.finished(second, "Heartbeat", false);
+        json16.record(System.nanoTime(), OcppMetrics.UNKNOWN_ACTION, true);
+        Assertions.assertEquals(0, registry.get("steve.ocpp.calls.inflight").gauge().value());
+
+        Timer heartbeats = registry.get("steve.ocpp.calls")
+                                   .tag("version", "ocpp1.6")
+                                   .tag("transport", "JSON")
+                                   .tag("action", "Heartbeat")
+                                   .tag("outcome", "success")
+                                   .timer();
+        Assertions.assertEquals(2, heartbeats.count());
+
+        Timer errors = registry.get("steve.ocpp.calls").tag("outcome", "error").timer();
+        Assertions.assertEquals(1, errors.count());
+    }
+}
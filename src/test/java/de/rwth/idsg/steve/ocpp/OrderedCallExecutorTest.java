@@ -0,0 +1,124 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class OrderedCallExecutorTest {
+
+    private final OrderedCallExecutor executor = new OrderedCallExecutor();
+
+    @AfterEach
+    public void shutDown() {
+        executor.shutDown();
+    }
+
+    @Test
+    public void testCallsOfStationRunInOrder() {
+        List<Integer> expected = new ArrayList<>();
+        List<Integer> calls = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 1_000; i++) {
+            int call = i;
+            expected.add(call);
+            executor.execute("cb1", () -> calls.add(call));
+        }
+
+        // the sync call is processed after all of them
+        int seen = executor.executeAfterPending("cb1", calls::size);
+
+        Assertions.assertEquals(1_000, seen);
+        Assertions.assertEquals(expected, calls);
+    }
+
+    @Test
+    public void testSyncCallWaitsForPendingCalls() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        executor.execute("cb1", () -> {
+            await(release);
+            calls.add("MeterValues");
+        });
+
+        CompletableFuture<String> stop = CompletableFuture.supplyAsync(
+                () -> executor.executeAfterPending("cb1", () -> {
+                    calls.add("StopTransaction");
+                    return "stopped";
+                })
+        );
+
+        Thread.sleep(100);
+        Assertions.assertFalse(stop.isDone());
+
+        release.countDown();
+        Assertions.assertEquals("stopped", stop.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of("MeterValues", "StopTransaction"), calls);
+    }
+
+    @Test
+    public void testSyncCallRunsInlineWithoutPendingCalls() {
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute("cb1", () -> await(release));
+
+        try {
+            // a pending call of another station does not matter
+            Thread caller = Thread.currentThread();
+            Assertions.assertSame(caller, executor.executeAfterPending("cb2", Thread::currentThread));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testSyncCallExceptionIsRethrown() {
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute("cb1", () -> await(release));
+
+        CompletableFuture<Object> call = CompletableFuture.supplyAsync(
+                () -> executor.executeAfterPending("cb1", () -> {
+                    throw new IllegalStateException("failed");
+                })
+        );
+        release.countDown();
+
+        Exception e = Assertions.assertThrows(Exception.class, () -> call.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+
+        // nothing pending anymore, so the next one runs inline
+        Thread caller = Thread.currentThread();
+        Assertions.assertSame(caller, executor.executeAfterPending("cb1", Thread::currentThread));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
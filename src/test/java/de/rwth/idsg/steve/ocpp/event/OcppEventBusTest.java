@@ -0,0 +1,101 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class OcppEventBusTest {
+
+    private static final int EVENTS = 1000;
+
+    private OcppEventBus bus;
+
+    @AfterEach
+    public void tearDown() {
+        if (bus != null) {
+            bus.shutDown();
+        }
+    }
+
+    @Test
+    public void testListenersSeeAllEventsInOrder() throws Exception {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        bus = start(first, second);
+
+        for (int i = 0; i < EVENTS; i++) {
+            bus.publish(new StationConnected("cb-" + i));
+        }
+
+        Assertions.assertTrue(first.latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(second.latch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < EVENTS; i++) {
+            Assertions.assertEquals("cb-" + i, first.chargeBoxIds.get(i));
+            Assertions.assertEquals("cb-" + i, second.chargeBoxIds.get(i));
+        }
+        Assertions.assertEquals(EVENTS, bus.getPublishedCount());
+    }
+
+    @Test
+    public void testFailingListenerDoesNotStopConsuming() throws Exception {
+        RecordingListener failing = new RecordingListener() {
+            @Override
+            public void onEvent(OcppEvent event, boolean endOfBatch) {
+                super.onEvent(event, endOfBatch);
+                throw new IllegalStateException("expected");
+            }
+        };
+        bus = start(failing);
+
+        for (int i = 0; i < EVENTS; i++) {
+            bus.publish(new StationDisconnected("cb-" + i));
+        }
+
+        Assertions.assertTrue(failing.latch.await(5, TimeUnit.SECONDS));
+    }
+
+    private static OcppEventBus start(OcppEventListener... listeners) {
+        OcppEventBus bus = new OcppEventBus();
+        ReflectionTestUtils.setField(bus, "listeners", Arrays.asList(listeners));
+        bus.init();
+        return bus;
+    }
+
+    private static class RecordingListener implements OcppEventListener {
+
+        // only accessed by the thread of the listener, until the latch is released
+        private final List<String> chargeBoxIds = new ArrayList<>();
+        private final CountDownLatch latch = new CountDownLatch(EVENTS);
+
+        @Override
+        public void onEvent(OcppEvent event, boolean endOfBatch) {
+            chargeBoxIds.add(event.getChargeBoxId());
+            latch.countDown();
+        }
+    }
+}
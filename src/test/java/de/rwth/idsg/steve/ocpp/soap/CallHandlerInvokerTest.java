@@ -0,0 +1,86 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.soap;
+
+import de.rwth.idsg.steve.ocpp.CallHandlerRegistry;
+import de.rwth.idsg.steve.ocpp.OrderedCallExecutor;
+import ocpp.cs._2015._10.HeartbeatRequest;
+import ocpp.cs._2015._10.HeartbeatResponse;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.message.MessageContentsList;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class CallHandlerInvokerTest {
+
+    private static final DateTime NOW = new DateTime(1_666_000_000_000L);
+
+    private final OrderedCallExecutor executor = new OrderedCallExecutor();
+
+    private final CallHandlerInvoker invoker = new CallHandlerInvoker(
+            CallHandlerRegistry.builder(executor)
+                               .sync(HeartbeatRequest.class, (request, chargeBoxId) -> {
+                                   if ("broken".equals(chargeBoxId)) {
+                                       throw new IllegalStateException("failed");
+                                   }
+                                   return new HeartbeatResponse().withCurrentTime(NOW);
+                               })
+                               .build()
+    );
+
+    @AfterEach
+    public void shutDown() {
+        executor.shutDown();
+    }
+
+    @Test
+    public void testInvoke() {
+        Object result = invoker.invoke(null, Arrays.asList(new HeartbeatRequest(), "cb1"));
+
+        MessageContentsList contents = (MessageContentsList) result;
+        Assertions.assertEquals(NOW, ((HeartbeatResponse) contents.get(0)).getCurrentTime());
+    }
+
+    @Test
+    public void testParamsAreFoundByType() {
+        Object result = invoker.invoke(null, Arrays.asList("cb1", new HeartbeatRequest()));
+
+        MessageContentsList contents = (MessageContentsList) result;
+        Assertions.assertEquals(NOW, ((HeartbeatResponse) contents.get(0)).getCurrentTime());
+    }
+
+    @Test
+    public void testMissingChargeBoxId() {
+        Assertions.assertThrows(Fault.class,
+                () -> invoker.invoke(null, Collections.singletonList(new HeartbeatRequest())));
+    }
+
+    @Test
+    public void testHandlerExceptionBecomesFault() {
+        Fault fault = Assertions.assertThrows(Fault.class,
+                () -> invoker.invoke(null, Arrays.asList(new HeartbeatRequest(), "broken")));
+
+        Assertions.assertTrue(fault.getCause() instanceof IllegalStateException);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.soap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EndpointCircuitBreakerTest {
+
+    private static final long NOW = 1_666_000_000_000L;
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        EndpointCircuitBreaker breaker = new EndpointCircuitBreaker("http://10.0.0.1:8080/", 3, 60_000);
+
+        breaker.onFailure(NOW);
+        breaker.onFailure(NOW);
+        breaker.onSuccess();
+        breaker.onFailure(NOW);
+        breaker.onFailure(NOW);
+        Assertions.assertTrue(breaker.tryAcquire(NOW));
+
+        breaker.onFailure(NOW);
+        Assertions.assertEquals(EndpointCircuitBreaker.State.OPEN, breaker.getState());
+        Assertions.assertFalse(breaker.tryAcquire(NOW + 59_999));
+    }
+
+    @Test
+    public void testProbeAfterOpenTime() {
+        EndpointCircuitBreaker breaker = new EndpointCircuitBreaker("http://10.0.0.1:8080/", 1, 60_000);
+        breaker.onFailure(NOW);
+
+        // only one probe at a time
+        Assertions.assertTrue(breaker.tryAcquire(NOW + 60_000));
+        Assertions.assertFalse(breaker.tryAcquire(NOW + 60_000));
+
+        // a failed probe opens it for another round
+        breaker.onFailure(NOW + 61_000);
+        Assertions.assertFalse(breaker.tryAcquire(NOW + 120_000));
+        Assertions.assertTrue(breaker.tryAcquire(NOW + 121_000));
+
+        breaker.onSuccess();
+        Assertions.assertEquals(EndpointCircuitBreaker.State.CLOSED, breaker.getState());
+        Assertions.assertTrue(breaker.tryAcquire(NOW + 121_000));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.soap;
+
+import org.apache.cxf.binding.soap.Soap12;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+public class SoapNamespaceSnifferTest {
+
+    private static final String OCPP_16 = "urn://Ocpp/Cs/2015/10/";
+
+    @Test
+    public void testNamespaceAfterLargeHeader() throws Exception {
+        // header larger than the initial prefix, body larger than the maximum prefix
+        byte[] message = envelope("x".repeat(3 * SoapNamespaceSniffer.INITIAL_PREFIX_SIZE),
+                "<cs:value>15.823</cs:value>".repeat(5_000)).getBytes(StandardCharsets.UTF_8);
+
+        SoapNamespaceSniffer.Result result = sniff(message);
+        Assertions.assertEquals(OCPP_16, result.getNamespace());
+        Assertions.assertArrayEquals(message, result.getReplay().readAllBytes());
+    }
+
+    @Test
+    public void testNoNamespace() throws Exception {
+        byte[] notXml = "not a SOAP message".getBytes(StandardCharsets.UTF_8);
+        SoapNamespaceSniffer.Result result = sniff(notXml);
+        Assertions.assertNull(result.getNamespace());
+        Assertions.assertArrayEquals(notXml, result.getReplay().readAllBytes());
+
+        // the body does not start within the maximum prefix
+        byte[] hugeHeader = envelope("x".repeat(SoapNamespaceSniffer.MAX_PREFIX_SIZE), "").getBytes(StandardCharsets.UTF_8);
+        result = sniff(hugeHeader);
+        Assertions.assertNull(result.getNamespace());
+        Assertions.assertArrayEquals(hugeHeader, result.getReplay().readAllBytes());
+    }
+
+    private static SoapNamespaceSniffer.Result sniff(byte[] message) throws Exception {
+        return SoapNamespaceSniffer.sniff(new ByteArrayInputStream(message), "UTF-8", Soap12.getInstance().getBody());
+    }
+
+    private static String envelope(String headerText, String bodyContent) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" xmlns:cs=\"" + OCPP_16 + "\">"
+                + "<soap:Header><cs:chargeBoxIdentity>" + headerText + "</cs:chargeBoxIdentity></soap:Header>"
+                + "<soap:Body><cs:meterValuesRequest>" + bodyContent + "</cs:meterValuesRequest></soap:Body>"
+                + "</soap:Envelope>";
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws;
+
+import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.ws.data.ConnectedStation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ConnectedStationIndexTest {
+
+    @Test
+    public void testConnectDisconnect() {
+        ConnectedStationIndex index = new ConnectedStationIndex();
+
+        List<String> events = new ArrayList<>();
+        index.addConnectedListener(s -> events.add("connected:" + s.getChargeBoxId()));
+        index.addDisconnectedListener(s -> events.add("disconnected:" + s.getChargeBoxId()));
+
+        index.connected("cp1", OcppProtocol.V_16_JSON);
+        index.connected("cp2", OcppProtocol.V_15_JSON);
+
+        Assertions.assertTrue(index.isConnected("cp1"));
+        Assertions.assertTrue(index.isConnected("cp2"));
+        Assertions.assertEquals(1, index.getNumberOfChargeBoxes(OcppVersion.V_16));
+        Assertions.assertEquals(1, index.getNumberOfChargeBoxes(OcppVersion.V_15));
+        Assertions.assertEquals(0, index.getNumberOfChargeBoxes(OcppVersion.V_12));
+        Assertions.assertEquals(List.of("cp1"), index.getChargeBoxIdList(OcppVersion.V_16));
+
+        index.disconnected("cp1", OcppProtocol.V_16_JSON);
+
+        Assertions.assertFalse(index.isConnected("cp1"));
+        Assertions.assertEquals(0, index.getNumberOfChargeBoxes(OcppVersion.V_16));
+        Assertions.assertEquals(List.of("connected:cp1", "connected:cp2", "disconnected:cp1"), events);
+    }
+
+    @Test
+    public void testDisconnectOfOtherVersionIsIgnored() {
+        ConnectedStationIndex index = new ConnectedStationIndex();
+
+        index.connected("cp1", OcppProtocol.V_15_JSON);
+        index.connected("cp1", OcppProtocol.V_16_JSON);
+        index.disconnected("cp1", OcppProtocol.V_15_JSON);
+
+        Assertions.assertTrue(index.isConnected("cp1"));
+        Assertions.assertEquals(OcppProtocol.V_16_JSON, index.get("cp1").getProtocol());
+        Assertions.assertEquals(0, index.getNumberOfChargeBoxes(OcppVersion.V_15));
+        Assertions.assertEquals(1, index.getNumberOfChargeBoxes(OcppVersion.V_16));
+    }
+
+    @Test
+    public void testStationWithTwoVersions() {
+        ConnectedStationIndex index = new ConnectedStationIndex();
+
+        List<String> events = new ArrayList<>();
+        index.addConnectedListener(s -> events.add("connected:" + s.getProtocol()));
+        index.addDisconnectedListener(s -> events.add("disconnected:" + s.getProtocol()));
+
+        index.connected("cp1", OcppProtocol.V_15_JSON);
+        index.connected("cp1", OcppProtocol.V_16_JSON);
+
+        Assertions.assertEquals(1, index.getNumberOfChargeBoxes());
+        Assertions.assertEquals(List.of("cp1"), index.getChargeBoxIdList(OcppVersion.V_15));
+        Assertions.assertEquals(List.of("cp1"), index.getChargeBoxIdList(OcppVersion.V_16));
+        Assertions.assertEquals(OcppProtocol.V_15_JSON, index.get("cp1", OcppVersion.V_15).getProtocol());
+
+        index.disconnected("cp1", OcppProtocol.V_16_JSON);
+
+        Assertions.assertTrue(index.isConnected("cp1"));
+        Assertions.assertEquals(OcppProtocol.V_15_JSON, index.get("cp1").getProtocol());
+        Assertions.assertEquals(0, index.getNumberOfChargeBoxes(OcppVersion.V_16));
+
+        index.disconnected("cp1", OcppProtocol.V_15_JSON);
+
+        Assertions.assertFalse(index.isConnected("cp1"));
+        Assertions.assertEquals(0, index.getNumberOfChargeBoxes(OcppVersion.V_15));
+        Assertions.assertEquals(List.of("connected:V_15_JSON", "disconnected:V_15_JSON"), events);
+    }
+
+    @Test
+    public void testInFlightCalls() {
+        ConnectedStationIndex index = new ConnectedStationIndex();
+        index.connected("cp1", OcppProtocol.V_16_JSON);
+
+        index.callSent("cp1");
+        index.callSent("cp1");
+        index.callSent("cp1");
+        index.callsCompleted("cp1", 1);
+
+        ConnectedStation station = index.get("cp1");
+        Assertions.assertEquals(2, station.getInFlightCalls());
+
+        index.callsCompleted("cp1", 5);
+        Assertions.assertEquals(0, station.getInFlightCalls());
+
+        // unknown stations are ignored
+        index.callSent("cp2");
+        Assertions.assertNull(index.get("cp2"));
+    }
+}
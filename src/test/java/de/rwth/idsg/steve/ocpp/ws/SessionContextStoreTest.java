@@ -0,0 +1,172 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws;
+
+import de.rwth.idsg.steve.ocpp.ws.custom.WsSessionSelectStrategyEnum;
+import de.rwth.idsg.steve.ocpp.ws.data.SessionContextSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class SessionContextStoreTest {
+
+    private ScheduledExecutorService executorService;
+    private SessionContextStore store;
+
+    @BeforeEach
+    public void setUp() {
+        executorService = Executors.newSingleThreadScheduledExecutor();
+        store = new SessionContextStore(WsSessionSelectStrategyEnum.ROUND_ROBIN);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        WebSocketSession session1 = session("s1");
+        WebSocketSession session2 = session("s2");
+        ScheduledFuture<?> ping1 = ping();
+
+        Assertions.assertEquals(1, store.add("cp1", session1, ping1));
+        Assertions.assertEquals(2, store.add("cp1", session2, ping()));
+        Assertions.assertEquals(1, store.add("cp2", session("s3"), ping()));
+
+        Assertions.assertEquals(2, store.getSize("cp1"));
+        Assertions.assertEquals(2, store.getNumberOfChargeBoxes());
+        Assertions.assertSame(session2, store.getSessionContext("cp1", "s2").getSession());
+
+        Assertions.assertEquals(1, store.remove("cp1", session1));
+        Assertions.assertTrue(ping1.isCancelled());
+        Assertions.assertNull(store.getSessionContext("cp1", "s1"));
+
+        // a session that is not stored (anymore) changes nothing
+        long version = store.getVersion();
+        Assertions.assertEquals(1, store.remove("cp1", session1));
+        Assertions.assertEquals(0, store.remove("cp3", session1));
+        Assertions.assertEquals(version, store.getVersion());
+    }
+
+    @Test
+    public void testRemoveLastSessionDeletesEntry() {
+        WebSocketSession session = session("s1");
+        store.add("cp1", session, ping());
+        store.add("cp2", session("s2"), ping());
+
+        Assertions.assertEquals(0, store.remove("cp1", session));
+
+        Assertions.assertFalse(store.isConnected("cp1"));
+        Assertions.assertEquals(0, store.getSize("cp1"));
+        Assertions.assertEquals(1, store.getNumberOfChargeBoxes());
+        Assertions.assertEquals(List.of("cp2"), store.getChargeBoxIdList());
+        Assertions.assertFalse(store.getSnapshot().isConnected("cp1"));
+    }
+
+    @Test
+    public void testGetSessionRoundRobin() {
+        WebSocketSession session1 = session("s1");
+        WebSocketSession session2 = session("s2");
+        store.add("cp1", session1, ping());
+        store.add("cp1", session2, ping());
+
+        Assertions.assertSame(session1, store.getSession("cp1"));
+        Assertions.assertSame(session2, store.getSession("cp1"));
+        Assertions.assertSame(session1, store.getSession("cp1"));
+    }
+
+    @Test
+    public void testSnapshotIsReusedUntilModified() {
+        store.add("cp1", session("s1"), ping());
+
+        SessionContextSnapshot first = store.getSnapshot();
+        Assertions.assertEquals(store.getVersion(), first.getVersion());
+        Assertions.assertSame(first, store.getSnapshot());
+
+        // removing an unknown session does not change the version
+        store.remove("cp1", session("s3"));
+        Assertions.assertSame(first, store.getSnapshot());
+    }
+
+    @Test
+    public void testSnapshotIsRebuiltAfterModification() {
+        store.add("cp1", session("s1"), ping());
+        SessionContextSnapshot first = store.getSnapshot();
+
+        WebSocketSession session2 = session("s2");
+        store.add("cp1", session2, ping());
+
+        SessionContextSnapshot second = store.getSnapshot();
+        Assertions.assertNotSame(first, second);
+        Assertions.assertTrue(second.getVersion() > first.getVersion());
+        Assertions.assertEquals(List.of("s1", "s2"), sessionIds(second, "cp1"));
+
+        // the old snapshot is immutable
+        Assertions.assertEquals(List.of("s1"), sessionIds(first, "cp1"));
+
+        store.remove("cp1", session2);
+        SessionContextSnapshot third = store.getSnapshot();
+        Assertions.assertNotSame(second, third);
+        Assertions.assertEquals(List.of("s1"), sessionIds(third, "cp1"));
+    }
+
+    private ScheduledFuture<?> ping() {
+        return executorService.schedule(() -> { }, 1, TimeUnit.HOURS);
+    }
+
+    private static List<String> sessionIds(SessionContextSnapshot snapshot, String chargeBoxId) {
+        return snapshot.get(chargeBoxId).stream()
+                       .map(ctx -> ctx.getSession().getId())
+                       .collect(Collectors.toList());
+    }
+
+    /**
+     * Only the id is used by the store
+     */
+    private static WebSocketSession session(String id) {
+        return (WebSocketSession) Proxy.newProxyInstance(
+                SessionContextStoreTest.class.getClassLoader(),
+                new Class<?>[]{WebSocketSession.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getId":
+                            return id;
+                        case "toString":
+                            return "session-" + id;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws;
+
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import de.rwth.idsg.steve.ocpp.event.OcppEvent;
+import de.rwth.idsg.steve.ocpp.event.OcppEventBus;
+import de.rwth.idsg.steve.ocpp.event.StationConnected;
+import de.rwth.idsg.steve.ocpp.event.StationDisconnected;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class StationFlapDetectorTest {
+
+    private static final String CHARGE_BOX_ID = "cb-1";
+    private static final int HALF_LIFE_IN_SECONDS = 60;
+
+    private RecordingEventBus eventBus;
+    private StationFlapDetector detector;
+
+    @BeforeEach
+    public void setUp() {
+        eventBus = new RecordingEventBus();
+        detector = new StationFlapDetector();
+        ReflectionTestUtils.setField(detector, "eventBus", eventBus);
+        ReflectionTestUtils.setField(detector, "config", SteveConfiguration.FlapDamping.builder()
+                                                                                        .enabled(true)
+                                                                                        .halfLifeInSeconds(HALF_LIFE_IN_SECONDS)
+                                                                                        .suppressThreshold(3000)
+                                                                                        .reuseThreshold(1000)
+                                                                                        .build());
+        ReflectionTestUtils.setField(detector, "decayPerMilli", Math.log(2) / TimeUnit.SECONDS.toMillis(HALF_LIFE_IN_SECONDS));
+    }
+
+    @Test
+    public void testStableStationIsNotSuppressed() {
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            detector.connected(CHARGE_BOX_ID, now);
+            now += TimeUnit.MINUTES.toMillis(10);
+            detector.disconnected(CHARGE_BOX_ID, now);
+        }
+
+        Assertions.assertEquals(20, eventBus.events.size());
+        Assertions.assertEquals(0, detector.getSuppressedEventCount());
+    }
+
+    @Test
+    public void testFlappingStationIsSuppressedAndReleased() {
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            detector.connected(CHARGE_BOX_ID, now);
+            now += 100;
+            detector.disconnected(CHARGE_BOX_ID, now);
+            now += 100;
+        }
+
+        // published until the disconnect that crossed the threshold
+        Assertions.assertEquals(8, eventBus.events.size());
+        Assertions.assertTrue(eventBus.events.get(7) instanceof StationDisconnected);
+        Assertions.assertEquals(1, detector.getSuppressedCount());
+        Assertions.assertEquals(12, detector.getSuppressedEventCount());
+
+        // the station stays connected
+        detector.connected(CHARGE_BOX_ID, now);
+
+        // not enough decay yet
+        detector.releaseStable(now + TimeUnit.SECONDS.toMillis(HALF_LIFE_IN_SECONDS));
+        Assertions.assertEquals(1, detector.getSuppressedCount());
+        Assertions.assertEquals(8, eventBus.events.size());
+
+        // released with the current state
+        detector.releaseStable(now + TimeUnit.SECONDS.toMillis(5 * HALF_LIFE_IN_SECONDS));
+        Assertions.assertEquals(0, detector.getSuppressedCount());
+        Assertions.assertEquals(9, eventBus.events.size());
+        Assertions.assertTrue(eventBus.events.get(8) instanceof StationConnected);
+    }
+
+    @Test
+    public void testProtocolIsWrittenOnceWhileSuppressed() {
+        long now = 0;
+        for (int i = 0; i < 4; i++) {
+            detector.connected(CHARGE_BOX_ID, now);
+            detector.disconnected(CHARGE_BOX_ID, now);
+        }
+
+        Assertions.assertTrue(detector.shouldWriteProtocol(CHARGE_BOX_ID, OcppProtocol.V_16_JSON));
+        Assertions.assertFalse(detector.shouldWriteProtocol(CHARGE_BOX_ID, OcppProtocol.V_16_JSON));
+        Assertions.assertTrue(detector.shouldWriteProtocol(CHARGE_BOX_ID, OcppProtocol.V_15_JSON));
+    }
+
+    private static class RecordingEventBus extends OcppEventBus {
+        private final List<OcppEvent> events = new ArrayList<>();
+
+        @Override
+        public void publish(OcppEvent event) {
+            events.add(event);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import de.rwth.idsg.steve.ocpp.OcppTransport;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.ws.ChargePointServiceInvoker;
+import de.rwth.idsg.steve.ocpp.ws.JsonObjectMapper;
+import de.rwth.idsg.steve.ocpp.ws.data.CommunicationContext;
+import de.rwth.idsg.steve.ocpp.ws.data.ErrorCode;
+import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonError;
+import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonResult;
+import de.rwth.idsg.steve.ocpp.ws.ocpp12.Ocpp12WebSocketEndpoint;
+import de.rwth.idsg.steve.ocpp.ws.ocpp15.Ocpp15WebSocketEndpoint;
+import de.rwth.idsg.steve.ocpp.ws.ocpp16.Ocpp16TypeStore;
+import de.rwth.idsg.steve.ocpp.ws.ocpp16.Ocpp16WebSocketEndpoint;
+import de.rwth.idsg.steve.ocpp.ws.pipeline.OutgoingCallPipeline;
+import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
+import ocpp.cp._2015._10.ResetRequest;
+import ocpp.cp._2015._10.ResetResponse;
+import ocpp.cp._2015._10.ResetStatus;
+import ocpp.cp._2015._10.ResetType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A call is triggered at node 1 for a station, whose session is held by node 2. It travels the same way as in a
+ * cluster: {@link ClusterCallForwarder} at node 1, HTTP, {@link ClusterController} and {@link ClusterCallReceiver} at
+ * node 2, and the local {@link ChargePointServiceInvoker} of node 2, which sends it to the station. The HTTP server of
+ * node 2 is a plain in-process server, which does what Spring MVC does with the controller.
+ */
+public class ClusterForwardingTest {
+
+    private static final String SECRET = "a-long-cluster-secret";
+    private static final int FORWARD_TIMEOUT_IN_SECONDS = 1;
+
+    private static final ObjectMapper MAPPER = JsonObjectMapper.INSTANCE.getMapper();
+
+    private final CountDownLatch shutDown = new CountDownLatch(1);
+
+    private HttpServer node2Server;
+    private String node2Address;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        ClusterService clusterService = new TestClusterService(SECRET, null);
+
+        ClusterCallReceiver receiver = new ClusterCallReceiver();
+        ReflectionTestUtils.setField(receiver, "clusterService", clusterService);
+        ReflectionTestUtils.setField(receiver, "pipeline", new StationPipeline());
+        ReflectionTestUtils.setField(receiver, "ocpp12WebSocketEndpoint", new Ocpp12WebSocketEndpoint());
+        ReflectionTestUtils.setField(receiver, "ocpp15WebSocketEndpoint", new Ocpp15WebSocketEndpoint());
+        ReflectionTestUtils.setField(receiver, "ocpp16WebSocketEndpoint", new Node2Endpoint());
+        receiver.init();
+
+        ClusterController controller = new ClusterController(clusterService, receiver);
+
+        node2Server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        node2Server.setExecutor(Executors.newCachedThreadPool());
+        node2Server.createContext("/steve" + ClusterCallForwarder.CALLS_PATH, exchange -> {
+            ForwardedCall call = MAPPER.readValue(exchange.getRequestBody(), ForwardedCall.class);
+            String secret = exchange.getRequestHeaders().getFirst(ClusterCallForwarder.SECRET_HEADER);
+
+            ResponseEntity<ForwardedCallResult> response = controller.call(secret, call).join();
+
+            byte[] body = response.hasBody() ? MAPPER.writeValueAsBytes(response.getBody()) : new byte[0];
+            exchange.sendResponseHeaders(response.getStatusCodeValue(), body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        node2Server.createContext("/stuck" + ClusterCallForwarder.CALLS_PATH, exchange -> {
+            try {
+                shutDown.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        node2Server.start();
+
+        node2Address = "http://localhost:" + node2Server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        shutDown.countDown();
+        node2Server.stop(0);
+    }
+
+    @Test
+    public void testResult() throws Exception {
+        ForwardedCallResult result = forward(SECRET, node2Address + "/steve", "cp-accept");
+
+        Assertions.assertTrue(result.isSetResult());
+        Assertions.assertEquals("Accepted", result.getResult().get("status").asText());
+    }
+
+    @Test
+    public void testError() throws Exception {
+        ForwardedCallResult result = forward(SECRET, node2Address + "/steve", "cp-error");
+
+        Assertions.assertTrue(result.isSetError());
+        Assertions.assertEquals(ErrorCode.NotSupported, result.toError().getErrorCode());
+        Assertions.assertEquals("Reset is not supported", result.toError().getErrorDescription());
+    }
+
+    @Test
+    public void testStationNotConnectedToOwner() throws Exception {
+        ForwardedCallResult result = forward(SECRET, node2Address + "/steve", "cp-gone");
+
+        Assertions.assertTrue(result.getFailure().contains("could not deliver the call"));
+        Assertions.assertTrue(result.getFailure().contains("No session context for chargeBoxId 'cp-gone'"));
+    }
+
+    @Test
+    public void testStationDoesNotRespond() throws Exception {
+        ForwardedCallResult result = forward(SECRET, node2Address + "/steve", "cp-silent");
+
+        Assertions.assertTrue(result.getFailure().contains("The station did not respond in time"));
+    }
+
+    @Test
+    public void testInvalidSecret() throws Exception {
+        ForwardedCallResult result = forward("wrong-secret", node2Address + "/steve", "cp-accept");
+
+        Assertions.assertTrue(result.getFailure().contains("HTTP status 403"));
+    }
+
+    @Test
+    public void testBlankSecretIsRejected() {
+        // e.g. an empty environment variable, which slipped past the validation of the configuration
+        ClusterController controller = new ClusterController(new TestClusterService("", null), null);
+        ForwardedCall call = new ForwardedCall("cp-accept", OcppVersion.V_16, "Reset", null);
+
+        ResponseEntity<ForwardedCallResult> response = controller.call("", call).join();
+
+        Assertions.assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+    }
+
+    @Test
+    public void testOwnerNotReachable() throws Exception {
+        int freePort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            freePort = socket.getLocalPort();
+        }
+
+        ForwardedCallResult result = forward(SECRET, "http://localhost:" + freePort + "/steve", "cp-accept");
+
+        Assertions.assertTrue(result.getFailure().contains("Forwarding to node 'node-2' failed"));
+    }
+
+    @Test
+    public void testOwnerDoesNotRespond() throws Exception {
+        ForwardedCallResult result = forward(SECRET, node2Address + "/stuck", "cp-accept");
+
+        // after the forward timeout plus the grace period for the owner
+        Assertions.assertTrue(result.getFailure().contains("Forwarding to node 'node-2' failed"));
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Triggers a Reset at node 1, and returns its outcome as node 1 sees it
+     */
+    private static ForwardedCallResult forward(String secret, String node2Address, String chargeBoxId)
+            throws Exception {
+        ClusterNode node2 = new ClusterNode("node-2", node2Address);
+
+        ClusterCallForwarder forwarder = new ClusterCallForwarder();
+        ReflectionTestUtils.setField(forwarder, "clusterService", new TestClusterService(secret, node2));
+
+        // not connected to node 1
+        ChargePointServiceInvoker invoker = new ChargePointServiceInvoker(
+                null, new Ocpp16WebSocketEndpoint(), Ocpp16TypeStore.INSTANCE, forwarder
+        );
+
+        // only used to capture the outcome at node 1
+        ChargePointSelect cps = new ChargePointSelect(OcppTransport.JSON, chargeBoxId);
+        ResetRequest request = new ResetRequest().withType(ResetType.SOFT);
+        ForwardedCallTask task = new ForwardedCallTask(OcppVersion.V_16, cps, request);
+        invoker.runPipeline(cps, task);
+
+        return task.getResultFuture().get(FORWARD_TIMEOUT_IN_SECONDS + 10, TimeUnit.SECONDS);
+    }
+
+    private static class TestClusterService extends ClusterService {
+        private final String secret;
+        private final ClusterNode remoteOwner;
+
+        private TestClusterService(String secret, ClusterNode remoteOwner) {
+            this.secret = secret;
+            this.remoteOwner = remoteOwner;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public String getSecret() {
+            return secret;
+        }
+
+        @Override
+        public int getForwardTimeoutInSeconds() {
+            return FORWARD_TIMEOUT_IN_SECONDS;
+        }
+
+        @Override
+        public ClusterNode findRemoteOwner(String chargeBoxId) {
+            return remoteOwner;
+        }
+    }
+
+    /**
+     * All stations except "cp-gone" are connected to node 2
+     */
+    private static class Node2Endpoint extends Ocpp16WebSocketEndpoint {
+        @Override
+        public boolean isConnected(String chargeBoxId) {
+            return !"cp-gone".equals(chargeBoxId);
+        }
+
+        @Override
+        public WebSocketSession getSession(String chargeBoxId) {
+            return isConnected(chargeBoxId) ? null : super.getSession(chargeBoxId);
+        }
+    }
+
+    /**
+     * Instead of sending the call over the session, the station answers right away
+     */
+    private static class StationPipeline extends OutgoingCallPipeline {
+
+        private StationPipeline() {
+            super(null);
+        }
+
+        @Override
+        public void accept(CommunicationContext context) {
+            switch (context.getChargeBoxId()) {
+                case "cp-accept":
+                    OcppJsonResult result = new OcppJsonResult();
+                    result.setPayload(new ResetResponse().withStatus(ResetStatus.ACCEPTED));
+                    context.createResultHandler(context.getFutureResponseContext().getTask());
+                    context.getResultHandler().accept(result);
+                    break;
+
+                case "cp-error":
+                    OcppJsonError error = new OcppJsonError();
+                    error.setErrorCode(ErrorCode.NotSupported);
+                    error.setErrorDescription("Reset is not supported");
+                    context.createErrorHandler(context.getFutureResponseContext().getTask());
+                    context.getErrorHandler().accept(error);
+                    break;
+
+                default:
+                    // the station does not respond
+                    break;
+            }
+        }
+    }
+}
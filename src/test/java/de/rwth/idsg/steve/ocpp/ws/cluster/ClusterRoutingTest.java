@@ -0,0 +1,126 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.cluster;
+
+import de.rwth.idsg.steve.ocpp.OcppTransport;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.ocpp.ws.data.ErrorCode;
+import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonError;
+import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
+import ocpp.cp._2015._10.ResetRequest;
+import ocpp.cp._2015._10.ResetResponse;
+import ocpp.cp._2015._10.ResetStatus;
+import ocpp.cp._2015._10.ResetType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Multiple nodes within the same JVM, sharing the in-memory registry.
+ */
+public class ClusterRoutingTest {
+
+    private static final ClusterNode NODE_1 = new ClusterNode("node-1", "http://node-1:8080/steve");
+    private static final ClusterNode NODE_2 = new ClusterNode("node-2", "http://node-2:8080/steve");
+
+    @Test
+    public void testClaimAndRelease() {
+        SessionOwnershipRegistry registry = new InMemorySessionOwnershipRegistry();
+
+        registry.claim("cp-1", OcppVersion.V_16, NODE_1);
+        registry.claim("cp-2", OcppVersion.V_16, NODE_2);
+
+        Assertions.assertEquals(NODE_1, registry.findOwner("cp-1"));
+        Assertions.assertEquals(NODE_2, registry.findOwner("cp-2"));
+        Assertions.assertNull(registry.findOwner("cp-3"));
+
+        registry.release("cp-1", NODE_1);
+        Assertions.assertNull(registry.findOwner("cp-1"));
+    }
+
+    @Test
+    public void testReconnectToOtherNode() {
+        SessionOwnershipRegistry registry = new InMemorySessionOwnershipRegistry();
+
+        registry.claim("cp-1", OcppVersion.V_16, NODE_1);
+        // the station reconnects to node 2, before node 1 notices that the old connection is gone
+        registry.claim("cp-1", OcppVersion.V_16, NODE_2);
+        registry.release("cp-1", NODE_1);
+
+        Assertions.assertEquals(NODE_2, registry.findOwner("cp-1"));
+    }
+
+    @Test
+    public void testReleaseAll() {
+        SessionOwnershipRegistry registry = new InMemorySessionOwnershipRegistry();
+
+        registry.claim("cp-1", OcppVersion.V_16, NODE_1);
+        registry.claim("cp-2", OcppVersion.V_16, NODE_1);
+        registry.claim("cp-3", OcppVersion.V_16, NODE_2);
+
+        registry.releaseAll(NODE_1);
+
+        Assertions.assertNull(registry.findOwner("cp-1"));
+        Assertions.assertNull(registry.findOwner("cp-2"));
+        Assertions.assertEquals(NODE_2, registry.findOwner("cp-3"));
+    }
+
+    @Test
+    public void testRemoteChargeBoxIdList() {
+        SessionOwnershipRegistry registry = new InMemorySessionOwnershipRegistry();
+
+        registry.claim("cp-1", OcppVersion.V_16, NODE_1);
+        registry.claim("cp-2", OcppVersion.V_16, NODE_2);
+        registry.claim("cp-3", OcppVersion.V_15, NODE_2);
+
+        Assertions.assertEquals(List.of("cp-2"), registry.getChargeBoxIdList(OcppVersion.V_16, NODE_1));
+        Assertions.assertEquals(List.of("cp-3"), registry.getChargeBoxIdList(OcppVersion.V_15, NODE_1));
+        Assertions.assertEquals(List.of("cp-1"), registry.getChargeBoxIdList(OcppVersion.V_16, NODE_2));
+
+        registry.release("cp-2", NODE_2);
+        Assertions.assertEquals(List.of(), registry.getChargeBoxIdList(OcppVersion.V_16, NODE_1));
+    }
+
+    @Test
+    public void testForwardedCallTaskOutcome() throws Exception {
+        ChargePointSelect cps = new ChargePointSelect(OcppTransport.JSON, "cp-1");
+        ResetRequest request = new ResetRequest().withType(ResetType.SOFT);
+
+        ForwardedCallTask resultTask = new ForwardedCallTask(OcppVersion.V_16, cps, request);
+        Assertions.assertSame(request, resultTask.getRequest());
+        resultTask.defaultCallback().success("cp-1", new ResetResponse().withStatus(ResetStatus.ACCEPTED));
+
+        ForwardedCallResult result = resultTask.getResultFuture().get();
+        Assertions.assertTrue(result.isSetResult());
+        Assertions.assertEquals("Accepted", result.getResult().get("status").asText());
+
+        OcppJsonError error = new OcppJsonError();
+        error.setErrorCode(ErrorCode.NotSupported);
+        error.setErrorDescription("Reset is not supported");
+
+        ForwardedCallTask errorTask = new ForwardedCallTask(OcppVersion.V_16, cps, request);
+        errorTask.defaultCallback().success("cp-1", error);
+
+        ForwardedCallResult errorResult = errorTask.getResultFuture().get();
+        Assertions.assertTrue(errorResult.isSetError());
+        Assertions.assertEquals(ErrorCode.NotSupported, errorResult.toError().getErrorCode());
+        Assertions.assertEquals("Reset is not supported", errorResult.toError().getErrorDescription());
+    }
+}
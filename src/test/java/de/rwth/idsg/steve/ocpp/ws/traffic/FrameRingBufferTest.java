@@ -0,0 +1,81 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.traffic;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class FrameRingBufferTest {
+
+    @Test
+    public void testOldestFramesAreDroppedByCount() {
+        FrameRingBuffer buffer = new FrameRingBuffer(3, 1024);
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(i, i % 2 == 0, "session", "[2,\"" + i + "\",\"Heartbeat\",{}]");
+        }
+
+        List<FrameRingBuffer.Frame> frames = buffer.getFrames();
+        Assertions.assertEquals(3, frames.size());
+        Assertions.assertEquals(3, frames.get(0).timestamp);
+        Assertions.assertEquals("[2,\"5\",\"Heartbeat\",{}]", frames.get(2).payload);
+        Assertions.assertFalse(frames.get(2).sent);
+    }
+
+    @Test
+    public void testOldestFramesAreDroppedBySize() {
+        FrameRingBuffer buffer = new FrameRingBuffer(100, 64);
+        String frame = "[3,\"1\",{\"currentTime\":\"2026-10-19T10:00:00Z\"}]";
+        for (int i = 0; i < 10; i++) {
+            buffer.add(i, true, "session", frame);
+        }
+
+        // 46 bytes per frame, the second one does not fit behind the first and starts at the beginning again
+        List<FrameRingBuffer.Frame> frames = buffer.getFrames();
+        Assertions.assertEquals(1, frames.size());
+        Assertions.assertEquals(9, frames.get(0).timestamp);
+        Assertions.assertEquals(frame, frames.get(0).payload);
+    }
+
+    @Test
+    public void testFramesAcrossTheEnd() {
+        FrameRingBuffer buffer = new FrameRingBuffer(100, 32);
+        buffer.add(1, false, "session", "0123456789");
+        buffer.add(2, false, "session", "0123456789");
+        buffer.add(3, false, "session", "0123456789");
+        buffer.add(4, false, "session", "abcdefghij");
+
+        List<FrameRingBuffer.Frame> frames = buffer.getFrames();
+        Assertions.assertEquals(3, frames.size());
+        Assertions.assertEquals(2, frames.get(0).timestamp);
+        Assertions.assertEquals("abcdefghij", frames.get(2).payload);
+    }
+
+    @Test
+    public void testLargeFrameIsCutOff() {
+        FrameRingBuffer buffer = new FrameRingBuffer(10, 8);
+        buffer.add(1, false, "session", "Gr\u00fc\u00dfe aus Aachen");
+
+        FrameRingBuffer.Frame frame = buffer.getFrames().get(0);
+        Assertions.assertEquals("Gr\u00fc\u00dfe ", frame.payload);
+        Assertions.assertEquals(16, frame.length);
+        Assertions.assertEquals(18, FrameRingBuffer.utf8Length("Gr\u00fc\u00dfe aus Aachen"));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws.traffic;
+
+import de.rwth.idsg.steve.ocpp.ws.data.MessageType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TrafficLogRulesTest {
+
+    @Test
+    public void testRules() {
+        TrafficLogRules rules = TrafficLogRules.parse(Arrays.asList("Heartbeat=off", "MeterValues=INFO/10", "*=DEBUG"));
+
+        Assertions.assertEquals(TrafficLogRules.Level.OFF, rules.forAction("Heartbeat").getLevel());
+        Assertions.assertEquals(TrafficLogRules.Level.INFO, rules.forAction("MeterValues").getLevel());
+        Assertions.assertEquals(10, rules.forAction("MeterValues").getSampleEvery());
+        Assertions.assertEquals(TrafficLogRules.Level.DEBUG, rules.forAction("StatusNotification").getLevel());
+        Assertions.assertEquals(1, rules.forAction("StatusNotification").getSampleEvery());
+
+        TrafficLogRules empty = TrafficLogRules.parse(Collections.emptyList());
+        Assertions.assertSame(TrafficLogRules.ALL, empty.forAction("Heartbeat"));
+    }
+
+    @Test
+    public void testInvalidRules() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TrafficLogRules.parse(Collections.singletonList("Heartbeat")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TrafficLogRules.parse(Collections.singletonList("Heartbeat=LOUD")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TrafficLogRules.parse(Collections.singletonList("Heartbeat=INFO/0")));
+    }
+
+    @Test
+    public void testFrameHeader() {
+        FrameHeader call = FrameHeader.parse("[2,\"19223201\",\"BootNotification\",{\"chargePointVendor\":\"VendorX\"}]");
+        Assertions.assertEquals(MessageType.CALL, call.getMessageType());
+        Assertions.assertEquals("19223201", call.getMessageId());
+        Assertions.assertEquals("BootNotification", call.getAction());
+
+        FrameHeader result = FrameHeader.parse(" [ 3 , \"19223201\" , {\"status\":\"Accepted\"}]");
+        Assertions.assertEquals(MessageType.CALL_RESULT, result.getMessageType());
+        Assertions.assertEquals("19223201", result.getMessageId());
+        Assertions.assertNull(result.getAction());
+
+        FrameHeader invalid = FrameHeader.parse("{\"messageTypeId\":2}");
+        Assertions.assertNull(invalid.getMessageType());
+        Assertions.assertNull(invalid.getMessageId());
+    }
+}
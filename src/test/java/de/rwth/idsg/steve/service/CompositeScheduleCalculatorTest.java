@@ -0,0 +1,154 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.service.dto.CompositeSchedule;
+import ocpp.cp._2015._10.ChargingProfileKindType;
+import ocpp.cp._2015._10.ChargingProfilePurposeType;
+import ocpp.cp._2015._10.ChargingRateUnitType;
+import ocpp.cp._2015._10.RecurrencyKindType;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static ocpp.cp._2015._10.ChargingProfileKindType.ABSOLUTE;
+import static ocpp.cp._2015._10.ChargingProfileKindType.RECURRING;
+import static ocpp.cp._2015._10.ChargingProfilePurposeType.CHARGE_POINT_MAX_PROFILE;
+import static ocpp.cp._2015._10.ChargingProfilePurposeType.TX_DEFAULT_PROFILE;
+import static ocpp.cp._2015._10.ChargingProfilePurposeType.TX_PROFILE;
+import static ocpp.cp._2015._10.ChargingRateUnitType.A;
+import static ocpp.cp._2015._10.ChargingRateUnitType.W;
+
+public class CompositeScheduleCalculatorTest {
+
+    private static final DateTime MIDNIGHT = new DateTime(2026, 10, 19, 0, 0, DateTimeZone.UTC);
+    private static final DateTime START = MIDNIGHT.plusHours(17);
+
+    @Test
+    public void testTxProfileOverridesTxDefaultProfile() {
+        List<CompositeScheduleCalculator.Profile> profiles = Arrays.asList(
+                absolute(0, 0, TX_DEFAULT_PROFILE, A, null, 16),
+                absolute(1, 1, TX_PROFILE, A, 3600, 10),
+                absolute(0, 0, CHARGE_POINT_MAX_PROFILE, A, null, 32)
+        );
+
+        CompositeSchedule schedule = calculate(1, profiles, 7200, A);
+        assertPeriods(schedule, 0, "10.0", 3600, "16.0");
+
+        // neither applies to connector 0
+        schedule = calculate(0, profiles, 7200, A);
+        assertPeriods(schedule, 0, "32.0");
+    }
+
+    @Test
+    public void testChargePointMaxProfileCaps() {
+        List<CompositeScheduleCalculator.Profile> profiles = Arrays.asList(
+                absolute(0, 0, TX_DEFAULT_PROFILE, A, null, 32),
+                absolute(0, 0, CHARGE_POINT_MAX_PROFILE, W, null, 11040)
+        );
+
+        assertPeriods(calculate(2, profiles, 3600, A), 0, "16.0");
+        assertPeriods(calculate(2, profiles, 3600, W), 0, "11040.0");
+    }
+
+    @Test
+    public void testHighestStackLevelWins() {
+        List<CompositeScheduleCalculator.Profile> profiles = Arrays.asList(
+                absolute(0, 0, TX_DEFAULT_PROFILE, A, null, 16),
+                absolute(0, 1, TX_DEFAULT_PROFILE, A, 1800, 8),
+                // same stack level, but connector 1 itself
+                absolute(1, 0, TX_DEFAULT_PROFILE, A, null, 20)
+        );
+
+        assertPeriods(calculate(1, profiles, 3600, A), 0, "8.0", 1800, "20.0");
+        assertPeriods(calculate(2, profiles, 3600, A), 0, "8.0", 1800, "16.0");
+    }
+
+    @Test
+    public void testDailyRecurrency() {
+        CompositeScheduleCalculator.Profile profile = new CompositeScheduleCalculator.Profile(
+                0, 0, TX_DEFAULT_PROFILE, RECURRING, RecurrencyKindType.DAILY,
+                Long.MIN_VALUE, Long.MAX_VALUE, MIDNIGHT.minusDays(3).getMillis(), null, A,
+                new int[] {0, 18 * 3600, 22 * 3600},
+                new double[] {16, 6, 16},
+                new int[] {0, 0, 0}
+        );
+
+        // from 17:00 to 17:00 of the next day: 6 A from 18:00 to 22:00 only
+        CompositeSchedule schedule = calculate(1, Collections.singletonList(profile), 24 * 3600, null);
+        Assertions.assertEquals(A, schedule.getChargingRateUnit());
+        assertPeriods(schedule, 0, "16.0", 3600, "6.0", 5 * 3600, "16.0");
+    }
+
+    @Test
+    public void testValidity() {
+        CompositeScheduleCalculator.Profile profile = new CompositeScheduleCalculator.Profile(
+                1, 0, TX_PROFILE, ABSOLUTE, null,
+                START.plusMinutes(10).getMillis(), START.plusMinutes(20).getMillis(), START.getMillis(), null, A,
+                new int[] {0},
+                new double[] {10},
+                new int[] {1}
+        );
+
+        CompositeSchedule schedule = calculate(1, Collections.singletonList(profile), 3600, W);
+        assertPeriods(schedule, 0, null, 600, "2300.0", 1200, null);
+        Assertions.assertEquals(1, schedule.getPeriods().get(1).getNumberPhases());
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private static CompositeSchedule calculate(int connectorId, List<CompositeScheduleCalculator.Profile> profiles,
+                                               int durationInSeconds, ChargingRateUnitType unit) {
+        return CompositeScheduleCalculator.calculate("cb-1", connectorId, profiles, START, durationInSeconds, unit);
+    }
+
+    private static CompositeScheduleCalculator.Profile absolute(int connectorId, int stackLevel,
+                                                                ChargingProfilePurposeType purpose,
+                                                                ChargingRateUnitType unit, Integer duration,
+                                                                double limit) {
+        return new CompositeScheduleCalculator.Profile(
+                connectorId, stackLevel, purpose, ChargingProfileKindType.ABSOLUTE, null,
+                Long.MIN_VALUE, Long.MAX_VALUE, START.getMillis(), duration, unit,
+                new int[] {0},
+                new double[] {limit},
+                new int[] {0}
+        );
+    }
+
+    /**
+     * @param expected pairs of start period in seconds and limit
+     */
+    private static void assertPeriods(CompositeSchedule schedule, Object... expected) {
+        List<CompositeSchedule.Period> periods = schedule.getPeriods();
+        Assertions.assertEquals(expected.length / 2, periods.size());
+
+        for (int i = 0; i < periods.size(); i++) {
+            CompositeSchedule.Period period = periods.get(i);
+            Assertions.assertEquals(expected[2 * i], period.getStartPeriodInSeconds());
+            Assertions.assertEquals(expected[2 * i + 1], period.getLimit() == null ? null : period.getLimit().toPlainString());
+        }
+    }
+}
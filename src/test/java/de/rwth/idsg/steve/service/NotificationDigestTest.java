@@ -0,0 +1,122 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static de.rwth.idsg.steve.NotificationFeature.OcppStationBooted;
+import static de.rwth.idsg.steve.NotificationFeature.OcppStationStatusFailure;
+import static de.rwth.idsg.steve.NotificationFeature.OcppStationWebSocketConnected;
+import static de.rwth.idsg.steve.NotificationFeature.OcppStationWebSocketDisconnected;
+
+/**
+ * Every test sends at most one mail, since the rate limit delays the following ones.
+ */
+public class NotificationDigestTest {
+
+    private RecordingMailService mailService;
+    private NotificationDigest digest;
+
+    @BeforeEach
+    public void setUp() {
+        mailService = new RecordingMailService();
+        digest = new NotificationDigest();
+        ReflectionTestUtils.setField(digest, "mailService", mailService);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        digest.shutDown();
+    }
+
+    @Test
+    public void testSingleNotificationIsSentAsIs() {
+        digest.add(OcppStationStatusFailure, "cb-1", "faulted", "body");
+        digest.flush();
+
+        Assertions.assertEquals(List.of("faulted"), mailService.subjects);
+        Assertions.assertEquals(List.of("body"), mailService.bodies);
+    }
+
+    @Test
+    public void testNotificationsOfFeatureAreMerged() {
+        for (int i = 0; i < 5; i++) {
+            digest.add(OcppStationBooted, "cb-" + i, "booted cb-" + i, "body");
+        }
+        digest.flush();
+
+        Assertions.assertEquals(1, mailService.subjects.size());
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(mailService.bodies.get(0).contains("booted cb-" + i));
+        }
+
+        // nothing left for the next window
+        digest.flush();
+        Assertions.assertEquals(1, mailService.subjects.size());
+    }
+
+    @Test
+    public void testReconnectsCancelOut() {
+        digest.add(OcppStationWebSocketDisconnected, "cb-1", "disconnected cb-1", "");
+        digest.add(OcppStationWebSocketConnected, "cb-1", "connected cb-1", "");
+        digest.add(OcppStationWebSocketDisconnected, "cb-1", "disconnected cb-1", "");
+        digest.add(OcppStationWebSocketConnected, "cb-1", "connected cb-1", "");
+        digest.add(OcppStationWebSocketDisconnected, "cb-2", "disconnected cb-2", "");
+        digest.flush();
+
+        Assertions.assertEquals(1, mailService.subjects.size());
+        String body = mailService.bodies.get(0);
+        Assertions.assertFalse(body.contains("disconnected cb-1"));
+        Assertions.assertTrue(body.contains("disconnected cb-2"));
+        Assertions.assertTrue(body.contains("- cb-1: 2"));
+        Assertions.assertEquals(4, digest.getCancelledCount());
+    }
+
+    @Test
+    public void testConnectThenDisconnectIsSent() {
+        // Two mails, which should not wait for the rate limit
+        ReflectionTestUtils.setField(digest, "rateLimiter", RateLimiter.create(1000));
+
+        digest.add(OcppStationWebSocketConnected, "cb-1", "connected cb-1", "");
+        digest.add(OcppStationWebSocketDisconnected, "cb-1", "disconnected cb-1", "");
+        digest.flush();
+
+        Assertions.assertEquals(List.of("connected cb-1", "disconnected cb-1"), mailService.subjects);
+        Assertions.assertEquals(0, digest.getCancelledCount());
+    }
+
+    private static class RecordingMailService extends MailService {
+        private final List<String> subjects = new ArrayList<>();
+        private final List<String> bodies = new ArrayList<>();
+
+        @Override
+        public void send(String subject, String body) {
+            subjects.add(subject);
+            bodies.add(body);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.repository.TransactionEventRepository;
+import de.rwth.idsg.steve.repository.dto.TransactionEvent;
+import de.rwth.idsg.steve.repository.dto.TransactionEventType;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+public class TransactionEventServiceTest {
+
+    private static final int STEPS = 3;
+
+    private final InMemoryRepository repository = new InMemoryRepository();
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+
+    // "eventPk:step" of the side effects that ran, and of the ones that fail
+    private final List<String> calls = new ArrayList<>();
+    private final Set<String> failing = new HashSet<>();
+
+    private TransactionEventService service;
+
+    @BeforeEach
+    public void setUp() {
+        service = new TransactionEventService() {
+            @Override
+            List<Runnable> createSteps(TransactionEvent event) {
+                List<Runnable> steps = new ArrayList<>();
+                for (int i = 0; i < STEPS; i++) {
+                    String call = event.getEventPk() + ":" + i;
+                    steps.add(() -> {
+                        if (failing.contains(call)) {
+                            throw new IllegalStateException("failed " + call);
+                        }
+                        calls.add(call);
+                    });
+                }
+                return steps;
+            }
+        };
+        ReflectionTestUtils.setField(service, "transactionEventRepository", repository);
+        ReflectionTestUtils.setField(service, "executorService", executorService);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testHandlesAndDeletesEvents() {
+        repository.add(1, "cb1");
+        repository.add(2, "cb2");
+        repository.add(3, "cb1");
+
+        service.drain();
+
+        Assertions.assertEquals(List.of("1:0", "1:1", "1:2", "2:0", "2:1", "2:2", "3:0", "3:1", "3:2"), calls);
+        Assertions.assertTrue(repository.rows.isEmpty());
+        Assertions.assertEquals(3, service.getHandledCount());
+    }
+
+    @Test
+    public void testRetryContinuesWithFailedStep() {
+        repository.add(1, "cb1");
+        repository.add(2, "cb1");
+        repository.add(3, "cb2");
+        failing.add("1:1");
+
+        service.drain();
+
+        // the later event of the station waits, the other station is not affected
+        Assertions.assertEquals(List.of("1:0", "3:0", "3:1", "3:2"), calls);
+        Row row = repository.rows.get(1);
+        Assertions.assertEquals(1, row.progress);
+        Assertions.assertEquals(1, row.attempts);
+        Assertions.assertTrue(row.nextAttemptAt.isAfterNow());
+        Assertions.assertNull(row.claimedBy);
+        Assertions.assertEquals(1, service.getRetriedCount());
+
+        // not due yet
+        service.drain();
+        Assertions.assertEquals(4, calls.size());
+
+        failing.clear();
+        row.nextAttemptAt = DateTime.now();
+        service.drain();
+
+        Assertions.assertEquals(List.of("1:0", "3:0", "3:1", "3:2", "1:1", "1:2", "2:0", "2:1", "2:2"), calls);
+        Assertions.assertTrue(repository.rows.isEmpty());
+    }
+
+    @Test
+    public void testWaitingStationDoesNotHoldUpOthers() {
+        int waitingEvents = TransactionEventService.BATCH_SIZE + 10;
+        for (int i = 1; i <= waitingEvents; i++) {
+            repository.add(i, "cb1");
+        }
+        repository.add(waitingEvents + 1, "cb2");
+        repository.rows.get(1).attempts = 3;
+        repository.rows.get(1).nextAttemptAt = DateTime.now().plusMinutes(1);
+
+        service.drain();
+
+        Assertions.assertEquals(List.of(waitingEvents + 1 + ":0", waitingEvents + 1 + ":1", waitingEvents + 1 + ":2"),
+                calls);
+        Assertions.assertEquals(waitingEvents, repository.rows.size());
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        repository.add(1, "cb1");
+        failing.add("1:0");
+
+        for (int i = 0; i < TransactionEventService.MAX_ATTEMPTS + 2; i++) {
+            service.drain();
+            repository.rows.get(1).nextAttemptAt = DateTime.now();
+        }
+
+        // kept for inspection
+        Assertions.assertEquals(TransactionEventService.MAX_ATTEMPTS, repository.rows.get(1).attempts);
+        Assertions.assertEquals(TransactionEventService.MAX_ATTEMPTS - 1, service.getRetriedCount());
+        Assertions.assertEquals(1, service.getFailedCount());
+
+        // a given up event does not block the station
+        repository.add(2, "cb1");
+        service.drain();
+        Assertions.assertEquals(List.of("2:0", "2:1", "2:2"), calls);
+    }
+
+    @Test
+    public void testBackoff() {
+        Assertions.assertEquals(2, TransactionEventService.getBackoffInSeconds(1));
+        Assertions.assertEquals(256, TransactionEventService.getBackoffInSeconds(8));
+        Assertions.assertEquals(300, TransactionEventService.getBackoffInSeconds(9));
+        Assertions.assertEquals(300, TransactionEventService.getBackoffInSeconds(100));
+    }
+
+    @Test
+    public void testClaimOfOtherNodeIsRespected() {
+        repository.add(1, "cb1");
+        repository.add(2, "cb1");
+        repository.rows.get(1).claimedBy = "other";
+        repository.rows.get(1).claimedUntil = DateTime.now().plusMinutes(1);
+
+        service.drain();
+        Assertions.assertTrue(calls.isEmpty());
+
+        // the other node died, its claim expires
+        repository.rows.get(1).claimedUntil = DateTime.now().minusSeconds(1);
+        service.drain();
+        Assertions.assertEquals(List.of("1:0", "1:1", "1:2", "2:0", "2:1", "2:2"), calls);
+    }
+
+    @Test
+    public void testStopsWhenClaimIsLost() {
+        repository.add(1, "cb1");
+        // another node takes over while the first side effect runs
+        repository.onSaveProgress = row -> row.claimedBy = "other";
+
+        service.drain();
+
+        Assertions.assertEquals(List.of("1:0"), calls);
+        Row row = repository.rows.get(1);
+        Assertions.assertEquals("other", row.claimedBy);
+        Assertions.assertEquals(0, row.attempts);
+        Assertions.assertEquals(0, service.getRetriedCount());
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private static class Row {
+        private final int eventPk;
+        private final String chargeBoxId;
+        private int progress;
+        private int attempts;
+        private DateTime nextAttemptAt = DateTime.now();
+        private String claimedBy;
+        private DateTime claimedUntil;
+
+        private Row(int eventPk, String chargeBoxId) {
+            this.eventPk = eventPk;
+            this.chargeBoxId = chargeBoxId;
+        }
+    }
+
+    private interface RowCallback {
+        void accept(Row row);
+    }
+
+    /**
+     * Mirrors the conditions of the queries in TransactionEventRepositoryImpl
+     */
+    private static class InMemoryRepository implements TransactionEventRepository {
+
+        private final Map<Integer, Row> rows = new TreeMap<>();
+        private RowCallback onSaveProgress;
+
+        private void add(int eventPk, String chargeBoxId) {
+            rows.put(eventPk, new Row(eventPk, chargeBoxId));
+        }
+
+        @Override
+        public List<TransactionEvent> getDue(int maxAttempts, DateTime now, int limit) {
+            Set<String> stations = new HashSet<>();
+            List<TransactionEvent> events = new ArrayList<>();
+            for (Row row : rows.values()) {
+                if (row.attempts >= maxAttempts || !stations.add(row.chargeBoxId)) {
+                    // given up, or not the oldest event of the station
+                    continue;
+                }
+                boolean due = !row.nextAttemptAt.isAfter(now);
+                boolean claimed = row.claimedUntil != null && !row.claimedUntil.isBefore(now);
+                if (due && !claimed && events.size() < limit) {
+                    events.add(TransactionEvent.builder()
+                                               .eventPk(row.eventPk)
+                                               .type(TransactionEventType.START)
+                                               .chargeBoxId(row.chargeBoxId)
+                                               .transactionId(row.eventPk)
+                                               .payload("{}")
+                                               .progress(row.progress)
+                                               .attempts(row.attempts)
+                                               .nextAttemptAt(row.nextAttemptAt)
+                                               .build());
+                }
+            }
+            return events;
+        }
+
+        @Override
+        public boolean claim(int eventPk, String owner, DateTime now, DateTime claimedUntil) {
+            Row row = rows.get(eventPk);
+            if (row == null || (row.claimedUntil != null && !row.claimedUntil.isBefore(now))) {
+                return false;
+            }
+            row.claimedBy = owner;
+            row.claimedUntil = claimedUntil;
+            return true;
+        }
+
+        @Override
+        public boolean renewClaim(int eventPk, String owner, DateTime claimedUntil) {
+            Row row = getClaimed(eventPk, owner);
+            if (row == null) {
+                return false;
+            }
+            row.claimedUntil = claimedUntil;
+            return true;
+        }
+
+        @Override
+        public boolean saveProgress(int eventPk, String owner, int progress, DateTime claimedUntil) {
+            if (onSaveProgress != null) {
+                onSaveProgress.accept(rows.get(eventPk));
+            }
+            Row row = getClaimed(eventPk, owner);
+            if (row == null) {
+                return false;
+            }
+            row.progress = progress;
+            row.claimedUntil = claimedUntil;
+            return true;
+        }
+
+        @Override
+        public void reschedule(int eventPk, String owner, int progress, int attempts, DateTime nextAttemptAt) {
+            Row row = getClaimed(eventPk, owner);
+            if (row != null) {
+                row.progress = progress;
+                row.attempts = attempts;
+                row.nextAttemptAt = nextAttemptAt;
+                row.claimedBy = null;
+                row.claimedUntil = null;
+            }
+        }
+
+        @Override
+        public void delete(int eventPk, String owner) {
+            if (getClaimed(eventPk, owner) != null) {
+                rows.remove(eventPk);
+            }
+        }
+
+        private Row getClaimed(int eventPk, String owner) {
+            Row row = rows.get(eventPk);
+            return row != null && owner.equals(row.claimedBy) ? row : null;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.simulator;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CALL latencies per action as HDR histograms (in microseconds), and the errors, timeouts and connection events.
+ * Recording does not block, reporting is done by a single thread.
+ */
+public class CallStats {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<String, ActionStats> actions = new ConcurrentHashMap<>();
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder connectFailures = new LongAdder();
+    private final LongAdder disconnects = new LongAdder();
+
+    private final long startMillis = System.currentTimeMillis();
+    @Nullable private final HistogramLogWriter logWriter;
+
+    public CallStats(@Nullable HistogramLogWriter logWriter) {
+        this.logWriter = logWriter;
+        if (logWriter != null) {
+            logWriter.outputLogFormatVersion();
+            logWriter.outputStartTime(startMillis);
+            logWriter.setBaseTime(startMillis);
+            logWriter.outputLegend();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Recording
+    // -------------------------------------------------------------------------
+
+    public void recordLatency(String action, long nanos) {
+        get(action).recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordError(String action) {
+        get(action).errors.increment();
+    }
+
+    public void recordTimeout(String action) {
+        get(action).timeouts.increment();
+    }
+
+    public void connected() {
+        openConnections.incrementAndGet();
+        connects.increment();
+    }
+
+    public void connectFailed() {
+        connectFailures.increment();
+    }
+
+    public void disconnected() {
+        openConnections.decrementAndGet();
+        disconnects.increment();
+    }
+
+    // -------------------------------------------------------------------------
+    // Reporting
+    // -------------------------------------------------------------------------
+
+    /**
+     * Prints the numbers since the last interval report, and adds them to the totals
+     */
+    public synchronized void reportInterval(PrintStream out) {
+        long seconds = (System.currentTimeMillis() - startMillis) / 1000;
+        out.printf("[%5ds] open=%d connects=+%d failed=+%d disconnects=+%d%n",
+                seconds, openConnections.get(), connects.sumThenReset(), connectFailures.sumThenReset(),
+                disconnects.sumThenReset());
+
+        printHeader(out);
+        for (Map.Entry<String, ActionStats> entry : new TreeMap<>(actions).entrySet()) {
+            ActionStats stats = entry.getValue();
+            stats.interval = stats.recorder.getIntervalHistogram(stats.interval);
+            stats.total.add(stats.interval);
+
+            long errors = stats.errors.sumThenReset();
+            long timeouts = stats.timeouts.sumThenReset();
+            stats.totalErrors += errors;
+            stats.totalTimeouts += timeouts;
+
+            printRow(out, entry.getKey(), stats.interval, errors, timeouts);
+
+            if (logWriter != null && stats.interval.getTotalCount() > 0) {
+                stats.interval.setTag(entry.getKey());
+                logWriter.outputIntervalHistogram(stats.interval);
+            }
+        }
+        out.println();
+    }
+
+    /**
+     * Prints the numbers since the start. Call after a last interval report, so that nothing is missing.
+     */
+    public synchronized void reportTotal(PrintStream out) {
+        long seconds = (System.currentTimeMillis() - startMillis) / 1000;
+        out.printf("Total after %ds%n", seconds);
+
+        printHeader(out);
+        for (Map.Entry<String, ActionStats> entry : new TreeMap<>(actions).entrySet()) {
+            ActionStats stats = entry.getValue();
+            printRow(out, entry.getKey(), stats.total, stats.totalErrors, stats.totalTimeouts);
+        }
+        out.println();
+    }
+
+    private ActionStats get(String action) {
+        return actions.computeIfAbsent(action, k -> new ActionStats());
+    }
+
+    private static void printHeader(PrintStream out) {
+        out.printf("%-26s %9s %8s %8s %9s %9s %9s %9s %9s %9s%n",
+                "action (latency in ms)", "calls", "errors", "timeouts", "error %", "p50", "p90", "p99", "p99.9", "max");
+    }
+
+    private static void printRow(PrintStream out, String action, Histogram histogram, long errors, long timeouts) {
+        long calls = histogram.getTotalCount() + errors + timeouts;
+        double errorRate = calls == 0 ? 0 : 100.0 * (errors + timeouts) / calls;
+
+        out.printf("%-26s %9d %8d %8d %9.3f", action, calls, errors, timeouts, errorRate);
+        for (double percentile : PERCENTILES) {
+            out.printf(" %9.2f", histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        out.printf(" %9.2f%n", histogram.getMaxValue() / 1000.0);
+    }
+
+    private static class ActionStats {
+        // auto-resizing, with 3 significant digits
+        private final Recorder recorder = new Recorder(3);
+        private final Histogram total = new Histogram(3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+
+        // only accessed by the reporting thread
+        private Histogram interval;
+        private long totalErrors;
+        private long totalTimeouts;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.simulator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.HistogramLogWriter;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a fleet of virtual OCPP-J 1.6 stations against a running SteVe, to find out how much hardware a fleet of a
+ * given size needs. Unlike the stress tests, it does not start SteVe itself: start it separately, with the profile
+ * and database that are to be measured, and with auto registration of unknown stations enabled (or the stations
+ * "SIM-0" ... added).
+ *
+ * The stations do not have threads of their own, but share one WebSocket client and one scheduler, so that tens of
+ * thousands of them fit into one JVM. For that many connections, the limit of open files of the OS needs to be
+ * raised (ulimit -n), and the ephemeral ports of a single client IP run out at around 28k connections per target.
+ *
+ * Configured with system properties, see {@link FleetSimulatorConfig}. Prints the CALL latency percentiles and error
+ * rates per action in every report interval, and the totals at the end.
+ */
+@Slf4j
+public class FleetSimulator {
+
+    private final FleetSimulatorConfig config;
+
+    public FleetSimulator(FleetSimulatorConfig config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new FleetSimulator(FleetSimulatorConfig.fromSystemProperties()).run();
+    }
+
+    public void run() throws Exception {
+        log.info("Simulating {} stations with {} connectors each against {} for {}s",
+                config.getStations(), config.getConnectorsPerStation(), config.getPath(), config.getDurationSeconds());
+
+        HistogramLogWriter logWriter = createLogWriter();
+        CallStats stats = new CallStats(logWriter);
+
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(config.getThreads());
+        // every call has a timeout task, which is cancelled in the normal case
+        scheduler.setRemoveOnCancelPolicy(true);
+
+        // by default, only 64 upgrade requests would be in flight and 1024 queued, which is not much of a boot storm
+        HttpClient httpClient = new HttpClient();
+        httpClient.setMaxConnectionsPerDestination(config.getStations());
+        httpClient.setMaxRequestsQueuedPerDestination(config.getStations());
+
+        WebSocketClient client = new WebSocketClient(httpClient);
+        int longestIntervalSeconds = Math.max(config.getHeartbeatIntervalSeconds(), config.getMeterValueIntervalSeconds());
+        client.setIdleTimeout(Duration.ofSeconds(2L * longestIntervalSeconds));
+
+        List<SimulatedStation> stations = new ArrayList<>(config.getStations());
+        try {
+            httpClient.start();
+            client.start();
+
+            long bootStormMillis = TimeUnit.SECONDS.toMillis(config.getBootStormSeconds());
+            for (int i = 0; i < config.getStations(); i++) {
+                SimulatedStation station = new SimulatedStation(config.getChargeBoxIdPrefix() + i, config, client,
+                        scheduler, stats);
+                stations.add(station);
+                station.start(bootStormMillis * i / config.getStations());
+            }
+
+            if (config.getOutageAtSeconds() >= 0) {
+                scheduler.schedule(() -> {
+                    log.info("Outage: all stations lose their connection");
+                    stations.forEach(SimulatedStation::disconnect);
+                }, config.getOutageAtSeconds(), TimeUnit.SECONDS);
+            }
+
+            scheduler.scheduleAtFixedRate(() -> stats.reportInterval(System.out),
+                    config.getReportIntervalSeconds(), config.getReportIntervalSeconds(), TimeUnit.SECONDS);
+
+            Thread.sleep(TimeUnit.SECONDS.toMillis(config.getDurationSeconds()));
+
+        } finally {
+            log.info("Stopping");
+            for (SimulatedStation station : stations) {
+                try {
+                    station.stop();
+                } catch (Exception e) {
+                    log.warn("Failed to close a station", e);
+                }
+            }
+
+            scheduler.shutdownNow();
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            client.stop();
+            httpClient.stop();
+
+            stats.reportInterval(System.out);
+            stats.reportTotal(System.out);
+            if (logWriter != null) {
+                logWriter.close();
+            }
+        }
+    }
+
+    private HistogramLogWriter createLogWriter() throws FileNotFoundException {
+        String file = config.getHistogramLogFile();
+        if (file == null || file.isEmpty()) {
+            return null;
+        }
+        log.info("Writing the interval histograms to {}", file);
+        return new HistogramLogWriter(new File(file));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.simulator;
+
+import de.rwth.idsg.steve.utils.Helpers;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Everything can be overridden with a system property "fleet.<field name>", e.g. -Dfleet.stations=20000
+ */
+@Getter
+@Builder
+public class FleetSimulatorConfig {
+
+    // OCPP-J endpoint, followed by the charge box id
+    private final String path;
+    private final String chargeBoxIdPrefix;
+    private final int stations;
+    private final int connectorsPerStation;
+    private final int durationSeconds;
+
+    // -------------------------------------------------------------------------
+    // Boot storm: the stations connect and boot evenly spread over this window, 0 for all at once
+    // -------------------------------------------------------------------------
+
+    private final int bootStormSeconds;
+
+    // -------------------------------------------------------------------------
+    // Rates
+    // -------------------------------------------------------------------------
+
+    // unless the BootNotificationResponse says otherwise
+    private final int heartbeatIntervalSeconds;
+    // while charging
+    private final int meterValueIntervalSeconds;
+
+    // -------------------------------------------------------------------------
+    // Transaction mix, per connector
+    // -------------------------------------------------------------------------
+
+    private final double transactionsPerHour;
+    // mean, the durations are exponentially distributed
+    private final double transactionMinutes;
+    // share of the transactions that are authorized before, the others use a cached id tag
+    private final double authorizeShare;
+    private final double minPowerInKw;
+    private final double maxPowerInKw;
+    private final String idTag;
+
+    // -------------------------------------------------------------------------
+    // Reconnect patterns
+    // -------------------------------------------------------------------------
+
+    // per station, e.g. flaky mobile connections
+    private final double disconnectsPerHour;
+    // a station waits a random time up to this before it reconnects
+    private final int reconnectDelaySeconds;
+    // share of the reconnects after which the station boots, as if it had lost power
+    private final double rebootShare;
+    // all stations lose their connection at once (e.g. the load balancer restarts), -1 for never
+    private final int outageAtSeconds;
+
+    // -------------------------------------------------------------------------
+    // Measurement
+    // -------------------------------------------------------------------------
+
+    private final int callTimeoutSeconds;
+    private final int reportIntervalSeconds;
+    // interval histograms per action, for HdrHistogram's log analyzers. empty for none
+    private final String histogramLogFile;
+    private final int threads;
+
+    public static FleetSimulatorConfig fromSystemProperties() {
+        return FleetSimulatorConfig.builder()
+                .path(path())
+                .chargeBoxIdPrefix(string("chargeBoxIdPrefix", "SIM-"))
+                .stations(integer("stations", 1_000))
+                .connectorsPerStation(integer("connectorsPerStation", 2))
+                .durationSeconds(integer("durationSeconds", 600))
+                .bootStormSeconds(integer("bootStormSeconds", 60))
+                .heartbeatIntervalSeconds(integer("heartbeatIntervalSeconds", 300))
+                .meterValueIntervalSeconds(integer("meterValueIntervalSeconds", 60))
+                .transactionsPerHour(decimal("transactionsPerHour", 0.5))
+                .transactionMinutes(decimal("transactionMinutes", 45))
+                .authorizeShare(decimal("authorizeShare", 0.5))
+                .minPowerInKw(decimal("minPowerInKw", 3.7))
+                .maxPowerInKw(decimal("maxPowerInKw", 22))
+                .idTag(string("idTag", "SIM-TAG"))
+                .disconnectsPerHour(decimal("disconnectsPerHour", 0.1))
+                .reconnectDelaySeconds(integer("reconnectDelaySeconds", 30))
+                .rebootShare(decimal("rebootShare", 0.2))
+                .outageAtSeconds(integer("outageAtSeconds", -1))
+                .callTimeoutSeconds(integer("callTimeoutSeconds", 30))
+                .reportIntervalSeconds(integer("reportIntervalSeconds", 10))
+                .histogramLogFile(string("histogramLogFile", "target/fleet-simulator.hlog"))
+                .threads(integer("threads", Runtime.getRuntime().availableProcessors()))
+                .build();
+    }
+
+    /**
+     * The local SteVe, as configured in main.properties of the active profile
+     */
+    private static String path() {
+        String path = System.getProperty("fleet.path");
+        return path == null ? Helpers.getJsonPath() : path;
+    }
+
+    private static String string(String name, String defaultValue) {
+        return System.getProperty("fleet." + name, defaultValue);
+    }
+
+    private static int integer(String name, int defaultValue) {
+        return Integer.parseInt(string(name, Integer.toString(defaultValue)));
+    }
+
+    private static double decimal(String name, double defaultValue) {
+        return Double.parseDouble(string(name, Double.toString(defaultValue)));
+    }
+}
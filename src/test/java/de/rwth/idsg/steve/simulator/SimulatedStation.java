@@ -0,0 +1,481 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.simulator;
+
+import de.rwth.idsg.ocpp.jaxb.RequestType;
+import de.rwth.idsg.ocpp.jaxb.ResponseType;
+import de.rwth.idsg.steve.ocpp.OcppVersion;
+import de.rwth.idsg.steve.utils.OcppJsonChargePoint;
+import ocpp.cs._2015._10.AuthorizeRequest;
+import ocpp.cs._2015._10.AuthorizeResponse;
+import ocpp.cs._2015._10.BootNotificationRequest;
+import ocpp.cs._2015._10.BootNotificationResponse;
+import ocpp.cs._2015._10.ChargePointErrorCode;
+import ocpp.cs._2015._10.ChargePointStatus;
+import ocpp.cs._2015._10.HeartbeatRequest;
+import ocpp.cs._2015._10.HeartbeatResponse;
+import ocpp.cs._2015._10.Measurand;
+import ocpp.cs._2015._10.MeterValue;
+import ocpp.cs._2015._10.MeterValuesRequest;
+import ocpp.cs._2015._10.MeterValuesResponse;
+import ocpp.cs._2015._10.Phase;
+import ocpp.cs._2015._10.ReadingContext;
+import ocpp.cs._2015._10.Reason;
+import ocpp.cs._2015._10.RegistrationStatus;
+import ocpp.cs._2015._10.SampledValue;
+import ocpp.cs._2015._10.StartTransactionRequest;
+import ocpp.cs._2015._10.StartTransactionResponse;
+import ocpp.cs._2015._10.StatusNotificationRequest;
+import ocpp.cs._2015._10.StatusNotificationResponse;
+import ocpp.cs._2015._10.StopTransactionRequest;
+import ocpp.cs._2015._10.StopTransactionResponse;
+import ocpp.cs._2015._10.UnitOfMeasure;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.joda.time.DateTime;
+
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A virtual OCPP 1.6 station. It does not own a thread: everything it does is scheduled on the shared executor, and
+ * the responses arrive on the threads of the shared WebSocket client. The state is guarded by the station itself.
+ *
+ * Every connection has a number, so that the timers of a closed connection stop as soon as they fire.
+ */
+public class SimulatedStation {
+
+    private static final double VOLTAGE = 230;
+    private static final int PHASES = 3;
+
+    private final String chargeBoxId;
+    private final FleetSimulatorConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final CallStats stats;
+    private final OcppJsonChargePoint chargePoint;
+
+    // index 0 is the station itself
+    private final Connector[] connectors;
+
+    private volatile boolean running = true;
+    private int connection;
+    private int heartbeatIntervalSeconds;
+
+    public SimulatedStation(String chargeBoxId, FleetSimulatorConfig config, WebSocketClient client,
+                            ScheduledExecutorService scheduler, CallStats stats) {
+        this.chargeBoxId = chargeBoxId;
+        this.config = config;
+        this.scheduler = scheduler;
+        this.stats = stats;
+        this.chargePoint = new OcppJsonChargePoint(OcppVersion.V_16, chargeBoxId, config.getPath(), client);
+        this.chargePoint.setCloseListener(this::onClose);
+        this.heartbeatIntervalSeconds = config.getHeartbeatIntervalSeconds();
+
+        this.connectors = new Connector[config.getConnectorsPerStation() + 1];
+        for (int i = 0; i < connectors.length; i++) {
+            connectors[i] = new Connector(i);
+        }
+    }
+
+    public void start(long delayMillis) {
+        scheduler.schedule(() -> connect(true), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops the connection without a close handshake. The station reconnects like after any other loss.
+     */
+    public void disconnect() {
+        chargePoint.disconnect();
+    }
+
+    public void stop() {
+        running = false;
+        if (chargePoint.isOpen()) {
+            chargePoint.close();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Connection
+    // -------------------------------------------------------------------------
+
+    private void connect(boolean boot) {
+        if (!running) {
+            return;
+        }
+
+        chargePoint.connect().whenComplete((session, t) -> {
+            if (t != null) {
+                stats.connectFailed();
+                scheduleReconnect();
+            } else {
+                stats.connected();
+                onConnected(boot);
+            }
+        });
+    }
+
+    private synchronized void onConnected(boolean boot) {
+        int current = ++connection;
+        if (boot) {
+            bootNotification(current);
+        } else {
+            // a station that only lost its connection reports its state and carries on
+            startConnection(current);
+        }
+        scheduleRandomDisconnect(current);
+    }
+
+    private void onClose() {
+        stats.disconnected();
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        if (!running) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = random.nextLong(1000, config.getReconnectDelaySeconds() * 1000L + 1001);
+        boolean boot = random.nextDouble() < config.getRebootShare();
+        scheduler.schedule(() -> connect(boot), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleRandomDisconnect(int current) {
+        if (config.getDisconnectsPerHour() <= 0) {
+            return;
+        }
+        long delay = exponentialMillis(TimeUnit.HOURS.toMillis(1) / config.getDisconnectsPerHour());
+        schedule(current, delay, this::disconnect);
+    }
+
+    // -------------------------------------------------------------------------
+    // Boot, heartbeats and status
+    // -------------------------------------------------------------------------
+
+    private void bootNotification(int current) {
+        BootNotificationRequest request = new BootNotificationRequest()
+                .withChargePointVendor("SteVe")
+                .withChargePointModel("FleetSimulator")
+                .withChargePointSerialNumber(chargeBoxId)
+                .withFirmwareVersion("1.0.0");
+
+        call(request, BootNotificationResponse.class,
+                response -> schedule(current, 0, () -> {
+                    if (response.getInterval() > 0) {
+                        heartbeatIntervalSeconds = response.getInterval();
+                    }
+                    if (response.getStatus() == RegistrationStatus.ACCEPTED) {
+                        // a rebooted station has forgotten its transactions
+                        for (Connector connector : connectors) {
+                            connector.reset();
+                        }
+                        startConnection(current);
+                    } else {
+                        // pending or rejected: try again after the interval
+                        schedule(current, TimeUnit.SECONDS.toMillis(heartbeatIntervalSeconds), () -> bootNotification(current));
+                    }
+                }),
+                () -> schedule(current, TimeUnit.SECONDS.toMillis(config.getReconnectDelaySeconds()),
+                        () -> bootNotification(current))
+        );
+    }
+
+    private void startConnection(int current) {
+        for (Connector connector : connectors) {
+            statusNotification(connector);
+            if (connector.id > 0) {
+                connector.resume(current);
+            }
+        }
+        scheduleHeartbeat(current);
+    }
+
+    private void scheduleHeartbeat(int current) {
+        schedule(current, TimeUnit.SECONDS.toMillis(heartbeatIntervalSeconds), () -> {
+            call(new HeartbeatRequest(), HeartbeatResponse.class, null);
+            scheduleHeartbeat(current);
+        });
+    }
+
+    private void statusNotification(Connector connector) {
+        StatusNotificationRequest request = new StatusNotificationRequest()
+                .withConnectorId(connector.id)
+                .withErrorCode(ChargePointErrorCode.NO_ERROR)
+                .withStatus(connector.status)
+                .withTimestamp(DateTime.now());
+
+        call(request, StatusNotificationResponse.class, null);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Sends the call and records its latency, error or timeout. The response handler is only called for results
+     * that arrive in time.
+     */
+    private <T extends ResponseType> void call(RequestType request, Class<T> responseClass,
+                                               Consumer<T> responseHandler) {
+        call(request, responseClass, responseHandler, null);
+    }
+
+    /**
+     * @param failureHandler called after an error or timeout
+     */
+    private <T extends ResponseType> void call(RequestType request, Class<T> responseClass,
+                                               Consumer<T> responseHandler, Runnable failureHandler) {
+        String action = getAction(request);
+        long start = System.nanoTime();
+        AtomicBoolean done = new AtomicBoolean();
+
+        ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+            if (done.compareAndSet(false, true)) {
+                stats.recordTimeout(action);
+                if (failureHandler != null) {
+                    failureHandler.run();
+                }
+            }
+        }, config.getCallTimeoutSeconds(), TimeUnit.SECONDS);
+
+        chargePoint.send(request, responseClass,
+                response -> {
+                    if (done.compareAndSet(false, true)) {
+                        timeout.cancel(false);
+                        stats.recordLatency(action, System.nanoTime() - start);
+                        if (responseHandler != null) {
+                            responseHandler.accept(response);
+                        }
+                    }
+                },
+                error -> {
+                    if (done.compareAndSet(false, true)) {
+                        timeout.cancel(false);
+                        stats.recordError(action);
+                        if (failureHandler != null) {
+                            failureHandler.run();
+                        }
+                    }
+                }
+        );
+    }
+
+    /**
+     * Runs the task, unless the connection it was scheduled for is gone by then
+     */
+    private void schedule(int current, long delayMillis, Runnable task) {
+        scheduler.schedule(() -> {
+            synchronized (this) {
+                if (!running || current != connection || !chargePoint.isOpen()) {
+                    return;
+                }
+                task.run();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static long exponentialMillis(double meanMillis) {
+        return (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanMillis);
+    }
+
+    private static String getAction(RequestType request) {
+        String s = request.getClass().getSimpleName();
+        return s.substring(0, s.length() - "Request".length());
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    // -------------------------------------------------------------------------
+    // Transactions
+    // -------------------------------------------------------------------------
+
+    private class Connector {
+        private final int id;
+
+        private ChargePointStatus status = ChargePointStatus.AVAILABLE;
+        private Integer transactionId;
+        private double powerInW;
+        private double energyInWh = ThreadLocalRandom.current().nextInt(0, 10_000_000);
+        private long lastSampleMillis;
+
+        private Connector(int id) {
+            this.id = id;
+        }
+
+        private void reset() {
+            status = ChargePointStatus.AVAILABLE;
+            transactionId = null;
+        }
+
+        /**
+         * The timers of the previous connection are gone, so they are set up again for the state of the connector
+         */
+        private void resume(int current) {
+            scheduleArrival(current);
+
+            if (transactionId != null) {
+                scheduleMeterValues(current);
+                scheduleStop(current);
+            } else if (status != ChargePointStatus.AVAILABLE) {
+                // whatever was in progress did not survive the connection loss
+                schedule(current, 0, this::available);
+            }
+        }
+
+        /**
+         * The next vehicle arrives after an exponentially distributed time
+         */
+        private void scheduleArrival(int current) {
+            if (config.getTransactionsPerHour() <= 0) {
+                return;
+            }
+            long delay = exponentialMillis(TimeUnit.HOURS.toMillis(1) / config.getTransactionsPerHour());
+            schedule(current, delay, () -> {
+                if (status == ChargePointStatus.AVAILABLE) {
+                    arrive(current);
+                }
+                scheduleArrival(current);
+            });
+        }
+
+        private void arrive(int current) {
+            status = ChargePointStatus.PREPARING;
+            statusNotification(this);
+
+            if (ThreadLocalRandom.current().nextDouble() < config.getAuthorizeShare()) {
+                call(new AuthorizeRequest().withIdTag(config.getIdTag()), AuthorizeResponse.class,
+                        response -> schedule(current, 0, () -> startTransaction(current)),
+                        () -> schedule(current, 0, this::available));
+            } else {
+                startTransaction(current);
+            }
+        }
+
+        private void startTransaction(int current) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            powerInW = 1000 * (config.getMinPowerInKw()
+                    + random.nextDouble() * (config.getMaxPowerInKw() - config.getMinPowerInKw()));
+            lastSampleMillis = System.currentTimeMillis();
+
+            StartTransactionRequest request = new StartTransactionRequest()
+                    .withConnectorId(id)
+                    .withIdTag(config.getIdTag())
+                    .withMeterStart((int) energyInWh)
+                    .withTimestamp(DateTime.now());
+
+            call(request, StartTransactionResponse.class,
+                    response -> schedule(current, 0, () -> {
+                        transactionId = response.getTransactionId();
+                        status = ChargePointStatus.CHARGING;
+                        statusNotification(this);
+                        scheduleMeterValues(current);
+                        scheduleStop(current);
+                    }),
+                    () -> schedule(current, 0, this::available)
+            );
+        }
+
+        private void scheduleStop(int current) {
+            long duration = exponentialMillis(TimeUnit.MINUTES.toMillis(1) * config.getTransactionMinutes());
+            schedule(current, duration, () -> stopTransaction(current));
+        }
+
+        private void available() {
+            status = ChargePointStatus.AVAILABLE;
+            statusNotification(this);
+        }
+
+        private void scheduleMeterValues(int current) {
+            schedule(current, TimeUnit.SECONDS.toMillis(config.getMeterValueIntervalSeconds()), () -> {
+                if (transactionId == null) {
+                    return;
+                }
+                meterValues();
+                scheduleMeterValues(current);
+            });
+        }
+
+        private void meterValues() {
+            long now = System.currentTimeMillis();
+            energyInWh += powerInW * (now - lastSampleMillis) / TimeUnit.HOURS.toMillis(1);
+            lastSampleMillis = now;
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            double current = powerInW / (PHASES * VOLTAGE);
+
+            MeterValue meterValue = new MeterValue()
+                    .withTimestamp(new DateTime(now))
+                    .withSampledValue(
+                            sample(Measurand.CURRENT_IMPORT, Phase.L_1, format(current), UnitOfMeasure.A),
+                            sample(Measurand.CURRENT_IMPORT, Phase.L_2, format(current), UnitOfMeasure.A),
+                            sample(Measurand.CURRENT_IMPORT, Phase.L_3, format(current), UnitOfMeasure.A),
+                            sample(Measurand.VOLTAGE, Phase.L_1_N, format(VOLTAGE + random.nextDouble(-3, 3)), UnitOfMeasure.V),
+                            sample(Measurand.VOLTAGE, Phase.L_2_N, format(VOLTAGE + random.nextDouble(-3, 3)), UnitOfMeasure.V),
+                            sample(Measurand.VOLTAGE, Phase.L_3_N, format(VOLTAGE + random.nextDouble(-3, 3)), UnitOfMeasure.V),
+                            sample(Measurand.POWER_ACTIVE_IMPORT, null, Long.toString(Math.round(powerInW)), UnitOfMeasure.W),
+                            sample(Measurand.ENERGY_ACTIVE_IMPORT_REGISTER, null, Long.toString((long) energyInWh), UnitOfMeasure.WH)
+                    );
+
+            MeterValuesRequest request = new MeterValuesRequest()
+                    .withConnectorId(id)
+                    .withTransactionId(transactionId)
+                    .withMeterValue(meterValue);
+
+            call(request, MeterValuesResponse.class, null);
+        }
+
+        private void stopTransaction(int current) {
+            if (transactionId == null) {
+                return;
+            }
+            meterValues();
+
+            StopTransactionRequest request = new StopTransactionRequest()
+                    .withTransactionId(transactionId)
+                    .withIdTag(config.getIdTag())
+                    .withMeterStop((int) energyInWh)
+                    .withReason(Reason.LOCAL)
+                    .withTimestamp(DateTime.now());
+
+            transactionId = null;
+            status = ChargePointStatus.FINISHING;
+            call(request, StopTransactionResponse.class, null);
+            statusNotification(this);
+
+            // the driver unplugs a bit later
+            schedule(current, TimeUnit.SECONDS.toMillis(30), this::available);
+        }
+
+        private SampledValue sample(Measurand measurand, Phase phase, String value, UnitOfMeasure unit) {
+            return new SampledValue()
+                    .withMeasurand(measurand)
+                    .withPhase(phase)
+                    .withValue(value)
+                    .withUnit(unit)
+                    .withContext(ReadingContext.SAMPLE_PERIODIC);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/RWTH-i5-IDSG/steve
+ * Copyright (C) 2013-2022 RWTH Aachen University - Information Systems - Intelligent Distributed Systems Group (IDSG).
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.utils;
+
+import de.rwth.idsg.steve.web.dto.LogPage;
+import org.joda.time.LocalDateTime;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class LogFileIndexTest {
+
+    private static final LocalDateTime START = new LocalDateTime(2026, 10, 19, 0, 0, 0);
+    private static final int LINES = 20_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testPagesFromTheEnd() throws IOException {
+        LogFileIndex index = createIndex();
+
+        LogPage last = index.backward(Long.MAX_VALUE, null);
+        Assertions.assertFalse(last.isNewerAvailable());
+        Assertions.assertTrue(last.getLines().get(last.getLines().size() - 1).endsWith("line " + (LINES - 1)));
+
+        // the older page ends where the last one starts
+        LogPage older = index.backward(last.getStartOffset(), null);
+        Assertions.assertEquals(last.getStartOffset(), older.getEndOffset());
+        String lastOfOlder = older.getLines().get(older.getLines().size() - 1);
+        String firstOfLast = last.getLines().get(0);
+        Assertions.assertEquals(lineNumber(lastOfOlder) + 1, lineNumber(firstOfLast));
+    }
+
+    @Test
+    public void testLinesOfStation() throws IOException {
+        LogFileIndex index = createIndex();
+
+        LogPage first = index.forward(0, "CB7", null, null);
+        Assertions.assertEquals(400, first.getLines().size());
+        Assertions.assertTrue(first.getLines().stream().allMatch(line -> line.contains("[chargeBoxId=CB7,")));
+        Assertions.assertFalse(first.isNewerAvailable());
+
+        // appended lines are found, before and after they are indexed
+        try (BufferedWriter writer = Files.newBufferedWriter(index.getPath(), StandardOpenOption.APPEND)) {
+            writer.write(line(START.plusDays(1), "CB7", LINES));
+        }
+        Assertions.assertEquals(401, index.backward(Long.MAX_VALUE, "CB7").getLines().size());
+        index.update();
+        Assertions.assertEquals(401, index.backward(Long.MAX_VALUE, "CB7").getLines().size());
+        Assertions.assertTrue(index.backward(Long.MAX_VALUE, "CB70").getLines().isEmpty());
+    }
+
+    @Test
+    public void testTimeRange() throws IOException {
+        LogFileIndex index = createIndex();
+
+        LogPage page = index.forward(0, null, START.plusSeconds(10_000), START.plusSeconds(10_009));
+
+        // 10 lines and the stack trace after the first one
+        Assertions.assertEquals(12, page.getLines().size());
+        Assertions.assertEquals(10_000, lineNumber(page.getLines().get(0)));
+        Assertions.assertEquals(10_009, lineNumber(page.getLines().get(11)));
+    }
+
+    @Test
+    public void testTimeRangeFromTheEnd() throws IOException {
+        LogFileIndex index = createIndex();
+        LocalDateTime from = START.plusSeconds(10_000);
+        LocalDateTime to = START.plusSeconds(10_009);
+
+        LogPage page = index.backward(Long.MAX_VALUE, null, from, to);
+        Assertions.assertFalse(page.isNewerAvailable());
+
+        // the older pages stop at the beginning of the range
+        int lines = page.getLines().size();
+        while (page.isOlderAvailable()) {
+            page = index.backward(page.getStartOffset(), null, from, to);
+            lines += page.getLines().size();
+        }
+        Assertions.assertEquals(12, lines);
+    }
+
+    @Test
+    public void testPagesBeforeIndexing() throws IOException {
+        LogFileIndex index = new LogFileIndex(createIndex().getPath());
+
+        Assertions.assertEquals(400, index.forward(0, "CB7", null, null).getLines().size());
+        Assertions.assertEquals(400, index.backward(Long.MAX_VALUE, "CB7").getLines().size());
+        LogPage last = index.backward(Long.MAX_VALUE, null);
+        Assertions.assertTrue(last.getLines().get(last.getLines().size() - 1).endsWith("line " + (LINES - 1)));
+    }
+
+    @Test
+    public void testRollover() throws IOException {
+        LogFileIndex index = createIndex();
+
+        Files.delete(index.getPath());
+        try (BufferedWriter writer = Files.newBufferedWriter(index.getPath())) {
+            writer.write(line(START, "CB1", 0));
+        }
+        index.update();
+
+        Assertions.assertEquals(1, index.backward(Long.MAX_VALUE, "CB1").getLines().size());
+        Assertions.assertTrue(index.backward(Long.MAX_VALUE, "CB7").getLines().isEmpty());
+    }
+
+    private LogFileIndex createIndex() throws IOException {
+        Path path = dir.resolve("steve.log");
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            for (int i = 0; i < LINES; i++) {
+                writer.write(line(START.plusSeconds(i), "CB" + (i % 50), i));
+                if (i % 1000 == 0) {
+                    writer.write("java.lang.IllegalStateException: without timestamp\n\tat de.rwth.idsg.steve.Foo\n");
+                }
+            }
+        }
+
+        LogFileIndex index = new LogFileIndex(path);
+        index.update();
+        return index;
+    }
+
+    private static String line(LocalDateTime time, String chargeBoxId, int number) {
+        return "[INFO ] " + time.toString("yyyy-MM-dd HH:mm:ss,SSS") + " de.rwth.idsg.steve.ocpp.ws.WebSocketLogger - "
+                + "[chargeBoxId=" + chargeBoxId + ", sessionId=1] Received: line " + number + "\n";
+    }
+
+    private static int lineNumber(String line) {
+        return Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1));
+    }
+}
@@ -38,6 +38,7 @@ import de.rwth.idsg.steve.ocpp.ws.pipeline.Serializer;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketError;
@@ -49,11 +50,12 @@ import org.eclipse.jetty.websocket.client.WebSocketClient;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 /**
@@ -70,22 +72,40 @@ public class OcppJsonChargePoint {
     private final Map<String, ResponseContext> responseContextMap;
     private final ResponseDeserializer deserializer;
     private final WebSocketClient client;
+    private final boolean sharedClient;
     private final CountDownLatch closeHappenedSignal;
 
-    private CountDownLatch receivedResponsesSignal;
-    private Session session;
+    private volatile CountDownLatch receivedResponsesSignal;
+    private volatile Session session;
+    private volatile Runnable closeListener;
 
     public OcppJsonChargePoint(OcppVersion version, String chargeBoxId, String pathPrefix) {
         this(version.getValue(), chargeBoxId, pathPrefix);
     }
 
     public OcppJsonChargePoint(String ocppVersion, String chargeBoxId, String pathPrefix) {
+        this(ocppVersion, chargeBoxId, pathPrefix, new WebSocketClient(), false);
+    }
+
+    /**
+     * For many charge points in one JVM: they share the threads and selectors of the started client, which is not
+     * stopped by {@link #close()}.
+     */
+    public OcppJsonChargePoint(OcppVersion version, String chargeBoxId, String pathPrefix, WebSocketClient client) {
+        this(version.getValue(), chargeBoxId, pathPrefix, client, true);
+    }
+
+    private OcppJsonChargePoint(String ocppVersion, String chargeBoxId, String pathPrefix,
+                                WebSocketClient client, boolean sharedClient) {
         this.version = ocppVersion;
         this.chargeBoxId = chargeBoxId;
         this.connectionPath = pathPrefix + chargeBoxId;
-        this.responseContextMap = new LinkedHashMap<>(); // because we want to keep the insertion order of test cases
+        // because we want to keep the insertion order of test cases. synchronized, since send(..) is called from
+        // other threads than onMessage(..)
+        this.responseContextMap = Collections.synchronizedMap(new LinkedHashMap<>());
         this.deserializer = new ResponseDeserializer();
-        this.client = new WebSocketClient();
+        this.client = client;
+        this.sharedClient = sharedClient;
         this.closeHappenedSignal = new CountDownLatch(1);
     }
 
@@ -98,6 +118,21 @@ public class OcppJsonChargePoint {
     public void onClose(Session session, int statusCode, String reason) {
         this.session = null;
         this.closeHappenedSignal.countDown();
+
+        // the responses of the calls in flight will never arrive
+        ArrayList<ResponseContext> pending;
+        synchronized (responseContextMap) {
+            pending = new ArrayList<>(responseContextMap.values());
+            responseContextMap.clear();
+        }
+        for (ResponseContext ctx : pending) {
+            ctx.errorHandler.accept(connectionError(ctx.messageId, "Connection closed: " + statusCode));
+        }
+
+        Runnable listener = closeListener;
+        if (listener != null) {
+            listener.run();
+        }
     }
 
     @OnWebSocketError
@@ -127,22 +162,75 @@ public class OcppJsonChargePoint {
 
     public void start() {
         try {
-            ClientUpgradeRequest request = new ClientUpgradeRequest();
-            if (version != null) {
-                request.setSubProtocols(version);
+            if (!sharedClient) {
+                client.start();
             }
-
-            client.start();
-
-            Future<Session> connect = client.connect(this, new URI(connectionPath), request);
-            connect.get(); // block until session is created
+            connect().get(); // block until session is created
         } catch (Throwable t) {
             throw new RuntimeException(t);
         }
     }
 
+    /**
+     * Opens the connection without blocking. With a shared client, this can be called again after the connection
+     * was closed.
+     */
+    public CompletableFuture<Session> connect() {
+        ClientUpgradeRequest request = new ClientUpgradeRequest();
+        if (version != null) {
+            request.setSubProtocols(version);
+        }
+
+        try {
+            return client.connect(this, new URI(connectionPath), request);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public boolean isOpen() {
+        Session s = session;
+        return s != null && s.isOpen();
+    }
+
+    /**
+     * Called after the connection was closed, be it by us or by the other side
+     */
+    public void setCloseListener(Runnable closeListener) {
+        this.closeListener = closeListener;
+    }
+
     public <T extends ResponseType> void prepare(RequestType request, Class<T> responseClass,
                                                  Consumer<T> responseHandler, Consumer<OcppJsonError> errorHandler) {
+        createCall(request, responseClass, responseHandler, errorHandler);
+    }
+
+    /**
+     * Unlike {@link #prepare} and {@link #process()}, sends the call right away and does not wait for the response.
+     * The handlers are called from the threads of the client. If the call cannot be sent, the error handler is called
+     * with a {@link ErrorCode#GenericError}.
+     */
+    public <T extends ResponseType> void send(RequestType request, Class<T> responseClass,
+                                              Consumer<T> responseHandler, Consumer<OcppJsonError> errorHandler) {
+        ResponseContext ctx = createCall(request, responseClass, responseHandler, errorHandler);
+
+        Session s = session;
+        if (s == null) {
+            failCall(ctx.messageId, "Not connected");
+            return;
+        }
+
+        s.getRemote().sendString(ctx.outgoingMessage, new WriteCallback() {
+            @Override
+            public void writeFailed(Throwable x) {
+                failCall(ctx.messageId, x.getMessage());
+            }
+        });
+    }
+
+    private <T extends ResponseType> ResponseContext createCall(RequestType request, Class<T> responseClass,
+                                                                Consumer<T> responseHandler,
+                                                                Consumer<OcppJsonError> errorHandler) {
         String messageId = UUID.randomUUID().toString();
 
         OcppJsonCall call = new OcppJsonCall();
@@ -156,8 +244,17 @@ public class OcppJsonChargePoint {
 
         Serializer.INSTANCE.accept(ctx);
 
-        ResponseContext resCtx = new ResponseContext(ctx.getOutgoingString(), responseClass, responseHandler, errorHandler);
+        ResponseContext resCtx = new ResponseContext(messageId, ctx.getOutgoingString(), responseClass,
+                responseHandler, errorHandler);
         responseContextMap.put(messageId, resCtx);
+        return resCtx;
+    }
+
+    private void failCall(String messageId, String description) {
+        ResponseContext ctx = responseContextMap.remove(messageId);
+        if (ctx != null) {
+            ctx.errorHandler.accept(connectionError(messageId, description));
+        }
     }
 
     public void process() {
@@ -193,12 +290,24 @@ public class OcppJsonChargePoint {
             closeHappenedSignal.await();
 
             // well, stop the client
-            client.stop();
+            if (!sharedClient) {
+                client.stop();
+            }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Drops the connection without a close handshake, as a station does when it loses its network
+     */
+    public void disconnect() {
+        Session s = session;
+        if (s != null) {
+            s.disconnect();
+        }
+    }
+
     public void processAndClose() {
         process();
         close();
@@ -208,6 +317,14 @@ public class OcppJsonChargePoint {
     // Private helpers
     // -------------------------------------------------------------------------
 
+    private static OcppJsonError connectionError(String messageId, String description) {
+        OcppJsonError error = new OcppJsonError();
+        error.setMessageId(messageId);
+        error.setErrorCode(ErrorCode.GenericError);
+        error.setErrorDescription(description);
+        return error;
+    }
+
     private static String getOperationName(RequestType requestType) {
         String s = requestType.getClass().getSimpleName();
         if (s.endsWith("Request")) {
@@ -217,16 +334,19 @@ public class OcppJsonChargePoint {
     }
 
     private static class ResponseContext {
+        private final String messageId;
         private final String outgoingMessage;
         private final Class<ResponseType> responseClass;
         private final Consumer<ResponseType> responseHandler;
         private final Consumer<OcppJsonError> errorHandler;
 
         @SuppressWarnings("unchecked")
-        private <T extends ResponseType> ResponseContext(String outgoingMessage,
+        private <T extends ResponseType> ResponseContext(String messageId,
+                                                         String outgoingMessage,
                                                          Class<T> responseClass,
                                                          Consumer<T> responseHandler,
                                                          Consumer<OcppJsonError> errorHandler) {
+            this.messageId = messageId;
             this.outgoingMessage = outgoingMessage;
             this.responseClass = (Class<ResponseType>) responseClass;
             this.responseHandler = (Consumer<ResponseType>) responseHandler;